@@ -2,7 +2,10 @@
 
 # The command-line arguments can be used to list the benchmarks to be executed.
 # By default all benchmarks are executed.
-# Example: run.sh org.sonar.microbenchmark.SerializationBenchmark
+# Example: run.sh org.sonar.microbenchmark.SerializationBenchmark
+#
+# Results are written in JSON format to target/jmh-result.json, so that they can be archived
+# and compared between two versions.
 
 mvn clean install
-java -jar target/microbenchmark.jar $*
+java -jar target/microbenchmark.jar -rf json -rff target/jmh-result.json $*
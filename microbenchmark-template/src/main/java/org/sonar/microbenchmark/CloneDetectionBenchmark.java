@@ -0,0 +1,105 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
+import org.sonar.duplications.index.CloneGroup;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
+
+/**
+ * Indexing of blocks in {@link PackedMemoryCloneIndex} and detection of duplications with
+ * {@link SuffixTreeCloneDetectionAlgorithm}, as executed by the scanner on each file of the project.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.AverageTime)
+public class CloneDetectionBenchmark {
+
+  private static final int BLOCKS_PER_FILE = 200;
+  private static final int DISTINCT_HASHES = 20_000;
+
+  @Param({"100", "1000"})
+  public int files;
+
+  private List<List<Block>> blocksByFile = new ArrayList<>();
+  private PackedMemoryCloneIndex index;
+
+  @Setup
+  public void setup() throws Exception {
+    for (int i = 0; i < files; i++) {
+      blocksByFile.add(SyntheticData.blocks("File" + i, BLOCKS_PER_FILE, DISTINCT_HASHES));
+    }
+    index = index();
+  }
+
+  @Benchmark
+  public PackedMemoryCloneIndex index() {
+    PackedMemoryCloneIndex result = new PackedMemoryCloneIndex();
+    for (List<Block> blocks : blocksByFile) {
+      for (Block block : blocks) {
+        result.insert(block);
+      }
+    }
+    return result;
+  }
+
+  @Benchmark
+  public int detect() {
+    int groups = 0;
+    for (List<Block> blocks : blocksByFile) {
+      List<CloneGroup> clones = SuffixTreeCloneDetectionAlgorithm.detect(index, blocks);
+      groups += clones.size();
+    }
+    return groups;
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(CloneDetectionBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
@@ -41,7 +41,7 @@ import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
-import org.sonar.server.source.db.FileSourceDb;
+import org.sonar.db.protobuf.DbFileSources;
 
 /**
  *
@@ -59,14 +59,14 @@ public class FileSourceDbBenchmark {
   @Param({"10", "100", "1000", "100000"})
   public int linesNumber;
 
-  List<FileSourceDb.Line> lines = new ArrayList<>();
-  FileSourceDb.Data data;
+  List<DbFileSources.Line> lines = new ArrayList<>();
+  DbFileSources.Data data;
 
   @Setup
   public void setup() throws Exception {
-    FileSourceDb.Data.Builder builder = FileSourceDb.Data.newBuilder();
+    DbFileSources.Data.Builder builder = DbFileSources.Data.newBuilder();
     for (int i = 0; i < linesNumber; i++) {
-      FileSourceDb.Line.Builder lineBuilder = builder.addLinesBuilder();
+      DbFileSources.Line.Builder lineBuilder = builder.addLinesBuilder();
       lines.add(lineBuilder
         .setLine(i + 1)
         .setScmAuthor("charlie")
@@ -95,7 +95,7 @@ public class FileSourceDbBenchmark {
   @Benchmark
   public int delimiters() throws Exception {
     ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-    for (FileSourceDb.Line line : lines) {
+    for (DbFileSources.Line line : lines) {
       line.writeDelimitedTo(byteOutput);
     }
     byteOutput.close();
@@ -128,7 +128,7 @@ public class FileSourceDbBenchmark {
   public int codedstream_delimiters() throws Exception {
     ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
     CodedOutputStream writer = CodedOutputStream.newInstance(byteOutput);
-    for (FileSourceDb.Line line : lines) {
+    for (DbFileSources.Line line : lines) {
       writer.writeRawVarint32(line.getSerializedSize());
       writer.writeRawBytes(line.toByteArray());
     }
@@ -0,0 +1,198 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.server.computation.component.Component;
+import org.sonar.server.computation.component.PathAwareCrawler;
+import org.sonar.server.computation.formula.Formula;
+import org.sonar.server.computation.formula.FormulaExecutorComponentVisitor;
+import org.sonar.server.computation.measure.Measure;
+import org.sonar.server.computation.measure.MeasureRepository;
+import org.sonar.server.computation.metric.Metric;
+import org.sonar.server.computation.metric.MetricImpl;
+import org.sonar.server.computation.metric.MetricRepository;
+
+import static org.sonar.api.measures.CoreMetrics.CLASSES_KEY;
+import static org.sonar.api.measures.CoreMetrics.COMPLEXITY_KEY;
+import static org.sonar.api.measures.CoreMetrics.FUNCTIONS_KEY;
+import static org.sonar.api.measures.CoreMetrics.LINES_KEY;
+import static org.sonar.api.measures.CoreMetrics.NCLOC_KEY;
+import static org.sonar.server.computation.formula.SumFormula.createIntSumFormula;
+import static org.sonar.server.computation.measure.Measure.newMeasureBuilder;
+
+/**
+ * Aggregation of file measures up to the project by {@link FormulaExecutorComponentVisitor}. Repositories of
+ * metrics and measures are kept in memory, so that only the cost of crawling the tree and of the formulas is measured.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.AverageTime)
+public class FormulaExecutorBenchmark {
+
+  private static final int FILES_PER_DIRECTORY = 20;
+  private static final List<String> METRIC_KEYS = ImmutableList.of(LINES_KEY, NCLOC_KEY, CLASSES_KEY, FUNCTIONS_KEY, COMPLEXITY_KEY);
+
+  @Param({"1000", "10000", "100000"})
+  public int files;
+
+  private Component project;
+  private FormulaExecutorComponentVisitor visitor;
+
+  @Setup
+  public void setup() throws Exception {
+    project = SyntheticData.projectTree(files / FILES_PER_DIRECTORY, FILES_PER_DIRECTORY);
+    InMemoryMetricRepository metricRepository = new InMemoryMetricRepository();
+    InMemoryMeasureRepository measureRepository = new InMemoryMeasureRepository();
+    ImmutableList.Builder<Formula> formulas = ImmutableList.builder();
+    int fileIndex = 0;
+    for (Component directory : project.getChildren().get(0).getChildren()) {
+      for (Component file : directory.getChildren()) {
+        for (String metricKey : METRIC_KEYS) {
+          measureRepository.add(file, metricRepository.getByKey(metricKey), newMeasureBuilder().create(fileIndex % 100 + metricKey.length()));
+        }
+        fileIndex++;
+      }
+    }
+    for (String metricKey : METRIC_KEYS) {
+      formulas.add(createIntSumFormula(metricKey));
+    }
+    visitor = FormulaExecutorComponentVisitor.newBuilder(metricRepository, measureRepository).buildFor(formulas.build());
+  }
+
+  @Benchmark
+  public Component aggregate() {
+    new PathAwareCrawler<>(visitor).visit(project);
+    return project;
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(FormulaExecutorBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+
+  private static class InMemoryMetricRepository implements MetricRepository {
+    private final Map<String, Metric> metricsByKey = new HashMap<>();
+
+    InMemoryMetricRepository() {
+      int id = 1;
+      for (String metricKey : METRIC_KEYS) {
+        metricsByKey.put(metricKey, new MetricImpl(id++, metricKey, metricKey, Metric.MetricType.INT));
+      }
+    }
+
+    @Override
+    public Metric getByKey(String key) {
+      return metricsByKey.get(key);
+    }
+
+    @Override
+    public Metric getById(long id) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterable<Metric> getAll() {
+      return metricsByKey.values();
+    }
+  }
+
+  /**
+   * Measures computed by formulas are overridden at each execution of the benchmark
+   */
+  private static class InMemoryMeasureRepository implements MeasureRepository {
+    private final Map<String, Map<String, Measure>> measuresByComponentUuid = new HashMap<>();
+
+    @Override
+    public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+      return Optional.absent();
+    }
+
+    @Override
+    public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+      Map<String, Measure> measures = measuresByComponentUuid.get(component.getUuid());
+      return Optional.fromNullable(measures == null ? null : measures.get(metric.getKey()));
+    }
+
+    @Override
+    public Set<Measure> getRawMeasures(Component component, Metric metric) {
+      return getRawMeasure(component, metric).asSet();
+    }
+
+    @Override
+    public SetMultimap<String, Measure> getRawMeasures(Component component) {
+      ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+      Map<String, Measure> measures = measuresByComponentUuid.get(component.getUuid());
+      if (measures != null) {
+        for (Map.Entry<String, Measure> entry : measures.entrySet()) {
+          builder.put(entry.getKey(), entry.getValue());
+        }
+      }
+      return builder.build();
+    }
+
+    @Override
+    public void add(Component component, Metric metric, Measure measure) {
+      Map<String, Measure> measures = measuresByComponentUuid.get(component.getUuid());
+      if (measures == null) {
+        measures = new HashMap<>();
+        measuresByComponentUuid.put(component.getUuid(), measures);
+      }
+      measures.put(metric.getKey(), measure);
+    }
+
+    @Override
+    public void update(Component component, Metric metric, Measure measure) {
+      add(component, metric, measure);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.utils.text.JsonWriter;
+
+/**
+ * JSON output of web services, for example api/sources/lines
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.AverageTime)
+public class JsonWriterBenchmark {
+
+  @Param({"100", "10000"})
+  public int lines;
+
+  private List<String> sourceLines;
+
+  @Setup
+  public void setup() throws Exception {
+    sourceLines = SyntheticData.sourceLines(lines);
+  }
+
+  @Benchmark
+  public int write() {
+    StringWriter output = new StringWriter();
+    JsonWriter json = JsonWriter.of(output);
+    json.beginObject().name("sources").beginArray();
+    int line = 1;
+    for (String source : sourceLines) {
+      json.beginObject()
+        .prop("line", line)
+        .prop("code", source)
+        .prop("scmAuthor", "author" + (line % 5))
+        .prop("scmDate", "2015-12-01T10:00:00+0100")
+        .prop("utLineHits", line % 3)
+        .prop("utCoverageStatus", "PARTIALLY_COVERED")
+        .prop("duplicated", false)
+        .endObject();
+      line++;
+    }
+    json.endArray().endObject().close();
+    return output.getBuffer().length();
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(JsonWriterBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.batch.protocol.Constants;
+import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.server.computation.component.Component;
+import org.sonar.server.computation.component.DbIdsRepositoryImpl;
+import org.sonar.server.computation.measure.BatchMeasureToMeasure;
+import org.sonar.server.computation.measure.Measure;
+import org.sonar.server.computation.measure.MeasureToMeasureDto;
+import org.sonar.server.computation.metric.Metric;
+import org.sonar.server.computation.metric.MetricImpl;
+
+/**
+ * Conversions of measures done by the Compute Engine: from scanner report to {@link Measure} when loading
+ * raw measures, then from {@link Measure} to {@link org.sonar.db.measure.MeasureDto} when persisting them.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.AverageTime)
+public class MeasureConversionBenchmark {
+
+  private static final Metric INT_METRIC = new MetricImpl(1, "ncloc", "Lines of code", Metric.MetricType.INT);
+  private static final Metric DOUBLE_METRIC = new MetricImpl(2, "coverage", "Coverage", Metric.MetricType.PERCENT, 1, 100d, true);
+  private static final Metric DATA_METRIC = new MetricImpl(3, "ncloc_data", "ncloc_data", Metric.MetricType.DATA);
+
+  @Param({"10000", "100000"})
+  public int measures;
+
+  private final BatchMeasureToMeasure batchMeasureToMeasure = new BatchMeasureToMeasure();
+  private MeasureToMeasureDto measureToMeasureDto;
+  private Component file;
+  private List<BatchReport.Measure> batchMeasures = new ArrayList<>();
+  private List<Measure> computedMeasures = new ArrayList<>();
+
+  @Setup
+  public void setup() throws Exception {
+    file = SyntheticData.projectTree(1, 1).getChildren().get(0).getChildren().get(0).getChildren().get(0);
+    DbIdsRepositoryImpl dbIdsRepository = new DbIdsRepositoryImpl();
+    dbIdsRepository.setComponentId(file, 10L);
+    dbIdsRepository.setSnapshotId(file, 100L);
+    measureToMeasureDto = new MeasureToMeasureDto(dbIdsRepository);
+
+    for (int i = 0; i < measures; i++) {
+      BatchReport.Measure batchMeasure = batchMeasure(i);
+      batchMeasures.add(batchMeasure);
+      computedMeasures.add(batchMeasureToMeasure.toMeasure(batchMeasure, metric(i)).get());
+    }
+  }
+
+  @Benchmark
+  public void batchMeasureToMeasure(Blackhole blackhole) {
+    for (int i = 0; i < measures; i++) {
+      Optional<Measure> measure = batchMeasureToMeasure.toMeasure(batchMeasures.get(i), metric(i));
+      blackhole.consume(measure);
+    }
+  }
+
+  @Benchmark
+  public void measureToMeasureDto(Blackhole blackhole) {
+    for (int i = 0; i < measures; i++) {
+      blackhole.consume(measureToMeasureDto.toMeasureDto(computedMeasures.get(i), metric(i), file));
+    }
+  }
+
+  private static Metric metric(int index) {
+    switch (index % 3) {
+      case 0:
+        return INT_METRIC;
+      case 1:
+        return DOUBLE_METRIC;
+      default:
+        return DATA_METRIC;
+    }
+  }
+
+  private static BatchReport.Measure batchMeasure(int index) {
+    BatchReport.Measure.Builder builder = BatchReport.Measure.newBuilder().setMetricKey(metric(index).getKey());
+    switch (index % 3) {
+      case 0:
+        return builder.setValueType(Constants.MeasureValueType.INT).setIntValue(index).build();
+      case 1:
+        return builder.setValueType(Constants.MeasureValueType.DOUBLE).setDoubleValue(index / 3.0).build();
+      default:
+        return builder.setValueType(Constants.MeasureValueType.STRING).setStringValue("1=" + index + ";2=" + (index + 1)).build();
+    }
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(MeasureConversionBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
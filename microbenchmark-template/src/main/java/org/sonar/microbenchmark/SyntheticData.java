@@ -0,0 +1,150 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.sonar.batch.protocol.Constants;
+import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.server.computation.component.Component;
+import org.sonar.server.computation.component.ComponentImpl;
+
+/**
+ * Generators of the data used by benchmarks. Values are pseudo-random but generated with a fixed seed, so
+ * that the results of different executions can be compared.
+ */
+public final class SyntheticData {
+
+  private static final long SEED = 42L;
+  private static final String[] STATEMENTS = {
+    "int count = 0;",
+    "if (value == null) {",
+    "  return Optional.absent();",
+    "}",
+    "for (String key : keys) {",
+    "  builder.append(key).append(',');",
+    "// compute the hash of the block",
+    "throw new IllegalStateException(\"Fail to read \" + file);",
+    "",
+    "    }"
+  };
+
+  private SyntheticData() {
+    // only static methods
+  }
+
+  /**
+   * Lines of source code, including blank lines, indentation and comments
+   */
+  public static List<String> sourceLines(int lines) {
+    Random random = new Random(SEED);
+    List<String> result = new ArrayList<>(lines);
+    for (int i = 0; i < lines; i++) {
+      result.add(STATEMENTS[random.nextInt(STATEMENTS.length)] + (i % 7 == 0 ? (" // line " + i) : ""));
+    }
+    return result;
+  }
+
+  public static String sourceCode(int lines) {
+    StringBuilder sb = new StringBuilder();
+    for (String line : sourceLines(lines)) {
+      sb.append(line).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Source of a file as persisted in table FILE_SOURCES, with SCM, coverage, highlighting and duplications
+   */
+  public static DbFileSources.Data sourceData(int lines) {
+    DbFileSources.Data.Builder builder = DbFileSources.Data.newBuilder();
+    int line = 1;
+    for (String source : sourceLines(lines)) {
+      builder.addLinesBuilder()
+        .setLine(line)
+        .setSource(source)
+        .setScmAuthor("author" + (line % 5))
+        .setScmRevision("rev" + (line % 20))
+        .setScmDate(1_450_000_000_000L + line)
+        .setUtLineHits(line % 3)
+        .setUtConditions(2)
+        .setUtCoveredConditions(1)
+        .setHighlighting("0,3,k;4,9,c")
+        .setSymbols("1,4,1")
+        .addDuplication(line % 4);
+      line++;
+    }
+    return builder.build();
+  }
+
+  /**
+   * Blocks of a file. Hashes are taken among {@code distinctHashes} values, so that the higher
+   * the ratio {@code blocks / distinctHashes}, the more duplications are found.
+   */
+  public static List<Block> blocks(String resourceId, int blocks, int distinctHashes) {
+    Random random = new Random(SEED + resourceId.hashCode());
+    List<Block> result = new ArrayList<>(blocks);
+    for (int i = 0; i < blocks; i++) {
+      result.add(Block.builder()
+        .setResourceId(resourceId)
+        .setBlockHash(new ByteArray((long) random.nextInt(distinctHashes)))
+        .setIndexInFile(i)
+        .setLines(i + 1, i + 10)
+        .setUnit(i, i + 10)
+        .build());
+    }
+    return result;
+  }
+
+  /**
+   * Tree of a project with a single module, {@code directories} directories and {@code filesPerDirectory} files
+   * in each directory
+   */
+  public static Component projectTree(int directories, int filesPerDirectory) {
+    int ref = 1;
+    ComponentImpl.Builder project = component(Constants.ComponentType.PROJECT, ref++, "project");
+    ComponentImpl.Builder module = component(Constants.ComponentType.MODULE, ref++, "module");
+    for (int d = 0; d < directories; d++) {
+      String dirPath = "src/main/java/dir" + d;
+      ComponentImpl.Builder directory = component(Constants.ComponentType.DIRECTORY, ref++, dirPath);
+      for (int f = 0; f < filesPerDirectory; f++) {
+        directory.addChildren(component(Constants.ComponentType.FILE, ref++, dirPath + "/File" + f + ".java").build());
+      }
+      module.addChildren(directory.build());
+    }
+    return project.addChildren(module.build()).build();
+  }
+
+  private static ComponentImpl.Builder component(Constants.ComponentType type, int ref, String path) {
+    return ComponentImpl.builder(BatchReport.Component.newBuilder()
+      .setRef(ref)
+      .setType(type)
+      .setName(path)
+      .setPath(path)
+      .setLanguage("java")
+      .build())
+      .setUuid("UUID_" + ref)
+      .setKey("KEY_" + ref);
+  }
+}
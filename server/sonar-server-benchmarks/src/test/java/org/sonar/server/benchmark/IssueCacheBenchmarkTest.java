@@ -0,0 +1,141 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.benchmark;
+
+import java.io.File;
+import java.util.Date;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.Uuids;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.computation.issue.IssueCache;
+import org.sonar.server.util.cache.DiskCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the binary format of {@link IssueCache} to the Java serialization
+ * used by default by {@link DiskCache}.
+ */
+public class IssueCacheBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("benchmarkIssueCache");
+
+  static final int ISSUES = 1_000_000;
+  static final int ISSUES_PER_FILE = 100;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  @Test
+  public void benchmark() throws Exception {
+    File javaSerializationFile = temp.newFile();
+    long javaSerializationSize = benchmark("Java serialization", new DiskCache<DefaultIssue>(javaSerializationFile, System2.INSTANCE), javaSerializationFile);
+
+    File protobufFile = temp.newFile();
+    long protobufSize = benchmark("Protobuf", new IssueCache(protobufFile, System2.INSTANCE), protobufFile);
+
+    assertThat(protobufSize).isLessThan(javaSerializationSize);
+  }
+
+  /**
+   * @return size of file in bytes
+   */
+  private long benchmark(String label, DiskCache<DefaultIssue> cache, File file) {
+    long start = System.currentTimeMillis();
+    DiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender();
+    try {
+      for (int i = 0; i < ISSUES; i++) {
+        appender.append(newIssue(i));
+      }
+    } finally {
+      appender.close();
+    }
+    long writeDuration = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    int count = 0;
+    try (CloseableIterator<DefaultIssue> issues = cache.traverse()) {
+      while (issues.hasNext()) {
+        issues.next();
+        count++;
+      }
+    }
+    long readDuration = System.currentTimeMillis() - start;
+    assertThat(count).isEqualTo(ISSUES);
+
+    long size = file.length();
+    LOGGER.info(String.format("%s: %d issues written in %d ms (%d issues/s), read in %d ms (%d issues/s), file size is %d MB",
+      label, ISSUES, writeDuration, ISSUES * 1000L / Math.max(1L, writeDuration), readDuration, ISSUES * 1000L / Math.max(1L, readDuration),
+      size / 1024L / 1024L));
+    return size;
+  }
+
+  private static DefaultIssue newIssue(int index) {
+    int fileIndex = index / ISSUES_PER_FILE;
+    Date now = new Date();
+    DefaultIssue issue = new DefaultIssue()
+      .setKey(Uuids.create())
+      .setComponentUuid("FILE_" + fileIndex)
+      .setComponentKey("PROJECT:src/main/java/org/sonar/File" + fileIndex + ".java")
+      .setModuleUuid("MODULE")
+      .setModuleUuidPath(".PROJECT.MODULE.")
+      .setProjectUuid("PROJECT")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("squid", "S" + (index % 500)))
+      .setLanguage("java")
+      .setSeverity(Severity.MAJOR)
+      .setMessage("Message of issue " + index)
+      .setLine(1 + index % ISSUES_PER_FILE)
+      .setDebt(Duration.create(10L))
+      .setStatus(Issue.STATUS_OPEN)
+      .setChecksum("c5a3b4ee35c2b79f1c8b2bc3d2c87b8e")
+      .setAuthorLogin("author")
+      .setLocations(DbIssues.Locations.newBuilder()
+        .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(1 + index % ISSUES_PER_FILE).setStartOffset(2).setEndOffset(10))
+        .build())
+      .setCreationDate(now)
+      .setUpdateDate(now)
+      .setNew(index % 10 == 0)
+      .setChanged(true);
+    if (index % 10 == 1) {
+      issue.setCurrentChange(new FieldDiffs()
+        .setIssueKey(issue.key())
+        .setCreationDate(now)
+        .setDiff("severity", Severity.MINOR, Severity.MAJOR));
+    }
+    return issue;
+  }
+}
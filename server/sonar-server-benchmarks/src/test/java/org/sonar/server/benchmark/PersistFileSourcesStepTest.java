@@ -31,6 +31,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.protocol.Constants;
 import org.sonar.batch.protocol.output.BatchReport;
@@ -53,6 +54,8 @@ import org.sonar.server.computation.scm.ScmInfoRepositoryImpl;
 import org.sonar.server.computation.source.SourceHashRepositoryImpl;
 import org.sonar.server.computation.source.SourceLinesRepositoryImpl;
 import org.sonar.server.computation.step.PersistFileSourcesStep;
+import org.sonar.server.computation.step.StepMetricsHolderImpl;
+import org.sonar.server.computation.taskprocessor.CeConfigurationImpl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -96,15 +99,16 @@ public class PersistFileSourcesStepTest {
     SourceLinesRepositoryImpl sourceLinesRepository = new SourceLinesRepositoryImpl(batchReportReader);
     SourceHashRepositoryImpl sourceHashRepository = new SourceHashRepositoryImpl(sourceLinesRepository);
     ScmInfoRepositoryImpl scmInfoRepository = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    Settings settings = new Settings().setProperty(CeConfigurationImpl.FILE_SOURCE_WORKER_COUNT_PROPERTY, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
     PersistFileSourcesStep step = new PersistFileSourcesStep(dbClient, System2.INSTANCE, treeRootHolder, batchReportReader, sourceLinesRepository, scmInfoRepository,
-      duplicationRepository);
+      duplicationRepository, new StepMetricsHolderImpl(), new CeConfigurationImpl(settings));
     step.execute();
 
     long end = System.currentTimeMillis();
     long duration = end - start;
 
     assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(NUMBER_OF_FILES);
-    LOGGER.info(String.format("File sources have been persisted in %d ms", duration));
+    LOGGER.info(String.format("File sources have been persisted in %d ms (%d files/s)", duration, NUMBER_OF_FILES * 1000L / Math.max(1L, duration)));
 
     benchmark.expectAround("Duration to persist FILE_SOURCES", duration, 93700, Benchmark.DEFAULT_ERROR_MARGIN_PERCENTS);
   }
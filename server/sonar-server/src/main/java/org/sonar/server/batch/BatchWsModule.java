@@ -30,6 +30,7 @@ public class BatchWsModule extends Module {
       ProjectAction.class,
       ProjectDataLoader.class,
       IssuesAction.class,
+      ServerIssuesExport.class,
       UsersAction.class,
       BatchWs.class);
   }
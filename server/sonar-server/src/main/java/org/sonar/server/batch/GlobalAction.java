@@ -35,6 +35,7 @@ import org.sonar.db.property.PropertyDto;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonarqube.ws.MediaTypes;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.ws.ETags;
 
 public class GlobalAction implements BatchWsAction {
 
@@ -51,7 +52,8 @@ public class GlobalAction implements BatchWsAction {
   @Override
   public void define(WebService.NewController controller) {
     controller.createAction("global")
-      .setDescription("Return metrics and global properties")
+      .setDescription("Return metrics and global properties. The response has an ETag header. " +
+        "When the data did not change since the request which returned the entity tag sent in header If-None-Match, then the status is 304 without content.")
       .setResponseExample(getClass().getResource("global-example.json"))
       .setSince("4.5")
       .setInternal(true)
@@ -72,8 +74,12 @@ public class GlobalAction implements BatchWsAction {
       addMetrics(ref, session);
       addSettings(ref, hasScanPerm, hasPreviewPerm, session);
 
+      String json = ref.toJson();
       response.stream().setMediaType(MediaTypes.JSON);
-      IOUtils.write(ref.toJson(), response.stream().output());
+      if (ETags.writeNotModifiedIfMatch(request, response, json)) {
+        return;
+      }
+      IOUtils.write(json, response.stream().output());
     } finally {
       MyBatis.closeQuietly(session);
     }
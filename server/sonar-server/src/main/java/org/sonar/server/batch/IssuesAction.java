@@ -20,10 +20,8 @@
 
 package org.sonar.server.batch;
 
-import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ws.Request;
@@ -38,10 +36,9 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.issue.index.IssueDoc;
 import org.sonar.server.issue.index.IssueIndex;
-import org.sonarqube.ws.MediaTypes;
 import org.sonar.server.user.UserSession;
-
-import static com.google.common.collect.Maps.newHashMap;
+import org.sonar.server.ws.ETags;
+import org.sonarqube.ws.MediaTypes;
 
 public class IssuesAction implements BatchWsAction {
 
@@ -51,18 +48,21 @@ public class IssuesAction implements BatchWsAction {
   private final IssueIndex issueIndex;
   private final UserSession userSession;
   private final ComponentFinder componentFinder;
+  private final ServerIssuesExport issuesExport;
 
-  public IssuesAction(DbClient dbClient, IssueIndex issueIndex, UserSession userSession, ComponentFinder componentFinder) {
+  public IssuesAction(DbClient dbClient, IssueIndex issueIndex, UserSession userSession, ComponentFinder componentFinder, ServerIssuesExport issuesExport) {
     this.dbClient = dbClient;
     this.issueIndex = issueIndex;
     this.userSession = userSession;
     this.componentFinder = componentFinder;
+    this.issuesExport = issuesExport;
   }
 
   @Override
   public void define(WebService.NewController controller) {
     WebService.NewAction action = controller.createAction("issues")
-      .setDescription("Return open issues")
+      .setDescription("Return open issues. The response has an ETag header. " +
+        "When the issues did not change since the request which returned the entity tag sent in header If-None-Match, then the status is 304 without content.")
       .setResponseExample(getClass().getResource("issues-example.proto"))
       .setSince("5.1")
       .setInternal(true)
@@ -84,73 +84,28 @@ public class IssuesAction implements BatchWsAction {
     DbSession session = dbClient.openSession(false);
     try {
       ComponentDto component = componentFinder.getByKey(session, moduleKey);
-      Map<String, String> keysByUUid = keysByUUid(session, component);
+      Map<String, String> keysByUUid = issuesExport.selectModuleKeysByUuid(session, component);
+      // counting issues is much cheaper than loading them
+      String version = ServerIssuesExport.version(component, keysByUUid, issueIndex.selectIssuesForBatchVersion(component));
+      if (ETags.writeNotModifiedIfMatch(request, response, version)) {
+        return;
+      }
 
+      OutputStream output = response.stream().output();
+      // issues exported at the end of the last analysis of the project are still valid if version did not change
+      if (isRootProject(component) && issuesExport.writeIfUpToDate(component.uuid(), version, output)) {
+        return;
+      }
       BatchInput.ServerIssue.Builder issueBuilder = BatchInput.ServerIssue.newBuilder();
       for (Iterator<IssueDoc> issueDocIterator = issueIndex.selectIssuesForBatch(component); issueDocIterator.hasNext();) {
-        handleIssue(issueDocIterator.next(), issueBuilder, keysByUUid, response.stream().output());
+        ServerIssuesExport.writeIssue(issueDocIterator.next(), issueBuilder, keysByUUid, output);
       }
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
-  private static void handleIssue(IssueDoc issue, BatchInput.ServerIssue.Builder issueBuilder, Map<String, String> keysByUUid, OutputStream out) {
-    issueBuilder.setKey(issue.key());
-    issueBuilder.setModuleKey(keysByUUid.get(issue.moduleUuid()));
-    String path = issue.filePath();
-    if (path != null) {
-      issueBuilder.setPath(path);
-    }
-    issueBuilder.setRuleRepository(issue.ruleKey().repository());
-    issueBuilder.setRuleKey(issue.ruleKey().rule());
-    String checksum = issue.checksum();
-    if (checksum != null) {
-      issueBuilder.setChecksum(checksum);
-    }
-    String assigneeLogin = issue.assignee();
-    if (assigneeLogin != null) {
-      issueBuilder.setAssigneeLogin(assigneeLogin);
-    }
-    Integer line = issue.line();
-    if (line != null) {
-      issueBuilder.setLine(line);
-    }
-    String message = issue.message();
-    if (message != null) {
-      issueBuilder.setMsg(message);
-    }
-    issueBuilder.setSeverity(org.sonar.batch.protocol.Constants.Severity.valueOf(issue.severity()));
-    issueBuilder.setManualSeverity(issue.isManualSeverity());
-    issueBuilder.setStatus(issue.status());
-    String resolution = issue.resolution();
-    if (resolution != null) {
-      issueBuilder.setResolution(resolution);
-    }
-    issueBuilder.setCreationDate(issue.creationDate().getTime());
-    try {
-      issueBuilder.build().writeDelimitedTo(out);
-    } catch (IOException e) {
-      throw new IllegalStateException("Unable to serialize issue", e);
-    }
-    issueBuilder.clear();
-  }
-
-  private Map<String, String> keysByUUid(DbSession session, ComponentDto component) {
-    Map<String, String> keysByUUid = newHashMap();
-    if (Scopes.PROJECT.equals(component.scope())) {
-      List<ComponentDto> modulesTree = dbClient.componentDao().selectDescendantModules(session, component.uuid());
-      for (ComponentDto componentDto : modulesTree) {
-        keysByUUid.put(componentDto.uuid(), componentDto.key());
-      }
-    } else {
-      String moduleUuid = component.moduleUuid();
-      if (moduleUuid == null) {
-        throw new IllegalArgumentException(String.format("The component '%s' has no module uuid", component.uuid()));
-      }
-      ComponentDto module = dbClient.componentDao().selectOrFailByUuid(session, moduleUuid);
-      keysByUUid.put(module.uuid(), module.key());
-    }
-    return keysByUUid;
+  private static boolean isRootProject(ComponentDto component) {
+    return Scopes.PROJECT.equals(component.scope()) && component.uuid().equals(component.projectUuid());
   }
 }
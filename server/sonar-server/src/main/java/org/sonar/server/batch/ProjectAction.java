@@ -23,11 +23,13 @@ package org.sonar.server.batch;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.batch.protocol.input.FileData;
 import org.sonar.batch.protocol.input.ProjectRepositories;
+import org.sonar.server.ws.ETags;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
 import org.sonarqube.ws.WsBatch.WsProjectResponse.FileData.Builder;
 
@@ -48,7 +50,8 @@ public class ProjectAction implements BatchWsAction {
   @Override
   public void define(WebService.NewController controller) {
     WebService.NewAction action = controller.createAction("project")
-      .setDescription("Return project repository")
+      .setDescription("Return project repository. The response has an ETag header. " +
+        "When the data did not change since the request which returned the entity tag sent in header If-None-Match, then the status is 304 without content.")
       .setResponseExample(getClass().getResource("project-example.json"))
       .setSince("4.5")
       .setInternal(true)
@@ -80,6 +83,11 @@ public class ProjectAction implements BatchWsAction {
       .setIssuesMode(wsRequest.mandatoryParamAsBoolean(PARAM_ISSUES_MODE)));
 
     WsProjectResponse projectResponse = buildResponse(data);
+    // date of last analysis is not relevant, see ProjectDataLoader
+    String version = wsRequest.getMediaType() + DigestUtils.md5Hex(projectResponse.toBuilder().clearLastAnalysisDate().build().toByteArray());
+    if (ETags.writeNotModifiedIfMatch(wsRequest, wsResponse, version)) {
+      return;
+    }
     writeProtobuf(projectResponse, wsRequest, wsResponse);
   }
 
@@ -0,0 +1,205 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Scopes;
+import org.sonar.api.server.ServerSide;
+import org.sonar.batch.protocol.input.BatchInput;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.process.ProcessProperties;
+import org.sonar.server.issue.index.IssueDoc;
+import org.sonar.server.ws.ETags;
+
+import static com.google.common.collect.Maps.newHashMap;
+import static java.lang.String.format;
+
+/**
+ * Issues of projects, as returned by {@link IssuesAction}, pre-serialized in files of the data directory at the end of
+ * each analysis. A file starts with the entity tag of the version of the issues it contains (see {@link #version}),
+ * followed by the delimited {@link BatchInput.ServerIssue}. It is served only when its version matches the
+ * current version of the issues, so it does not need to be updated when issues are changed outside analyses.
+ */
+@ServerSide
+public class ServerIssuesExport {
+
+  private static final String EXTENSION = "pb";
+
+  private final DbClient dbClient;
+  private final Settings settings;
+
+  public ServerIssuesExport(DbClient dbClient, Settings settings) {
+    this.dbClient = dbClient;
+    this.settings = settings;
+  }
+
+  /**
+   * Version of the issues of a project, module or file, as used in the entity tag of {@link IssuesAction}.
+   *
+   * @param keysByUuid keys of the modules returned by {@link #selectModuleKeysByUuid(DbSession, ComponentDto)}
+   * @param issuesVersion version of the issues in index
+   */
+  public static String version(ComponentDto component, Map<String, String> keysByUuid, String issuesVersion) {
+    return component.key() + new TreeMap<>(keysByUuid) + issuesVersion;
+  }
+
+  /**
+   * Keys of the modules of the issues of a project, module or file
+   */
+  public Map<String, String> selectModuleKeysByUuid(DbSession session, ComponentDto component) {
+    Map<String, String> keysByUUid = newHashMap();
+    if (Scopes.PROJECT.equals(component.scope())) {
+      List<ComponentDto> modulesTree = dbClient.componentDao().selectDescendantModules(session, component.uuid());
+      for (ComponentDto componentDto : modulesTree) {
+        keysByUUid.put(componentDto.uuid(), componentDto.key());
+      }
+    } else {
+      String moduleUuid = component.moduleUuid();
+      if (moduleUuid == null) {
+        throw new IllegalArgumentException(String.format("The component '%s' has no module uuid", component.uuid()));
+      }
+      ComponentDto module = dbClient.componentDao().selectOrFailByUuid(session, moduleUuid);
+      keysByUUid.put(module.uuid(), module.key());
+    }
+    return keysByUUid;
+  }
+
+  /**
+   * Replaces the export of the issues of the project. The file is written next to the current one, then moved,
+   * so that concurrent requests read either the previous or the new export.
+   */
+  public void export(String projectUuid, String version, Map<String, String> keysByUuid, Iterator<IssueDoc> issues) {
+    File file = fileForUuid(projectUuid);
+    File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+    try {
+      FileUtils.forceMkdir(file.getParentFile());
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+      try {
+        output.writeUTF(ETags.of(version));
+        BatchInput.ServerIssue.Builder issueBuilder = BatchInput.ServerIssue.newBuilder();
+        while (issues.hasNext()) {
+          writeIssue(issues.next(), issueBuilder, keysByUuid, output);
+        }
+      } finally {
+        IOUtils.closeQuietly(output);
+      }
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      FileUtils.deleteQuietly(tmpFile);
+      throw new IllegalStateException(format("Fail to export issues to file: %s", file.getAbsolutePath()), e);
+    }
+  }
+
+  /**
+   * Copies the exported issues of the project to the output if their version is the given one.
+   *
+   * @return false if the project has no export or if its version is not the given one. In this case nothing is written.
+   */
+  public boolean writeIfUpToDate(String projectUuid, String version, OutputStream output) {
+    File file = fileForUuid(projectUuid);
+    InputStream input;
+    try {
+      input = new BufferedInputStream(new FileInputStream(file));
+    } catch (FileNotFoundException e) {
+      return false;
+    }
+    try {
+      if (!ETags.of(version).equals(new DataInputStream(input).readUTF())) {
+        return false;
+      }
+      IOUtils.copy(input, output);
+      return true;
+    } catch (IOException e) {
+      throw new IllegalStateException(format("Fail to read exported issues from file: %s", file.getAbsolutePath()), e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  public void deleteIfExists(String projectUuid) {
+    FileUtils.deleteQuietly(fileForUuid(projectUuid));
+  }
+
+  private File fileForUuid(String projectUuid) {
+    return new File(new File(settings.getString(ProcessProperties.PATH_DATA), "ce/issues"), format("%s.%s", projectUuid, EXTENSION));
+  }
+
+  static void writeIssue(IssueDoc issue, BatchInput.ServerIssue.Builder issueBuilder, Map<String, String> keysByUUid, OutputStream out) {
+    issueBuilder.setKey(issue.key());
+    issueBuilder.setModuleKey(keysByUUid.get(issue.moduleUuid()));
+    String path = issue.filePath();
+    if (path != null) {
+      issueBuilder.setPath(path);
+    }
+    issueBuilder.setRuleRepository(issue.ruleKey().repository());
+    issueBuilder.setRuleKey(issue.ruleKey().rule());
+    String checksum = issue.checksum();
+    if (checksum != null) {
+      issueBuilder.setChecksum(checksum);
+    }
+    String assigneeLogin = issue.assignee();
+    if (assigneeLogin != null) {
+      issueBuilder.setAssigneeLogin(assigneeLogin);
+    }
+    Integer line = issue.line();
+    if (line != null) {
+      issueBuilder.setLine(line);
+    }
+    String message = issue.message();
+    if (message != null) {
+      issueBuilder.setMsg(message);
+    }
+    issueBuilder.setSeverity(org.sonar.batch.protocol.Constants.Severity.valueOf(issue.severity()));
+    issueBuilder.setManualSeverity(issue.isManualSeverity());
+    issueBuilder.setStatus(issue.status());
+    String resolution = issue.resolution();
+    if (resolution != null) {
+      issueBuilder.setResolution(resolution);
+    }
+    issueBuilder.setCreationDate(issue.creationDate().getTime());
+    try {
+      issueBuilder.build().writeDelimitedTo(out);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize issue", e);
+    }
+    issueBuilder.clear();
+  }
+}
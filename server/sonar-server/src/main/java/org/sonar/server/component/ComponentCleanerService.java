@@ -29,6 +29,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.server.batch.ServerIssuesExport;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
 import org.sonar.server.issue.index.IssueIndexer;
 import org.sonar.server.test.index.TestIndexer;
@@ -42,15 +43,17 @@ public class ComponentCleanerService {
   private final TestIndexer testIndexer;
   private final ResourceTypes resourceTypes;
   private final ComponentFinder componentFinder;
+  private final ServerIssuesExport issuesExport;
 
   public ComponentCleanerService(DbClient dbClient, IssueAuthorizationIndexer issueAuthorizationIndexer, IssueIndexer issueIndexer,
-    TestIndexer testIndexer, ResourceTypes resourceTypes, ComponentFinder componentFinder) {
+    TestIndexer testIndexer, ResourceTypes resourceTypes, ComponentFinder componentFinder, ServerIssuesExport issuesExport) {
     this.dbClient = dbClient;
     this.issueAuthorizationIndexer = issueAuthorizationIndexer;
     this.issueIndexer = issueIndexer;
     this.testIndexer = testIndexer;
     this.resourceTypes = resourceTypes;
     this.componentFinder = componentFinder;
+    this.issuesExport = issuesExport;
   }
 
   public void delete(DbSession dbSession, List<ComponentDto> projects) {
@@ -77,6 +80,7 @@ public class ComponentCleanerService {
     dbSession.commit();
 
     deleteFromIndices(project.uuid());
+    issuesExport.deleteIfExists(project.uuid());
   }
 
   private void deleteFromIndices(String projectUuid) {
@@ -21,8 +21,10 @@ package org.sonar.server.computation;
 
 import org.sonar.core.platform.Module;
 import org.sonar.db.purge.period.DefaultPeriodCleaner;
+import org.sonar.server.computation.dbcleaner.BackgroundProjectCleaner;
 import org.sonar.server.computation.dbcleaner.IndexPurgeListener;
 import org.sonar.server.computation.dbcleaner.ProjectCleaner;
+import org.sonar.server.computation.dbcleaner.PurgeExecutorServiceImpl;
 import org.sonar.server.computation.log.CeLogging;
 import org.sonar.server.properties.ProjectSettingsFactory;
 
@@ -37,6 +39,8 @@ public class CeModule extends Module {
 
       DefaultPeriodCleaner.class,
       ProjectCleaner.class,
+      PurgeExecutorServiceImpl.class,
+      BackgroundProjectCleaner.class,
       ProjectSettingsFactory.class,
       IndexPurgeListener.class);
   }
@@ -24,8 +24,8 @@ import com.google.common.base.Throwables;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Parser;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.NoSuchElementException;
@@ -34,24 +34,36 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
 import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.batch.protocol.output.FileStructure;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.LineReaderIterator;
+import org.sonar.server.computation.step.StepMetricsHolder;
+import org.sonar.server.computation.step.StepMetricsHolderImpl;
 
 public class BatchReportReaderImpl implements BatchReportReader {
   private final org.sonar.batch.protocol.output.BatchReportReader delegate;
-  // caching of metadata which are read often
-  private BatchReport.Metadata metadata;
+  private final StepMetricsHolder stepMetricsHolder;
+  // caching of metadata which are read often, possibly by steps executed concurrently. Metadata are immutable,
+  // so reading them twice on first concurrent calls is harmless as long as the reference is safely published.
+  private volatile BatchReport.Metadata metadata;
 
   public BatchReportReaderImpl(BatchReportDirectoryHolder batchReportDirectoryHolder) {
+    this(batchReportDirectoryHolder, new StepMetricsHolderImpl());
+  }
+
+  public BatchReportReaderImpl(BatchReportDirectoryHolder batchReportDirectoryHolder, StepMetricsHolder stepMetricsHolder) {
     this.delegate = new org.sonar.batch.protocol.output.BatchReportReader(batchReportDirectoryHolder.getDirectory());
+    this.stepMetricsHolder = stepMetricsHolder;
   }
 
   @Override
   public BatchReport.Metadata readMetadata() {
-    if (this.metadata == null) {
-      this.metadata = delegate.readMetadata();
+    BatchReport.Metadata result = this.metadata;
+    if (result == null) {
+      result = delegate.readMetadata();
+      this.metadata = result;
     }
-    return this.metadata;
+    return result;
   }
 
   @Override
@@ -75,64 +87,79 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<BatchReport.Measure> readComponentMeasures(int componentRef) {
+    countBytesRead(FileStructure.Domain.MEASURES, componentRef);
     return delegate.readComponentMeasures(componentRef);
   }
 
   @Override
   @CheckForNull
   public BatchReport.Changesets readChangesets(int componentRef) {
+    countBytesRead(FileStructure.Domain.CHANGESETS, componentRef);
     return delegate.readChangesets(componentRef);
   }
 
   @Override
   public BatchReport.Component readComponent(int componentRef) {
+    countBytesRead(FileStructure.Domain.COMPONENT, componentRef);
     return delegate.readComponent(componentRef);
   }
 
   @Override
   public CloseableIterator<BatchReport.Issue> readComponentIssues(int componentRef) {
+    countBytesRead(FileStructure.Domain.ISSUES, componentRef);
     return delegate.readComponentIssues(componentRef);
   }
 
   @Override
   public CloseableIterator<BatchReport.Duplication> readComponentDuplications(int componentRef) {
+    countBytesRead(FileStructure.Domain.DUPLICATIONS, componentRef);
     return delegate.readComponentDuplications(componentRef);
   }
 
   @Override
   public CloseableIterator<BatchReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
+    countBytesRead(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
     return delegate.readCpdTextBlocks(componentRef);
   }
 
   @Override
   public CloseableIterator<BatchReport.Symbol> readComponentSymbols(int componentRef) {
+    countBytesRead(FileStructure.Domain.SYMBOLS, componentRef);
     return delegate.readComponentSymbols(componentRef);
   }
 
   @Override
   public CloseableIterator<BatchReport.SyntaxHighlighting> readComponentSyntaxHighlighting(int fileRef) {
+    countBytesRead(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
     return delegate.readComponentSyntaxHighlighting(fileRef);
   }
 
   @Override
   public CloseableIterator<BatchReport.Coverage> readComponentCoverage(int fileRef) {
+    countBytesRead(FileStructure.Domain.COVERAGES, fileRef);
     return delegate.readComponentCoverage(fileRef);
   }
 
   @Override
   public Optional<CloseableIterator<String>> readFileSource(int fileRef) {
-    File file = delegate.readFileSource(fileRef);
-    if (file == null) {
+    InputStream input = delegate.openComponentData(FileStructure.Domain.SOURCE, fileRef);
+    if (input == null) {
       return Optional.absent();
     }
+    countBytesRead(FileStructure.Domain.SOURCE, fileRef);
 
     try {
-      return Optional.<CloseableIterator<String>>of(new CloseableLineIterator(IOUtils.lineIterator(FileUtils.openInputStream(file), StandardCharsets.UTF_8)));
+      return Optional.<CloseableIterator<String>>of(new CloseableLineIterator(IOUtils.lineIterator(input, StandardCharsets.UTF_8)));
     } catch (IOException e) {
-      throw new IllegalStateException("Fail to traverse file: " + file, e);
+      IOUtils.closeQuietly(input);
+      throw new IllegalStateException("Fail to traverse source of file #" + fileRef, e);
     }
   }
 
+  private void countBytesRead(FileStructure.Domain domain, int componentRef) {
+    stepMetricsHolder.addReportBytesRead(delegate.sizeOfComponentData(domain, componentRef));
+  }
+
   private static class CloseableLineIterator extends CloseableIterator<String> {
     private final LineIterator lineIterator;
 
@@ -164,49 +191,37 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<BatchReport.Test> readTests(int testFileRef) {
-    File file = delegate.readTests(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
-    }
-
-    try {
-      return new ParserCloseableIterator<>(BatchReport.Test.parser(), FileUtils.openInputStream(file));
-    } catch (IOException e) {
-      Throwables.propagate(e);
-      // actually never reached
+    InputStream input = delegate.openComponentData(FileStructure.Domain.TESTS, testFileRef);
+    if (input == null) {
       return CloseableIterator.emptyCloseableIterator();
     }
+    countBytesRead(FileStructure.Domain.TESTS, testFileRef);
+    return new ParserCloseableIterator<>(BatchReport.Test.parser(), input);
   }
 
   @Override
   public CloseableIterator<BatchReport.CoverageDetail> readCoverageDetails(int testFileRef) {
-    File file = delegate.readCoverageDetails(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
-    }
-
-    try {
-      return new ParserCloseableIterator<>(BatchReport.CoverageDetail.parser(), FileUtils.openInputStream(file));
-    } catch (IOException e) {
-      Throwables.propagate(e);
-      // actually never reached
+    InputStream input = delegate.openComponentData(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+    if (input == null) {
       return CloseableIterator.emptyCloseableIterator();
     }
+    countBytesRead(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+    return new ParserCloseableIterator<>(BatchReport.CoverageDetail.parser(), input);
   }
 
   private static class ParserCloseableIterator<T> extends CloseableIterator<T> {
     private final Parser<T> parser;
-    private final FileInputStream fileInputStream;
+    private final InputStream inputStream;
 
-    public ParserCloseableIterator(Parser<T> parser, FileInputStream fileInputStream) {
+    public ParserCloseableIterator(Parser<T> parser, InputStream inputStream) {
       this.parser = parser;
-      this.fileInputStream = fileInputStream;
+      this.inputStream = inputStream;
     }
 
     @Override
     protected T doNext() {
       try {
-        return parser.parseDelimitedFrom(fileInputStream);
+        return parser.parseDelimitedFrom(inputStream);
       } catch (InvalidProtocolBufferException e) {
         Throwables.propagate(e);
         // actually never reached
@@ -216,7 +231,7 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
     @Override
     protected void doClose() throws Exception {
-      fileInputStream.close();
+      inputStream.close();
     }
   }
 }
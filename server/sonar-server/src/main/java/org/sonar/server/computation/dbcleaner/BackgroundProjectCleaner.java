@@ -0,0 +1,98 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.dbcleaner;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.purge.IdUuidPair;
+import org.sonar.db.purge.PurgeProfiler;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
+
+/**
+ * Purges the history of projects in background (see {@link ProjectCleaner#purgeHistory}), so that the
+ * Compute Engine workers do not wait for it before processing the next report.
+ * <p>
+ * The purge of a project is not scheduled again while it is pending or running: two purges of the same project never
+ * run concurrently, and the analyses which are not purged will be by the purge scheduled after the next analysis.
+ * </p>
+ */
+@ServerSide
+public class BackgroundProjectCleaner {
+  private static final Logger LOG = Loggers.get(BackgroundProjectCleaner.class);
+
+  private final DbClient dbClient;
+  private final ProjectCleaner projectCleaner;
+  private final PurgeExecutorService executorService;
+  private final CeConfiguration ceConfiguration;
+  private final Set<String> pendingUuids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  public BackgroundProjectCleaner(DbClient dbClient, ProjectCleaner projectCleaner, PurgeExecutorService executorService, CeConfiguration ceConfiguration) {
+    this.dbClient = dbClient;
+    this.projectCleaner = projectCleaner;
+    this.executorService = executorService;
+    this.ceConfiguration = ceConfiguration;
+  }
+
+  /**
+   * @return false if the purge of the project is already pending, else true
+   */
+  public boolean schedule(final IdUuidPair idUuidPair, final Settings projectSettings) {
+    if (!pendingUuids.add(idUuidPair.getUuid())) {
+      LOG.debug("Purge of project {} is already pending", idUuidPair.getUuid());
+      return false;
+    }
+    try {
+      executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            purge(idUuidPair, projectSettings);
+          } finally {
+            pendingUuids.remove(idUuidPair.getUuid());
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      // executor is shut down
+      pendingUuids.remove(idUuidPair.getUuid());
+      throw e;
+    }
+    return true;
+  }
+
+  private void purge(IdUuidPair idUuidPair, Settings projectSettings) {
+    DbSession session = dbClient.openSession(true);
+    try {
+      projectCleaner.purgeHistory(session, idUuidPair, projectSettings, PurgeProfiler.throttled(ceConfiguration.getPurgeMaxDbUsage()));
+      session.commit();
+    } catch (Exception e) {
+      LOG.error("Fail to purge history of project [uuid=" + idUuidPair.getUuid() + "]", e);
+    } finally {
+      dbClient.closeSession(session);
+    }
+  }
+}
@@ -64,13 +64,55 @@ public class ProjectCleaner {
 
     PurgeConfiguration configuration = newDefaultPurgeConfiguration(projectSettings, idUuidPair);
 
-    cleanHistoricalData(session, configuration.rootProjectIdUuid().getId(), projectSettings);
+    cleanHistoricalData(session, configuration.rootProjectIdUuid().getId(), projectSettings, profiler);
     doPurge(session, configuration);
 
     deleteIndexedIssuesBefore(idUuidPair.getUuid(), configuration.maxLiveDateOfClosedIssues());
 
     session.commit();
-    logProfiling(start, projectSettings);
+    logProfiling(start, projectSettings, profiler);
+    return this;
+  }
+
+  /**
+   * Cleans the data that the next analysis of the project relies on: aborted analyses are deleted and
+   * removed components are disabled. It is fast and must be executed before the next analysis of the project.
+   * Errors are logged but not thrown.
+   */
+  public ProjectCleaner deleteAbortedBuildsAndDisableOrphans(DbSession session, IdUuidPair idUuidPair, Settings projectSettings) {
+    PurgeConfiguration configuration = newDefaultPurgeConfiguration(projectSettings, idUuidPair);
+    try {
+      purgeDao.deleteAbortedBuildsAndDisableOrphans(session, configuration, purgeListener, profiler);
+    } catch (Exception e) {
+      // purge errors must no fail the report analysis
+      LOG.error("Fail to purge data [id=" + idUuidPair.getId() + "]", e);
+    }
+    session.commit();
+    return this;
+  }
+
+  /**
+   * Purges the history of the project: old analyses, data of the analyses which are not kept by the
+   * period cleaner and old closed issues. It is the long part of the purge, which can be executed in
+   * background. Errors are logged but not thrown.
+   *
+   * @param purgeProfiler profiler of this purge only, as it can throttle the purge
+   */
+  public ProjectCleaner purgeHistory(DbSession session, IdUuidPair idUuidPair, Settings projectSettings, PurgeProfiler purgeProfiler) {
+    long start = System.currentTimeMillis();
+    PurgeConfiguration configuration = newDefaultPurgeConfiguration(projectSettings, idUuidPair);
+
+    cleanHistoricalData(session, idUuidPair.getId(), projectSettings, purgeProfiler);
+    try {
+      purgeDao.purgeHistory(session, configuration, purgeProfiler);
+    } catch (Exception e) {
+      // purge errors must no fail the report analysis
+      LOG.error("Fail to purge history [id=" + idUuidPair.getId() + "]", e);
+    }
+    session.commit();
+
+    deleteIndexedIssuesBefore(idUuidPair.getUuid(), configuration.maxLiveDateOfClosedIssues());
+    logProfiling(start, projectSettings, purgeProfiler);
     return this;
   }
 
@@ -80,18 +122,18 @@ public class ProjectCleaner {
     }
   }
 
-  private void logProfiling(long start, Settings settings) {
+  private static void logProfiling(long start, Settings settings, PurgeProfiler purgeProfiler) {
     if (settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY)) {
       long duration = System.currentTimeMillis() - start;
       LOG.info("\n -------- Profiling for purge: " + TimeUtils.formatDuration(duration) + " --------\n");
-      profiler.dump(duration, LOG);
+      purgeProfiler.dump(duration, LOG);
       LOG.info("\n -------- End of profiling for purge --------\n");
     }
   }
 
-  private void cleanHistoricalData(DbSession session, long resourceId, Settings settings) {
+  private void cleanHistoricalData(DbSession session, long resourceId, Settings settings, PurgeProfiler purgeProfiler) {
     try {
-      periodCleaner.clean(session, resourceId, settings);
+      periodCleaner.clean(session, resourceId, settings, purgeProfiler);
     } catch (Exception e) {
       // purge errors must no fail the batch
       LOG.error("Fail to clean historical data [id=" + resourceId + "]", e);
@@ -0,0 +1,40 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.dbcleaner;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
+import org.sonar.server.util.AbstractStoppableExecutorService;
+
+public class PurgeExecutorServiceImpl extends AbstractStoppableExecutorService<ExecutorService> implements PurgeExecutorService {
+  private static final String THREAD_NAME_PREFIX = "CE_purge-";
+
+  public PurgeExecutorServiceImpl(CeConfiguration ceConfiguration) {
+    super(
+      Executors.newFixedThreadPool(ceConfiguration.getPurgeWorkerCount(),
+        new ThreadFactoryBuilder()
+          .setNameFormat(THREAD_NAME_PREFIX + "%d")
+          .setDaemon(true)
+          .setPriority(Thread.MIN_PRIORITY)
+          .build()));
+  }
+}
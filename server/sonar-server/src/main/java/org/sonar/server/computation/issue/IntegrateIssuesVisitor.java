@@ -22,16 +22,30 @@ package org.sonar.server.computation.issue;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.CheckForNull;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Tracking;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.CrawlerDepthLimit;
+import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.step.StepMetricsHolder;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
 import org.sonar.server.util.cache.DiskCache;
 
 import static org.sonar.server.computation.component.ComponentVisitor.Order.POST_ORDER;
 
-public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
+/**
+ * Tracks the issues of each component, then applies the issue lifecycle and the {@link IssueVisitors}.
+ * <p/>
+ * When more than one worker is configured (see {@link CeConfiguration#getIssueTrackingWorkerCount()}), the data
+ * of the files which are required by tracking (issues and line hashes from database and from analysis report)
+ * are loaded concurrently, in advance. Tracking, lifecycle and {@link IssueVisitors} are still executed by the
+ * visiting thread, in the order of visit. The threads loading data are stopped by {@link #close()}, which is
+ * called by {@link org.sonar.server.computation.step.ExecuteVisitorsStep} once the tree is crawled, whatever
+ * the outcome.
+ */
+public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter implements AutoCloseable {
 
   private final TrackerExecution tracker;
   private final IssueCache issueCache;
@@ -39,11 +53,17 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
   private final IssueVisitors issueVisitors;
   private final MutableComponentIssuesRepository componentIssuesRepository;
   private final ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues;
+  private final TreeRootHolder treeRootHolder;
+  private final StepMetricsHolder stepMetricsHolder;
+  private final int workerCount;
 
   private final List<DefaultIssue> componentIssues = new ArrayList<>();
+  @CheckForNull
+  private TrackerInputsPrefetcher prefetcher;
 
   public IntegrateIssuesVisitor(TrackerExecution tracker, IssueCache issueCache, IssueLifecycle issueLifecycle, IssueVisitors issueVisitors,
-                                ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues, MutableComponentIssuesRepository componentIssuesRepository) {
+                                ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues, MutableComponentIssuesRepository componentIssuesRepository,
+                                TreeRootHolder treeRootHolder, CeConfiguration ceConfiguration, StepMetricsHolder stepMetricsHolder) {
     super(CrawlerDepthLimit.FILE, POST_ORDER);
     this.tracker = tracker;
     this.issueCache = issueCache;
@@ -51,6 +71,9 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     this.issueVisitors = issueVisitors;
     this.componentsWithUnprocessedIssues = componentsWithUnprocessedIssues;
     this.componentIssuesRepository = componentIssuesRepository;
+    this.treeRootHolder = treeRootHolder;
+    this.stepMetricsHolder = stepMetricsHolder;
+    this.workerCount = ceConfiguration.getIssueTrackingWorkerCount();
   }
 
   @Override
@@ -61,10 +84,18 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     componentIssuesRepository.setIssues(component, componentIssues);
   }
 
+  @Override
+  public void close() {
+    if (prefetcher != null) {
+      prefetcher.close();
+      prefetcher = null;
+    }
+  }
+
   private void processIssues(Component component) {
     DiskCache<DefaultIssue>.DiskAppender cacheAppender = issueCache.newAppender();
     try {
-      Tracking<DefaultIssue, DefaultIssue> tracking = tracker.track(component);
+      Tracking<DefaultIssue, DefaultIssue> tracking = track(component);
       issueVisitors.beforeComponent(component);
       fillNewOpenIssues(component, tracking, cacheAppender);
       fillExistingOpenIssues(component, tracking, cacheAppender);
@@ -77,6 +108,29 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     }
   }
 
+  private Tracking<DefaultIssue, DefaultIssue> track(Component component) {
+    if (workerCount <= 1 || component.getType() != Component.Type.FILE) {
+      return tracker.track(component);
+    }
+    if (prefetcher == null) {
+      prefetcher = new TrackerInputsPrefetcher(tracker, listFiles(treeRootHolder.getRoot(), new ArrayList<Component>()), workerCount, stepMetricsHolder);
+    }
+    return tracker.track(prefetcher.get(component));
+  }
+
+  /**
+   * Files in the order of visit
+   */
+  private static List<Component> listFiles(Component component, List<Component> files) {
+    if (component.getType() == Component.Type.FILE) {
+      files.add(component);
+    }
+    for (Component child : component.getChildren()) {
+      listFiles(child, files);
+    }
+    return files;
+  }
+
   private void fillNewOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
     for (DefaultIssue issue : tracking.getUnmatchedRaws()) {
       issueLifecycle.initNewOpenIssue(issue);
@@ -0,0 +1,366 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.DiskCacheCodec;
+
+/**
+ * Binary format of {@link IssueCache}. Issues are written as length-delimited
+ * {@link DbIssues.CachedIssue} messages, without any header.
+ */
+class IssueCacheCodec implements DiskCacheCodec<DefaultIssue> {
+
+  @Override
+  public void writeHeader(OutputStream output) {
+    // no header
+  }
+
+  @Override
+  public Encoder<DefaultIssue> newEncoder(final OutputStream output) {
+    final CodedOutputStream coded = CodedOutputStream.newInstance(output);
+    final DbIssues.CachedIssue.Builder builder = DbIssues.CachedIssue.newBuilder();
+    return new Encoder<DefaultIssue>() {
+      @Override
+      public void write(DefaultIssue issue) throws IOException {
+        builder.clear();
+        coded.writeMessageNoTag(toProtobuf(issue, builder));
+      }
+
+      @Override
+      public void close() throws IOException {
+        try {
+          coded.flush();
+        } finally {
+          output.close();
+        }
+      }
+    };
+  }
+
+  @Override
+  public CloseableIterator<DefaultIssue> newDecoder(final InputStream input) {
+    final CodedInputStream coded = CodedInputStream.newInstance(input);
+    final DbIssues.CachedIssue.Builder builder = DbIssues.CachedIssue.newBuilder();
+    return new CloseableIterator<DefaultIssue>() {
+      @Override
+      protected DefaultIssue doNext() {
+        try {
+          if (coded.isAtEnd()) {
+            return null;
+          }
+          builder.clear();
+          coded.readMessage(builder, ExtensionRegistryLite.getEmptyRegistry());
+          // size limit of CodedInputStream applies to the whole stream, not to each message
+          coded.resetSizeCounter();
+          return toIssue(builder);
+        } catch (IOException e) {
+          throw new IllegalStateException("Fail to read issue", e);
+        }
+      }
+
+      @Override
+      protected void doClose() {
+        IOUtils.closeQuietly(input);
+      }
+    };
+  }
+
+  static DbIssues.CachedIssue toProtobuf(DefaultIssue issue, DbIssues.CachedIssue.Builder builder) {
+    if (issue.key() != null) {
+      builder.setKey(issue.key());
+    }
+    if (issue.componentUuid() != null) {
+      builder.setComponentUuid(issue.componentUuid());
+    }
+    if (issue.componentKey() != null) {
+      builder.setComponentKey(issue.componentKey());
+    }
+    if (issue.moduleUuid() != null) {
+      builder.setModuleUuid(issue.moduleUuid());
+    }
+    if (issue.moduleUuidPath() != null) {
+      builder.setModuleUuidPath(issue.moduleUuidPath());
+    }
+    if (issue.projectUuid() != null) {
+      builder.setProjectUuid(issue.projectUuid());
+    }
+    if (issue.projectKey() != null) {
+      builder.setProjectKey(issue.projectKey());
+    }
+    RuleKey ruleKey = issue.ruleKey();
+    if (ruleKey != null) {
+      builder.setRuleRepository(ruleKey.repository());
+      builder.setRuleKey(ruleKey.rule());
+    }
+    if (issue.language() != null) {
+      builder.setLanguage(issue.language());
+    }
+    if (issue.severity() != null) {
+      builder.setSeverity(issue.severity());
+    }
+    builder.setManualSeverity(issue.manualSeverity());
+    if (issue.message() != null) {
+      builder.setMessage(issue.message());
+    }
+    if (issue.line() != null) {
+      builder.setLine(issue.line());
+    }
+    if (issue.effortToFix() != null) {
+      builder.setEffortToFix(issue.effortToFix());
+    }
+    if (issue.debt() != null) {
+      builder.setDebt(issue.debt().toMinutes());
+    }
+    if (issue.status() != null) {
+      builder.setStatus(issue.status());
+    }
+    if (issue.resolution() != null) {
+      builder.setResolution(issue.resolution());
+    }
+    if (issue.reporter() != null) {
+      builder.setReporter(issue.reporter());
+    }
+    if (issue.assignee() != null) {
+      builder.setAssignee(issue.assignee());
+    }
+    if (issue.checksum() != null) {
+      builder.setChecksum(issue.checksum());
+    }
+    for (Map.Entry<String, String> attribute : issue.attributes().entrySet()) {
+      builder.addAttributeBuilder().setKey(attribute.getKey()).setValue(attribute.getValue());
+    }
+    if (issue.authorLogin() != null) {
+      builder.setAuthorLogin(issue.authorLogin());
+    }
+    if (issue.actionPlanKey() != null) {
+      builder.setActionPlanKey(issue.actionPlanKey());
+    }
+    for (IssueComment comment : issue.comments()) {
+      builder.addComment(toProtobuf((DefaultIssueComment) comment));
+    }
+    builder.addAllTag(issue.tags());
+    Object locations = issue.getLocations();
+    if (locations != null) {
+      if (!(locations instanceof DbIssues.Locations)) {
+        throw new IllegalStateException("Unsupported type of locations: " + locations.getClass().getName());
+      }
+      builder.setLocations((DbIssues.Locations) locations);
+    }
+    if (issue.creationDate() != null) {
+      builder.setCreationDate(issue.creationDate().getTime());
+    }
+    if (issue.updateDate() != null) {
+      builder.setUpdateDate(issue.updateDate().getTime());
+    }
+    if (issue.closeDate() != null) {
+      builder.setCloseDate(issue.closeDate().getTime());
+    }
+    List<FieldDiffs> changes = issue.changes();
+    for (int index = 0; index < changes.size(); index++) {
+      FieldDiffs change = changes.get(index);
+      builder.addChange(toProtobuf(change));
+      if (change == issue.currentChange()) {
+        builder.setCurrentChangeIndex(index);
+      }
+    }
+    if (issue.currentChange() != null && !builder.hasCurrentChangeIndex()) {
+      throw new IllegalStateException("Current change is missing from the changes of issue " + issue.key());
+    }
+    builder.setIsNew(issue.isNew());
+    builder.setBeingClosed(issue.isBeingClosed());
+    builder.setOnDisabledRule(issue.isOnDisabledRule());
+    builder.setIsChanged(issue.isChanged());
+    builder.setSendNotifications(issue.mustSendNotifications());
+    if (issue.selectedAt() != null) {
+      builder.setSelectedAt(issue.selectedAt());
+    }
+    return builder.build();
+  }
+
+  static DefaultIssue toIssue(DbIssues.CachedIssueOrBuilder proto) {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(proto.hasKey() ? proto.getKey() : null);
+    issue.setComponentUuid(proto.hasComponentUuid() ? proto.getComponentUuid() : null);
+    issue.setComponentKey(proto.hasComponentKey() ? proto.getComponentKey() : null);
+    issue.setModuleUuid(proto.hasModuleUuid() ? proto.getModuleUuid() : null);
+    issue.setModuleUuidPath(proto.hasModuleUuidPath() ? proto.getModuleUuidPath() : null);
+    issue.setProjectUuid(proto.hasProjectUuid() ? proto.getProjectUuid() : null);
+    issue.setProjectKey(proto.hasProjectKey() ? proto.getProjectKey() : null);
+    if (proto.hasRuleRepository()) {
+      issue.setRuleKey(RuleKey.of(proto.getRuleRepository(), proto.getRuleKey()));
+    }
+    issue.setLanguage(proto.hasLanguage() ? proto.getLanguage() : null);
+    issue.setSeverity(proto.hasSeverity() ? proto.getSeverity() : null);
+    issue.setManualSeverity(proto.getManualSeverity());
+    issue.setMessage(proto.hasMessage() ? proto.getMessage() : null);
+    issue.setLine(proto.hasLine() ? proto.getLine() : null);
+    issue.setEffortToFix(proto.hasEffortToFix() ? proto.getEffortToFix() : null);
+    issue.setDebt(proto.hasDebt() ? Duration.create(proto.getDebt()) : null);
+    if (proto.hasStatus()) {
+      issue.setStatus(proto.getStatus());
+    }
+    issue.setResolution(proto.hasResolution() ? proto.getResolution() : null);
+    issue.setReporter(proto.hasReporter() ? proto.getReporter() : null);
+    issue.setAssignee(proto.hasAssignee() ? proto.getAssignee() : null);
+    issue.setChecksum(proto.hasChecksum() ? proto.getChecksum() : null);
+    for (DbIssues.CachedIssue.Attribute attribute : proto.getAttributeList()) {
+      issue.setAttribute(attribute.getKey(), attribute.getValue());
+    }
+    issue.setAuthorLogin(proto.hasAuthorLogin() ? proto.getAuthorLogin() : null);
+    issue.setActionPlanKey(proto.hasActionPlanKey() ? proto.getActionPlanKey() : null);
+    for (DbIssues.CachedIssue.Comment comment : proto.getCommentList()) {
+      issue.addComment(toComment(comment));
+    }
+    if (proto.getTagCount() > 0) {
+      issue.setTags(proto.getTagList());
+    }
+    if (proto.hasLocations()) {
+      issue.setLocations(proto.getLocations());
+    }
+    issue.setCreationDate(proto.hasCreationDate() ? new Date(proto.getCreationDate()) : null);
+    issue.setUpdateDate(proto.hasUpdateDate() ? new Date(proto.getUpdateDate()) : null);
+    issue.setCloseDate(proto.hasCloseDate() ? new Date(proto.getCloseDate()) : null);
+    for (int index = 0; index < proto.getChangeCount(); index++) {
+      FieldDiffs change = toFieldDiffs(proto.getChange(index));
+      if (proto.hasCurrentChangeIndex() && proto.getCurrentChangeIndex() == index) {
+        // also adds to the list of changes
+        issue.setCurrentChange(change);
+      } else {
+        issue.addChange(change);
+      }
+    }
+    issue.setNew(proto.getIsNew());
+    issue.setBeingClosed(proto.getBeingClosed());
+    issue.setOnDisabledRule(proto.getOnDisabledRule());
+    issue.setChanged(proto.getIsChanged());
+    issue.setSendNotifications(proto.getSendNotifications());
+    issue.setSelectedAt(proto.hasSelectedAt() ? proto.getSelectedAt() : null);
+    return issue;
+  }
+
+  private static DbIssues.CachedIssue.Comment toProtobuf(DefaultIssueComment comment) {
+    DbIssues.CachedIssue.Comment.Builder builder = DbIssues.CachedIssue.Comment.newBuilder();
+    if (comment.key() != null) {
+      builder.setKey(comment.key());
+    }
+    if (comment.issueKey() != null) {
+      builder.setIssueKey(comment.issueKey());
+    }
+    if (comment.userLogin() != null) {
+      builder.setUserLogin(comment.userLogin());
+    }
+    if (comment.markdownText() != null) {
+      builder.setMarkdownText(comment.markdownText());
+    }
+    if (comment.createdAt() != null) {
+      builder.setCreatedAt(comment.createdAt().getTime());
+    }
+    if (comment.updatedAt() != null) {
+      builder.setUpdatedAt(comment.updatedAt().getTime());
+    }
+    builder.setIsNew(comment.isNew());
+    return builder.build();
+  }
+
+  private static DefaultIssueComment toComment(DbIssues.CachedIssue.Comment proto) {
+    return new DefaultIssueComment()
+      .setKey(proto.hasKey() ? proto.getKey() : null)
+      .setIssueKey(proto.hasIssueKey() ? proto.getIssueKey() : null)
+      .setUserLogin(proto.hasUserLogin() ? proto.getUserLogin() : null)
+      .setMarkdownText(proto.hasMarkdownText() ? proto.getMarkdownText() : null)
+      .setCreatedAt(proto.hasCreatedAt() ? new Date(proto.getCreatedAt()) : null)
+      .setUpdatedAt(proto.hasUpdatedAt() ? new Date(proto.getUpdatedAt()) : null)
+      .setNew(proto.getIsNew());
+  }
+
+  private static DbIssues.CachedIssue.Change toProtobuf(FieldDiffs change) {
+    DbIssues.CachedIssue.Change.Builder builder = DbIssues.CachedIssue.Change.newBuilder();
+    if (change.issueKey() != null) {
+      builder.setIssueKey(change.issueKey());
+    }
+    if (change.userLogin() != null) {
+      builder.setUserLogin(change.userLogin());
+    }
+    if (change.creationDate() != null) {
+      builder.setCreationDate(change.creationDate().getTime());
+    }
+    for (Map.Entry<String, FieldDiffs.Diff> entry : change.diffs().entrySet()) {
+      DbIssues.CachedIssue.FieldDiff.Builder diff = builder.addDiffBuilder().setField(entry.getKey());
+      Serializable oldValue = entry.getValue().oldValue();
+      if (oldValue != null) {
+        diff.setOldValue(toProtobuf(oldValue));
+      }
+      Serializable newValue = entry.getValue().newValue();
+      if (newValue != null) {
+        diff.setNewValue(toProtobuf(newValue));
+      }
+    }
+    return builder.build();
+  }
+
+  private static FieldDiffs toFieldDiffs(DbIssues.CachedIssue.Change proto) {
+    FieldDiffs change = new FieldDiffs()
+      .setIssueKey(proto.hasIssueKey() ? proto.getIssueKey() : null)
+      .setUserLogin(proto.hasUserLogin() ? proto.getUserLogin() : null)
+      .setCreationDate(proto.hasCreationDate() ? new Date(proto.getCreationDate()) : null);
+    for (DbIssues.CachedIssue.FieldDiff diff : proto.getDiffList()) {
+      change.setDiff(diff.getField(),
+        diff.hasOldValue() ? toValue(diff.getOldValue()) : null,
+        diff.hasNewValue() ? toValue(diff.getNewValue()) : null);
+    }
+    return change;
+  }
+
+  private static DbIssues.CachedIssue.DiffValue toProtobuf(Serializable value) {
+    if (value instanceof String) {
+      return DbIssues.CachedIssue.DiffValue.newBuilder().setStringValue((String) value).build();
+    }
+    if (value instanceof Long) {
+      return DbIssues.CachedIssue.DiffValue.newBuilder().setLongValue((Long) value).build();
+    }
+    throw new IllegalStateException("Unsupported type of field change: " + value.getClass().getName());
+  }
+
+  private static Serializable toValue(DbIssues.CachedIssue.DiffValue proto) {
+    if (proto.hasLongValue()) {
+      return proto.getLongValue();
+    }
+    return proto.getStringValue();
+  }
+}
@@ -48,6 +48,18 @@ public class TrackerBaseInputFactory {
     return new BaseLazyInput(component);
   }
 
+  /**
+   * Same as {@link #create(Component)}, except that data are loaded immediately. Line hashes are
+   * loaded only if there are issues. This method can be called by any thread.
+   */
+  public Input<DefaultIssue> createPreloaded(Component component) {
+    BaseLazyInput input = new BaseLazyInput(component);
+    if (!input.getIssues().isEmpty()) {
+      input.getBlockHashSequence();
+    }
+    return input;
+  }
+
   private class BaseLazyInput extends LazyInput<DefaultIssue> {
     private final Component component;
 
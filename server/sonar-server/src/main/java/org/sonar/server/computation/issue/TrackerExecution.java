@@ -20,6 +20,7 @@
 package org.sonar.server.computation.issue;
 
 import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.tracking.Input;
 import org.sonar.core.issue.tracking.Tracker;
 import org.sonar.core.issue.tracking.Tracking;
 import org.sonar.server.computation.component.Component;
@@ -40,4 +41,26 @@ public class TrackerExecution {
   public Tracking<DefaultIssue, DefaultIssue> track(Component component) {
     return tracker.track(rawInputFactory.create(component), baseInputFactory.create(component));
   }
+
+  /**
+   * Loads immediately the data of database and of analysis report which are required to track the issues
+   * of a component. Contrary to {@link #track(Component)}, this method can be called by any thread.
+   */
+  public PreloadedInputs preload(Component component) {
+    return new PreloadedInputs(rawInputFactory.createPreloaded(component), baseInputFactory.createPreloaded(component));
+  }
+
+  public Tracking<DefaultIssue, DefaultIssue> track(PreloadedInputs inputs) {
+    return tracker.track(inputs.raw, inputs.base);
+  }
+
+  public static final class PreloadedInputs {
+    private final Input<DefaultIssue> raw;
+    private final Input<DefaultIssue> base;
+
+    private PreloadedInputs(Input<DefaultIssue> raw, Input<DefaultIssue> base) {
+      this.raw = raw;
+      this.base = base;
+    }
+  }
 }
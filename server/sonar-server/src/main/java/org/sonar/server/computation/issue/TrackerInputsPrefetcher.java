@@ -0,0 +1,159 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
+import org.slf4j.MDC;
+import org.sonar.server.computation.component.Component;
+import org.sonar.server.computation.step.StepCounters;
+import org.sonar.server.computation.step.StepMetricsHolder;
+
+import static java.lang.String.format;
+
+/**
+ * Loads concurrently, on a bounded pool of threads, the data required to track the issues of files
+ * (see {@link TrackerExecution#preload(Component)}). Files are loaded in the order they are requested
+ * by {@link #get(Component)}, at most {@code 2 * threads} files in advance, so that memory is bounded.
+ * <p/>
+ * This class is not thread-safe. Methods must be called by the thread which visits the components.
+ */
+class TrackerInputsPrefetcher implements AutoCloseable {
+
+  private static final String THREAD_NAME_PREFIX = "ce-issue-tracking-";
+
+  private final TrackerExecution tracker;
+  private final Iterator<Component> nextFiles;
+  private final int maxPendingFiles;
+  private final ExecutorService executorService;
+  // futures by uuid of file, in the order of files
+  private final Map<String, Future<TrackerExecution.PreloadedInputs>> pendingFiles = new LinkedHashMap<>();
+  @CheckForNull
+  private final Map<String, String> mdcContext;
+  private final StepMetricsHolder stepMetricsHolder;
+  @CheckForNull
+  private final StepCounters stepCounters;
+
+  /**
+   * @param files the files in the order they will be requested by {@link #get(Component)}
+   */
+  TrackerInputsPrefetcher(TrackerExecution tracker, Iterable<Component> files, int threads, StepMetricsHolder stepMetricsHolder) {
+    this.tracker = tracker;
+    this.nextFiles = files.iterator();
+    this.maxPendingFiles = 2 * threads;
+    this.executorService = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_PREFIX + "%d").setDaemon(true).build());
+    this.mdcContext = MDC.getCopyOfContextMap();
+    this.stepMetricsHolder = stepMetricsHolder;
+    this.stepCounters = stepMetricsHolder.getCurrentCounters();
+    submitNextFiles();
+  }
+
+  /**
+   * Returns the data loaded in advance for the given file. Data are loaded by the calling thread if the
+   * file was not expected.
+   */
+  TrackerExecution.PreloadedInputs get(Component file) {
+    Future<TrackerExecution.PreloadedInputs> future = removePendingFile(file.getUuid());
+    submitNextFiles();
+    if (future == null) {
+      return tracker.preload(file);
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(format("Interrupted while loading issues of component '%s'", file.getKey()), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(format("Fail to load issues of component '%s'", file.getKey()), cause);
+    }
+  }
+
+  @Override
+  public void close() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Files requested before the given one are skipped by the caller, so their data are discarded.
+   */
+  @CheckForNull
+  private Future<TrackerExecution.PreloadedInputs> removePendingFile(String uuid) {
+    if (!pendingFiles.containsKey(uuid)) {
+      return null;
+    }
+    Iterator<Map.Entry<String, Future<TrackerExecution.PreloadedInputs>>> it = pendingFiles.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Future<TrackerExecution.PreloadedInputs>> entry = it.next();
+      it.remove();
+      if (entry.getKey().equals(uuid)) {
+        return entry.getValue();
+      }
+      entry.getValue().cancel(true);
+    }
+    return null;
+  }
+
+  private void submitNextFiles() {
+    while (pendingFiles.size() < maxPendingFiles && nextFiles.hasNext()) {
+      Component file = nextFiles.next();
+      pendingFiles.put(file.getUuid(), executorService.submit(new PreloadCallable(file)));
+    }
+  }
+
+  private final class PreloadCallable implements Callable<TrackerExecution.PreloadedInputs> {
+    private final Component file;
+
+    private PreloadCallable(Component file) {
+      this.file = file;
+    }
+
+    @Override
+    public TrackerExecution.PreloadedInputs call() {
+      // propagates the MDC of the visiting thread so that logs go to the log file of the Compute Engine task,
+      // and its step counters so that data read from the report are attributed to the step
+      if (mdcContext != null) {
+        MDC.setContextMap(mdcContext);
+      }
+      stepMetricsHolder.bind(stepCounters);
+      try {
+        return tracker.preload(file);
+      } finally {
+        stepMetricsHolder.unbind();
+        MDC.clear();
+      }
+    }
+  }
+}
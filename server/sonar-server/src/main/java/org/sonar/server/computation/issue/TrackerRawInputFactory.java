@@ -61,8 +61,20 @@ public class TrackerRawInputFactory {
     return new RawLazyInput(component);
   }
 
+  /**
+   * Same as {@link #create(Component)}, except that issues of the analysis report, and the line hashes they
+   * require, are loaded immediately. This method can be called by any thread. Issues on common rules are still lazy-loaded, from
+   * measures, by the thread which calls {@link Input#getIssues()}.
+   */
+  public Input<DefaultIssue> createPreloaded(Component component) {
+    RawLazyInput input = new RawLazyInput(component);
+    input.getReportIssues();
+    return input;
+  }
+
   private class RawLazyInput extends LazyInput<DefaultIssue> {
     private final Component component;
+    private List<DefaultIssue> issuesFromReport;
 
     private RawLazyInput(Component component) {
       this.component = component;
@@ -86,6 +98,19 @@ public class TrackerRawInputFactory {
       for (DefaultIssue commonRuleIssue : commonRuleEngine.process(component)) {
         result.add(init(commonRuleIssue));
       }
+      result.addAll(getReportIssues());
+      return result;
+    }
+
+    private List<DefaultIssue> getReportIssues() {
+      if (issuesFromReport == null) {
+        issuesFromReport = loadReportIssues();
+      }
+      return issuesFromReport;
+    }
+
+    private List<DefaultIssue> loadReportIssues() {
+      List<DefaultIssue> result = new ArrayList<>();
       try (CloseableIterator<BatchReport.Issue> reportIssues = reportReader.readComponentIssues(component.getReportAttributes().getRef())) {
         // optimization - do not load line hashes if there are no issues -> getLineHashSequence() is executed
         // as late as possible
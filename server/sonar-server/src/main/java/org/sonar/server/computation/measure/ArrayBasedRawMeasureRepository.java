@@ -0,0 +1,277 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.server.computation.component.Component;
+import org.sonar.server.computation.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures of components which have a report reference
+ * (see {@link Component#getReportAttributes()}).
+ * <p>
+ * Compared to {@link MapBasedRawMeasureRepository}, this implementation does not create any object per measure on top
+ * of the {@link Measure} itself: measures are stored in arrays indexed by the report reference of the component and
+ * by an index allocated once for each metric. Only measures specific to a rule, a characteristic or a developer, which
+ * are much less common, are stored in a map.
+ * </p>
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class ArrayBasedRawMeasureRepository implements MeasureRepository {
+  private static final int INITIAL_COMPONENT_CAPACITY = 128;
+  private static final int INITIAL_METRIC_CAPACITY = 16;
+
+  private final Map<String, Integer> metricIndexesByKey = new HashMap<>();
+  private final List<String> metricKeysByIndex = new ArrayList<>();
+  private ComponentMeasures[] measuresByRef = new ComponentMeasures[INITIAL_COMPONENT_CAPACITY];
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    ComponentMeasures componentMeasures = getComponentMeasures(component);
+    Integer metricIndex = metricIndexesByKey.get(metric.getKey());
+    if (componentMeasures == null || metricIndex == null) {
+      return Optional.absent();
+    }
+    return Optional.fromNullable(componentMeasures.get(metricIndex));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(component, metric, measure) != null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s)%s. Use update method",
+          component.getKey(),
+          metric.getKey(),
+          buildRuleOrCharacteristicMsgPart(measure)));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(component, metric, measure) == null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s)%s. Use add method",
+          component.getKey(),
+          metric.getKey(),
+          buildRuleOrCharacteristicMsgPart(measure)));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      format(
+        "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+        measure.getValueType(), metric.getType().getValueType()));
+  }
+
+  private static String buildRuleOrCharacteristicMsgPart(Measure measure) {
+    if (measure.getRuleId() != null) {
+      return " and rule (id=" + measure.getRuleId() + ")";
+    }
+    if (measure.getCharacteristicId() != null) {
+      return " and Characteristic (id=" + measure.getCharacteristicId() + ")";
+    }
+    return "";
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+
+    ComponentMeasures componentMeasures = getComponentMeasures(component);
+    if (componentMeasures == null) {
+      return ImmutableSet.of();
+    }
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    // no index is allocated to metrics which have only specific measures
+    Integer metricIndex = metricIndexesByKey.get(metric.getKey());
+    Measure measure = metricIndex == null ? null : componentMeasures.get(metricIndex);
+    if (measure != null) {
+      builder.add(measure);
+    }
+    if (componentMeasures.specificMeasures != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : componentMeasures.specificMeasures.entrySet()) {
+        if (entry.getKey().getMetricKey().equals(metric.getKey())) {
+          builder.add(entry.getValue());
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    ComponentMeasures componentMeasures = getComponentMeasures(component);
+    if (componentMeasures == null) {
+      return ImmutableSetMultimap.of();
+    }
+
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (int metricIndex = 0; metricIndex < componentMeasures.measures.length; metricIndex++) {
+      Measure measure = componentMeasures.measures[metricIndex];
+      if (measure != null) {
+        builder.put(metricKeysByIndex.get(metricIndex), measure);
+      }
+    }
+    if (componentMeasures.specificMeasures != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : componentMeasures.specificMeasures.entrySet()) {
+        builder.put(entry.getKey().getMetricKey(), entry.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    ComponentMeasures componentMeasures = getOrCreateComponentMeasures(component);
+    if (isSpecific(measure)) {
+      componentMeasures.putSpecific(toMeasureKey(metric, measure), measure, overridePolicy);
+    } else {
+      componentMeasures.put(getOrCreateMetricIndex(metric), measure, overridePolicy);
+    }
+  }
+
+  @CheckForNull
+  private Measure find(Component component, Metric metric, Measure measure) {
+    ComponentMeasures componentMeasures = getComponentMeasures(component);
+    if (componentMeasures == null) {
+      return null;
+    }
+    if (isSpecific(measure)) {
+      return componentMeasures.specificMeasures == null ? null : componentMeasures.specificMeasures.get(toMeasureKey(metric, measure));
+    }
+    Integer metricIndex = metricIndexesByKey.get(metric.getKey());
+    return metricIndex == null ? null : componentMeasures.get(metricIndex);
+  }
+
+  private static boolean isSpecific(Measure measure) {
+    return measure.getRuleId() != null || measure.getCharacteristicId() != null || measure.getDeveloper() != null;
+  }
+
+  private static MeasureKey toMeasureKey(Metric metric, Measure measure) {
+    return new MeasureKey(metric.getKey(), measure.getRuleId(), measure.getCharacteristicId(), measure.getDeveloper());
+  }
+
+  private int getOrCreateMetricIndex(Metric metric) {
+    Integer metricIndex = metricIndexesByKey.get(metric.getKey());
+    if (metricIndex == null) {
+      metricIndex = metricKeysByIndex.size();
+      metricKeysByIndex.add(metric.getKey());
+      metricIndexesByKey.put(metric.getKey(), metricIndex);
+    }
+    return metricIndex;
+  }
+
+  @CheckForNull
+  private ComponentMeasures getComponentMeasures(Component component) {
+    int ref = toRef(component);
+    return ref < measuresByRef.length ? measuresByRef[ref] : null;
+  }
+
+  private ComponentMeasures getOrCreateComponentMeasures(Component component) {
+    int ref = toRef(component);
+    if (ref >= measuresByRef.length) {
+      measuresByRef = Arrays.copyOf(measuresByRef, Math.max(ref + 1, measuresByRef.length * 2));
+    }
+    ComponentMeasures res = measuresByRef[ref];
+    if (res == null) {
+      res = new ComponentMeasures();
+      measuresByRef[ref] = res;
+    }
+    return res;
+  }
+
+  private static int toRef(Component component) {
+    int ref = component.getReportAttributes().getRef();
+    checkArgument(ref >= 0, "Report reference of component must be positive (got %s)", ref);
+    return ref;
+  }
+
+  private static final class ComponentMeasures {
+    private Measure[] measures = new Measure[INITIAL_METRIC_CAPACITY];
+    @CheckForNull
+    private Map<MeasureKey, Measure> specificMeasures;
+
+    @CheckForNull
+    private Measure get(int metricIndex) {
+      return metricIndex < measures.length ? measures[metricIndex] : null;
+    }
+
+    private void put(int metricIndex, Measure measure, OverridePolicy overridePolicy) {
+      if (metricIndex >= measures.length) {
+        measures = Arrays.copyOf(measures, Math.max(metricIndex + 1, measures.length * 2));
+      }
+      if (measures[metricIndex] == null || overridePolicy == OverridePolicy.OVERRIDE) {
+        measures[metricIndex] = measure;
+      }
+    }
+
+    private void putSpecific(MeasureKey key, Measure measure, OverridePolicy overridePolicy) {
+      if (specificMeasures == null) {
+        specificMeasures = new HashMap<>();
+      }
+      if (!specificMeasures.containsKey(key) || overridePolicy == OverridePolicy.OVERRIDE) {
+        specificMeasures.put(key, measure);
+      }
+    }
+  }
+}
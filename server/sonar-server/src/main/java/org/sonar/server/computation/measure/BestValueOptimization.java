@@ -37,7 +37,15 @@ public class BestValueOptimization implements Predicate<Measure> {
   }
 
   public static Predicate<Measure> from(Metric metric, Component component) {
-    if (isBestValueOptimized(metric) && isBestValueOptimized(component)) {
+    return from(metric, component.getType());
+  }
+
+  /**
+   * Same as {@link #from(Metric, Component)}, for callers which reuse the predicate for all the components
+   * of a given type.
+   */
+  public static Predicate<Measure> from(Metric metric, Component.Type componentType) {
+    if (isBestValueOptimized(metric) && isBestValueOptimized(componentType)) {
       return new BestValueOptimization(metric);
     }
     return Predicates.alwaysFalse();
@@ -47,8 +55,8 @@ public class BestValueOptimization implements Predicate<Measure> {
     return metric.isBestValueOptimized();
   }
 
-  private static boolean isBestValueOptimized(Component component) {
-    return component.getType() == Component.Type.FILE;
+  private static boolean isBestValueOptimized(Component.Type componentType) {
+    return componentType == Component.Type.FILE;
   }
 
   @Override
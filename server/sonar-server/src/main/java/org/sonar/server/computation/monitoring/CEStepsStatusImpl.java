@@ -0,0 +1,125 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.step.StepMetrics;
+
+public class CEStepsStatusImpl implements CEStepsStatus {
+  /**
+   * Number of projects which statistics are kept in memory, the least recently processed being evicted first
+   */
+  static final int MAX_PROJECTS = 1_000;
+  static final int MOST_EXPENSIVE_PROJECTS = 10;
+
+  private final Map<String, StepAccumulator> accumulatorsByStep = new LinkedHashMap<>();
+  private final Map<String, ProjectStatistics> statisticsByProject = new LinkedHashMap<String, ProjectStatistics>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, ProjectStatistics> eldest) {
+      return size() > MAX_PROJECTS;
+    }
+  };
+
+  @Override
+  public synchronized void add(@Nullable String projectKey, List<StepMetrics> stepMetrics) {
+    long durationMs = 0L;
+    long allocatedBytes = 0L;
+    long reportBytesRead = 0L;
+    long rowsWritten = 0L;
+    for (StepMetrics metrics : stepMetrics) {
+      StepAccumulator accumulator = accumulatorsByStep.get(metrics.getStep());
+      if (accumulator == null) {
+        accumulator = new StepAccumulator();
+        accumulatorsByStep.put(metrics.getStep(), accumulator);
+      }
+      accumulator.add(metrics);
+      durationMs += metrics.getDurationMs();
+      allocatedBytes += metrics.getAllocatedBytes();
+      reportBytesRead += metrics.getReportBytesRead();
+      rowsWritten += metrics.getRowsWritten();
+    }
+    if (projectKey != null && !stepMetrics.isEmpty()) {
+      statisticsByProject.put(projectKey, new ProjectStatistics(projectKey, durationMs, allocatedBytes, reportBytesRead, rowsWritten));
+    }
+  }
+
+  @Override
+  public synchronized List<StepStatistics> getStepStatistics() {
+    List<StepStatistics> result = new ArrayList<>(accumulatorsByStep.size());
+    for (Map.Entry<String, StepAccumulator> entry : accumulatorsByStep.entrySet()) {
+      result.add(entry.getValue().toStatistics(entry.getKey()));
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized List<ProjectStatistics> getMostExpensiveProjects() {
+    List<ProjectStatistics> result = new ArrayList<>(statisticsByProject.values());
+    Collections.sort(result, DurationDescendingComparator.INSTANCE);
+    return result.subList(0, Math.min(MOST_EXPENSIVE_PROJECTS, result.size()));
+  }
+
+  private static class StepAccumulator {
+    private long count;
+    private long totalDurationMs;
+    private long maxDurationMs;
+    private final long[] durationHistogram = new long[StepStatistics.DURATION_BUCKETS_MS.length + 1];
+    private long totalAllocatedBytes;
+    private long totalReportBytesRead;
+    private long totalRowsWritten;
+
+    void add(StepMetrics metrics) {
+      count++;
+      totalDurationMs += metrics.getDurationMs();
+      maxDurationMs = Math.max(maxDurationMs, metrics.getDurationMs());
+      durationHistogram[bucketOf(metrics.getDurationMs())]++;
+      totalAllocatedBytes += metrics.getAllocatedBytes();
+      totalReportBytesRead += metrics.getReportBytesRead();
+      totalRowsWritten += metrics.getRowsWritten();
+    }
+
+    private static int bucketOf(long durationMs) {
+      int bucket = 0;
+      while (bucket < StepStatistics.DURATION_BUCKETS_MS.length && durationMs >= StepStatistics.DURATION_BUCKETS_MS[bucket]) {
+        bucket++;
+      }
+      return bucket;
+    }
+
+    StepStatistics toStatistics(String step) {
+      return new StepStatistics(step, count, totalDurationMs, maxDurationMs, durationHistogram, totalAllocatedBytes, totalReportBytesRead, totalRowsWritten);
+    }
+  }
+
+  private enum DurationDescendingComparator implements Comparator<ProjectStatistics> {
+    INSTANCE;
+
+    @Override
+    public int compare(ProjectStatistics o1, ProjectStatistics o2) {
+      return Long.compare(o2.getDurationMs(), o1.getDurationMs());
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.sonar.server.platform.monitoring.BaseMonitorMBean;
+
+public class ComputeEngineStepsMonitor extends BaseMonitorMBean implements ComputeEngineStepsMonitorMXBean {
+  private final CEStepsStatus stepsStatus;
+
+  public ComputeEngineStepsMonitor(CEStepsStatus stepsStatus) {
+    this.stepsStatus = stepsStatus;
+  }
+
+  @Override
+  public String name() {
+    return "ComputeEngineSteps";
+  }
+
+  @Override
+  public LinkedHashMap<String, Object> attributes() {
+    LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+    for (StepStatistics statistics : getStepStatistics()) {
+      LinkedHashMap<String, Object> stepAttributes = new LinkedHashMap<>();
+      stepAttributes.put("Executions", statistics.getCount());
+      stepAttributes.put("Total duration (ms)", statistics.getTotalDurationMs());
+      stepAttributes.put("Max duration (ms)", statistics.getMaxDurationMs());
+      stepAttributes.put("Allocated heap (bytes)", statistics.getTotalAllocatedBytes());
+      stepAttributes.put("Report read (bytes)", statistics.getTotalReportBytesRead());
+      stepAttributes.put("Rows written", statistics.getTotalRowsWritten());
+      attributes.put(statistics.getStep(), stepAttributes);
+    }
+    LinkedHashMap<String, Object> projectDurations = new LinkedHashMap<>();
+    for (ProjectStatistics statistics : getMostExpensiveProjects()) {
+      projectDurations.put(statistics.getProjectKey(), statistics.getDurationMs());
+    }
+    attributes.put("Most expensive projects (ms)", projectDurations);
+    return attributes;
+  }
+
+  @Override
+  public List<StepStatistics> getStepStatistics() {
+    return stepsStatus.getStepStatistics();
+  }
+
+  @Override
+  public List<ProjectStatistics> getMostExpensiveProjects() {
+    return stepsStatus.getMostExpensiveProjects();
+  }
+}
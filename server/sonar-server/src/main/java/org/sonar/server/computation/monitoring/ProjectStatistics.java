@@ -0,0 +1,64 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.beans.ConstructorProperties;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Metrics of the last processing of a project, summed over all the computation steps
+ */
+@Immutable
+public class ProjectStatistics {
+  private final String projectKey;
+  private final long durationMs;
+  private final long allocatedBytes;
+  private final long reportBytesRead;
+  private final long rowsWritten;
+
+  @ConstructorProperties({"projectKey", "durationMs", "allocatedBytes", "reportBytesRead", "rowsWritten"})
+  public ProjectStatistics(String projectKey, long durationMs, long allocatedBytes, long reportBytesRead, long rowsWritten) {
+    this.projectKey = projectKey;
+    this.durationMs = durationMs;
+    this.allocatedBytes = allocatedBytes;
+    this.reportBytesRead = reportBytesRead;
+    this.rowsWritten = rowsWritten;
+  }
+
+  public String getProjectKey() {
+    return projectKey;
+  }
+
+  public long getDurationMs() {
+    return durationMs;
+  }
+
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  public long getReportBytesRead() {
+    return reportBytesRead;
+  }
+
+  public long getRowsWritten() {
+    return rowsWritten;
+  }
+}
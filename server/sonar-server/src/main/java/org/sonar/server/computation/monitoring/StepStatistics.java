@@ -0,0 +1,93 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.beans.ConstructorProperties;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Cumulated metrics of all the executions of a computation step
+ */
+@Immutable
+public class StepStatistics {
+
+  /**
+   * Upper bounds, in milliseconds, of the buckets of {@link #getDurationHistogram()}. The last bucket has no upper bound.
+   */
+  public static final long[] DURATION_BUCKETS_MS = {100L, 1_000L, 10_000L, 60_000L, 600_000L};
+
+  private final String step;
+  private final long count;
+  private final long totalDurationMs;
+  private final long maxDurationMs;
+  private final long[] durationHistogram;
+  private final long totalAllocatedBytes;
+  private final long totalReportBytesRead;
+  private final long totalRowsWritten;
+
+  @ConstructorProperties({"step", "count", "totalDurationMs", "maxDurationMs", "durationHistogram", "totalAllocatedBytes", "totalReportBytesRead",
+    "totalRowsWritten"})
+  public StepStatistics(String step, long count, long totalDurationMs, long maxDurationMs, long[] durationHistogram, long totalAllocatedBytes,
+    long totalReportBytesRead, long totalRowsWritten) {
+    this.step = step;
+    this.count = count;
+    this.totalDurationMs = totalDurationMs;
+    this.maxDurationMs = maxDurationMs;
+    this.durationHistogram = durationHistogram.clone();
+    this.totalAllocatedBytes = totalAllocatedBytes;
+    this.totalReportBytesRead = totalReportBytesRead;
+    this.totalRowsWritten = totalRowsWritten;
+  }
+
+  public String getStep() {
+    return step;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getTotalDurationMs() {
+    return totalDurationMs;
+  }
+
+  public long getMaxDurationMs() {
+    return maxDurationMs;
+  }
+
+  /**
+   * Count of executions per bucket of duration, see {@link #DURATION_BUCKETS_MS}
+   */
+  public long[] getDurationHistogram() {
+    return durationHistogram.clone();
+  }
+
+  public long getTotalAllocatedBytes() {
+    return totalAllocatedBytes;
+  }
+
+  public long getTotalReportBytesRead() {
+    return totalReportBytesRead;
+  }
+
+  public long getTotalRowsWritten() {
+    return totalRowsWritten;
+  }
+}
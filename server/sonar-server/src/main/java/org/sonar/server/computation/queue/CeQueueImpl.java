@@ -20,6 +20,7 @@
 package org.sonar.server.computation.queue;
 
 import com.google.common.base.Optional;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import org.sonar.api.server.ServerSide;
@@ -31,6 +32,8 @@ import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.server.computation.monitoring.CEQueueStatus;
+import org.sonar.server.computation.monitoring.CEStepsStatus;
+import org.sonar.server.computation.step.StepMetrics;
 
 import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
@@ -42,18 +45,22 @@ public class CeQueueImpl implements CeQueue {
   private final DbClient dbClient;
   private final UuidFactory uuidFactory;
   private final CEQueueStatus queueStatus;
+  private final CEStepsStatus stepsStatus;
   private final CeQueueListener[] listeners;
+  private final CeQueueSubmitNotifier submitNotifier;
 
   // state
   private AtomicBoolean submitPaused = new AtomicBoolean(false);
   private AtomicBoolean peekPaused = new AtomicBoolean(false);
 
   public CeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory,
-    CEQueueStatus queueStatus, CeQueueListener[] listeners) {
+    CEQueueStatus queueStatus, CEStepsStatus stepsStatus, CeQueueSubmitNotifier submitNotifier, CeQueueListener[] listeners) {
     this.system2 = system2;
     this.dbClient = dbClient;
     this.uuidFactory = uuidFactory;
     this.queueStatus = queueStatus;
+    this.stepsStatus = stepsStatus;
+    this.submitNotifier = submitNotifier;
     this.listeners = listeners;
   }
 
@@ -79,6 +86,7 @@ public class CeQueueImpl implements CeQueue {
       CeTask task = loadTask(dbSession, dto);
       dbSession.commit();
       queueStatus.addReceived();
+      submitNotifier.notifySubmitted(task);
       return task;
 
     } finally {
@@ -183,7 +191,7 @@ public class CeQueueImpl implements CeQueue {
       CeActivityDto activityDto = new CeActivityDto(queueDto.get());
       activityDto.setStatus(status);
       updateQueueStatus(status, activityDto);
-      updateTaskResult(activityDto, taskResult);
+      updateTaskResult(task, activityDto, taskResult);
       remove(dbSession, task, queueDto.get(), activityDto);
 
     } finally {
@@ -191,12 +199,17 @@ public class CeQueueImpl implements CeQueue {
     }
   }
 
-  private static void updateTaskResult(CeActivityDto activityDto, @Nullable CeTaskResult taskResult) {
+  private void updateTaskResult(CeTask task, CeActivityDto activityDto, @Nullable CeTaskResult taskResult) {
     if (taskResult != null) {
       Long snapshotId = taskResult.getSnapshotId();
       if (snapshotId != null) {
         activityDto.setSnapshotId(snapshotId);
       }
+      List<StepMetrics> stepMetrics = taskResult.getStepMetrics();
+      if (!stepMetrics.isEmpty()) {
+        activityDto.setStepMetrics(StepMetrics.toJson(stepMetrics));
+        stepsStatus.add(task.getComponentKey(), stepMetrics);
+      }
     }
   }
 
@@ -21,7 +21,9 @@ package org.sonar.server.computation.queue;
 
 import org.sonar.core.platform.Module;
 import org.sonar.server.computation.monitoring.CEQueueStatusImpl;
+import org.sonar.server.computation.monitoring.CEStepsStatusImpl;
 import org.sonar.server.computation.monitoring.ComputeEngineQueueMonitor;
+import org.sonar.server.computation.monitoring.ComputeEngineStepsMonitor;
 import org.sonar.server.computation.queue.report.CleanReportQueueListener;
 import org.sonar.server.computation.queue.report.ReportFiles;
 
@@ -31,10 +33,13 @@ public class CeQueueModule extends Module {
     add(
       // queue state
       CeQueueImpl.class,
+      CeQueueSubmitNotifier.class,
 
       // queue monitoring
       CEQueueStatusImpl.class,
       ComputeEngineQueueMonitor.class,
+      CEStepsStatusImpl.class,
+      ComputeEngineStepsMonitor.class,
 
       // queue cleaning
       CeQueueCleaner.class,
@@ -0,0 +1,53 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.queue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Notifies listeners synchronously when a task has been submitted to the {@link CeQueue}.
+ * <p>
+ * This component has no dependency so that components which indirectly depend on {@link CeQueue} (such as the
+ * workers processing the queue) can be notified of submissions without creating a dependency cycle.
+ * </p>
+ */
+public class CeQueueSubmitNotifier {
+
+  public interface Listener {
+    void onSubmitted(CeTask task);
+  }
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  public void notifySubmitted(CeTask task) {
+    for (Listener listener : listeners) {
+      listener.onSubmitted(task);
+    }
+  }
+}
@@ -19,7 +19,9 @@
  */
 package org.sonar.server.computation.queue;
 
+import java.util.List;
 import javax.annotation.CheckForNull;
+import org.sonar.server.computation.step.StepMetrics;
 
 /**
  * Represents the result of the processing of a {@link CeTask}.
@@ -32,4 +34,9 @@ public interface CeTaskResult {
    */
   @CheckForNull
   Long getSnapshotId();
+
+  /**
+   * Metrics of the computation steps executed to process the {@link CeTask}, in order of completion. Can be empty.
+   */
+  List<StepMetrics> getStepMetrics();
 }
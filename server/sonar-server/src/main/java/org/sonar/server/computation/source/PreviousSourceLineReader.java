@@ -0,0 +1,55 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.source;
+
+import java.util.Iterator;
+import javax.annotation.CheckForNull;
+import org.sonar.db.protobuf.DbFileSources;
+
+/**
+ * Copies the syntax highlighting and the symbols persisted by the previous analysis. They are not in the report
+ * when the file is unchanged and the report is incremental.
+ */
+public class PreviousSourceLineReader implements LineReader {
+
+  private final Iterator<DbFileSources.Line> previousLines;
+  @CheckForNull
+  private DbFileSources.Line currentLine;
+
+  public PreviousSourceLineReader(Iterator<DbFileSources.Line> previousLines) {
+    this.previousLines = previousLines;
+  }
+
+  @Override
+  public void read(DbFileSources.Line.Builder lineBuilder) {
+    while ((currentLine == null || currentLine.getLine() < lineBuilder.getLine()) && previousLines.hasNext()) {
+      currentLine = previousLines.next();
+    }
+    if (currentLine == null || currentLine.getLine() != lineBuilder.getLine()) {
+      return;
+    }
+    if (currentLine.hasHighlighting()) {
+      lineBuilder.setHighlighting(currentLine.getHighlighting());
+    }
+    if (currentLine.hasSymbols()) {
+      lineBuilder.setSymbols(currentLine.getSymbols());
+    }
+  }
+}
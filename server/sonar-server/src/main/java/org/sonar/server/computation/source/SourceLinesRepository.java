@@ -20,7 +20,9 @@
 
 package org.sonar.server.computation.source;
 
+import com.google.common.base.Optional;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.server.computation.component.Component;
 
 public interface SourceLinesRepository {
@@ -28,6 +30,10 @@ public interface SourceLinesRepository {
   /**
    * Creates a iterator over the source lines of a given component from the report.
    * <p>
+   * Lines of a file which is unchanged since the previous analysis are read from the database, as they are not
+   * in the report.
+   * </p>
+   * <p>
    * The returned {@link CloseableIterator} will wrap the {@link CloseableIterator} returned by
    * {@link org.sonar.server.computation.batch.BatchReportReader#readFileSource(int)} but enforces that the number
    * of lines specified by {@link org.sonar.batch.protocol.output.BatchReport.Component#getLines()} is respected, adding
@@ -36,7 +42,19 @@ public interface SourceLinesRepository {
    *
    * @throws NullPointerException if argument is {@code null}
    * @throws IllegalArgumentException if component is not a {@link Component.Type#FILE}
-   * @throws IllegalStateException if the file has no source code in the report
+   * @throws IllegalStateException if the file has no source code in the report, or if the file is unchanged and has
+   *         no source code in the database
    */
   CloseableIterator<String> readLines(Component component);
+
+  /**
+   * Source data of a given file persisted by the previous analysis. Data is selected from the database once per file
+   * and then shared by all the callers, as long as the memory budget of the repository is not reached.
+   *
+   * @return {@link Optional#absent()} if the file has no source data in the database
+   *
+   * @throws NullPointerException if argument is {@code null}
+   * @throws IllegalArgumentException if component is not a {@link Component.Type#FILE}
+   */
+  Optional<DbFileSources.Data> readPreviousSourceData(Component file);
 }
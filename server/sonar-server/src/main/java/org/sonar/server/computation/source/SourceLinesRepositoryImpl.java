@@ -21,7 +21,17 @@
 package org.sonar.server.computation.source;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.batch.BatchReportReader;
 import org.sonar.server.computation.component.Component;
 
@@ -32,24 +42,87 @@ import static org.sonar.server.computation.component.Component.Type.FILE;
 
 public class SourceLinesRepositoryImpl implements SourceLinesRepository {
 
+  // 100 MB of compressed source data
+  private static final long MAX_CACHED_BYTES = 100L * 1024 * 1024;
+  private static final byte[] NO_DATA = new byte[0];
+
+  private final DbClient dbClient;
   private final BatchReportReader reportReader;
+  // source data of the previous analysis is read by several steps, for example to compute hashes, to track issues and
+  // to persist sources of unchanged files, so it is selected from db only once, as long as memory budget is not reached
+  private final ConcurrentMap<String, byte[]> previousBinaryDataByUuid = new ConcurrentHashMap<>();
+  private final AtomicLong cachedBytes = new AtomicLong();
 
-  public SourceLinesRepositoryImpl(BatchReportReader reportReader) {
+  public SourceLinesRepositoryImpl(DbClient dbClient, BatchReportReader reportReader) {
+    this.dbClient = dbClient;
     this.reportReader = reportReader;
   }
 
   @Override
   public CloseableIterator<String> readLines(Component component) {
-    requireNonNull(component, "Component should not be bull");
-    checkArgument(component.getType() == FILE, "Component '%s' is not a file", component);
+    checkFile(component);
+
+    BatchReport.Component reportComponent = reportReader.readComponent(component.getReportAttributes().getRef());
+    if (reportComponent.getIsUnchanged()) {
+      // source of unchanged files is not sent by the scanner when report is incremental
+      Optional<DbFileSources.Data> previousData = readPreviousSourceData(component);
+      checkState(previousData.isPresent(), String.format("File '%s' is unchanged but has no source code in database", component));
+      return new ComponentLinesCloseableIterator(linesOf(previousData.get()), reportComponent.getLines());
+    }
 
     Optional<CloseableIterator<String>> linesIteratorOptional = reportReader.readFileSource(component.getReportAttributes().getRef());
 
     checkState(linesIteratorOptional.isPresent(), String.format("File '%s' has no source code", component));
-    int numberOfLines = reportReader.readComponent(component.getReportAttributes().getRef()).getLines();
     CloseableIterator<String> lineIterator = linesIteratorOptional.get();
 
-    return new ComponentLinesCloseableIterator(lineIterator, numberOfLines);
+    return new ComponentLinesCloseableIterator(lineIterator, reportComponent.getLines());
+  }
+
+  @Override
+  public Optional<DbFileSources.Data> readPreviousSourceData(Component file) {
+    checkFile(file);
+
+    byte[] binaryData = previousBinaryDataByUuid.get(file.getUuid());
+    if (binaryData == null) {
+      binaryData = selectPreviousBinaryData(file);
+      cache(file.getUuid(), binaryData);
+    }
+    if (binaryData.length == 0) {
+      return Optional.absent();
+    }
+    return Optional.of(FileSourceDto.decodeSourceData(binaryData));
+  }
+
+  private byte[] selectPreviousBinaryData(Component file) {
+    DbSession session = dbClient.openSession(false);
+    try {
+      FileSourceDto previousDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, file.getUuid());
+      if (previousDto == null || previousDto.getBinaryData() == null) {
+        return NO_DATA;
+      }
+      return previousDto.getBinaryData();
+    } finally {
+      dbClient.closeSession(session);
+    }
+  }
+
+  private void cache(String fileUuid, byte[] binaryData) {
+    if (cachedBytes.get() + binaryData.length <= MAX_CACHED_BYTES && previousBinaryDataByUuid.putIfAbsent(fileUuid, binaryData) == null) {
+      cachedBytes.addAndGet(binaryData.length);
+    }
+  }
+
+  private static void checkFile(Component component) {
+    requireNonNull(component, "Component should not be bull");
+    checkArgument(component.getType() == FILE, "Component '%s' is not a file", component);
+  }
+
+  private static CloseableIterator<String> linesOf(DbFileSources.Data data) {
+    List<String> lines = new ArrayList<>(data.getLinesCount());
+    for (DbFileSources.Line line : data.getLinesList()) {
+      lines.add(line.getSource());
+    }
+    return CloseableIterator.from(lines.iterator());
   }
 
   private static class ComponentLinesCloseableIterator extends CloseableIterator<String> {
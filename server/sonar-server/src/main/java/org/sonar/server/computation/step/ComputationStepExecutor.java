@@ -19,25 +19,229 @@
  */
 package org.sonar.server.computation.step;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.MDC;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.System2;
 import org.sonar.core.util.logs.Profiler;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
 
+import static java.util.Collections.disjoint;
+
+/**
+ * Executes the {@link ComputationStep}s in the order of {@link ComputationSteps#instances()}.
+ * <p>
+ * When more than one step worker is configured (see {@link CeConfiguration#getStepWorkerCount()}), adjacent
+ * {@link ConcurrentComputationStep}s are executed concurrently, a step waiting only for the previous steps of the same
+ * group which write data it reads or which read or write data it writes. Any other step is executed alone in the
+ * calling thread, once all previous steps are completed.
+ * </p>
+ * <p>
+ * Duration and heap allocation of each step are recorded in the {@link MutableStepMetricsHolder}.
+ * </p>
+ */
 public final class ComputationStepExecutor {
   private static final Logger LOGGER = Loggers.get(ComputationStepExecutor.class);
+  private static final String THREAD_NAME_PREFIX = "ce-step-";
 
   private final ComputationSteps steps;
+  private final int stepWorkerCount;
+  private final MutableStepMetricsHolder stepMetricsHolder;
+  private final System2 system2;
 
   public ComputationStepExecutor(ComputationSteps steps) {
+    this(steps, 1, new StepMetricsHolderImpl(), System2.INSTANCE);
+  }
+
+  public ComputationStepExecutor(ComputationSteps steps, CeConfiguration ceConfiguration) {
+    this(steps, ceConfiguration.getStepWorkerCount(), new StepMetricsHolderImpl(), System2.INSTANCE);
+  }
+
+  public ComputationStepExecutor(ComputationSteps steps, CeConfiguration ceConfiguration, MutableStepMetricsHolder stepMetricsHolder, System2 system2) {
+    this(steps, ceConfiguration.getStepWorkerCount(), stepMetricsHolder, system2);
+  }
+
+  private ComputationStepExecutor(ComputationSteps steps, int stepWorkerCount, MutableStepMetricsHolder stepMetricsHolder, System2 system2) {
     this.steps = steps;
+    this.stepWorkerCount = stepWorkerCount;
+    this.stepMetricsHolder = stepMetricsHolder;
+    this.system2 = system2;
   }
 
   public void execute() {
-    Profiler stepProfiler = Profiler.create(LOGGER);
-    for (ComputationStep step : steps.instances()) {
-      stepProfiler.start();
-      step.execute();
-      stepProfiler.stopInfo(step.getDescription());
+    if (stepWorkerCount <= 1) {
+      executeSequentially(steps.instances());
+      return;
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(stepWorkerCount,
+      new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_PREFIX + "%d").build());
+    try {
+      List<ConcurrentComputationStep> group = new ArrayList<>();
+      for (ComputationStep step : steps.instances()) {
+        if (step instanceof ConcurrentComputationStep) {
+          group.add((ConcurrentComputationStep) step);
+        } else {
+          executeConcurrently(executorService, group);
+          group.clear();
+          executeStep(step);
+        }
+      }
+      executeConcurrently(executorService, group);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private void executeSequentially(Iterable<? extends ComputationStep> steps) {
+    for (ComputationStep step : steps) {
+      executeStep(step);
+    }
+  }
+
+  private void executeStep(ComputationStep step) {
+    Profiler stepProfiler = Profiler.create(LOGGER).start();
+    long start = system2.now();
+    long allocatedBytesAtStart = currentThreadAllocatedBytes();
+    stepMetricsHolder.startStep();
+    step.execute();
+    String description = step.getDescription();
+    stepMetricsHolder.stopStep(description, system2.now() - start, Math.max(0L, currentThreadAllocatedBytes() - allocatedBytesAtStart));
+    stepProfiler.stopInfo(description);
+  }
+
+  /**
+   * Bytes allocated on heap by the current thread since its start, or zero if not supported by the JVM. The
+   * attribute is specific to HotSpot, so it is read through JMX rather than with com.sun.management.ThreadMXBean.
+   */
+  private static long currentThreadAllocatedBytes() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName threadBeanName = new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME);
+      if (Boolean.TRUE.equals(mBeanServer.getAttribute(threadBeanName, "ThreadAllocatedMemorySupported"))
+        && Boolean.TRUE.equals(mBeanServer.getAttribute(threadBeanName, "ThreadAllocatedMemoryEnabled"))) {
+        return (Long) mBeanServer.invoke(threadBeanName, "getThreadAllocatedBytes",
+          new Object[] {Thread.currentThread().getId()}, new String[] {long.class.getName()});
+      }
+    } catch (JMException e) {
+      // not a HotSpot JVM
+      LOGGER.trace("Allocated heap is not supported by JVM", e);
+    }
+    return 0L;
+  }
+
+  private void executeConcurrently(ExecutorService executorService, List<ConcurrentComputationStep> group) {
+    if (group.size() <= 1) {
+      executeSequentially(group);
+      return;
+    }
+
+    // steps are submitted in order and executed by a FIFO executor, therefore the dependencies of a step are always
+    // either running or completed when the step starts waiting for them
+    Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+    List<Future<Boolean>> futures = new ArrayList<>(group.size());
+    for (int i = 0; i < group.size(); i++) {
+      ConcurrentComputationStep step = group.get(i);
+      List<Future<Boolean>> dependencies = new ArrayList<>();
+      for (int j = 0; j < i; j++) {
+        if (conflicts(step, group.get(j))) {
+          dependencies.add(futures.get(j));
+        }
+      }
+      futures.add(executorService.submit(new StepCallable(step, dependencies, mdcContext)));
+    }
+
+    waitForCompletion(futures);
+  }
+
+  private static boolean conflicts(ConcurrentComputationStep step, ConcurrentComputationStep previousStep) {
+    return !disjoint(step.getReadData(), previousStep.getWrittenData())
+      || !disjoint(step.getWrittenData(), previousStep.getReadData())
+      || !disjoint(step.getWrittenData(), previousStep.getWrittenData());
+  }
+
+  /**
+   * Waits for all steps to complete and rethrows, as is, the exception thrown by the first failed step.
+   */
+  private static void waitForCompletion(List<Future<Boolean>> futures) {
+    Throwable failure = null;
+    for (Future<Boolean> future : futures) {
+      Throwable stepFailure = getFailure(future);
+      if (failure == null) {
+        failure = stepFailure;
+      }
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    if (failure != null) {
+      throw new IllegalStateException("Execution of computation step failed", failure);
+    }
+  }
+
+  @CheckForNull
+  private static Throwable getFailure(Future<Boolean> future) {
+    try {
+      future.get();
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return e;
+    }
+  }
+
+  private final class StepCallable implements Callable<Boolean> {
+    private final ComputationStep step;
+    private final List<Future<Boolean>> dependencies;
+    @CheckForNull
+    private final Map<String, String> mdcContext;
+
+    private StepCallable(ComputationStep step, List<Future<Boolean>> dependencies, @CheckForNull Map<String, String> mdcContext) {
+      this.step = step;
+      this.dependencies = dependencies;
+      this.mdcContext = mdcContext;
+    }
+
+    /**
+     * @return {@code false} if the step has not been executed because one of its dependencies failed
+     */
+    @Override
+    public Boolean call() throws Exception {
+      for (Future<Boolean> dependency : dependencies) {
+        if (getFailure(dependency) != null || !dependency.get()) {
+          return false;
+        }
+      }
+
+      // propagates the MDC of the calling thread so that logs of the step go to the log file of the Compute Engine task
+      if (mdcContext != null) {
+        MDC.setContextMap(mdcContext);
+      }
+      try {
+        executeStep(step);
+        return true;
+      } finally {
+        MDC.clear();
+      }
     }
   }
 }
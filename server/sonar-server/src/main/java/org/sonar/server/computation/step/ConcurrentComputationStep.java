@@ -0,0 +1,39 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import java.util.Set;
+
+/**
+ * A {@link ComputationStep} which declares the data it reads and writes.
+ * <p>
+ * {@link ComputationStepExecutor} may execute such a step concurrently with the adjacent {@link ConcurrentComputationStep}s
+ * in {@link ComputationSteps#instances()} which do not write what it reads nor read or write what it writes. Any
+ * component used by an implementation must therefore be safe to use from another thread than the one which executes
+ * the other steps.
+ * </p>
+ */
+public interface ConcurrentComputationStep extends ComputationStep {
+
+  Set<ComputationStepData> getReadData();
+
+  Set<ComputationStepData> getWrittenData();
+
+}
@@ -48,10 +48,29 @@ public class ExecuteVisitorsStep implements ComputationStep {
   @Override
   public void execute() {
     VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors);
-    visitorsCrawler.visit(treeRootHolder.getRoot());
+    try {
+      visitorsCrawler.visit(treeRootHolder.getRoot());
+    } finally {
+      closeVisitors(visitors);
+    }
     logVisitorExecutionDurations(visitors, visitorsCrawler);
   }
 
+  /**
+   * Visitors holding resources during the crawl, for example threads, release them whether the crawl succeeded or not
+   */
+  private static void closeVisitors(List<ComponentVisitor> visitors) {
+    for (ComponentVisitor visitor : visitors) {
+      if (visitor instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) visitor).close();
+        } catch (Exception e) {
+          LOGGER.warn(String.format("Fail to close visitor %s", visitor.getClass().getSimpleName()), e);
+        }
+      }
+    }
+  }
+
   private static void logVisitorExecutionDurations(List<ComponentVisitor> visitors, VisitorsCrawler visitorsCrawler) {
     LOGGER.info("  Execution time for each component visitor:");
     Map<ComponentVisitor, Long> cumulativeDurations = visitorsCrawler.getCumulativeDurations();
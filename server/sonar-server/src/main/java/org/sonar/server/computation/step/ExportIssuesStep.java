@@ -0,0 +1,91 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.server.batch.ServerIssuesExport;
+import org.sonar.server.computation.component.TreeRootHolder;
+import org.sonar.server.issue.index.IssueIndex;
+
+import static org.sonar.server.computation.step.ComputationStepData.COMPONENT_TREE;
+import static org.sonar.server.computation.step.ComputationStepData.ISSUE_INDEX;
+
+/**
+ * Exports the open issues of the project, so that web service batch/issues streams them without
+ * loading them from index (see {@link ServerIssuesExport}).
+ */
+public class ExportIssuesStep implements ConcurrentComputationStep {
+
+  private static final Logger LOG = Loggers.get(ExportIssuesStep.class);
+
+  private final DbClient dbClient;
+  private final IssueIndex issueIndex;
+  private final ServerIssuesExport issuesExport;
+  private final TreeRootHolder treeRootHolder;
+
+  public ExportIssuesStep(DbClient dbClient, IssueIndex issueIndex, ServerIssuesExport issuesExport, TreeRootHolder treeRootHolder) {
+    this.dbClient = dbClient;
+    this.issueIndex = issueIndex;
+    this.issuesExport = issuesExport;
+    this.treeRootHolder = treeRootHolder;
+  }
+
+  @Override
+  public void execute() {
+    String projectUuid = treeRootHolder.getRoot().getUuid();
+    DbSession session = dbClient.openSession(false);
+    try {
+      ComponentDto project = dbClient.componentDao().selectOrFailByUuid(session, projectUuid);
+      Map<String, String> keysByUuid = issuesExport.selectModuleKeysByUuid(session, project);
+      // version is loaded before issues, so that the export is never older than its version. An export which is
+      // more recent than its version is not served.
+      String version = ServerIssuesExport.version(project, keysByUuid, issueIndex.selectProjectIssuesForBatchExportVersion(projectUuid));
+      issuesExport.export(projectUuid, version, keysByUuid, issueIndex.selectProjectIssuesForBatchExport(projectUuid));
+    } catch (RuntimeException e) {
+      // issues are still loaded from index by batch/issues
+      LOG.warn("Fail to export issues of project " + projectUuid, e);
+      issuesExport.deleteIfExists(projectUuid);
+    } finally {
+      dbClient.closeSession(session);
+    }
+  }
+
+  @Override
+  public Set<ComputationStepData> getReadData() {
+    return EnumSet.of(COMPONENT_TREE, ISSUE_INDEX);
+  }
+
+  @Override
+  public Set<ComputationStepData> getWrittenData() {
+    return EnumSet.noneOf(ComputationStepData.class);
+  }
+
+  @Override
+  public String getDescription() {
+    return "Export issues";
+  }
+}
@@ -20,10 +20,16 @@
 
 package org.sonar.server.computation.step;
 
+import java.util.EnumSet;
+import java.util.Set;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.issue.index.IssueIndexer;
 
-public class IndexIssuesStep implements ComputationStep {
+import static org.sonar.server.computation.step.ComputationStepData.COMPONENT_TREE;
+import static org.sonar.server.computation.step.ComputationStepData.ISSUES;
+import static org.sonar.server.computation.step.ComputationStepData.ISSUE_INDEX;
+
+public class IndexIssuesStep implements ConcurrentComputationStep {
 
   private final IssueIndexer indexer;
   private final TreeRootHolder treeRootHolder;
@@ -38,6 +44,16 @@ public class IndexIssuesStep implements ComputationStep {
     indexer.index(treeRootHolder.getRoot().getUuid());
   }
 
+  @Override
+  public Set<ComputationStepData> getReadData() {
+    return EnumSet.of(COMPONENT_TREE, ISSUES);
+  }
+
+  @Override
+  public Set<ComputationStepData> getWrittenData() {
+    return EnumSet.of(ISSUE_INDEX);
+  }
+
   @Override
   public String getDescription() {
     return "Index issues";
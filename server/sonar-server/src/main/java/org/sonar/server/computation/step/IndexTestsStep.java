@@ -20,10 +20,16 @@
 
 package org.sonar.server.computation.step;
 
+import java.util.EnumSet;
+import java.util.Set;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.test.index.TestIndexer;
 
-public class IndexTestsStep implements ComputationStep {
+import static org.sonar.server.computation.step.ComputationStepData.COMPONENT_TREE;
+import static org.sonar.server.computation.step.ComputationStepData.TEST_INDEX;
+import static org.sonar.server.computation.step.ComputationStepData.TEST_SOURCES;
+
+public class IndexTestsStep implements ConcurrentComputationStep {
 
   private final TestIndexer indexer;
   private final TreeRootHolder treeRootHolder;
@@ -38,6 +44,16 @@ public class IndexTestsStep implements ComputationStep {
     indexer.index(treeRootHolder.getRoot().getUuid());
   }
 
+  @Override
+  public Set<ComputationStepData> getReadData() {
+    return EnumSet.of(COMPONENT_TREE, TEST_SOURCES);
+  }
+
+  @Override
+  public Set<ComputationStepData> getWrittenData() {
+    return EnumSet.of(TEST_INDEX);
+  }
+
   @Override
   public String getDescription() {
     return "Index tests";
@@ -21,9 +21,16 @@
 package org.sonar.server.computation.step;
 
 import com.google.common.base.Function;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.batch.protocol.output.BatchReport.CpdTextBlock;
@@ -32,6 +39,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.duplication.DuplicationUnitDto;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.ShardedCloneIndex;
 import org.sonar.server.computation.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.batch.BatchReportReader;
 import org.sonar.server.computation.component.Component;
@@ -53,6 +61,9 @@ import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_
  * Blocks can be empty if :
  * - The file is excluded from the analysis using {@link org.sonar.api.CoreProperties#CPD_EXCLUSIONS}
  * - On Java, if the number of statements of the file is too small, nothing will be sent.
+ *
+ * Candidate blocks of other projects are loaded from db only once per hash and language, into a {@link ShardedCloneIndex}
+ * which is shared by all the files of the project and which spills to disk when it becomes too big.
  */
 public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationStep {
 
@@ -64,22 +75,29 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   private final IntegrateCrossProjectDuplications integrateCrossProjectDuplications;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
   private final DbClient dbClient;
+  private final TempFolder tempFolder;
 
   public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
     AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
-    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient) {
+    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient, TempFolder tempFolder) {
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.integrateCrossProjectDuplications = integrateCrossProjectDuplications;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
     this.dbClient = dbClient;
+    this.tempFolder = tempFolder;
   }
 
   @Override
   public void execute() {
     if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+      CrossProjectDuplicationVisitor visitor = new CrossProjectDuplicationVisitor();
+      try {
+        new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      } finally {
+        visitor.close();
+      }
     }
   }
 
@@ -90,6 +108,8 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
 
   private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
 
+    private final Map<String, CandidateBlocks> candidateBlocksByLanguage = new HashMap<>();
+
     private CrossProjectDuplicationVisitor() {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
     }
@@ -102,28 +122,75 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
         return;
       }
 
-      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
-      if (dtos.isEmpty()) {
+      Set<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).copyInto(new LinkedHashSet<String>());
+      Collection<Block> duplicatedBlocks = candidateBlocksOf(file).select(file, hashes);
+      if (duplicatedBlocks.isEmpty()) {
         return;
       }
 
-      Collection<Block> duplicatedBlocks = from(dtos).transform(DtoToBlock.INSTANCE).toList();
       Collection<Block> originBlocks = from(cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
       LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
 
       integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
     }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
-      DbSession dbSession = dbClient.openSession(false);
-      try {
-        Snapshot projectSnapshot = analysisMetadataHolder.getBaseProjectSnapshot();
-        Long projectSnapshotId = projectSnapshot == null ? null : projectSnapshot.getId();
-        return dbClient.duplicationDao().selectCandidates(dbSession, projectSnapshotId, file.getFileAttributes().getLanguageKey(), hashes);
-      } finally {
-        dbClient.closeSession(dbSession);
+    private CandidateBlocks candidateBlocksOf(Component file) {
+      String languageKey = file.getFileAttributes().getLanguageKey();
+      CandidateBlocks candidateBlocks = candidateBlocksByLanguage.get(languageKey);
+      if (candidateBlocks == null) {
+        candidateBlocks = new CandidateBlocks(new ShardedCloneIndex(tempFolder.newDir()));
+        candidateBlocksByLanguage.put(languageKey, candidateBlocks);
+      }
+      return candidateBlocks;
+    }
+
+    private void close() {
+      for (CandidateBlocks candidateBlocks : candidateBlocksByLanguage.values()) {
+        candidateBlocks.index.close();
+      }
+      candidateBlocksByLanguage.clear();
+    }
+  }
+
+  private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      Snapshot projectSnapshot = analysisMetadataHolder.getBaseProjectSnapshot();
+      Long projectSnapshotId = projectSnapshot == null ? null : projectSnapshot.getId();
+      return dbClient.duplicationDao().selectCandidates(dbSession, projectSnapshotId, file.getFileAttributes().getLanguageKey(), hashes);
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
+  }
+
+  /**
+   * Blocks of other projects, of a given language, which share a hash with the blocks of the files already visited
+   */
+  private class CandidateBlocks {
+    private final ShardedCloneIndex index;
+    private final Set<String> selectedHashes = new HashSet<>();
+
+    private CandidateBlocks(ShardedCloneIndex index) {
+      this.index = index;
+    }
+
+    private Collection<Block> select(Component file, Set<String> hashes) {
+      List<String> hashesToSelect = new ArrayList<>();
+      for (String hash : hashes) {
+        if (selectedHashes.add(hash)) {
+          hashesToSelect.add(hash);
+        }
+      }
+      if (!hashesToSelect.isEmpty()) {
+        for (DuplicationUnitDto dto : selectDuplicates(file, hashesToSelect)) {
+          index.insert(DtoToBlock.INSTANCE.apply(dto));
+        }
+      }
+      List<Block> blocks = new ArrayList<>();
+      for (String hash : hashes) {
+        blocks.addAll(index.getBySequenceHash(new ByteArray(hash)));
       }
+      return blocks;
     }
   }
 
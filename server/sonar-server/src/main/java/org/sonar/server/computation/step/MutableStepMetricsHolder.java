@@ -0,0 +1,35 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+public interface MutableStepMetricsHolder extends StepMetricsHolder {
+
+  /**
+   * Starts the counters of the step executed by the current thread
+   */
+  void startStep();
+
+  /**
+   * Stops the counters of the step executed by the current thread and records its metrics.
+   *
+   * @throws IllegalStateException if {@link #startStep()} has not been called by the current thread
+   */
+  StepMetrics stopStep(String step, long durationMs, long allocatedBytes);
+}
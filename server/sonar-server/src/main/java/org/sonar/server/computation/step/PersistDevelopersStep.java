@@ -20,12 +20,17 @@
 
 package org.sonar.server.computation.step;
 
+import java.util.EnumSet;
+import java.util.Set;
 import org.sonar.server.devcockpit.PersistDevelopersDelegate;
 
+import static org.sonar.server.computation.step.ComputationStepData.COMPONENT_TREE;
+import static org.sonar.server.computation.step.ComputationStepData.DEVELOPERS;
+
 /**
  * Persist developers, should only be execute when the Dev Cockpit plugin is installed.
  */
-public class PersistDevelopersStep implements ComputationStep {
+public class PersistDevelopersStep implements ConcurrentComputationStep {
 
   private final PersistDevelopersDelegate persistDevelopersDelegate;
 
@@ -33,6 +38,16 @@ public class PersistDevelopersStep implements ComputationStep {
     this.persistDevelopersDelegate = persistDevelopersDelegate;
   }
 
+  @Override
+  public Set<ComputationStepData> getReadData() {
+    return EnumSet.of(COMPONENT_TREE);
+  }
+
+  @Override
+  public Set<ComputationStepData> getWrittenData() {
+    return EnumSet.of(DEVELOPERS);
+  }
+
   @Override
   public String getDescription() {
     return "Persist developers";
@@ -21,17 +21,25 @@
 package org.sonar.server.computation.step;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
-import org.apache.ibatis.session.ResultContext;
-import org.apache.ibatis.session.ResultHandler;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.core.util.CloseableIterator;
@@ -47,6 +55,7 @@ import org.sonar.server.computation.component.CrawlerDepthLimit;
 import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.duplication.Duplication;
 import org.sonar.server.computation.duplication.DuplicationRepository;
 import org.sonar.server.computation.scm.Changeset;
 import org.sonar.server.computation.scm.ScmInfo;
@@ -56,14 +65,29 @@ import org.sonar.server.computation.source.CoverageLineReader;
 import org.sonar.server.computation.source.DuplicationLineReader;
 import org.sonar.server.computation.source.HighlightingLineReader;
 import org.sonar.server.computation.source.LineReader;
+import org.sonar.server.computation.source.PreviousSourceLineReader;
 import org.sonar.server.computation.source.RangeOffsetConverter;
 import org.sonar.server.computation.source.ScmLineReader;
 import org.sonar.server.computation.source.SourceLinesRepository;
 import org.sonar.server.computation.source.SymbolsLineReader;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
 
 import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_ORDER;
+import static org.sonar.server.computation.step.ComputationStepData.COMPONENT_TREE;
+import static org.sonar.server.computation.step.ComputationStepData.DUPLICATIONS;
+import static org.sonar.server.computation.step.ComputationStepData.FILE_SOURCES;
+import static org.sonar.server.computation.step.ComputationStepData.REPORT;
+import static org.sonar.server.computation.step.ComputationStepData.SCM_INFO;
+import static org.sonar.server.computation.step.ComputationStepData.SOURCE_LINES;
 
-public class PersistFileSourcesStep implements ComputationStep {
+public class PersistFileSourcesStep implements ConcurrentComputationStep {
+  private static final String THREAD_NAME_PREFIX = "ce-file-sources-";
+  // at most 2 files per thread are being computed or waiting to be persisted
+  private static final int MAX_PENDING_FILES_PER_THREAD = 2;
+  // 20 MB of computed data waiting to be persisted
+  private static final long MAX_PENDING_BYTES = 20L * 1024 * 1024;
+  // 20 MB
+  private static final long MAX_UNFLUSHED_BYTES = 20L * 1024 * 1024;
 
   private final DbClient dbClient;
   private final System2 system2;
@@ -72,9 +96,11 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final StepMetricsHolder stepMetricsHolder;
+  private final int workerCount;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, StepMetricsHolder stepMetricsHolder, CeConfiguration ceConfiguration) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -82,70 +108,110 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.stepMetricsHolder = stepMetricsHolder;
+    this.workerCount = ceConfiguration.getFileSourceWorkerCount();
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
-    DbSession session = dbClient.openSession(false);
+    // Data of files is computed by a pool of threads while it is persisted, in order of visit, with batch statements.
+    // Memory is bounded by the number of files being computed, by the size of the computed data waiting to be persisted
+    // and by the size of the data not flushed yet to the db, as keeping all data in memory can produce OOM for big files
+    ExecutorService executorService = Executors.newFixedThreadPool(workerCount,
+      new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_PREFIX + "%d").setDaemon(true).build());
+    DbSession session = dbClient.openSession(true);
+    // hashes are selected with a distinct session, so that selects do not flush the batch statements
+    DbSession readSession = dbClient.openSession(false);
     try {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(session))
+      FileSourceVisitor visitor = new FileSourceVisitor(session, readSession, executorService);
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      visitor.persistPendingSources();
+      session.commit();
     } finally {
+      executorService.shutdownNow();
       MyBatis.closeQuietly(session);
+      MyBatis.closeQuietly(readSession);
     }
   }
 
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final DbSession readSession;
+    private final ExecutorService executorService;
+    private final Deque<PendingFileSource> pendingSources = new ArrayDeque<>();
+    // size of the data computed by the threads of the pool and not persisted yet
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private long unflushedBytes = 0L;
 
+    // hashes of the previous sources of the files of the directory being visited, and of the files not persisted yet
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, DbSession readSession, ExecutorService executorService) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.readSession = readSession;
+      this.executorService = executorService;
     }
 
     @Override
     public void visitProject(Component project) {
       this.projectUuid = project.getUuid();
-      session.select("org.sonar.db.source.FileSourceMapper.selectHashesForProject", ImmutableMap.of("projectUuid", projectUuid, "dataType", Type.SOURCE),
-        new ResultHandler() {
-          @Override
-          public void handleResult(ResultContext context) {
-            FileSourceDto dto = (FileSourceDto) context.getResultObject();
-            previousFileSourcesByUuid.put(dto.getFileUuid(), dto);
-          }
-        });
+      loadPreviousFileSourcesOfChildren(project);
+    }
+
+    @Override
+    public void visitModule(Component module) {
+      loadPreviousFileSourcesOfChildren(module);
+    }
+
+    @Override
+    public void visitDirectory(Component directory) {
+      loadPreviousFileSourcesOfChildren(directory);
+    }
+
+    /**
+     * Hashes of previous sources are selected by batch of files, when their parent is visited, instead of being all
+     * loaded in memory before the first file is visited
+     */
+    private void loadPreviousFileSourcesOfChildren(Component parent) {
+      List<String> fileUuids = new ArrayList<>();
+      for (Component child : parent.getChildren()) {
+        if (child.getType() == Component.Type.FILE) {
+          fileUuids.add(child.getUuid());
+        }
+      }
+      for (FileSourceDto dto : dbClient.fileSourceDao().selectSourceHashesByFileUuids(readSession, fileUuids)) {
+        previousFileSourcesByUuid.put(dto.getFileUuid(), dto);
+      }
     }
 
     @Override
     public void visitFile(Component file) {
-      int fileRef = file.getReportAttributes().getRef();
-      BatchReport.Component component = reportReader.readComponent(fileRef);
-      CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-      LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
-      try {
-        ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), component.getLines());
-        ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
-      } catch (Exception e) {
-        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
-      } finally {
-        linesIterator.close();
-        lineReaders.close();
+      while (!pendingSources.isEmpty()
+        && (pendingSources.size() >= MAX_PENDING_FILES_PER_THREAD * workerCount || pendingBytes.get() >= MAX_PENDING_BYTES)) {
+        persistSource(pendingSources.poll());
       }
+      // repositories are not thread safe, they are accessed from the visiting thread only
+      Optional<ScmInfo> scmInfo = scmInfoRepository.getScmInfo(file);
+      Iterable<Duplication> duplications = duplicationRepository.getDuplications(file);
+      Future<FileSourceData> future = executorService.submit(
+        new ComputeFileSourceDataCallable(file, scmInfo, duplications, stepMetricsHolder.getCurrentCounters(), pendingBytes));
+      pendingSources.add(new PendingFileSource(file, future));
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
-      DbFileSources.Data fileData = fileSourceData.getFileSourceData();
+    private void persistPendingSources() {
+      while (!pendingSources.isEmpty()) {
+        persistSource(pendingSources.poll());
+      }
+    }
 
-      byte[] data = FileSourceDto.encodeSourceData(fileData);
-      String dataHash = DigestUtils.md5Hex(data);
-      String srcHash = fileSourceData.getSrcHash();
-      String lineHashes = fileSourceData.getLineHashes();
+    private void persistSource(PendingFileSource pendingSource) {
+      FileSourceData fileSourceData = pendingSource.get();
+      pendingBytes.addAndGet(-fileSourceData.size());
+      String componentUuid = pendingSource.file.getUuid();
       FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
 
       if (previousDto == null) {
@@ -153,36 +219,159 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setProjectUuid(projectUuid)
           .setFileUuid(componentUuid)
           .setDataType(Type.SOURCE)
-          .setBinaryData(data)
-          .setSrcHash(srcHash)
-          .setDataHash(dataHash)
-          .setLineHashes(lineHashes)
+          .setBinaryData(fileSourceData.data)
+          .setSrcHash(fileSourceData.srcHash)
+          .setDataHash(fileSourceData.dataHash)
+          .setLineHashes(fileSourceData.lineHashes)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
-          .setRevision(computeRevision(latestChange));
+          .setRevision(computeRevision(fileSourceData.latestChange));
         dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
+        stepMetricsHolder.addRowsWritten(1);
+        flushIfNeeded(fileSourceData);
       } else {
         // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
-        boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
-        boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(previousDto, latestChange);
+        boolean binaryDataUpdated = !fileSourceData.dataHash.equals(previousDto.getDataHash());
+        boolean srcHashUpdated = !fileSourceData.srcHash.equals(previousDto.getSrcHash());
+        String revision = computeRevision(previousDto, fileSourceData.latestChange);
         boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
         if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
           previousDto
-            .setBinaryData(data)
-            .setDataHash(dataHash)
-            .setSrcHash(srcHash)
-            .setLineHashes(lineHashes)
+            .setBinaryData(fileSourceData.data)
+            .setDataHash(fileSourceData.dataHash)
+            .setSrcHash(fileSourceData.srcHash)
+            .setLineHashes(fileSourceData.lineHashes)
             .setRevision(revision)
             .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(previousDto);
-          session.commit();
+          dbClient.fileSourceDao().update(session, previousDto);
+          stepMetricsHolder.addRowsWritten(1);
+          flushIfNeeded(fileSourceData);
         }
+        // data of previous version is not needed anymore
+        previousFileSourcesByUuid.remove(componentUuid);
+      }
+    }
+
+    /**
+     * Batch statements keep references to the binary data of the files until they are committed. Commit as soon as
+     * the size of this data reaches MAX_UNFLUSHED_BYTES.
+     */
+    private void flushIfNeeded(FileSourceData fileSourceData) {
+      unflushedBytes += fileSourceData.size();
+      if (unflushedBytes >= MAX_UNFLUSHED_BYTES) {
+        session.commit();
+        unflushedBytes = 0L;
+      }
+    }
+  }
+
+  private static final class PendingFileSource {
+    private final Component file;
+    private final Future<FileSourceData> future;
+
+    private PendingFileSource(Component file, Future<FileSourceData> future) {
+      this.file = file;
+      this.future = future;
+    }
+
+    private FileSourceData get() {
+      try {
+        return future.get();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(String.format("Interrupted while persisting sources of %s", file.getKey()), e);
+      }
+    }
+  }
+
+  private class ComputeFileSourceDataCallable implements Callable<FileSourceData> {
+    private final Component file;
+    private final Optional<ScmInfo> scmInfo;
+    private final Iterable<Duplication> duplications;
+    @CheckForNull
+    private final StepCounters stepCounters;
+    private final AtomicLong pendingBytes;
+
+    private ComputeFileSourceDataCallable(Component file, Optional<ScmInfo> scmInfo, Iterable<Duplication> duplications, @Nullable StepCounters stepCounters,
+      AtomicLong pendingBytes) {
+      this.file = file;
+      this.scmInfo = scmInfo;
+      this.duplications = duplications;
+      this.stepCounters = stepCounters;
+      this.pendingBytes = pendingBytes;
+    }
+
+    @Override
+    public FileSourceData call() {
+      // report is read by the threads of the pool, on behalf of the step
+      stepMetricsHolder.bind(stepCounters);
+      try {
+        FileSourceData fileSourceData = compute();
+        pendingBytes.addAndGet(fileSourceData.size());
+        return fileSourceData;
+      } finally {
+        stepMetricsHolder.unbind();
+      }
+    }
+
+    private FileSourceData compute() {
+      int fileRef = file.getReportAttributes().getRef();
+      BatchReport.Component component = reportReader.readComponent(fileRef);
+      // source, highlighting and symbols of unchanged files are not in the report. They are the ones of the previous
+      // analysis. If they are missing in db, reading lines fails.
+      Optional<DbFileSources.Data> previousData = component.getIsUnchanged()
+        ? sourceLinesRepository.readPreviousSourceData(file)
+        : Optional.<DbFileSources.Data>absent();
+      CloseableIterator<String> linesIterator = previousData.isPresent()
+        ? CloseableIterator.from(sourcesOf(previousData.get()).iterator())
+        : sourceLinesRepository.readLines(file);
+      LineReaders lineReaders = new LineReaders(reportReader, scmInfo, duplications, file, previousData.orNull());
+      try {
+        ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), component.getLines());
+        ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
+        byte[] data = FileSourceDto.encodeSourceData(fileSourceData.getFileSourceData());
+        return new FileSourceData(data, DigestUtils.md5Hex(data), fileSourceData.getSrcHash(), fileSourceData.getLineHashes(), lineReaders.getLatestChange());
+      } finally {
+        linesIterator.close();
+        lineReaders.close();
       }
     }
   }
 
+  private static List<String> sourcesOf(DbFileSources.Data data) {
+    List<String> sources = new ArrayList<>(data.getLinesCount());
+    for (DbFileSources.Line line : data.getLinesList()) {
+      sources.add(line.getSource());
+    }
+    return sources;
+  }
+
+  /**
+   * Data of a file ready to be persisted: LZ4-encoded and hashed.
+   */
+  private static final class FileSourceData {
+    private final byte[] data;
+    private final String dataHash;
+    private final String srcHash;
+    private final String lineHashes;
+    @CheckForNull
+    private final Changeset latestChange;
+
+    private FileSourceData(byte[] data, String dataHash, String srcHash, String lineHashes, @Nullable Changeset latestChange) {
+      this.data = data;
+      this.dataHash = dataHash;
+      this.srcHash = srcHash;
+      this.lineHashes = lineHashes;
+      this.latestChange = latestChange;
+    }
+
+    private long size() {
+      return data.length + lineHashes.length();
+    }
+  }
+
   @CheckForNull
   private static String computeRevision(FileSourceDto previousDto, @Nullable Changeset latestChange) {
     if (latestChange == null) {
@@ -205,13 +394,13 @@ public class PersistFileSourcesStep implements ComputationStep {
     @CheckForNull
     private final ScmLineReader scmLineReader;
 
-    LineReaders(BatchReportReader reportReader, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Component component) {
+    LineReaders(BatchReportReader reportReader, Optional<ScmInfo> scmInfoOptional, Iterable<Duplication> duplications, Component component,
+      @Nullable DbFileSources.Data previousData) {
       int componentRef = component.getReportAttributes().getRef();
       CloseableIterator<BatchReport.Coverage> coverageIt = reportReader.readComponentCoverage(componentRef);
       closeables.add(coverageIt);
       readers.add(new CoverageLineReader(coverageIt));
 
-      Optional<ScmInfo> scmInfoOptional = scmInfoRepository.getScmInfo(component);
       if (scmInfoOptional.isPresent()) {
         this.scmLineReader = new ScmLineReader(scmInfoOptional.get());
         readers.add(scmLineReader);
@@ -219,16 +408,20 @@ public class PersistFileSourcesStep implements ComputationStep {
         this.scmLineReader = null;
       }
 
-      RangeOffsetConverter rangeOffsetConverter = new RangeOffsetConverter();
-      CloseableIterator<BatchReport.SyntaxHighlighting> highlightingIt = reportReader.readComponentSyntaxHighlighting(componentRef);
-      closeables.add(highlightingIt);
-      readers.add(new HighlightingLineReader(component, highlightingIt, rangeOffsetConverter));
+      if (previousData == null) {
+        RangeOffsetConverter rangeOffsetConverter = new RangeOffsetConverter();
+        CloseableIterator<BatchReport.SyntaxHighlighting> highlightingIt = reportReader.readComponentSyntaxHighlighting(componentRef);
+        closeables.add(highlightingIt);
+        readers.add(new HighlightingLineReader(component, highlightingIt, rangeOffsetConverter));
 
-      CloseableIterator<BatchReport.Symbol> symbolsIt = reportReader.readComponentSymbols(componentRef);
-      closeables.add(symbolsIt);
-      readers.add(new SymbolsLineReader(component, symbolsIt, rangeOffsetConverter));
+        CloseableIterator<BatchReport.Symbol> symbolsIt = reportReader.readComponentSymbols(componentRef);
+        closeables.add(symbolsIt);
+        readers.add(new SymbolsLineReader(component, symbolsIt, rangeOffsetConverter));
+      } else {
+        readers.add(new PreviousSourceLineReader(previousData.getLinesList().iterator()));
+      }
 
-      readers.add(new DuplicationLineReader(duplicationRepository.getDuplications(component)));
+      readers.add(new DuplicationLineReader(duplications));
     }
 
     List<LineReader> readers() {
@@ -250,6 +443,16 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<ComputationStepData> getReadData() {
+    return EnumSet.of(COMPONENT_TREE, REPORT, SOURCE_LINES, SCM_INFO, DUPLICATIONS);
+  }
+
+  @Override
+  public Set<ComputationStepData> getWrittenData() {
+    return EnumSet.of(FILE_SOURCES);
+  }
+
   @Override
   public String getDescription() {
     return "Persist sources";
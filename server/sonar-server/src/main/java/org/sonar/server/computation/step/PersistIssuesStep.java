@@ -43,14 +43,16 @@ public class PersistIssuesStep implements ComputationStep {
   private final UpdateConflictResolver conflictResolver;
   private final RuleRepository ruleRepository;
   private final IssueCache issueCache;
+  private final StepMetricsHolder stepMetricsHolder;
 
   public PersistIssuesStep(DbClient dbClient, System2 system2, UpdateConflictResolver conflictResolver,
-    RuleRepository ruleRepository, IssueCache issueCache) {
+    RuleRepository ruleRepository, IssueCache issueCache, StepMetricsHolder stepMetricsHolder) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.conflictResolver = conflictResolver;
     this.ruleRepository = ruleRepository;
     this.issueCache = issueCache;
+    this.stepMetricsHolder = stepMetricsHolder;
   }
 
   @Override
@@ -80,6 +82,7 @@ public class PersistIssuesStep implements ComputationStep {
           saved = true;
         }
         if (saved) {
+          stepMetricsHolder.addRowsWritten(1);
           insertChanges(changeMapper, issue);
         }
       }
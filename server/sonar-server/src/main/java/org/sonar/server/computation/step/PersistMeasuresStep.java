@@ -17,17 +17,20 @@
  * along with this program; if not, write to the Free Software Foundation,
  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
  */
-
 package org.sonar.server.computation.step;
 
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nonnull;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.MeasureDto;
@@ -42,15 +45,21 @@ import org.sonar.server.computation.measure.MeasureRepository;
 import org.sonar.server.computation.measure.MeasureToMeasureDto;
 import org.sonar.server.computation.metric.Metric;
 import org.sonar.server.computation.metric.MetricRepository;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
 
-import static com.google.common.collect.FluentIterable.from;
 import static org.sonar.api.measures.CoreMetrics.CLASS_COMPLEXITY_DISTRIBUTION_KEY;
 import static org.sonar.api.measures.CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION_KEY;
 import static org.sonar.api.measures.CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION_KEY;
 import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * Measures are buffered and inserted with multi-row statements (see {@link CeConfiguration#getMeasureInsertBatchSize()}).
+ * Metrics and best value predicates are resolved once per metric, not once per component.
+ */
 public class PersistMeasuresStep implements ComputationStep {
 
+  private static final Logger LOGGER = Loggers.get(PersistMeasuresStep.class);
+
   /**
    * List of metrics that should not be persisted on file measure (Waiting for SONAR-6688 to be implemented)
    */
@@ -64,14 +73,21 @@ public class PersistMeasuresStep implements ComputationStep {
   private final MeasureToMeasureDto measureToMeasureDto;
   private final TreeRootHolder treeRootHolder;
   private final MeasureRepository measureRepository;
+  private final StepMetricsHolder stepMetricsHolder;
+  private final CeConfiguration ceConfiguration;
+  private final System2 system2;
 
   public PersistMeasuresStep(DbClient dbClient, MetricRepository metricRepository, MeasureToMeasureDto measureToMeasureDto,
-    TreeRootHolder treeRootHolder, MeasureRepository measureRepository) {
+    TreeRootHolder treeRootHolder, MeasureRepository measureRepository, StepMetricsHolder stepMetricsHolder,
+    CeConfiguration ceConfiguration, System2 system2) {
     this.dbClient = dbClient;
     this.metricRepository = metricRepository;
     this.measureToMeasureDto = measureToMeasureDto;
     this.treeRootHolder = treeRootHolder;
     this.measureRepository = measureRepository;
+    this.stepMetricsHolder = stepMetricsHolder;
+    this.ceConfiguration = ceConfiguration;
+    this.system2 = system2;
   }
 
   @Override
@@ -81,21 +97,36 @@ public class PersistMeasuresStep implements ComputationStep {
 
   @Override
   public void execute() {
+    long start = system2.now();
     DbSession dbSession = dbClient.openSession(true);
     try {
-      new DepthTraversalTypeAwareCrawler(new MeasureVisitor(dbSession)).visit(treeRootHolder.getRoot());
+      MeasureVisitor visitor = new MeasureVisitor(dbSession, ceConfiguration.getMeasureInsertBatchSize());
+      new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      visitor.flush();
       dbSession.commit();
+      logThroughput(visitor.insertedRows, system2.now() - start);
     } finally {
       dbSession.close();
     }
   }
 
+  private static void logThroughput(long rows, long durationMs) {
+    long rowsPerSecond = durationMs > 0 ? (rows * 1000L / durationMs) : rows;
+    LOGGER.info("Measures persisted | rows={} | rowsPerSecond={}", rows, rowsPerSecond);
+  }
+
   private class MeasureVisitor extends TypeAwareVisitorAdapter {
     private final DbSession session;
+    private final int batchSize;
+    private final List<MeasureDto> buffer;
+    private final Map<String, MetricPersistence> persistenceByMetricKey = new HashMap<>();
+    private long insertedRows = 0L;
 
-    private MeasureVisitor(DbSession session) {
+    private MeasureVisitor(DbSession session, int batchSize) {
       super(CrawlerDepthLimit.LEAVES, PRE_ORDER);
       this.session = session;
+      this.batchSize = batchSize;
+      this.buffer = new ArrayList<>(batchSize);
     }
 
     @Override
@@ -105,30 +136,63 @@ public class PersistMeasuresStep implements ComputationStep {
     }
 
     private void persistMeasures(Component component, Multimap<String, Measure> batchReportMeasures) {
+      boolean isFile = component.getType() == Component.Type.FILE;
       for (Map.Entry<String, Collection<Measure>> measures : batchReportMeasures.asMap().entrySet()) {
-        String metricKey = measures.getKey();
-        if (NOT_TO_PERSIST_ON_FILE_METRIC_KEYS.contains(metricKey) && component.getType() == Component.Type.FILE) {
+        MetricPersistence persistence = persistenceOf(measures.getKey());
+        if (isFile && !persistence.persistedOnFiles) {
           continue;
         }
 
-        Metric metric = metricRepository.getByKey(metricKey);
-        Predicate<Measure> notBestValueOptimized = Predicates.not(BestValueOptimization.from(metric, component));
-        for (Measure measure : from(measures.getValue()).filter(NonEmptyMeasure.INSTANCE).filter(notBestValueOptimized)) {
-          MeasureDto measureDto = measureToMeasureDto.toMeasureDto(measure, metric, component);
-          dbClient.measureDao().insert(session, measureDto);
+        Predicate<Measure> bestValueOptimized = isFile ? persistence.bestValueOptimizedOnFiles : persistence.bestValueOptimizedOnOthers;
+        for (Measure measure : measures.getValue()) {
+          if (isNotEmpty(measure) && !bestValueOptimized.apply(measure)) {
+            buffer.add(measureToMeasureDto.toMeasureDto(measure, persistence.metric, component));
+            if (buffer.size() >= batchSize) {
+              flush();
+            }
+          }
         }
       }
     }
 
-  }
+    private MetricPersistence persistenceOf(String metricKey) {
+      MetricPersistence persistence = persistenceByMetricKey.get(metricKey);
+      if (persistence == null) {
+        persistence = new MetricPersistence(metricRepository.getByKey(metricKey));
+        persistenceByMetricKey.put(metricKey, persistence);
+      }
+      return persistence;
+    }
 
-  private enum NonEmptyMeasure implements Predicate<Measure> {
-    INSTANCE;
+    private void flush() {
+      if (!buffer.isEmpty()) {
+        dbClient.measureDao().insert(session, buffer);
+        stepMetricsHolder.addRowsWritten(buffer.size());
+        insertedRows += buffer.size();
+        buffer.clear();
+      }
+    }
+  }
 
-    @Override
-    public boolean apply(@Nonnull Measure input) {
-      return input.getValueType() != Measure.ValueType.NO_VALUE || input.hasVariations() || input.getData() != null;
+  /**
+   * What is computed once per metric to decide whether a measure must be persisted.
+   */
+  private static final class MetricPersistence {
+    private final Metric metric;
+    private final boolean persistedOnFiles;
+    private final Predicate<Measure> bestValueOptimizedOnFiles;
+    private final Predicate<Measure> bestValueOptimizedOnOthers;
+
+    private MetricPersistence(Metric metric) {
+      this.metric = metric;
+      this.persistedOnFiles = !NOT_TO_PERSIST_ON_FILE_METRIC_KEYS.contains(metric.getKey());
+      this.bestValueOptimizedOnFiles = BestValueOptimization.from(metric, Component.Type.FILE);
+      this.bestValueOptimizedOnOthers = BestValueOptimization.from(metric, Component.Type.DIRECTORY);
     }
   }
 
+  private static boolean isNotEmpty(@Nonnull Measure input) {
+    return input.getValueType() != Measure.ValueType.NO_VALUE || input.hasVariations() || input.getData() != null;
+  }
+
 }
@@ -19,7 +19,7 @@
  */
 package org.sonar.server.computation.step;
 
-import javax.annotation.concurrent.Immutable;
+import java.util.List;
 import org.sonar.server.computation.component.DbIdsRepository;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.queue.CeTaskResult;
@@ -29,11 +29,14 @@ public class PublishTaskResultStep implements ComputationStep {
   private final MutableTaskResultHolder taskResultHolder;
   private final TreeRootHolder treeRootHolder;
   private final DbIdsRepository dbIdsRepository;
+  private final StepMetricsHolder stepMetricsHolder;
 
-  public PublishTaskResultStep(MutableTaskResultHolder taskResultHolder, TreeRootHolder treeRootHolder, DbIdsRepository dbIdsRepository) {
+  public PublishTaskResultStep(MutableTaskResultHolder taskResultHolder, TreeRootHolder treeRootHolder, DbIdsRepository dbIdsRepository,
+    StepMetricsHolder stepMetricsHolder) {
     this.taskResultHolder = taskResultHolder;
     this.treeRootHolder = treeRootHolder;
     this.dbIdsRepository = dbIdsRepository;
+    this.stepMetricsHolder = stepMetricsHolder;
   }
 
   @Override
@@ -44,20 +47,29 @@ public class PublishTaskResultStep implements ComputationStep {
   @Override
   public void execute() {
     long snapshotId = dbIdsRepository.getSnapshotId(treeRootHolder.getRoot());
-    taskResultHolder.setResult(new CeTaskResultImpl(snapshotId));
+    taskResultHolder.setResult(new CeTaskResultImpl(snapshotId, stepMetricsHolder));
   }
 
-  @Immutable
   private static class CeTaskResultImpl implements CeTaskResult {
     private final long snapshotId;
+    private final StepMetricsHolder stepMetricsHolder;
 
-    public CeTaskResultImpl(long snapshotId) {
+    public CeTaskResultImpl(long snapshotId, StepMetricsHolder stepMetricsHolder) {
       this.snapshotId = snapshotId;
+      this.stepMetricsHolder = stepMetricsHolder;
     }
 
     @Override
     public Long getSnapshotId() {
       return snapshotId;
     }
+
+    /**
+     * Read when the task is completed, so that metrics of the steps executed after this one are included
+     */
+    @Override
+    public List<StepMetrics> getStepMetrics() {
+      return stepMetricsHolder.getStepMetrics();
+    }
   }
 }
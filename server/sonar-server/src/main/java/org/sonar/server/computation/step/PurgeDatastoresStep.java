@@ -20,6 +20,8 @@
 
 package org.sonar.server.computation.step;
 
+import org.sonar.api.config.Settings;
+import org.sonar.server.computation.dbcleaner.BackgroundProjectCleaner;
 import org.sonar.server.computation.dbcleaner.ProjectCleaner;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -39,14 +41,16 @@ import static org.sonar.server.computation.component.CrawlerDepthLimit.reportMax
 public class PurgeDatastoresStep implements ComputationStep {
 
   private final ProjectCleaner projectCleaner;
+  private final BackgroundProjectCleaner backgroundProjectCleaner;
   private final DbClient dbClient;
   private final DbIdsRepository dbIdsRepository;
   private final TreeRootHolder treeRootHolder;
   private final SettingsRepository settingsRepository;
 
-  public PurgeDatastoresStep(DbClient dbClient, ProjectCleaner projectCleaner, DbIdsRepository dbIdsRepository, TreeRootHolder treeRootHolder,
-    SettingsRepository settingsRepository) {
+  public PurgeDatastoresStep(DbClient dbClient, ProjectCleaner projectCleaner, BackgroundProjectCleaner backgroundProjectCleaner, DbIdsRepository dbIdsRepository,
+    TreeRootHolder treeRootHolder, SettingsRepository settingsRepository) {
     this.projectCleaner = projectCleaner;
+    this.backgroundProjectCleaner = backgroundProjectCleaner;
     this.dbClient = dbClient;
     this.dbIdsRepository = dbIdsRepository;
     this.treeRootHolder = treeRootHolder;
@@ -70,13 +74,17 @@ public class PurgeDatastoresStep implements ComputationStep {
   }
 
   private void execute(Component root) {
+    IdUuidPair idUuidPair = new IdUuidPair(dbIdsRepository.getComponentId(root), root.getUuid());
+    Settings settings = settingsRepository.getSettings(root);
     DbSession session = dbClient.openSession(true);
     try {
-      projectCleaner.purge(session, new IdUuidPair(dbIdsRepository.getComponentId(root), root.getUuid()), settingsRepository.getSettings(root));
+      // required by the next analysis of the project, so not delayed
+      projectCleaner.deleteAbortedBuildsAndDisableOrphans(session, idUuidPair, settings);
       session.commit();
     } finally {
       dbClient.closeSession(session);
     }
+    backgroundProjectCleaner.schedule(idUuidPair, settings);
   }
 
   @Override
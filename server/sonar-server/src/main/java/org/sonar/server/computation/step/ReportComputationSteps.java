@@ -83,13 +83,14 @@ public class ReportComputationSteps extends AbstractComputationSteps {
     // Persist data
     PersistComponentsStep.class,
     PersistSnapshotsStep.class,
+    // Steps which may be executed concurrently (see ConcurrentComputationStep) are kept next to each other
     PersistDevelopersStep.class,
-    PersistMeasuresStep.class,
-    PersistIssuesStep.class,
     PersistProjectLinksStep.class,
-    PersistEventsStep.class,
     PersistFileSourcesStep.class,
     PersistTestsStep.class,
+    PersistMeasuresStep.class,
+    PersistIssuesStep.class,
+    PersistEventsStep.class,
     PersistCrossProjectDuplicationIndexStep.class,
 
     // Switch snapshot and purge
@@ -100,6 +101,7 @@ public class ReportComputationSteps extends AbstractComputationSteps {
 
     // ES indexing is done after all db changes
     IndexIssuesStep.class,
+    ExportIssuesStep.class,
     IndexTestsStep.class,
 
     // notifications are sent at the end, so that webapp displays up-to-date information
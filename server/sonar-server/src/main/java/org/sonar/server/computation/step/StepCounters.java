@@ -0,0 +1,47 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a step. They are incremented concurrently by the thread executing the step and by the helper threads
+ * the step delegates work to (see {@link StepMetricsHolder#bind(StepCounters)}).
+ */
+public final class StepCounters {
+  private final AtomicLong reportBytesRead = new AtomicLong();
+  private final AtomicLong rowsWritten = new AtomicLong();
+
+  void addReportBytesRead(long bytes) {
+    reportBytesRead.addAndGet(bytes);
+  }
+
+  void addRowsWritten(long rows) {
+    rowsWritten.addAndGet(rows);
+  }
+
+  long getReportBytesRead() {
+    return reportBytesRead.get();
+  }
+
+  long getRowsWritten() {
+    return rowsWritten.get();
+  }
+}
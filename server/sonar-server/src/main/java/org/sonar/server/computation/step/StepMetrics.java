@@ -0,0 +1,132 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringWriter;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+import org.sonar.api.utils.text.JsonWriter;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Resources consumed by the execution of a {@link ComputationStep}. The metrics of the steps of a task are stored
+ * as a JSON array in {@link org.sonar.db.ce.CeActivityDto#getStepMetrics()}.
+ */
+@Immutable
+public final class StepMetrics {
+  private static final String STEP = "step";
+  private static final String DURATION_MS = "durationMs";
+  private static final String ALLOCATED_BYTES = "allocatedBytes";
+  private static final String REPORT_BYTES_READ = "reportBytesRead";
+  private static final String ROWS_WRITTEN = "rowsWritten";
+
+  private final String step;
+  private final long durationMs;
+  private final long allocatedBytes;
+  private final long reportBytesRead;
+  private final long rowsWritten;
+
+  public StepMetrics(String step, long durationMs, long allocatedBytes, long reportBytesRead, long rowsWritten) {
+    this.step = requireNonNull(step);
+    this.durationMs = durationMs;
+    this.allocatedBytes = allocatedBytes;
+    this.reportBytesRead = reportBytesRead;
+    this.rowsWritten = rowsWritten;
+  }
+
+  /**
+   * Description of the step, as returned by {@link ComputationStep#getDescription()}
+   */
+  public String getStep() {
+    return step;
+  }
+
+  public long getDurationMs() {
+    return durationMs;
+  }
+
+  /**
+   * Bytes allocated on heap by the thread executing the step. Zero if the JVM does not support
+   * measurement of thread allocation.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  public long getReportBytesRead() {
+    return reportBytesRead;
+  }
+
+  public long getRowsWritten() {
+    return rowsWritten;
+  }
+
+  public static String toJson(List<StepMetrics> metrics) {
+    StringWriter json = new StringWriter();
+    JsonWriter writer = JsonWriter.of(json);
+    writer.beginArray();
+    for (StepMetrics metric : metrics) {
+      writer.beginObject()
+        .prop(STEP, metric.step)
+        .prop(DURATION_MS, metric.durationMs)
+        .prop(ALLOCATED_BYTES, metric.allocatedBytes)
+        .prop(REPORT_BYTES_READ, metric.reportBytesRead)
+        .prop(ROWS_WRITTEN, metric.rowsWritten)
+        .endObject();
+    }
+    writer.endArray().close();
+    return json.toString();
+  }
+
+  public static List<StepMetrics> fromJson(String json) {
+    ImmutableList.Builder<StepMetrics> builder = ImmutableList.builder();
+    for (JsonElement element : new JsonParser().parse(json).getAsJsonArray()) {
+      JsonObject object = element.getAsJsonObject();
+      builder.add(new StepMetrics(
+        object.get(STEP).getAsString(),
+        longOf(object, DURATION_MS),
+        longOf(object, ALLOCATED_BYTES),
+        longOf(object, REPORT_BYTES_READ),
+        longOf(object, ROWS_WRITTEN)));
+    }
+    return builder.build();
+  }
+
+  private static long longOf(JsonObject object, String property) {
+    JsonElement element = object.get(property);
+    return element == null ? 0L : element.getAsLong();
+  }
+
+  @Override
+  public String toString() {
+    return "StepMetrics{" +
+      "step='" + step + '\'' +
+      ", durationMs=" + durationMs +
+      ", allocatedBytes=" + allocatedBytes +
+      ", reportBytesRead=" + reportBytesRead +
+      ", rowsWritten=" + rowsWritten +
+      '}';
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Collects the metrics of the {@link ComputationStep}s executed for the current task. Counters are attributed
+ * to the step being executed by the calling thread, or to the step a helper thread is bound to
+ * (see {@link #bind(StepCounters)}).
+ */
+public interface StepMetricsHolder {
+
+  /**
+   * Metrics of the steps executed so far, in order of completion
+   */
+  List<StepMetrics> getStepMetrics();
+
+  /**
+   * Adds to the count of rows written to database by the step being executed by the current thread. Does nothing
+   * if the current thread is not executing a step.
+   */
+  void addRowsWritten(long rows);
+
+  /**
+   * Adds to the count of bytes read from the analysis report by the step being executed by the current thread.
+   * Does nothing if the current thread is not executing a step.
+   */
+  void addReportBytesRead(long bytes);
+
+  /**
+   * Counters of the step being executed by the current thread, or null if the current thread is not executing a step.
+   * To be passed to the helper threads of the step.
+   */
+  @CheckForNull
+  StepCounters getCurrentCounters();
+
+  /**
+   * Attributes to the given counters, until {@link #unbind()} is called, the counts added by the current thread.
+   * Intended to be called by helper threads of a step with the result of {@link #getCurrentCounters()} called by
+   * the thread executing the step. Does nothing if {@code counters} is null.
+   */
+  void bind(@Nullable StepCounters counters);
+
+  /**
+   * Counts added by the current thread are not attributed anymore to the counters it was bound to
+   */
+  void unbind();
+}
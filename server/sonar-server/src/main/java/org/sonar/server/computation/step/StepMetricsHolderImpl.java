@@ -0,0 +1,89 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkState;
+
+public class StepMetricsHolderImpl implements MutableStepMetricsHolder {
+  private final ThreadLocal<StepCounters> currentCounters = new ThreadLocal<>();
+  private final List<StepMetrics> metrics = new ArrayList<>();
+
+  @Override
+  public synchronized List<StepMetrics> getStepMetrics() {
+    return ImmutableList.copyOf(metrics);
+  }
+
+  @Override
+  public void addRowsWritten(long rows) {
+    StepCounters counters = currentCounters.get();
+    if (counters != null) {
+      counters.addRowsWritten(rows);
+    }
+  }
+
+  @Override
+  public void addReportBytesRead(long bytes) {
+    StepCounters counters = currentCounters.get();
+    if (counters != null) {
+      counters.addReportBytesRead(bytes);
+    }
+  }
+
+  @Override
+  @CheckForNull
+  public StepCounters getCurrentCounters() {
+    return currentCounters.get();
+  }
+
+  @Override
+  public void bind(@Nullable StepCounters counters) {
+    if (counters != null) {
+      currentCounters.set(counters);
+    }
+  }
+
+  @Override
+  public void unbind() {
+    currentCounters.remove();
+  }
+
+  @Override
+  public void startStep() {
+    currentCounters.set(new StepCounters());
+  }
+
+  @Override
+  public StepMetrics stopStep(String step, long durationMs, long allocatedBytes) {
+    StepCounters counters = currentCounters.get();
+    checkState(counters != null, "No step has been started by the current thread");
+    currentCounters.remove();
+    StepMetrics stepMetrics = new StepMetrics(step, durationMs, allocatedBytes, counters.getReportBytesRead(), counters.getRowsWritten());
+    synchronized (this) {
+      metrics.add(stepMetrics);
+    }
+    return stepMetrics;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.taskprocessor;
+
+public interface CeConfiguration {
+
+  /**
+   * The number of workers which process tasks of the Compute Engine queue concurrently. Tasks of the same component
+   * are never processed concurrently, whatever the number of workers.
+   *
+   * @return a value {@literal >=} 1
+   */
+  int getWorkerCount();
+
+  /**
+   * The delay, in seconds, a worker waits before polling the queue again when it found no task to process. The wait
+   * is interrupted as soon as a new task is submitted to the queue.
+   *
+   * @return a value {@literal >} 0
+   */
+  long getQueuePollingDelay();
+
+  /**
+   * The number of threads a worker uses to execute concurrently the computation steps of a task which support it
+   * (see {@link org.sonar.server.computation.step.ConcurrentComputationStep}). Value 1 means steps are executed
+   * sequentially.
+   *
+   * @return a value {@literal >=} 1
+   */
+  int getStepWorkerCount();
+
+  /**
+   * The number of threads which load concurrently, in advance, the data required to track the issues of
+   * files (see {@link org.sonar.server.computation.issue.IntegrateIssuesVisitor}). Value 1 means that data
+   * are loaded sequentially, when the file is visited.
+   *
+   * @return a value {@literal >=} 1
+   */
+  int getIssueTrackingWorkerCount();
+
+  /**
+   * The number of threads which compute concurrently the data of the sources of files persisted by
+   * {@link org.sonar.server.computation.step.PersistFileSourcesStep}, while the data of the previous files is being
+   * inserted in db.
+   *
+   * @return a value {@literal >=} 1
+   */
+  int getFileSourceWorkerCount();
+
+  /**
+   * The number of measures which are buffered before being inserted in db by
+   * {@link org.sonar.server.computation.step.PersistMeasuresStep}. Measures are inserted with multi-row statements
+   * of at most {@link org.sonar.db.measure.MeasureDao#MAX_ROWS_PER_INSERT} rows.
+   *
+   * @return a value {@literal >=} 1
+   */
+  int getMeasureInsertBatchSize();
+
+  /**
+   * The number of threads which purge concurrently, in background, the history of the projects which have just been
+   * analyzed (see {@link org.sonar.server.computation.dbcleaner.BackgroundProjectCleaner}).
+   *
+   * @return a value {@literal >=} 1
+   */
+  int getPurgeWorkerCount();
+
+  /**
+   * The maximum percentage of its time a background purge spends in db. The purge pauses between its statements
+   * to not exceed this percentage, so that it does not slow down the analyses. Value 100 means no pause.
+   *
+   * @return a value between 1 and 100
+   */
+  int getPurgeMaxDbUsage();
+
+}
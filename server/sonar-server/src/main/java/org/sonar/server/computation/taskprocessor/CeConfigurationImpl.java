@@ -0,0 +1,127 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.taskprocessor;
+
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.MessageException;
+
+import static java.lang.String.format;
+
+public class CeConfigurationImpl implements CeConfiguration {
+  public static final String WORKER_COUNT_PROPERTY = "sonar.ce.workerCount";
+  public static final String QUEUE_POLLING_DELAY_PROPERTY = "sonar.ce.queuePollingDelay";
+  public static final String STEP_WORKER_COUNT_PROPERTY = "sonar.ce.stepWorkerCount";
+  public static final String ISSUE_TRACKING_WORKER_COUNT_PROPERTY = "sonar.ce.issueTrackingWorkerCount";
+  public static final String FILE_SOURCE_WORKER_COUNT_PROPERTY = "sonar.ce.fileSourceWorkerCount";
+  public static final String MEASURE_INSERT_BATCH_SIZE_PROPERTY = "sonar.ce.measureInsertBatchSize";
+  public static final String PURGE_WORKER_COUNT_PROPERTY = "sonar.ce.purgeWorkerCount";
+  public static final String PURGE_MAX_DB_USAGE_PROPERTY = "sonar.ce.purgeMaxDbUsage";
+
+  private static final int DEFAULT_WORKER_COUNT = 1;
+  // 2 seconds
+  private static final long DEFAULT_QUEUE_POLLING_DELAY = 2L;
+  private static final int DEFAULT_STEP_WORKER_COUNT = 1;
+  private static final int DEFAULT_ISSUE_TRACKING_WORKER_COUNT = 1;
+  private static final int DEFAULT_FILE_SOURCE_WORKER_COUNT = 1;
+  private static final int DEFAULT_MEASURE_INSERT_BATCH_SIZE = 1000;
+  private static final int DEFAULT_PURGE_WORKER_COUNT = 2;
+  // percent
+  private static final int DEFAULT_PURGE_MAX_DB_USAGE = 50;
+  private static final int MAX_PERCENT = 100;
+
+  private final int workerCount;
+  private final long queuePollingDelay;
+  private final int stepWorkerCount;
+  private final int issueTrackingWorkerCount;
+  private final int fileSourceWorkerCount;
+  private final int measureInsertBatchSize;
+  private final int purgeWorkerCount;
+  private final int purgeMaxDbUsage;
+
+  public CeConfigurationImpl(Settings settings) {
+    this.workerCount = (int) readStrictlyPositive(settings, WORKER_COUNT_PROPERTY, DEFAULT_WORKER_COUNT);
+    this.queuePollingDelay = readStrictlyPositive(settings, QUEUE_POLLING_DELAY_PROPERTY, DEFAULT_QUEUE_POLLING_DELAY);
+    this.stepWorkerCount = (int) readStrictlyPositive(settings, STEP_WORKER_COUNT_PROPERTY, DEFAULT_STEP_WORKER_COUNT);
+    this.issueTrackingWorkerCount = (int) readStrictlyPositive(settings, ISSUE_TRACKING_WORKER_COUNT_PROPERTY, DEFAULT_ISSUE_TRACKING_WORKER_COUNT);
+    this.fileSourceWorkerCount = (int) readStrictlyPositive(settings, FILE_SOURCE_WORKER_COUNT_PROPERTY, DEFAULT_FILE_SOURCE_WORKER_COUNT);
+    this.measureInsertBatchSize = (int) readStrictlyPositive(settings, MEASURE_INSERT_BATCH_SIZE_PROPERTY, DEFAULT_MEASURE_INSERT_BATCH_SIZE);
+    this.purgeWorkerCount = (int) readStrictlyPositive(settings, PURGE_WORKER_COUNT_PROPERTY, DEFAULT_PURGE_WORKER_COUNT);
+    this.purgeMaxDbUsage = (int) readPercent(settings, PURGE_MAX_DB_USAGE_PROPERTY, DEFAULT_PURGE_MAX_DB_USAGE);
+  }
+
+  private static long readStrictlyPositive(Settings settings, String key, long defaultValue) {
+    if (!settings.hasKey(key)) {
+      return defaultValue;
+    }
+    long value = settings.getLong(key);
+    if (value < 1) {
+      throw MessageException.of(format("Value of property %s must be a strictly positive integer (got %s)", key, value));
+    }
+    return value;
+  }
+
+  private static long readPercent(Settings settings, String key, long defaultValue) {
+    long value = readStrictlyPositive(settings, key, defaultValue);
+    if (value > MAX_PERCENT) {
+      throw MessageException.of(format("Value of property %s must be a percentage between 1 and 100 (got %s)", key, value));
+    }
+    return value;
+  }
+
+  @Override
+  public int getWorkerCount() {
+    return workerCount;
+  }
+
+  @Override
+  public long getQueuePollingDelay() {
+    return queuePollingDelay;
+  }
+
+  @Override
+  public int getStepWorkerCount() {
+    return stepWorkerCount;
+  }
+
+  @Override
+  public int getIssueTrackingWorkerCount() {
+    return issueTrackingWorkerCount;
+  }
+
+  @Override
+  public int getFileSourceWorkerCount() {
+    return fileSourceWorkerCount;
+  }
+
+  @Override
+  public int getMeasureInsertBatchSize() {
+    return measureInsertBatchSize;
+  }
+
+  @Override
+  public int getPurgeWorkerCount() {
+    return purgeWorkerCount;
+  }
+
+  @Override
+  public int getPurgeMaxDbUsage() {
+    return purgeMaxDbUsage;
+  }
+}
@@ -33,10 +33,10 @@ public class CeProcessingSchedulerExecutorServiceImpl extends AbstractStoppableE
   implements CeProcessingSchedulerExecutorService {
   private static final String THREAD_NAME_PREFIX = "ce-processor-";
 
-  public CeProcessingSchedulerExecutorServiceImpl() {
+  public CeProcessingSchedulerExecutorServiceImpl(CeConfiguration ceConfiguration) {
     super(
       MoreExecutors.listeningDecorator(
-        Executors.newSingleThreadScheduledExecutor(
+        Executors.newScheduledThreadPool(ceConfiguration.getWorkerCount(),
           new ThreadFactoryBuilder()
             .setNameFormat(THREAD_NAME_PREFIX + "%d")
             .setPriority(Thread.MIN_PRIORITY)
@@ -22,7 +22,9 @@ package org.sonar.server.computation.taskprocessor;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
@@ -30,27 +32,38 @@ import javax.annotation.Nullable;
 import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.computation.queue.CeQueueSubmitNotifier;
+import org.sonar.server.computation.queue.CeTask;
 
-import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
-public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
+public class CeProcessingSchedulerImpl implements CeProcessingScheduler, CeQueueSubmitNotifier.Listener, Startable {
   private static final Logger LOG = Loggers.get(CeProcessingSchedulerImpl.class);
 
   private final CeProcessingSchedulerExecutorService executorService;
   private final CeWorkerCallable workerRunnable;
+  private final CeQueueSubmitNotifier submitNotifier;
 
   private final long delayBetweenTasks;
   private final TimeUnit timeUnit;
-  // warning: using a single ChainingCallback object for chaining works and is thread safe only because we use a single Thread in CeProcessingSchedulerExecutorService
-  private final ChainingCallback chainingCallback = new ChainingCallback();
+  // one ChainingCallback per worker: each object chains the futures of a single worker and is therefore never used
+  // concurrently by the executor threads. Only wake-ups, triggered by the submitting thread, require synchronization.
+  private final List<ChainingCallback> chainingCallbacks;
 
-  public CeProcessingSchedulerImpl(CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
+  public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration, CeProcessingSchedulerExecutorService processingExecutorService,
+    CeWorkerCallable workerRunnable, CeQueueSubmitNotifier submitNotifier) {
     this.executorService = processingExecutorService;
     this.workerRunnable = workerRunnable;
+    this.submitNotifier = submitNotifier;
 
-    this.delayBetweenTasks = 2;
+    this.delayBetweenTasks = ceConfiguration.getQueuePollingDelay();
     this.timeUnit = SECONDS;
+
+    int workerCount = ceConfiguration.getWorkerCount();
+    this.chainingCallbacks = new ArrayList<>(workerCount);
+    for (int i = 0; i < workerCount; i++) {
+      chainingCallbacks.add(new ChainingCallback());
+    }
   }
 
   @Override
@@ -60,20 +73,38 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   @Override
   public void startScheduling() {
-    ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      chainingCallback.chainWithDelay();
+    }
+    submitNotifier.addListener(this);
+  }
 
-    addCallback(future, chainingCallback, executorService);
+  /**
+   * Wakes up a single worker waiting for its next polling of the queue, if any. Other idle workers will keep waiting
+   * as only one of them can process the submitted task.
+   */
+  @Override
+  public void onSubmitted(CeTask task) {
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      if (chainingCallback.wakeUp()) {
+        return;
+      }
+    }
   }
 
   @Override
   public void stop() {
-    this.chainingCallback.stop();
+    submitNotifier.removeListener(this);
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      chainingCallback.stop();
+    }
   }
 
   private class ChainingCallback implements FutureCallback<Boolean> {
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
     @CheckForNull
     private ListenableFuture<Boolean> workerFuture;
+    private boolean delayed = false;
 
     @Override
     public void onSuccess(@Nullable Boolean result) {
@@ -86,6 +117,10 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
     @Override
     public void onFailure(Throwable t) {
+      if (t instanceof CancellationException) {
+        // future has been cancelled either by stop() or by wakeUp(), which takes care of chaining
+        return;
+      }
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
@@ -93,20 +128,33 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       }
     }
 
-    private void chainWithoutDelay() {
+    private synchronized void chainWithoutDelay() {
       if (keepRunning()) {
         workerFuture = executorService.submit(workerRunnable);
+        delayed = false;
       }
       addCallback();
     }
 
-    private void chainWithDelay() {
+    private synchronized void chainWithDelay() {
       if (keepRunning()) {
         workerFuture = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
+        delayed = true;
       }
       addCallback();
     }
 
+    /**
+     * @return {@code true} if this worker was waiting for its next polling and has been asked to poll immediately
+     */
+    private synchronized boolean wakeUp() {
+      if (!keepRunning() || !delayed || workerFuture == null || !workerFuture.cancel(false)) {
+        return false;
+      }
+      chainWithoutDelay();
+      return true;
+    }
+
     private void addCallback() {
       if (workerFuture != null && keepRunning()) {
         Futures.addCallback(workerFuture, this, executorService);
@@ -117,7 +165,7 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       return keepRunning.get();
     }
 
-    public void stop() {
+    public synchronized void stop() {
       this.keepRunning.set(false);
       if (workerFuture != null) {
         workerFuture.cancel(false);
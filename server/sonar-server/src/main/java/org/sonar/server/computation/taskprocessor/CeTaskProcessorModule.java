@@ -25,6 +25,7 @@ public class CeTaskProcessorModule extends Module {
   @Override
   protected void configureModule() {
     add(
+      CeConfigurationImpl.class,
       CeTaskProcessorRepositoryImpl.class,
       CeWorkerCallableImpl.class,
       CeProcessingSchedulerExecutorServiceImpl.class,
@@ -57,6 +57,7 @@ public class TaskAction implements CeWsAction {
   public void define(WebService.NewController controller) {
     WebService.NewAction action = controller.createAction(ACTION)
       .setDescription("Give Compute Engine task details such as type, status, duration and associated component.<br />" +
+        "Since 5.4, the duration, the allocated heap, the bytes read from the report and the rows written by each step of the task are returned when available.<br />" +
         "Requires 'Administer System' or 'Execute Analysis' permission.")
       .setResponseExample(getClass().getResource("task-example.json"))
       .setSince("5.2")
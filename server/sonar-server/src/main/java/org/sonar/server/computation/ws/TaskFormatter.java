@@ -36,6 +36,7 @@ import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.server.computation.log.CeLogging;
 import org.sonar.server.computation.log.LogFileRef;
+import org.sonar.server.computation.step.StepMetrics;
 import org.sonarqube.ws.WsCe;
 
 /**
@@ -131,9 +132,23 @@ public class TaskFormatter {
     if (dto.getExecutionTimeMs() != null) {
       builder.setExecutionTimeMs(dto.getExecutionTimeMs());
     }
+    if (dto.getStepMetrics() != null) {
+      buildSteps(builder, StepMetrics.fromJson(dto.getStepMetrics()));
+    }
     return builder.build();
   }
 
+  private static void buildSteps(WsCe.Task.Builder builder, List<StepMetrics> steps) {
+    for (StepMetrics step : steps) {
+      builder.addSteps(WsCe.TaskStep.newBuilder()
+        .setName(step.getStep())
+        .setDurationMs(step.getDurationMs())
+        .setAllocatedBytes(step.getAllocatedBytes())
+        .setReportBytesRead(step.getReportBytesRead())
+        .setRowsWritten(step.getRowsWritten()));
+    }
+  }
+
   private static void buildComponent(WsCe.Task.Builder builder, @Nullable ComponentDto componentDto) {
     if (componentDto != null) {
       builder.setComponentKey(componentDto.getKey());
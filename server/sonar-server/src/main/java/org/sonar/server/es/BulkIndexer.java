@@ -19,8 +19,12 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -35,16 +39,27 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.ProgressLogger;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.CheckForNull;
 
 import static java.lang.String.format;
 
@@ -54,6 +69,9 @@ import static java.lang.String.format;
  *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
+ *   <li>bulk requests are executed asynchronously. The number of concurrent requests is adjusted from the latency
+ *   of the cluster, see {@link BulkRequestLimiter}. Requests rejected by the cluster are retried.</li>
+ *   <li>documents can be converted to requests by a pool of threads, see {@link #addAll(Iterator, Function)}</li>
  * </ul>
  */
 public class BulkIndexer implements Startable {
@@ -62,6 +80,8 @@ public class BulkIndexer implements Startable {
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  private static final int CONVERSION_CHUNK_SIZE = 100;
+  private static final int MAX_RETRY_ROUNDS = 5;
 
   private final EsClient client;
   private final String indexName;
@@ -71,9 +91,13 @@ public class BulkIndexer implements Startable {
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
-  private final int concurrentRequests;
-  private final Semaphore semaphore;
+  private final AtomicLong bulkRequests = new AtomicLong(0L);
+  private final AtomicLong rejections = new AtomicLong(0L);
+  private final Queue<ActionRequest> rejectedRequests = new ConcurrentLinkedQueue<>();
+  private final int converterThreads;
+  private final BulkRequestLimiter limiter;
   private final ProgressLogger progress;
+  private long startedAt;
 
   public BulkIndexer(EsClient client, String indexName) {
     this.client = client;
@@ -81,8 +105,9 @@ public class BulkIndexer implements Startable {
     this.progress = new ProgressLogger(format("Progress[BulkIndexer[%s]]", indexName), counter, LOGGER)
       .setPluralLabel("requests");
 
-    this.concurrentRequests = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
-    this.semaphore = new Semaphore(concurrentRequests);
+    int processors = Runtime.getRuntime().availableProcessors();
+    this.converterThreads = Math.max(1, processors - 1);
+    this.limiter = new BulkRequestLimiter(Math.max(1, processors - 1), 2 * processors);
   }
 
   /**
@@ -133,16 +158,100 @@ public class BulkIndexer implements Startable {
     }
     bulkRequest = client.prepareBulk().setRefresh(false);
     counter.set(0L);
+    bulkRequests.set(0L);
+    rejections.set(0L);
+    startedAt = System.currentTimeMillis();
     progress.start();
   }
 
+  /**
+   * Can be called concurrently by different threads
+   */
   public void add(ActionRequest request) {
+    BulkRequestBuilder fullRequest = addToCurrentRequest(request);
+    if (fullRequest != null) {
+      // permit of limiter is acquired without holding the lock, so that the other threads can keep on adding requests
+      executeBulk(fullRequest);
+    }
+  }
+
+  /**
+   * @return the current bulk request if it's full, in which case it's replaced by a new one, otherwise {@code null}
+   */
+  @CheckForNull
+  private synchronized BulkRequestBuilder addToCurrentRequest(ActionRequest request) {
     bulkRequest.request().add(request);
     if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
-      executeBulk();
+      BulkRequestBuilder fullRequest = swapRequest();
+      addRejectedRequests();
+      return fullRequest;
+    }
+    return null;
+  }
+
+  /**
+   * Adds the requests converted from the given documents. Documents are read by the calling thread while
+   * they are converted to requests by a pool of threads, conversion to JSON being generally more expensive
+   * than reading database rows. The number of documents waiting for conversion is bounded.
+   * <p/>
+   * The order of requests is not guaranteed, so the documents must not relate to the same Elasticsearch documents.
+   * This method blocks until all the documents are converted, but requests can still be in progress.
+   * <p/>
+   * Documents are converted by the calling thread when they fit into a single chunk, which is generally the case
+   * of incremental indexing, so that no threads are started for a handful of documents.
+   */
+  public <D> void addAll(Iterator<D> docs, final Function<D, ? extends ActionRequest> converter) {
+    List<D> firstChunk = nextChunk(docs);
+    if (!docs.hasNext()) {
+      for (D doc : firstChunk) {
+        add(converter.apply(doc));
+      }
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(converterThreads,
+      new ThreadFactoryBuilder().setNameFormat("BulkIndexer[" + indexName + "]-%d").setDaemon(true).build());
+    int maxPendingChunks = 2 * converterThreads;
+    final Semaphore pendingChunks = new Semaphore(maxPendingChunks);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    try {
+      List<D> nextChunk = firstChunk;
+      while (nextChunk != null && failure.get() == null) {
+        final List<D> chunk = nextChunk;
+        nextChunk = docs.hasNext() ? nextChunk(docs) : null;
+        pendingChunks.acquireUninterruptibly();
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              for (D doc : chunk) {
+                add(converter.apply(doc));
+              }
+            } catch (Throwable e) {
+              failure.compareAndSet(null, e);
+            } finally {
+              pendingChunks.release();
+            }
+          }
+        });
+      }
+      pendingChunks.acquireUninterruptibly(maxPendingChunks);
+    } finally {
+      executor.shutdownNow();
+    }
+    if (failure.get() != null) {
+      throw Throwables.propagate(failure.get());
     }
   }
 
+  private static <D> List<D> nextChunk(Iterator<D> docs) {
+    List<D> chunk = new ArrayList<>(CONVERSION_CHUNK_SIZE);
+    while (docs.hasNext() && chunk.size() < CONVERSION_CHUNK_SIZE) {
+      chunk.add(docs.next());
+    }
+    return chunk;
+  }
+
   public void addDeletion(SearchRequestBuilder searchRequest) {
     searchRequest
       .setScroll(TimeValue.timeValueMinutes(5))
@@ -184,17 +293,30 @@ public class BulkIndexer implements Startable {
 
   @Override
   public void stop() {
-    if (bulkRequest.numberOfActions() > 0) {
-      executeBulk();
-    }
-    try {
-      if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
-        semaphore.release(concurrentRequests);
+    for (int round = 0; round <= MAX_RETRY_ROUNDS; round++) {
+      BulkRequestBuilder lastRequest = null;
+      synchronized (this) {
+        if (round > 0) {
+          addRejectedRequests();
+        }
+        if (bulkRequest.numberOfActions() > 0) {
+          lastRequest = swapRequest();
+        }
+      }
+      if (lastRequest != null) {
+        executeBulk(lastRequest);
+      }
+      awaitCompletion();
+      if (rejectedRequests.isEmpty()) {
+        break;
       }
-    } catch (InterruptedException e) {
-      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
+    }
+    if (!rejectedRequests.isEmpty()) {
+      LOGGER.error("index [{}], {} requests rejected by Elasticsearch are not executed", indexName, rejectedRequests.size());
+      rejectedRequests.clear();
     }
     progress.stop();
+    logStatistics();
 
     if (!disableRefresh) {
       client.prepareRefresh(indexName).get();
@@ -210,21 +332,87 @@ public class BulkIndexer implements Startable {
     bulkRequest = null;
   }
 
+  private void awaitCompletion() {
+    try {
+      limiter.awaitCompletion(10, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
+    }
+  }
+
+  private void logStatistics() {
+    long durationMs = Math.max(1L, System.currentTimeMillis() - startedAt);
+    LOGGER.debug("index [{}], {} documents indexed in {} ms ({} docs/s), {} bulk requests, {} rejections, up to {} concurrent requests",
+      indexName, counter.get(), durationMs, counter.get() * 1000L / durationMs, bulkRequests.get(), rejections.get(), limiter.highestLimit());
+  }
+
+  /**
+   * Number of documents successfully indexed since {@link #start()}
+   */
+  public long getIndexedDocuments() {
+    return counter.get();
+  }
+
+  /**
+   * Number of bulk requests sent to Elasticsearch since {@link #start()}
+   */
+  public long getBulkRequests() {
+    return bulkRequests.get();
+  }
+
+  /**
+   * Number of requests, or items of requests, rejected by Elasticsearch then retried since {@link #start()}
+   */
+  public long getRejections() {
+    return rejections.get();
+  }
+
+  /**
+   * Current maximum number of concurrent bulk requests
+   */
+  public int getConcurrentRequestsLimit() {
+    return limiter.limit();
+  }
+
   private void updateSettings(Map<String, Object> settings) {
     UpdateSettingsRequestBuilder req = client.nativeClient().admin().indices().prepareUpdateSettings(indexName);
     req.setSettings(settings);
     req.get();
   }
 
-  private void executeBulk() {
-    final BulkRequestBuilder req = this.bulkRequest;
+  /**
+   * Must be called while holding the lock
+   */
+  private BulkRequestBuilder swapRequest() {
+    BulkRequestBuilder req = this.bulkRequest;
     this.bulkRequest = client.prepareBulk().setRefresh(false);
-    semaphore.acquireUninterruptibly();
+    return req;
+  }
+
+  /**
+   * Blocks while the limit of concurrent requests is reached, so must not be called while holding the lock
+   */
+  private void executeBulk(BulkRequestBuilder req) {
+    limiter.acquire();
+    bulkRequests.incrementAndGet();
     req.execute(new BulkResponseActionListener(req));
   }
 
+  /**
+   * Requests are not re-added by {@link BulkResponseActionListener} as it would block Elasticsearch threads
+   * when the limit of concurrent requests is reached
+   */
+  private void addRejectedRequests() {
+    ActionRequest request = rejectedRequests.poll();
+    while (request != null) {
+      bulkRequest.request().add(request);
+      request = rejectedRequests.poll();
+    }
+  }
+
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
     private final BulkRequestBuilder req;
+    private final long startedAt = System.currentTimeMillis();
 
     public BulkResponseActionListener(BulkRequestBuilder req) {
       this.req = req;
@@ -232,20 +420,33 @@ public class BulkIndexer implements Startable {
 
     @Override
     public void onResponse(BulkResponse response) {
-      semaphore.release();
-      counter.addAndGet(response.getItems().length);
-
+      List<ActionRequest> requests = req.request().requests();
+      int rejected = 0;
       for (BulkItemResponse item : response.getItems()) {
         if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+            rejectedRequests.add(requests.get(item.getItemId()));
+            rejected++;
+          } else {
+            LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          }
         }
       }
+      rejections.addAndGet(rejected);
+      counter.addAndGet(response.getItems().length - rejected);
+      limiter.release(System.currentTimeMillis() - startedAt, rejected > 0);
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      if (ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException) {
+        rejectedRequests.addAll(req.request().requests());
+        rejections.addAndGet(req.request().numberOfActions());
+        limiter.release(System.currentTimeMillis() - startedAt, true);
+      } else {
+        LOGGER.error("Fail to execute bulk index request: " + req, e);
+        limiter.release(System.currentTimeMillis() - startedAt, false);
+      }
     }
   }
 }
@@ -0,0 +1,128 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of bulk requests being executed concurrently by {@link BulkIndexer}. The limit is adjusted
+ * from the responses of Elasticsearch :
+ * <ul>
+ *   <li>it is halved when a request is rejected, which means that the bulk queue of the cluster is full</li>
+ *   <li>it is decreased when the latency of requests becomes much higher than the best observed latency</li>
+ *   <li>otherwise it is increased by one once a "round" of requests (as many as the current limit) is completed</li>
+ * </ul>
+ */
+class BulkRequestLimiter {
+
+  /**
+   * Latency is considered as degraded when higher than this factor of the best observed latency
+   */
+  private static final int DEGRADED_LATENCY_FACTOR = 3;
+
+  private final int maxLimit;
+  private int limit;
+  private int inFlight = 0;
+  private int completedInRound = 0;
+  private long bestLatencyMs = Long.MAX_VALUE;
+  private int highestLimit;
+
+  BulkRequestLimiter(int initialLimit, int maxLimit) {
+    Preconditions.checkArgument(initialLimit > 0 && initialLimit <= maxLimit, "Invalid limits of concurrent requests: %s, %s", initialLimit, maxLimit);
+    this.limit = initialLimit;
+    this.maxLimit = maxLimit;
+    this.highestLimit = initialLimit;
+  }
+
+  /**
+   * Blocks until a new request can be executed
+   */
+  synchronized void acquire() {
+    boolean interrupted = false;
+    while (inFlight >= limit) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    inFlight++;
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Must be called once a request acquired through {@link #acquire()} is completed.
+   *
+   * @param rejected whether the request, or some of its items, have been rejected by the cluster
+   */
+  synchronized void release(long latencyMs, boolean rejected) {
+    inFlight--;
+    if (rejected) {
+      limit = Math.max(1, limit / 2);
+      completedInRound = 0;
+    } else {
+      bestLatencyMs = Math.min(bestLatencyMs, latencyMs);
+      if (latencyMs > DEGRADED_LATENCY_FACTOR * bestLatencyMs) {
+        limit = Math.max(1, limit - 1);
+        completedInRound = 0;
+      } else {
+        completedInRound++;
+        if (completedInRound >= limit) {
+          limit = Math.min(maxLimit, limit + 1);
+          highestLimit = Math.max(highestLimit, limit);
+          completedInRound = 0;
+        }
+      }
+    }
+    notifyAll();
+  }
+
+  /**
+   * Waits for the completion of all the requests in progress
+   *
+   * @return false if requests are still in progress after the timeout
+   */
+  synchronized boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+    while (inFlight > 0) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0L) {
+        return false;
+      }
+      wait(remaining);
+    }
+    return true;
+  }
+
+  synchronized int limit() {
+    return limit;
+  }
+
+  /**
+   * Highest limit reached since creation
+   */
+  synchronized int highestLimit() {
+    return highestLimit;
+  }
+}
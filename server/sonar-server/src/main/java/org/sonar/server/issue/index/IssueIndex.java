@@ -59,6 +59,7 @@ import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogram;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms.Order;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsBuilder;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
 import org.elasticsearch.search.aggregations.metrics.min.Min;
 import org.elasticsearch.search.aggregations.metrics.sum.SumBuilder;
 import org.joda.time.Duration;
@@ -735,21 +736,35 @@ public class IssueIndex extends BaseIndex {
    * Only fields needed for the batch are returned.
    */
   public Iterator<IssueDoc> selectIssuesForBatch(ComponentDto component) {
-    BoolFilterBuilder filter = FilterBuilders.boolFilter()
-      .must(createAuthorizationFilter(true, userSession.getLogin(), userSession.getUserGroups()))
-      .mustNot(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_STATUS, Issue.STATUS_CLOSED));
+    return selectIssuesForBatch(createBatchFilter(component));
+  }
 
-    switch (component.scope()) {
-      case Scopes.PROJECT:
-        filter.must(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_MODULE_PATH, component.uuid()));
-        break;
-      case Scopes.FILE:
-        filter.must(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_COMPONENT_UUID, component.uuid()));
-        break;
-      default:
-        throw new IllegalStateException(String.format("Component of scope '%s' is not allowed", component.scope()));
-    }
+  /**
+   * Version of the issues returned by {@link #selectIssuesForBatch(ComponentDto)}, made of the number of issues
+   * and of the date of the last change. It is computed by a single aggregation, without loading the issues.
+   */
+  public String selectIssuesForBatchVersion(ComponentDto component) {
+    return selectIssuesForBatchVersion(createBatchFilter(component));
+  }
+
+  /**
+   * Same as {@link #selectIssuesForBatch(ComponentDto)} for a whole project, but <strong>permissions are not
+   * verified</strong>. Used to export the issues at the end of the analysis of the project.
+   */
+  public Iterator<IssueDoc> selectProjectIssuesForBatchExport(String projectUuid) {
+    return selectIssuesForBatch(createProjectBatchFilter(projectUuid));
+  }
+
+  /**
+   * Version of the issues returned by {@link #selectProjectIssuesForBatchExport(String)}. It equals the version
+   * returned by {@link #selectIssuesForBatchVersion(ComponentDto)} for the project when the user is allowed
+   * to browse the project.
+   */
+  public String selectProjectIssuesForBatchExportVersion(String projectUuid) {
+    return selectIssuesForBatchVersion(createProjectBatchFilter(projectUuid));
+  }
 
+  private Iterator<IssueDoc> selectIssuesForBatch(FilterBuilder filter) {
     SearchRequestBuilder requestBuilder = getClient()
       .prepareSearch(IssueIndexDefinition.INDEX)
       .setTypes(IssueIndexDefinition.TYPE_ISSUE)
@@ -768,4 +783,41 @@ public class IssueIndex extends BaseIndex {
 
     return EsUtils.scroll(getClient(), response.getScrollId(), DOC_CONVERTER);
   }
+
+  private String selectIssuesForBatchVersion(FilterBuilder filter) {
+    SearchResponse response = getClient()
+      .prepareSearch(IssueIndexDefinition.INDEX)
+      .setTypes(IssueIndexDefinition.TYPE_ISSUE)
+      .setSize(0)
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), filter))
+      .addAggregation(AggregationBuilders.max(IssueIndexDefinition.FIELD_ISSUE_TECHNICAL_UPDATED_AT).field(IssueIndexDefinition.FIELD_ISSUE_TECHNICAL_UPDATED_AT))
+      .get();
+    Max lastUpdate = response.getAggregations().get(IssueIndexDefinition.FIELD_ISSUE_TECHNICAL_UPDATED_AT);
+    long total = response.getHits().getTotalHits();
+    return total == 0L ? "0" : (total + "-" + (long) lastUpdate.getValue());
+  }
+
+  private static BoolFilterBuilder createProjectBatchFilter(String projectUuid) {
+    return FilterBuilders.boolFilter()
+      .must(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_MODULE_PATH, projectUuid))
+      .mustNot(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_STATUS, Issue.STATUS_CLOSED));
+  }
+
+  private BoolFilterBuilder createBatchFilter(ComponentDto component) {
+    BoolFilterBuilder filter = FilterBuilders.boolFilter()
+      .must(createAuthorizationFilter(true, userSession.getLogin(), userSession.getUserGroups()))
+      .mustNot(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_STATUS, Issue.STATUS_CLOSED));
+
+    switch (component.scope()) {
+      case Scopes.PROJECT:
+        filter.must(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_MODULE_PATH, component.uuid()));
+        break;
+      case Scopes.FILE:
+        filter.must(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_COMPONENT_UUID, component.uuid()));
+        break;
+      default:
+        throw new IllegalStateException(String.format("Component of scope '%s' is not allowed", component.scope()));
+    }
+    return filter;
+  }
 }
@@ -19,8 +19,12 @@
  */
 package org.sonar.server.issue.index;
 
+import com.google.common.base.Function;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.index.query.FilterBuilders;
@@ -78,18 +82,23 @@ public class IssueIndexer extends BaseIndexer {
     }
   }
 
-  private long doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
+  private static long doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
+    final AtomicLong maxDate = new AtomicLong(0L);
     bulk.start();
-    long maxDate = 0L;
-    while (issues.hasNext()) {
-      IssueDoc issue = issues.next();
-      bulk.add(newUpsertRequest(issue));
-
-      // it's more efficient to sort programmatically than in SQL on some databases (MySQL for instance)
-      maxDate = Math.max(maxDate, issue.getTechnicalUpdateDate().getTime());
-    }
+    bulk.addAll(issues, new Function<IssueDoc, ActionRequest>() {
+      @Override
+      public ActionRequest apply(@Nonnull IssueDoc issue) {
+        // it's more efficient to sort programmatically than in SQL on some databases (MySQL for instance)
+        long date = issue.getTechnicalUpdateDate().getTime();
+        long max = maxDate.get();
+        while (date > max && !maxDate.compareAndSet(max, date)) {
+          max = maxDate.get();
+        }
+        return newUpsertRequest(issue);
+      }
+    });
     bulk.stop();
-    return maxDate;
+    return maxDate.get();
   }
 
   public void deleteProject(String uuid, boolean refresh) {
@@ -112,7 +121,7 @@ public class IssueIndexer extends BaseIndexer {
     return bulk;
   }
 
-  private UpdateRequest newUpsertRequest(IssueDoc issue) {
+  private static UpdateRequest newUpsertRequest(IssueDoc issue) {
     String projectUuid = issue.projectUuid();
 
     // type of parent doc is "authorization"
@@ -24,15 +24,28 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import org.picocontainer.Startable;
 import org.sonar.api.Properties;
@@ -45,6 +58,15 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
 
+/**
+ * Notifications of the queue are processed by batches. Each notification is dispatched to its recipients, then delivered
+ * through the channels of the recipients. Each channel has its own bounded pool of threads, so that a slow channel,
+ * for example email, does not delay the other ones. When the queue of a channel is full, the delivery is executed by
+ * the dispatching thread, which slows down dispatching. Failed deliveries are retried with an exponential back-off.
+ * <p/>
+ * When the service is stopped, the notifications of the batch being processed which are not delivered to all
+ * their recipients are enqueued again, so that they are delivered at next startup, possibly twice to some recipients.
+ */
 @Properties({
   @Property(
     key = NotificationService.PROPERTY_DELAY,
@@ -57,30 +79,56 @@ import org.sonar.db.DbClient;
     defaultValue = "600",
     name = "Delay before reporting notification status, in seconds",
     project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_DELIVERY_THREADS,
+    defaultValue = "5",
+    name = "Number of notifications delivered concurrently by each channel",
+    project = false,
     global = false)
 })
 @ServerSide
 public class NotificationService implements Startable {
   private static final String THREAD_NAME_PREFIX = "sq-notification-service-";
+  private static final String DELIVERY_THREAD_NAME_PREFIX = "sq-notification-delivery-";
 
   private static final Logger LOG = Loggers.get(NotificationService.class);
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
   public static final String PROPERTY_DELAY_BEFORE_REPORTING_STATUS = "sonar.notifications.runningDelayBeforeReportingStatus";
+  public static final String PROPERTY_DELIVERY_THREADS = "sonar.notifications.deliveryThreads";
+
+  static final int DEFAULT_DELIVERY_THREADS = 5;
+  static final int DEQUEUE_BATCH_SIZE = 100;
+  // deliveries waiting for a thread of a channel pool
+  private static final int DELIVERY_QUEUE_SIZE = 1000;
+  static final int MAX_DELIVERY_ATTEMPTS = 3;
+  private static final long FIRST_RETRY_DELAY_MS = 1000L;
 
   private final long delayInSeconds;
   private final long delayBeforeReportingStatusInSeconds;
+  private final int deliveryThreads;
   private final DefaultNotificationManager manager;
   private final List<NotificationDispatcher> dispatchers;
   private final DbClient dbClient;
 
   private ScheduledExecutorService executorService;
-  private boolean stopping = false;
+  // delivery pools, by channel key
+  private final Map<String, ThreadPoolExecutor> deliveryExecutors = new HashMap<>();
+  private volatile boolean stopping = false;
+
+  private final AtomicInteger pendingDeliveries = new AtomicInteger();
+  private final AtomicLong deliveredCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private final AtomicLong retryCount = new AtomicLong();
+  private final AtomicLong deliveryLatencyMs = new AtomicLong();
 
   public NotificationService(Settings settings, DefaultNotificationManager manager, DbClient dbClient,
     NotificationDispatcher[] dispatchers) {
     this.delayInSeconds = settings.getLong(PROPERTY_DELAY);
     this.delayBeforeReportingStatusInSeconds = settings.getLong(PROPERTY_DELAY_BEFORE_REPORTING_STATUS);
+    int threads = settings.getInt(PROPERTY_DELIVERY_THREADS);
+    this.deliveryThreads = threads > 0 ? threads : DEFAULT_DELIVERY_THREADS;
     this.manager = manager;
     this.dbClient = dbClient;
     this.dispatchers = ImmutableList.copyOf(dispatchers);
@@ -118,8 +166,17 @@ public class NotificationService implements Startable {
   public void stop() {
     try {
       stopping = true;
-      executorService.shutdown();
-      executorService.awaitTermination(5, TimeUnit.SECONDS);
+      for (ExecutorService deliveryExecutor : deliveryExecutors()) {
+        // deliveries that are not started are cancelled, so that the batch being processed is not waited for. Their
+        // notifications are enqueued again by processQueue()
+        for (Runnable notStarted : deliveryExecutor.shutdownNow()) {
+          ((Future<?>) notStarted).cancel(false);
+        }
+      }
+      if (executorService != null) {
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+      }
     } catch (InterruptedException e) {
       LOG.error("Error during stop of notification service", e);
     }
@@ -132,11 +189,21 @@ public class NotificationService implements Startable {
     long lastLog = start;
     long notifSentCount = 0;
 
-    Notification notifToSend = manager.getFromQueue();
-    while (notifToSend != null) {
-      deliver(notifToSend);
-      notifSentCount++;
+    List<Notification> notifsToSend = manager.getFromQueue(DEQUEUE_BATCH_SIZE);
+    while (!notifsToSend.isEmpty()) {
+      List<Future<?>> deliveries = new ArrayList<>();
+      // deliveries of each notification of the batch, in the same order
+      List<List<Future<?>>> deliveriesByNotif = new ArrayList<>(notifsToSend.size());
+      for (Notification notifToSend : notifsToSend) {
+        List<Future<?>> notifDeliveries = dispatch(notifToSend);
+        deliveriesByNotif.add(notifDeliveries);
+        deliveries.addAll(notifDeliveries);
+        notifSentCount++;
+      }
+      // wait for the deliveries of the batch before dequeuing the next one, so that the pools stay bounded
+      awaitDeliveries(deliveries);
       if (stopping) {
+        enqueueNotDelivered(notifsToSend, deliveriesByNotif);
         break;
       }
       long now = now();
@@ -146,7 +213,41 @@ public class NotificationService implements Startable {
         long spentTimeInMinutes = (now - start) / (60 * 1000);
         log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
       }
-      notifToSend = manager.getFromQueue();
+      notifsToSend = manager.getFromQueue(DEQUEUE_BATCH_SIZE);
+    }
+  }
+
+  /**
+   * Notifications of the batch are already removed from the queue. Those whose deliveries were cancelled
+   * because the service is stopping are enqueued again.
+   */
+  private void enqueueNotDelivered(List<Notification> notifs, List<List<Future<?>>> deliveriesByNotif) {
+    List<Notification> notDelivered = new ArrayList<>();
+    for (int i = 0; i < notifs.size(); i++) {
+      for (Future<?> delivery : deliveriesByNotif.get(i)) {
+        if (delivery.isCancelled()) {
+          notDelivered.add(notifs.get(i));
+          break;
+        }
+      }
+    }
+    if (!notDelivered.isEmpty()) {
+      LOG.info("{} notifications will be sent at next startup", notDelivered.size());
+      manager.scheduleForSending(notDelivered);
+    }
+  }
+
+  private static void awaitDeliveries(List<Future<?>> deliveries) {
+    for (Future<?> delivery : deliveries) {
+      try {
+        Uninterruptibles.getUninterruptibly(delivery);
+      } catch (ExecutionException e) {
+        // failures are already logged by delivery tasks
+        LOG.debug("Unexpected delivery error", e);
+      } catch (CancellationException e) {
+        // service is stopping
+        LOG.debug("Delivery cancelled", e);
+      }
     }
   }
 
@@ -161,7 +262,19 @@ public class NotificationService implements Startable {
     return System.currentTimeMillis();
   }
 
+  /**
+   * Dispatches the notification to its recipients. Delivery through channels is asynchronous.
+   */
   public void deliver(Notification notification) {
+    for (Future<?> delivery : dispatch(notification)) {
+      if (delivery.isCancelled()) {
+        failedCount.incrementAndGet();
+        LOG.warn("Unable to deliver notification {}: service is stopping", notification);
+      }
+    }
+  }
+
+  private List<Future<?>> dispatch(Notification notification) {
     final SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
       NotificationDispatcher.Context context = new ContextImpl(recipients);
@@ -172,23 +285,168 @@ public class NotificationService implements Startable {
         LOG.warn(String.format("Unable to dispatch notification %s using %s", notification, dispatcher), e);
       }
     }
-    dispatch(notification, recipients);
+    return dispatch(notification, recipients);
   }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+  private List<Future<?>> dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+    List<Future<?>> deliveries = new ArrayList<>();
     for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
       String username = entry.getKey();
       Collection<NotificationChannel> userChannels = entry.getValue();
       LOG.debug("For user {} via {}", username, userChannels);
       for (NotificationChannel channel : userChannels) {
+        pendingDeliveries.incrementAndGet();
+        try {
+          deliveries.add(deliveryExecutor(channel).submit(new DeliveryTask(notification, username, channel)));
+        } catch (RejectedExecutionException e) {
+          // service is stopping
+          pendingDeliveries.decrementAndGet();
+          LOG.debug("Delivery of notification {} for user {} via {} is cancelled", notification, username, channel);
+          deliveries.add(Futures.immediateCancelledFuture());
+        }
+      }
+    }
+    return deliveries;
+  }
+
+  private ExecutorService deliveryExecutor(NotificationChannel channel) {
+    synchronized (deliveryExecutors) {
+      if (stopping) {
+        throw new RejectedExecutionException("Notification service is stopping");
+      }
+      ThreadPoolExecutor executor = deliveryExecutors.get(channel.getKey());
+      if (executor == null) {
+        executor = new ThreadPoolExecutor(deliveryThreads, deliveryThreads, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<Runnable>(DELIVERY_QUEUE_SIZE),
+          new ThreadFactoryBuilder()
+            .setNameFormat(DELIVERY_THREAD_NAME_PREFIX + channel.getKey() + "-%d")
+            .setPriority(Thread.MIN_PRIORITY)
+            .setDaemon(true)
+            .build(),
+          CallerRunsUnlessShutdownPolicy.INSTANCE);
+        deliveryExecutors.put(channel.getKey(), executor);
+      }
+      return executor;
+    }
+  }
+
+  /**
+   * Back-pressure on dispatching when the queue of a channel is full. Unlike {@link ThreadPoolExecutor.CallerRunsPolicy},
+   * deliveries submitted after shutdown are rejected instead of silently discarded, as their futures would never complete.
+   */
+  private enum CallerRunsUnlessShutdownPolicy implements RejectedExecutionHandler {
+    INSTANCE;
+
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("Notification service is stopping");
+      }
+      runnable.run();
+    }
+  }
+
+  private List<ThreadPoolExecutor> deliveryExecutors() {
+    synchronized (deliveryExecutors) {
+      return new ArrayList<>(deliveryExecutors.values());
+    }
+  }
+
+  /**
+   * Delay before the given retry of a failed delivery. The first retry is delayed by one second, then
+   * the delay is doubled.
+   */
+  @VisibleForTesting
+  long retryDelayMs(int retry) {
+    return FIRST_RETRY_DELAY_MS << (retry - 1);
+  }
+
+  /**
+   * Number of deliveries that are waiting or in progress
+   */
+  public int getPendingDeliveries() {
+    return pendingDeliveries.get();
+  }
+
+  public long getDeliveredCount() {
+    return deliveredCount.get();
+  }
+
+  /**
+   * Number of deliveries that failed after all the attempts
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  public long getRetryCount() {
+    return retryCount.get();
+  }
+
+  /**
+   * Average duration between the dispatch of a notification and its delivery to a recipient, including
+   * the time waiting for a thread of the channel pool.
+   */
+  public long getAverageDeliveryLatencyMs() {
+    long delivered = deliveredCount.get();
+    return delivered == 0 ? 0L : (deliveryLatencyMs.get() / delivered);
+  }
+
+  private class DeliveryTask implements Runnable {
+    private final Notification notification;
+    private final String username;
+    private final NotificationChannel channel;
+    private final long dispatchedAt = System.nanoTime();
+
+    private DeliveryTask(Notification notification, String username, NotificationChannel channel) {
+      this.notification = notification;
+      this.username = username;
+      this.channel = channel;
+    }
+
+    @Override
+    public void run() {
+      try {
+        deliverWithRetries();
+      } finally {
+        pendingDeliveries.decrementAndGet();
+      }
+    }
+
+    private void deliverWithRetries() {
+      int attempt = 1;
+      while (true) {
         try {
           channel.deliver(notification, username);
+          deliveryLatencyMs.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dispatchedAt));
+          deliveredCount.incrementAndGet();
+          return;
         } catch (Exception e) {
           // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+          if (attempt >= MAX_DELIVERY_ATTEMPTS || stopping || !waitBeforeRetry(attempt)) {
+            failedCount.incrementAndGet();
+            LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+            return;
+          }
+          LOG.debug("Retry delivery of notification {} for user {} via {}", notification, username, channel);
+          retryCount.incrementAndGet();
+          attempt++;
         }
       }
     }
+
+    /**
+     * @return false if interrupted, for example when server is stopping
+     */
+    private boolean waitBeforeRetry(int attempt) {
+      try {
+        Thread.sleep(retryDelayMs(attempt));
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
   }
 
   @VisibleForTesting
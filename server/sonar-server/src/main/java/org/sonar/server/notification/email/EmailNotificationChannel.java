@@ -102,7 +102,10 @@ public class EmailNotificationChannel extends NotificationChannel {
     EmailMessage emailMessage = format(notification);
     if (emailMessage != null) {
       emailMessage.setTo(user.email());
-      deliver(emailMessage);
+      if (!deliver(emailMessage)) {
+        // the notification service retries failed deliveries
+        throw new IllegalStateException("Unable to send email to " + username);
+      }
     }
   }
 
@@ -119,16 +122,20 @@ public class EmailNotificationChannel extends NotificationChannel {
 
   /**
    * Visibility has been relaxed for tests.
+   *
+   * @return false if the email could not be sent
    */
-  void deliver(EmailMessage emailMessage) {
+  boolean deliver(EmailMessage emailMessage) {
     if (StringUtils.isBlank(configuration.getSmtpHost())) {
       LOG.debug("SMTP host was not configured - email will not be sent");
-      return;
+      return true;
     }
     try {
       send(emailMessage);
+      return true;
     } catch (EmailException e) {
       LOG.error("Unable to send email", e);
+      return false;
     }
   }
 
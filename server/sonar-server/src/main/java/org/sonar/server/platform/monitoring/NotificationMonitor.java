@@ -0,0 +1,85 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import org.sonar.server.notification.DefaultNotificationManager;
+import org.sonar.server.notification.NotificationService;
+
+/**
+ * Queue and deliveries of notifications
+ */
+public class NotificationMonitor extends BaseMonitorMBean implements NotificationMonitorMBean {
+
+  private final DefaultNotificationManager manager;
+  private final NotificationService service;
+
+  public NotificationMonitor(DefaultNotificationManager manager, NotificationService service) {
+    this.manager = manager;
+    this.service = service;
+  }
+
+  @Override
+  public String name() {
+    return "Notifications";
+  }
+
+  @Override
+  public long getQueueSize() {
+    return manager.count();
+  }
+
+  @Override
+  public int getPendingDeliveries() {
+    return service.getPendingDeliveries();
+  }
+
+  @Override
+  public long getDeliveredCount() {
+    return service.getDeliveredCount();
+  }
+
+  @Override
+  public long getFailedCount() {
+    return service.getFailedCount();
+  }
+
+  @Override
+  public long getRetryCount() {
+    return service.getRetryCount();
+  }
+
+  @Override
+  public long getAverageDeliveryLatencyMillis() {
+    return service.getAverageDeliveryLatencyMs();
+  }
+
+  @Override
+  public LinkedHashMap<String, Object> attributes() {
+    LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Queue Size", getQueueSize());
+    attributes.put("Pending Deliveries", getPendingDeliveries());
+    attributes.put("Delivered", getDeliveredCount());
+    attributes.put("Failed Deliveries", getFailedCount());
+    attributes.put("Retried Deliveries", getRetryCount());
+    attributes.put("Average Delivery Latency (ms)", getAverageDeliveryLatencyMillis());
+    return attributes;
+  }
+}
@@ -21,12 +21,15 @@ package org.sonar.server.qualityprofile;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.sonar.api.rule.RuleKey;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.server.rule.RuleParamType;
 import org.sonar.db.DbSession;
@@ -91,7 +94,19 @@ public class RuleActivator {
     return doActivate(dbSession, activation, context);
   }
 
+  private List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, String profileKey, @Nullable RuleActivatorCache cache) {
+    if (cache == null) {
+      return activate(dbSession, activation, profileKey);
+    }
+    RuleActivatorContext context = contextFactory.create(profileKey, activation.getRuleKey(), dbSession, cache);
+    return doActivate(dbSession, activation, context, cache);
+  }
+
   private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, RuleActivatorContext context) {
+    return doActivate(dbSession, activation, context, null);
+  }
+
+  private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, RuleActivatorContext context, @Nullable RuleActivatorCache cache) {
     context.verifyForActivation();
     List<ActiveRuleChange> changes = Lists.newArrayList();
     ActiveRuleChange change;
@@ -136,22 +151,36 @@ public class RuleActivator {
 
     if (change != null) {
       changes.add(change);
-      persist(change, context, dbSession);
+      persist(change, context, dbSession, cache);
     }
 
     if (!stopPropagation) {
-      changes.addAll(cascadeActivation(dbSession, activation, context.profile().getKey()));
+      changes.addAll(cascadeActivation(dbSession, activation, context.profile().getKey(), cache));
     }
 
     if (!changes.isEmpty()) {
-      updateProfileDate(dbSession, context);
+      updateProfileDate(dbSession, context, cache);
     }
     return changes;
   }
 
-  private void updateProfileDate(DbSession dbSession, RuleActivatorContext context) {
+  private void updateProfileDate(DbSession dbSession, RuleActivatorContext context, @Nullable RuleActivatorCache cache) {
     context.profile().setRulesUpdatedAtAsDate(context.getInitDate());
-    db.qualityProfileDao().update(dbSession, context.profile());
+    if (cache == null) {
+      db.qualityProfileDao().update(dbSession, context.profile());
+    } else {
+      cache.markAsUpdated(context.profile());
+    }
+  }
+
+  /**
+   * Persists the profiles and activities that have been delayed during a bulk change
+   */
+  private void flush(DbSession dbSession, RuleActivatorCache cache) {
+    for (QualityProfileDto profile : cache.updatedProfiles()) {
+      db.qualityProfileDao().update(dbSession, profile);
+    }
+    activityService.save(cache.activities());
   }
 
   /**
@@ -217,35 +246,42 @@ public class RuleActivator {
     return null;
   }
 
-  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, String profileKey) {
+  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, String profileKey, @Nullable RuleActivatorCache cache) {
     List<ActiveRuleChange> changes = Lists.newArrayList();
 
     // get all inherited profiles
-    List<QualityProfileDto> children = db.qualityProfileDao().selectChildren(session, profileKey);
+    List<QualityProfileDto> children = cache == null ? db.qualityProfileDao().selectChildren(session, profileKey) : cache.children(profileKey);
     for (QualityProfileDto child : children) {
       RuleActivation childActivation = new RuleActivation(activation).setCascade(true);
-      changes.addAll(activate(session, childActivation, child.getKey()));
+      changes.addAll(activate(session, childActivation, child.getKey(), cache));
     }
     return changes;
   }
 
-  private ActiveRuleDto persist(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private ActiveRuleDto persist(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession, @Nullable RuleActivatorCache cache) {
     ActiveRuleDto activeRule = null;
     if (change.getType() == ActiveRuleChange.Type.ACTIVATED) {
-      activeRule = doInsert(change, context, dbSession);
+      activeRule = doInsert(change, context, dbSession, cache);
 
     } else if (change.getType() == ActiveRuleChange.Type.DEACTIVATED) {
       ActiveRuleDao dao = db.activeRuleDao();
       dao.deleteByKey(dbSession, change.getKey());
+      if (cache != null) {
+        cache.removeActiveRule(change.getKey());
+      }
 
     } else if (change.getType() == ActiveRuleChange.Type.UPDATED) {
-      activeRule = doUpdate(change, context, dbSession);
+      activeRule = doUpdate(change, context, dbSession, cache);
+    }
+    if (cache == null) {
+      activityService.save(change.toActivity());
+    } else {
+      cache.addActivity(change.toActivity());
     }
-    activityService.save(change.toActivity());
     return activeRule;
   }
 
-  private ActiveRuleDto doInsert(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private ActiveRuleDto doInsert(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession, @Nullable RuleActivatorCache cache) {
     ActiveRuleDto activeRule;
     ActiveRuleDao dao = db.activeRuleDao();
     activeRule = ActiveRuleDto.createFor(context.profile(), context.rule());
@@ -258,17 +294,23 @@ public class RuleActivator {
       activeRule.setInheritance(inheritance.name());
     }
     dao.insert(dbSession, activeRule);
+    if (cache != null) {
+      cache.putActiveRule(activeRule);
+    }
     for (Map.Entry<String, String> param : change.getParameters().entrySet()) {
       if (param.getValue() != null) {
         ActiveRuleParamDto paramDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
         paramDto.setValue(param.getValue());
         dao.insertParam(dbSession, activeRule, paramDto);
+        if (cache != null) {
+          cache.putActiveRuleParam(activeRule.getKey(), paramDto);
+        }
       }
     }
     return activeRule;
   }
 
-  private ActiveRuleDto doUpdate(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private ActiveRuleDto doUpdate(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession, @Nullable RuleActivatorCache cache) {
     ActiveRuleDao dao = db.activeRuleDao();
     ActiveRuleDto activeRule = context.activeRule();
     if (activeRule != null) {
@@ -290,6 +332,9 @@ public class RuleActivator {
             activeRuleParamDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
             activeRuleParamDto.setValue(param.getValue());
             dao.insertParam(dbSession, activeRule, activeRuleParamDto);
+            if (cache != null) {
+              cache.putActiveRuleParam(activeRule.getKey(), activeRuleParamDto);
+            }
           }
         } else {
           if (param.getValue() != null) {
@@ -297,6 +342,9 @@ public class RuleActivator {
             dao.updateParam(dbSession, activeRule, activeRuleParamDto);
           } else {
             dao.deleteParam(dbSession, activeRule, activeRuleParamDto);
+            if (cache != null) {
+              cache.removeActiveRuleParam(activeRule.getKey(), activeRuleParamDto);
+            }
           }
         }
       }
@@ -342,12 +390,14 @@ public class RuleActivator {
    * @param force if true then inherited rules are deactivated
    */
   public List<ActiveRuleChange> deactivate(DbSession dbSession, ActiveRuleKey key, boolean force) {
-    return cascadeDeactivation(key, dbSession, false, force);
+    return cascadeDeactivation(key, dbSession, false, force, null);
   }
 
-  private List<ActiveRuleChange> cascadeDeactivation(ActiveRuleKey key, DbSession dbSession, boolean isCascade, boolean force) {
+  private List<ActiveRuleChange> cascadeDeactivation(ActiveRuleKey key, DbSession dbSession, boolean isCascade, boolean force, @Nullable RuleActivatorCache cache) {
     List<ActiveRuleChange> changes = Lists.newArrayList();
-    RuleActivatorContext context = contextFactory.create(key.qProfile(), key.ruleKey(), dbSession);
+    RuleActivatorContext context = cache == null ?
+      contextFactory.create(key.qProfile(), key.ruleKey(), dbSession) :
+      contextFactory.create(key.qProfile(), key.ruleKey(), dbSession, cache);
     ActiveRuleChange change;
     ActiveRuleDto activeRuleDto = context.activeRule();
     if (activeRuleDto == null) {
@@ -358,18 +408,18 @@ public class RuleActivator {
     }
     change = ActiveRuleChange.createFor(ActiveRuleChange.Type.DEACTIVATED, key);
     changes.add(change);
-    persist(change, context, dbSession);
+    persist(change, context, dbSession, cache);
 
     // get all inherited profiles
-    List<QualityProfileDto> profiles = db.qualityProfileDao().selectChildren(dbSession, key.qProfile());
+    List<QualityProfileDto> profiles = cache == null ? db.qualityProfileDao().selectChildren(dbSession, key.qProfile()) : cache.children(key.qProfile());
 
     for (QualityProfileDto profile : profiles) {
       ActiveRuleKey activeRuleKey = ActiveRuleKey.of(profile.getKey(), key.ruleKey());
-      changes.addAll(cascadeDeactivation(activeRuleKey, dbSession, true, force));
+      changes.addAll(cascadeDeactivation(activeRuleKey, dbSession, true, force, cache));
     }
 
     if (!changes.isEmpty()) {
-      updateProfileDate(dbSession, context);
+      updateProfileDate(dbSession, context, cache);
     }
 
     return changes;
@@ -391,18 +441,15 @@ public class RuleActivator {
 
   BulkChangeResult bulkActivate(RuleQuery ruleQuery, String profileKey, @Nullable String severity) {
     BulkChangeResult result = new BulkChangeResult();
-    RuleIndex ruleIndex = index.get(RuleIndex.class);
     DbSession dbSession = db.openSession(false);
     try {
-      Result<Rule> ruleSearchResult = ruleIndex.search(ruleQuery, new QueryContext(userSession).setScroll(true)
-        .setFieldsToReturn(Arrays.asList(RuleNormalizer.RuleField.KEY.field())));
-      Iterator<Rule> rules = ruleSearchResult.scroll();
-      while (rules.hasNext()) {
-        Rule rule = rules.next();
+      List<RuleKey> ruleKeys = searchRuleKeys(ruleQuery);
+      RuleActivatorCache cache = createCache(dbSession, profileKey, ruleKeys);
+      for (RuleKey ruleKey : ruleKeys) {
         try {
-          RuleActivation activation = new RuleActivation(rule.key());
+          RuleActivation activation = new RuleActivation(ruleKey);
           activation.setSeverity(severity);
-          List<ActiveRuleChange> changes = activate(dbSession, activation, profileKey);
+          List<ActiveRuleChange> changes = activate(dbSession, activation, profileKey, cache);
           result.addChanges(changes);
           if (!changes.isEmpty()) {
             result.incrementSucceeded();
@@ -414,6 +461,9 @@ public class RuleActivator {
           result.getErrors().add(e.errors());
         }
       }
+      if (cache != null) {
+        flush(dbSession, cache);
+      }
       dbSession.commit();
     } finally {
       dbSession.close();
@@ -424,16 +474,13 @@ public class RuleActivator {
   BulkChangeResult bulkDeactivate(RuleQuery ruleQuery, String profile) {
     DbSession dbSession = db.openSession(false);
     try {
-      RuleIndex ruleIndex = index.get(RuleIndex.class);
       BulkChangeResult result = new BulkChangeResult();
-      Result<Rule> ruleSearchResult = ruleIndex.search(ruleQuery, new QueryContext(userSession).setScroll(true)
-        .setFieldsToReturn(Arrays.asList(RuleNormalizer.RuleField.KEY.field())));
-      Iterator<Rule> rules = ruleSearchResult.scroll();
-      while (rules.hasNext()) {
+      List<RuleKey> ruleKeys = searchRuleKeys(ruleQuery);
+      RuleActivatorCache cache = createCache(dbSession, profile, ruleKeys);
+      for (RuleKey ruleKey : ruleKeys) {
         try {
-          Rule rule = rules.next();
-          ActiveRuleKey key = ActiveRuleKey.of(profile, rule.key());
-          List<ActiveRuleChange> changes = deactivate(dbSession, key);
+          ActiveRuleKey key = ActiveRuleKey.of(profile, ruleKey);
+          List<ActiveRuleChange> changes = cascadeDeactivation(key, dbSession, false, false, cache);
           result.addChanges(changes);
           if (!changes.isEmpty()) {
             result.incrementSucceeded();
@@ -444,6 +491,9 @@ public class RuleActivator {
           result.getErrors().add(e.errors());
         }
       }
+      if (cache != null) {
+        flush(dbSession, cache);
+      }
       dbSession.commit();
       return result;
     } finally {
@@ -451,6 +501,31 @@ public class RuleActivator {
     }
   }
 
+  private List<RuleKey> searchRuleKeys(RuleQuery ruleQuery) {
+    RuleIndex ruleIndex = index.get(RuleIndex.class);
+    Result<Rule> ruleSearchResult = ruleIndex.search(ruleQuery, new QueryContext(userSession).setScroll(true)
+      .setFieldsToReturn(Arrays.asList(RuleNormalizer.RuleField.KEY.field())));
+    List<RuleKey> ruleKeys = new ArrayList<>();
+    Iterator<Rule> rules = ruleSearchResult.scroll();
+    while (rules.hasNext()) {
+      ruleKeys.add(rules.next().key());
+    }
+    return ruleKeys;
+  }
+
+  /**
+   * @return null if the profile does not exist. In this case each rule of the bulk change fails as
+   * it does on single changes.
+   */
+  @CheckForNull
+  private RuleActivatorCache createCache(DbSession dbSession, String profileKey, Collection<RuleKey> ruleKeys) {
+    QualityProfileDto profile = db.qualityProfileDao().selectByKey(dbSession, profileKey);
+    if (profile == null) {
+      return null;
+    }
+    return contextFactory.createCache(dbSession, profile, ruleKeys);
+  }
+
   public void setParent(String key, @Nullable String parentKey) {
     DbSession dbSession = db.openSession(false);
     try {
@@ -478,15 +553,18 @@ public class RuleActivator {
       // set new parent
       profile.setParentKee(parentKey);
       db.qualityProfileDao().update(dbSession, profile);
-      for (ActiveRuleDto parentActiveRule : db.activeRuleDao().selectByProfileKey(dbSession, parentKey)) {
+      List<ActiveRuleDto> parentActiveRules = db.activeRuleDao().selectByProfileKey(dbSession, parentKey);
+      RuleActivatorCache cache = contextFactory.createCache(dbSession, profile, ruleKeys(parentActiveRules));
+      for (ActiveRuleDto parentActiveRule : parentActiveRules) {
         try {
           RuleActivation activation = new RuleActivation(parentActiveRule.getKey().ruleKey());
-          activate(dbSession, activation, profileKey);
+          activate(dbSession, activation, profileKey, cache);
         } catch (BadRequestException e) {
           // for example because rule status is REMOVED
           // TODO return errors
         }
       }
+      flush(dbSession, cache);
     }
   }
 
@@ -497,15 +575,27 @@ public class RuleActivator {
     if (profileDto.getParentKee() != null) {
       profileDto.setParentKee(null);
       db.qualityProfileDao().update(dbSession, profileDto);
-      for (ActiveRuleDto activeRule : db.activeRuleDao().selectByProfileKey(dbSession, profileDto.getKey())) {
+      RuleActivatorCache cache = contextFactory.createCache(dbSession, profileDto,
+        ruleKeys(db.activeRuleDao().selectByProfileKey(dbSession, profileDto.getKey())));
+      // active rules of the cache are kept up-to-date
+      for (ActiveRuleDto activeRule : cache.activeRules(profileDto.getKey())) {
         if (ActiveRuleDto.INHERITED.equals(activeRule.getInheritance())) {
-          deactivate(dbSession, activeRule.getKey(), true);
+          cascadeDeactivation(activeRule.getKey(), dbSession, false, true, cache);
         } else if (ActiveRuleDto.OVERRIDES.equals(activeRule.getInheritance())) {
           activeRule.setInheritance(null);
           db.activeRuleDao().update(dbSession, activeRule);
         }
       }
+      flush(dbSession, cache);
+    }
+  }
+
+  private static List<RuleKey> ruleKeys(List<ActiveRuleDto> activeRules) {
+    List<RuleKey> ruleKeys = new ArrayList<>();
+    for (ActiveRuleDto activeRule : activeRules) {
+      ruleKeys.add(activeRule.getKey().ruleKey());
     }
+    return ruleKeys;
   }
 
   boolean isDescendant(DbSession dbSession, QualityProfileDto childProfile, @Nullable QualityProfileDto parentProfile) {
@@ -0,0 +1,152 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.qualityprofile;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.db.qualityprofile.ActiveRuleDto;
+import org.sonar.db.qualityprofile.ActiveRuleKey;
+import org.sonar.db.qualityprofile.ActiveRuleParamDto;
+import org.sonar.db.qualityprofile.QualityProfileDto;
+import org.sonar.db.rule.RuleDto;
+import org.sonar.db.rule.RuleParamDto;
+import org.sonar.server.activity.Activity;
+
+/**
+ * In-memory state of the quality profiles of an inheritance tree, used by the bulk changes
+ * of {@link RuleActivator}. Profiles, rules, active rules and their parameters are loaded once
+ * by {@link RuleActivatorContextFactory#createCache(org.sonar.db.DbSession, QualityProfileDto, Collection)}
+ * instead of being selected for each rule and for each profile of the tree. The state is kept
+ * up-to-date while changes are persisted.
+ * <p/>
+ * Dates of profiles and activities are not written on each change, but once at the end of the bulk change.
+ */
+class RuleActivatorCache {
+
+  private final Map<String, QualityProfileDto> profilesByKey = new HashMap<>();
+  private final ListMultimap<String, QualityProfileDto> childrenByKey = ArrayListMultimap.create();
+  private final Map<RuleKey, RuleDto> rulesByKey = new HashMap<>();
+  private final ListMultimap<RuleKey, RuleParamDto> ruleParamsByKey = ArrayListMultimap.create();
+  private final Map<ActiveRuleKey, ActiveRuleDto> activeRulesByKey = new LinkedHashMap<>();
+  private final ListMultimap<ActiveRuleKey, ActiveRuleParamDto> activeRuleParamsByKey = ArrayListMultimap.create();
+  private final Map<String, QualityProfileDto> updatedProfilesByKey = new LinkedHashMap<>();
+  private final List<Activity> activities = new ArrayList<>();
+
+  void addProfile(QualityProfileDto profile) {
+    profilesByKey.put(profile.getKey(), profile);
+  }
+
+  void addChild(String parentKey, QualityProfileDto child) {
+    addProfile(child);
+    childrenByKey.put(parentKey, child);
+  }
+
+  @CheckForNull
+  QualityProfileDto profile(String profileKey) {
+    return profilesByKey.get(profileKey);
+  }
+
+  List<QualityProfileDto> children(String profileKey) {
+    return childrenByKey.get(profileKey);
+  }
+
+  void addRule(RuleDto rule, Collection<RuleParamDto> params) {
+    rulesByKey.put(rule.getKey(), rule);
+    ruleParamsByKey.replaceValues(rule.getKey(), params);
+  }
+
+  @CheckForNull
+  RuleDto rule(RuleKey ruleKey) {
+    return rulesByKey.get(ruleKey);
+  }
+
+  List<RuleParamDto> ruleParams(RuleKey ruleKey) {
+    return ruleParamsByKey.get(ruleKey);
+  }
+
+  void putActiveRule(ActiveRuleDto activeRule) {
+    activeRulesByKey.put(activeRule.getKey(), activeRule);
+  }
+
+  void removeActiveRule(ActiveRuleKey key) {
+    activeRulesByKey.remove(key);
+    activeRuleParamsByKey.removeAll(key);
+  }
+
+  @CheckForNull
+  ActiveRuleDto activeRule(ActiveRuleKey key) {
+    return activeRulesByKey.get(key);
+  }
+
+  /**
+   * Copy of the active rules of a profile, so it can be iterated while rules are changed
+   */
+  List<ActiveRuleDto> activeRules(String profileKey) {
+    List<ActiveRuleDto> result = new ArrayList<>();
+    for (ActiveRuleDto activeRule : activeRulesByKey.values()) {
+      if (profileKey.equals(activeRule.getKey().qProfile())) {
+        result.add(activeRule);
+      }
+    }
+    return result;
+  }
+
+  void putActiveRuleParam(ActiveRuleKey key, ActiveRuleParamDto param) {
+    activeRuleParamsByKey.put(key, param);
+  }
+
+  void removeActiveRuleParam(ActiveRuleKey key, ActiveRuleParamDto param) {
+    Iterator<ActiveRuleParamDto> it = activeRuleParamsByKey.get(key).iterator();
+    while (it.hasNext()) {
+      if (it.next().getKey().equals(param.getKey())) {
+        it.remove();
+      }
+    }
+  }
+
+  List<ActiveRuleParamDto> activeRuleParams(ActiveRuleKey key) {
+    return activeRuleParamsByKey.get(key);
+  }
+
+  void markAsUpdated(QualityProfileDto profile) {
+    updatedProfilesByKey.put(profile.getKey(), profile);
+  }
+
+  Collection<QualityProfileDto> updatedProfiles() {
+    return updatedProfilesByKey.values();
+  }
+
+  void addActivity(Activity activity) {
+    activities.add(activity);
+  }
+
+  List<Activity> activities() {
+    return activities;
+  }
+}
@@ -19,6 +19,8 @@
  */
 package org.sonar.server.qualityprofile;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.db.DbSession;
@@ -27,10 +29,15 @@ import org.sonar.db.qualityprofile.ActiveRuleKey;
 import org.sonar.db.qualityprofile.ActiveRuleParamDto;
 import org.sonar.db.qualityprofile.QualityProfileDto;
 import org.sonar.db.rule.RuleDto;
+import org.sonar.db.rule.RuleParamDto;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.exceptions.BadRequestException;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @ServerSide
 public class RuleActivatorContextFactory {
@@ -65,6 +72,91 @@ public class RuleActivatorContextFactory {
     return create(ruleKey, session, new RuleActivatorContext().setProfile(profile));
   }
 
+  /**
+   * Loads the profile, its parent and all its descendants, with their active rules, and the given rules.
+   */
+  RuleActivatorCache createCache(DbSession session, QualityProfileDto profile, Collection<RuleKey> ruleKeys) {
+    RuleActivatorCache cache = new RuleActivatorCache();
+    List<String> profileKeys = new ArrayList<>();
+    cache.addProfile(profile);
+    profileKeys.add(profile.getKey());
+    String parentKee = profile.getParentKee();
+    if (parentKee != null) {
+      QualityProfileDto parent = db.qualityProfileDao().selectByKey(session, parentKee);
+      if (parent != null) {
+        cache.addProfile(parent);
+        profileKeys.add(parent.getKey());
+      }
+    }
+    for (QualityProfileDto descendant : db.qualityProfileDao().selectDescendants(session, profile.getKey())) {
+      cache.addChild(descendant.getParentKee(), descendant);
+      profileKeys.add(descendant.getKey());
+    }
+    for (String profileKey : profileKeys) {
+      initActiveRules(profileKey, cache, session);
+    }
+    initRules(ruleKeys, cache, session);
+    return cache;
+  }
+
+  /**
+   * Same as {@link #create(String, RuleKey, DbSession)}, but reads profiles and active rules from the cache
+   */
+  RuleActivatorContext create(String profileKey, RuleKey ruleKey, DbSession session, RuleActivatorCache cache) {
+    QualityProfileDto profile = cache.profile(profileKey);
+    if (profile == null) {
+      throw new BadRequestException("Quality profile not found: " + profileKey);
+    }
+    RuleActivatorContext context = new RuleActivatorContext().setProfile(profile);
+    RuleDto rule = cache.rule(ruleKey);
+    if (rule == null) {
+      rule = initRule(ruleKey, context, session);
+      cache.addRule(rule, context.ruleParams());
+    } else {
+      context.setRule(rule);
+      context.setRuleParams(cache.ruleParams(ruleKey));
+    }
+    ActiveRuleKey key = ActiveRuleKey.of(profileKey, ruleKey);
+    context.setActiveRule(cache.activeRule(key));
+    context.setActiveRuleParams(cache.activeRuleParams(key));
+    String parentKee = profile.getParentKee();
+    if (parentKee != null) {
+      ActiveRuleKey parentKey = ActiveRuleKey.of(parentKee, ruleKey);
+      context.setParentActiveRule(cache.activeRule(parentKey));
+      context.setParentActiveRuleParams(cache.activeRuleParams(parentKey));
+    }
+    return context;
+  }
+
+  private void initActiveRules(String profileKey, RuleActivatorCache cache, DbSession session) {
+    Map<Integer, ActiveRuleDto> activeRulesById = new HashMap<>();
+    for (ActiveRuleDto activeRule : db.activeRuleDao().selectByProfileKey(session, profileKey)) {
+      activeRulesById.put(activeRule.getId(), activeRule);
+      cache.putActiveRule(activeRule);
+    }
+    for (ActiveRuleParamDto param : db.activeRuleDao().selectParamsByProfileKey(session, profileKey)) {
+      ActiveRuleDto activeRule = activeRulesById.get(param.getActiveRuleId());
+      if (activeRule != null) {
+        cache.putActiveRuleParam(activeRule.getKey(), param);
+      }
+    }
+  }
+
+  private void initRules(Collection<RuleKey> ruleKeys, RuleActivatorCache cache, DbSession session) {
+    List<RuleDto> rules = db.deprecatedRuleDao().selectByKeys(session, ruleKeys);
+    Map<Integer, RuleDto> rulesById = new HashMap<>();
+    for (RuleDto rule : rules) {
+      rulesById.put(rule.getId(), rule);
+    }
+    ListMultimap<Integer, RuleParamDto> paramsByRuleId = ArrayListMultimap.create();
+    for (RuleParamDto param : db.deprecatedRuleDao().selectRuleParamsByRuleIds(session, rulesById.keySet())) {
+      paramsByRuleId.put(param.getRuleId(), param);
+    }
+    for (RuleDto rule : rules) {
+      cache.addRule(rule, paramsByRuleId.get(rule.getId()));
+    }
+  }
+
   private RuleActivatorContext create(RuleKey ruleKey, DbSession session, RuleActivatorContext context) {
     initRule(ruleKey, context, session);
     initActiveRules(context.profile().getKey(), ruleKey, context, session, false);
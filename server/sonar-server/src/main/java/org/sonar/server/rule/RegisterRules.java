@@ -21,16 +21,20 @@ package org.sonar.server.rule;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.ObjectUtils;
@@ -46,6 +50,7 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.db.DbSession;
+import org.sonar.db.loadedtemplate.LoadedTemplateDto;
 import org.sonar.db.qualityprofile.ActiveRuleDto;
 import org.sonar.db.qualityprofile.ActiveRuleParamDto;
 import org.sonar.db.rule.RuleDto;
@@ -60,7 +65,10 @@ import org.sonar.server.startup.RegisterDebtModel;
 import static com.google.common.collect.Lists.newArrayList;
 
 /**
- * Register rules at server startup
+ * Register rules at server startup.
+ * <p/>
+ * The hash of the definition of each repository is stored in the table LOADED_TEMPLATES. The repositories
+ * that did not change since the previous startup are not registered again.
  */
 public class RegisterRules implements Startable {
 
@@ -96,18 +104,31 @@ public class RegisterRules implements Startable {
     try {
       Map<RuleKey, RuleDto> allRules = loadRules(session);
       Map<String, CharacteristicDto> allCharacteristics = loadCharacteristics(session);
+      Set<String> previousHashes = loadRepositoryHashes(session);
+      Set<String> hashes = new HashSet<>();
+      ListMultimap<Integer, RuleParamDto> allParams = null;
 
       RulesDefinition.Context context = defLoader.load();
       for (RulesDefinition.ExtendedRepository repoDef : getRepositories(context)) {
         if (languages.get(repoDef.language()) != null) {
-          for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
-            registerRule(ruleDef, allRules, allCharacteristics, session);
+          String hash = RuleRepositoryHash.of(repoDef, allCharacteristics);
+          hashes.add(hash);
+          if (previousHashes.contains(hash) && removeUnchangedRules(repoDef, allRules)) {
+            LOG.debug(String.format("Rules of repository %s are up-to-date", repoDef.key()));
+          } else {
+            if (allParams == null) {
+              allParams = loadRuleParams(session);
+            }
+            for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
+              registerRule(ruleDef, allRules, allCharacteristics, allParams, session);
+            }
+            session.commit();
           }
-          session.commit();
         }
       }
       List<RuleDto> activeRules = processRemainingDbRules(allRules.values(), session);
       removeActiveRulesOnStillExistingRepositories(session, activeRules, context);
+      updateRepositoryHashes(session, previousHashes, hashes);
       session.commit();
       profiler.stopDebug();
     } finally {
@@ -120,7 +141,30 @@ public class RegisterRules implements Startable {
     // nothing
   }
 
-  private void registerRule(RulesDefinition.Rule ruleDef, Map<RuleKey, RuleDto> allRules, Map<String, CharacteristicDto> allCharacteristics, DbSession session) {
+  /**
+   * Rules of a repository whose definition did not change are not registered again, unless they are
+   * missing in db or their status has been changed since last registration.
+   *
+   * @return true if all the rules of the repository are up-to-date. They are then excluded from {@code allRules}.
+   */
+  private static boolean removeUnchangedRules(RulesDefinition.ExtendedRepository repoDef, Map<RuleKey, RuleDto> allRules) {
+    List<RuleKey> ruleKeys = new ArrayList<>();
+    for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
+      RuleKey ruleKey = RuleKey.of(repoDef.key(), ruleDef.key());
+      RuleDto rule = allRules.get(ruleKey);
+      if (rule == null || rule.getStatus() != ruleDef.status()) {
+        return false;
+      }
+      ruleKeys.add(ruleKey);
+    }
+    for (RuleKey ruleKey : ruleKeys) {
+      allRules.remove(ruleKey);
+    }
+    return true;
+  }
+
+  private void registerRule(RulesDefinition.Rule ruleDef, Map<RuleKey, RuleDto> allRules, Map<String, CharacteristicDto> allCharacteristics,
+    ListMultimap<Integer, RuleParamDto> allParams, DbSession session) {
     RuleKey ruleKey = RuleKey.of(ruleDef.repository().key(), ruleDef.key());
 
     RuleDto rule = allRules.containsKey(ruleKey) ? allRules.remove(ruleKey) : createRuleDto(ruleDef, session);
@@ -143,7 +187,7 @@ public class RegisterRules implements Startable {
       dbClient.deprecatedRuleDao().update(session, rule);
     }
 
-    mergeParams(ruleDef, rule, session);
+    mergeParams(ruleDef, rule, allParams.get(rule.getId()), session);
   }
 
   private Map<RuleKey, RuleDto> loadRules(DbSession session) {
@@ -154,6 +198,35 @@ public class RegisterRules implements Startable {
     return rules;
   }
 
+  private ListMultimap<Integer, RuleParamDto> loadRuleParams(DbSession session) {
+    ListMultimap<Integer, RuleParamDto> params = ArrayListMultimap.create();
+    for (RuleParamDto param : dbClient.deprecatedRuleDao().selectAllRuleParams(session)) {
+      params.put(param.getRuleId(), param);
+    }
+    return params;
+  }
+
+  private Set<String> loadRepositoryHashes(DbSession session) {
+    Set<String> hashes = new HashSet<>();
+    for (LoadedTemplateDto template : dbClient.loadedTemplateDao().selectByType(session, LoadedTemplateDto.RULE_REPOSITORY_TYPE)) {
+      hashes.add(template.getKey());
+    }
+    return hashes;
+  }
+
+  /**
+   * Hashes of repositories that are not registered anymore, for example because the language is not installed, are dropped
+   * so that their rules are registered again when the repository comes back.
+   */
+  private void updateRepositoryHashes(DbSession session, Set<String> previousHashes, Set<String> hashes) {
+    for (String hash : Sets.difference(previousHashes, hashes)) {
+      dbClient.loadedTemplateDao().delete(session, LoadedTemplateDto.RULE_REPOSITORY_TYPE, hash);
+    }
+    for (String hash : Sets.difference(hashes, previousHashes)) {
+      dbClient.loadedTemplateDao().insert(new LoadedTemplateDto(hash, LoadedTemplateDto.RULE_REPOSITORY_TYPE), session);
+    }
+  }
+
   private Map<String, CharacteristicDto> loadCharacteristics(DbSession session) {
     Map<String, CharacteristicDto> characteristics = new HashMap<>();
     for (CharacteristicDto characteristicDto : characteristicDao.selectEnabledCharacteristics(session)) {
@@ -315,8 +388,7 @@ public class RegisterRules implements Startable {
     return changed;
   }
 
-  private void mergeParams(RulesDefinition.Rule ruleDef, RuleDto rule, DbSession session) {
-    List<RuleParamDto> paramDtos = dbClient.deprecatedRuleDao().selectRuleParamsByRuleKey(session, rule.getKey());
+  private void mergeParams(RulesDefinition.Rule ruleDef, RuleDto rule, List<RuleParamDto> paramDtos, DbSession session) {
     Map<String, RuleParamDto> existingParamsByName = Maps.newHashMap();
 
     for (RuleParamDto paramDto : paramDtos) {
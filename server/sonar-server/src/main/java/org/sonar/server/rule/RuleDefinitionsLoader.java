@@ -19,11 +19,24 @@
  */
 package org.sonar.server.rule;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.sonar.api.server.rule.RulesDefinition;
 
 /**
  * Loads all instances of {@link RulesDefinition}
  * and initializes {@link RuleRepositories}. Used at server startup.
+ * <p/>
+ * Definitions of plugins are loaded in parallel, each one in its own context. These contexts are then
+ * merged in the order of the plugins, so that the result does not depend on the scheduling of threads.
+ * Deprecated and common definitions are loaded afterwards, as they complete the repositories of plugins.
  */
 public class RuleDefinitionsLoader {
 
@@ -50,12 +63,62 @@ public class RuleDefinitionsLoader {
 
   public RulesDefinition.Context load() {
     RulesDefinition.Context context = new RulesDefinition.Context();
-    for (RulesDefinition pluginDefinition : pluginDefs) {
-      pluginDefinition.define(context);
-    }
+    definePlugins(context);
     deprecatedDefConverter.complete(context);
     coreCommonDefs.define(context);
     output.register(context);
     return context;
   }
+
+  private void definePlugins(RulesDefinition.Context context) {
+    if (pluginDefs.length <= 1) {
+      for (RulesDefinition pluginDefinition : pluginDefs) {
+        pluginDefinition.define(context);
+      }
+      return;
+    }
+
+    int nbThreads = Math.min(pluginDefs.length, Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = Executors.newFixedThreadPool(nbThreads,
+      new ThreadFactoryBuilder().setNameFormat("RuleDefinitionsLoader-%d").setDaemon(true).build());
+    try {
+      ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+      List<RulesDefinition.Context> pluginContexts = new ArrayList<>();
+      List<Future<?>> futures = new ArrayList<>();
+      for (RulesDefinition pluginDefinition : pluginDefs) {
+        RulesDefinition.Context pluginContext = new RulesDefinition.Context();
+        pluginContexts.add(pluginContext);
+        futures.add(executor.submit(new DefineTask(pluginDefinition, pluginContext, classLoader)));
+      }
+      for (Future<?> future : futures) {
+        Uninterruptibles.getUninterruptibly(future);
+      }
+      for (RulesDefinition.Context pluginContext : pluginContexts) {
+        context.registerRepositories(pluginContext);
+      }
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static class DefineTask implements Runnable {
+    private final RulesDefinition definition;
+    private final RulesDefinition.Context context;
+    private final ClassLoader classLoader;
+
+    private DefineTask(RulesDefinition definition, RulesDefinition.Context context, ClassLoader classLoader) {
+      this.definition = definition;
+      this.context = context;
+      this.classLoader = classLoader;
+    }
+
+    @Override
+    public void run() {
+      // same context classloader as the sequential loading
+      Thread.currentThread().setContextClassLoader(classLoader);
+      definition.define(context);
+    }
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.rule;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Ordering;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.server.debt.DebtRemediationFunction;
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.db.debt.CharacteristicDto;
+import org.sonar.db.version.DatabaseVersion;
+
+/**
+ * Fingerprint of the definition of a rule repository, as registered by {@link RegisterRules}. It covers all
+ * the attributes of rules and parameters that are persisted, including the technical debt characteristics
+ * the rules are linked to. Two definitions with the same hash are registered in the same way.
+ * <p/>
+ * The version of database schema is part of the hash, so that all the repositories are registered again
+ * after an upgrade, when the way of persisting rules may have changed.
+ */
+class RuleRepositoryHash {
+
+  private static final byte SEPARATOR = 0;
+  private static final byte NULL = 1;
+
+  private static final Comparator<RulesDefinition.Rule> RULE_KEY_ORDERING = new Comparator<RulesDefinition.Rule>() {
+    @Override
+    public int compare(RulesDefinition.Rule r1, RulesDefinition.Rule r2) {
+      return r1.key().compareTo(r2.key());
+    }
+  };
+
+  private static final Comparator<RulesDefinition.Param> PARAM_KEY_ORDERING = new Comparator<RulesDefinition.Param>() {
+    @Override
+    public int compare(RulesDefinition.Param p1, RulesDefinition.Param p2) {
+      return p1.key().compareTo(p2.key());
+    }
+  };
+
+  private RuleRepositoryHash() {
+    // only static methods
+  }
+
+  /**
+   * @return the key of the repository followed by the SHA-1 of its definition, for example "squid:4e1243bd22c66e76c2ba9eddc1f91394e57f9f83"
+   */
+  static String of(RulesDefinition.ExtendedRepository repository, Map<String, CharacteristicDto> characteristicsByKey) {
+    return of(repository, characteristicsByKey, DatabaseVersion.LAST_VERSION);
+  }
+
+  @VisibleForTesting
+  static String of(RulesDefinition.ExtendedRepository repository, Map<String, CharacteristicDto> characteristicsByKey, int databaseVersion) {
+    MessageDigest digest = DigestUtils.getSha1Digest();
+    update(digest, databaseVersion);
+    update(digest, repository.key());
+    update(digest, repository.language());
+    if (repository instanceof RulesDefinition.Repository) {
+      update(digest, ((RulesDefinition.Repository) repository).name());
+    }
+    for (RulesDefinition.Rule rule : Ordering.from(RULE_KEY_ORDERING).sortedCopy(repository.rules())) {
+      updateRule(digest, rule, characteristicsByKey);
+    }
+    return repository.key() + ":" + Hex.encodeHexString(digest.digest());
+  }
+
+  private static void updateRule(MessageDigest digest, RulesDefinition.Rule rule, Map<String, CharacteristicDto> characteristicsByKey) {
+    update(digest, rule.key());
+    update(digest, rule.name());
+    update(digest, rule.htmlDescription());
+    update(digest, rule.markdownDescription());
+    update(digest, rule.severity());
+    update(digest, rule.template());
+    update(digest, rule.status());
+    update(digest, rule.internalKey());
+    update(digest, Ordering.<String>natural().sortedCopy(rule.tags()));
+    update(digest, rule.effortToFixDescription());
+
+    String subCharacteristic = rule.debtSubCharacteristic();
+    update(digest, subCharacteristic);
+    CharacteristicDto characteristic = subCharacteristic == null ? null : characteristicsByKey.get(subCharacteristic);
+    if (characteristic == null) {
+      update(digest, null);
+    } else {
+      update(digest, characteristic.getId());
+      update(digest, characteristic.getParentId());
+    }
+    DebtRemediationFunction function = rule.debtRemediationFunction();
+    if (function == null) {
+      update(digest, null);
+    } else {
+      update(digest, function.type());
+      update(digest, function.coefficient());
+      update(digest, function.offset());
+    }
+
+    for (RulesDefinition.Param param : Ordering.from(PARAM_KEY_ORDERING).sortedCopy(rule.params())) {
+      update(digest, param.key());
+      update(digest, param.description());
+      update(digest, param.defaultValue());
+      update(digest, param.type());
+    }
+    digest.update(SEPARATOR);
+  }
+
+  private static void update(MessageDigest digest, @Nullable Object value) {
+    if (value == null) {
+      digest.update(NULL);
+    } else {
+      digest.update(String.valueOf(value).getBytes(Charsets.UTF_8));
+    }
+    digest.update(SEPARATOR);
+  }
+}
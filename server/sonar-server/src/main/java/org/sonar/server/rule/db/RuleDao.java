@@ -19,9 +19,11 @@
  */
 package org.sonar.server.rule.db;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
+import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbSession;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleMapper;
@@ -30,7 +32,9 @@ import org.sonar.server.db.BaseDao;
 import org.sonar.server.search.IndexDefinition;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
 
+import java.util.Collection;
 import java.util.List;
 
 public class RuleDao extends BaseDao<RuleMapper, RuleDto, RuleKey> {
@@ -92,6 +96,15 @@ public class RuleDao extends BaseDao<RuleMapper, RuleDto, RuleKey> {
     return mapper(session).selectAll();
   }
 
+  public List<RuleDto> selectByKeys(final DbSession session, Collection<RuleKey> keys) {
+    return DatabaseUtils.executeLargeInputs(keys, new Function<List<RuleKey>, List<RuleDto>>() {
+      @Override
+      public List<RuleDto> apply(@Nonnull List<RuleKey> input) {
+        return mapper(session).selectByKeys(input);
+      }
+    });
+  }
+
   /**
    * Nested DTO RuleParams
    */
@@ -130,6 +143,15 @@ public class RuleDao extends BaseDao<RuleMapper, RuleDto, RuleKey> {
     return mapper(session).selectParamsByRuleKey(key);
   }
 
+  public List<RuleParamDto> selectRuleParamsByRuleIds(final DbSession session, Collection<Integer> ruleIds) {
+    return DatabaseUtils.executeLargeInputs(ruleIds, new Function<List<Integer>, List<RuleParamDto>>() {
+      @Override
+      public List<RuleParamDto> apply(@Nonnull List<Integer> input) {
+        return mapper(session).selectParamsByRuleIds(input);
+      }
+    });
+  }
+
   public List<RuleDto> selectRulesByDebtSubCharacteristicId(DbSession session, int id) {
     return mapper(session).selectBySubCharacteristicId(id);
   }
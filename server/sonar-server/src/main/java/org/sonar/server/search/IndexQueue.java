@@ -19,6 +19,9 @@
  */
 package org.sonar.server.search;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
@@ -28,6 +31,7 @@ import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
+import org.picocontainer.Startable;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -35,29 +39,66 @@ import org.sonar.db.deprecated.WorkQueue;
 import org.sonar.core.platform.ComponentContainer;
 import org.sonar.server.search.action.IndexAction;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Converts the {@link IndexAction}s of committed sessions to Elasticsearch requests.
+ * <ul>
+ *   <li>actions are normalized by a long-lived pool of threads</li>
+ *   <li>actions enqueued by different threads while a flush is in progress are grouped and flushed together
+ *   once the flush completes. Each caller is blocked until its own actions are indexed.</li>
+ *   <li>large flushes are split into several bulk requests, executed asynchronously. The number of
+ *   concurrent bulk requests is bounded. All the requests related to a given document are kept in the same bulk
+ *   request, so their order is preserved.</li>
+ * </ul>
+ */
 @ServerSide
-public class IndexQueue implements WorkQueue<IndexAction<?>> {
+public class IndexQueue implements WorkQueue<IndexAction<?>>, Startable {
+
+  private static final Logger LOGGER = Loggers.get(IndexQueue.class);
+
+  private static final int MAX_ACTIONS_PER_BULK = 1000;
+  private static final long NORMALIZATION_TIMEOUT_MINUTES = 20L;
 
   private final SearchClient searchClient;
   private final ComponentContainer container;
+  private final ExecutorService normalizationExecutor;
+  private final int maxConcurrentBulks;
 
-  private static final Logger LOGGER = Loggers.get(IndexQueue.class);
-
-  private static final Integer CONCURRENT_NORMALIZATION_FACTOR = 1;
+  private final Object lock = new Object();
+  // actions waiting for the completion of the flush in progress
+  private Batch openBatch = null;
+  private boolean flushing = false;
 
   public IndexQueue(SearchClient searchClient, ComponentContainer container) {
     this.searchClient = searchClient;
     this.container = container;
+    int processors = Runtime.getRuntime().availableProcessors();
+    this.normalizationExecutor = Executors.newFixedThreadPool(processors,
+      new ThreadFactoryBuilder().setNameFormat("IndexQueue-%d").setDaemon(true).build());
+    this.maxConcurrentBulks = Math.max(1, processors / 2);
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    normalizationExecutor.shutdownNow();
   }
 
   @Override
@@ -65,6 +106,59 @@ public class IndexQueue implements WorkQueue<IndexAction<?>> {
     if (actions.isEmpty()) {
       return;
     }
+    Batch batch;
+    boolean leader = false;
+    synchronized (lock) {
+      if (openBatch == null) {
+        openBatch = new Batch();
+        leader = true;
+      }
+      batch = openBatch;
+      batch.actions.addAll(actions);
+      if (leader) {
+        waitForFlush();
+        openBatch = null;
+        flushing = true;
+      }
+    }
+
+    if (leader) {
+      RuntimeException failure = null;
+      try {
+        flush(batch.actions);
+      } catch (RuntimeException e) {
+        failure = e;
+        throw e;
+      } finally {
+        synchronized (lock) {
+          flushing = false;
+          lock.notifyAll();
+        }
+        batch.complete(failure);
+      }
+    } else {
+      batch.await();
+    }
+  }
+
+  /**
+   * Must be called while holding {@link #lock}
+   */
+  private void waitForFlush() {
+    boolean interrupted = false;
+    while (flushing) {
+      try {
+        lock.wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void flush(List<IndexAction<?>> actions) {
     boolean refreshRequired = false;
 
     Map<String, Index> indexes = getIndexMap();
@@ -78,21 +172,52 @@ public class IndexQueue implements WorkQueue<IndexAction<?>> {
       }
     }
 
-    BulkRequestBuilder bulkRequestBuilder = searchClient.prepareBulk();
-
-    processActionsIntoQueries(bulkRequestBuilder, actions);
-
-    if (bulkRequestBuilder.numberOfActions() > 0) {
-      // execute the request
-      BulkResponse response = bulkRequestBuilder.setRefresh(false).get();
+    List<BulkRequestBuilder> bulkRequests = processActionsIntoQueries(actions);
+    if (!bulkRequests.isEmpty()) {
+      executeBulks(bulkRequests);
 
       if (refreshRequired) {
         this.refreshRequiredIndex(indices);
       }
+    }
+  }
 
-      if (response.hasFailures()) {
-        throw new IllegalStateException("Errors while indexing stack: " + response.buildFailureMessage());
-      }
+  private void executeBulks(List<BulkRequestBuilder> bulkRequests) {
+    final Semaphore inFlight = new Semaphore(maxConcurrentBulks);
+    final AtomicReference<String> failure = new AtomicReference<>();
+    for (BulkRequestBuilder bulkRequest : bulkRequests) {
+      inFlight.acquireUninterruptibly();
+      executeBulk(bulkRequest, inFlight, failure);
+    }
+    inFlight.acquireUninterruptibly(maxConcurrentBulks);
+
+    if (failure.get() != null) {
+      throw new IllegalStateException("Errors while indexing stack: " + failure.get());
+    }
+  }
+
+  private static void executeBulk(final BulkRequestBuilder bulkRequest, final Semaphore inFlight, final AtomicReference<String> failure) {
+    try {
+      bulkRequest.execute(new ActionListener<BulkResponse>() {
+        @Override
+        public void onResponse(BulkResponse response) {
+          if (response.hasFailures()) {
+            failure.compareAndSet(null, response.buildFailureMessage());
+          }
+          inFlight.release();
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+          LOGGER.error("Fail to execute bulk index request: " + bulkRequest, e);
+          failure.compareAndSet(null, e.getMessage());
+          inFlight.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      LOGGER.error("Fail to execute bulk index request: " + bulkRequest, e);
+      failure.compareAndSet(null, e.getMessage());
+      inFlight.release();
     }
   }
 
@@ -109,34 +234,60 @@ public class IndexQueue implements WorkQueue<IndexAction<?>> {
     }
   }
 
-  private void processActionsIntoQueries(BulkRequestBuilder bulkRequestBuilder, List<IndexAction<?>> actions) {
+  private List<BulkRequestBuilder> processActionsIntoQueries(List<IndexAction<?>> actions) {
+    List<ActionRequest> updates = new ArrayList<>();
+    boolean hasInlineRefreshRequest = false;
     try {
-      boolean hasInlineRefreshRequest = false;
-      ExecutorService executorService = Executors.newFixedThreadPool(CONCURRENT_NORMALIZATION_FACTOR);
-      // invokeAll() blocks until ALL tasks submitted to executor complete
-      List<Future<List<? extends ActionRequest>>> requests = (List) executorService.invokeAll(actions, 20, TimeUnit.MINUTES);
-      for (Future<List<? extends ActionRequest>> updates : requests) {
-        for (ActionRequest update : updates.get()) {
-
-          if (IndexRequest.class.isAssignableFrom(update.getClass())) {
-            bulkRequestBuilder.add((IndexRequest) update);
-          } else if (UpdateRequest.class.isAssignableFrom(update.getClass())) {
-            bulkRequestBuilder.add((UpdateRequest) update);
-          } else if (DeleteRequest.class.isAssignableFrom(update.getClass())) {
-            bulkRequestBuilder.add((DeleteRequest) update);
-          } else if (RefreshRequest.class.isAssignableFrom(update.getClass())) {
+      List<Future<List<? extends ActionRequest>>> requests = (List) normalizationExecutor.invokeAll(actions, NORMALIZATION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+      for (Future<List<? extends ActionRequest>> request : requests) {
+        for (ActionRequest update : request.get()) {
+          if (RefreshRequest.class.isAssignableFrom(update.getClass())) {
             hasInlineRefreshRequest = true;
           } else {
-            throw new IllegalStateException("Un-managed request type: " + update.getClass());
+            updates.add(update);
           }
         }
       }
-      executorService.shutdown();
-      bulkRequestBuilder.setRefresh(hasInlineRefreshRequest);
     } catch (Exception e) {
       LOGGER.error("Could not execute normalization for stack", e);
       throw new IllegalStateException("Could not execute normalization for stack", e);
     }
+
+    if (updates.isEmpty()) {
+      return new ArrayList<>();
+    }
+    int nbBulks = (updates.size() + MAX_ACTIONS_PER_BULK - 1) / MAX_ACTIONS_PER_BULK;
+    List<BulkRequestBuilder> bulkRequests = new ArrayList<>(nbBulks);
+    for (int i = 0; i < nbBulks; i++) {
+      bulkRequests.add(searchClient.prepareBulk().setRefresh(hasInlineRefreshRequest));
+    }
+    for (ActionRequest update : updates) {
+      addToBulk(bulkRequests, update);
+    }
+    return bulkRequests;
+  }
+
+  /**
+   * Requests on the same document always go to the same bulk request, in their original order
+   */
+  private static void addToBulk(List<BulkRequestBuilder> bulkRequests, ActionRequest update) {
+    if (IndexRequest.class.isAssignableFrom(update.getClass())) {
+      IndexRequest request = (IndexRequest) update;
+      selectBulk(bulkRequests, request.index(), request.type(), request.id()).add(request);
+    } else if (UpdateRequest.class.isAssignableFrom(update.getClass())) {
+      UpdateRequest request = (UpdateRequest) update;
+      selectBulk(bulkRequests, request.index(), request.type(), request.id()).add(request);
+    } else if (DeleteRequest.class.isAssignableFrom(update.getClass())) {
+      DeleteRequest request = (DeleteRequest) update;
+      selectBulk(bulkRequests, request.index(), request.type(), request.id()).add(request);
+    } else {
+      throw new IllegalStateException("Un-managed request type: " + update.getClass());
+    }
+  }
+
+  private static BulkRequestBuilder selectBulk(List<BulkRequestBuilder> bulkRequests, String index, String type, String id) {
+    int hash = 31 * (31 * String.valueOf(index).hashCode() + String.valueOf(type).hashCode()) + String.valueOf(id).hashCode();
+    return bulkRequests.get(Math.abs(hash % bulkRequests.size()));
   }
 
   private Map<String, Index> getIndexMap() {
@@ -146,4 +297,25 @@ public class IndexQueue implements WorkQueue<IndexAction<?>> {
     }
     return indexes;
   }
+
+  /**
+   * Actions of the callers that are flushed together
+   */
+  private static class Batch {
+    private final List<IndexAction<?>> actions = new ArrayList<>();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile RuntimeException failure = null;
+
+    void complete(RuntimeException e) {
+      this.failure = e;
+      completed.countDown();
+    }
+
+    void await() {
+      Uninterruptibles.awaitUninterruptibly(completed);
+      if (failure != null) {
+        throw new IllegalStateException("Fail to index actions enqueued concurrently", failure);
+      }
+    }
+  }
 }
@@ -20,7 +20,11 @@
 
 package org.sonar.server.user.index;
 
+import com.google.common.base.Function;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -54,15 +58,21 @@ public class UserIndexer extends BaseIndexer {
   }
 
   private static long doIndex(BulkIndexer bulk, Iterator<UserDoc> users) {
-    long maxUpdatedAt = 0L;
+    final AtomicLong maxUpdatedAt = new AtomicLong(0L);
     bulk.start();
-    while (users.hasNext()) {
-      UserDoc user = users.next();
-      bulk.add(newUpsertRequest(user));
-      maxUpdatedAt = Math.max(maxUpdatedAt, user.updatedAt());
-    }
+    bulk.addAll(users, new Function<UserDoc, ActionRequest>() {
+      @Override
+      public ActionRequest apply(@Nonnull UserDoc user) {
+        long updatedAt = user.updatedAt();
+        long max = maxUpdatedAt.get();
+        while (updatedAt > max && !maxUpdatedAt.compareAndSet(max, updatedAt)) {
+          max = maxUpdatedAt.get();
+        }
+        return newUpsertRequest(user);
+      }
+    });
     bulk.stop();
-    return maxUpdatedAt;
+    return maxUpdatedAt.get();
   }
 
   private static UpdateRequest newUpsertRequest(UserDoc user) {
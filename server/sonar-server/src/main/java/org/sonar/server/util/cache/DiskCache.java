@@ -19,34 +19,44 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
-import org.apache.commons.io.FileUtils;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
-import org.sonar.server.util.ObjectInputStreamIterator;
 
 /**
  * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * Format is defined by {@link DiskCacheCodec}, which is Java serialization by default.
  */
 public class DiskCache<O extends Serializable> {
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+
   private final File file;
   private final System2 system2;
+  private final DiskCacheCodec<O> codec;
 
   public DiskCache(File file, System2 system2) {
+    this(file, system2, new JavaSerializationCodec<O>());
+  }
+
+  public DiskCache(File file, System2 system2, DiskCacheCodec<O> codec) {
     this.system2 = system2;
     this.file = file;
+    this.codec = codec;
     OutputStream output = null;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
+      output = openOutput(StandardOpenOption.TRUNCATE_EXISTING);
+      codec.writeHeader(output);
       output.flush();
 
       // raise an exception if can't close
@@ -63,33 +73,42 @@ public class DiskCache<O extends Serializable> {
   }
 
   public CloseableIterator<O> traverse() {
+    InputStream input = null;
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      input = new BufferedInputStream(Channels.newInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ)), BUFFER_SIZE);
+      return codec.newDecoder(input);
     } catch (IOException e) {
+      IOUtils.closeQuietly(input);
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
+  private OutputStream openOutput(StandardOpenOption mode) throws IOException {
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+    return new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+  }
+
+  /**
+   * Appends objects to the end of the file. Method {@link #append(Serializable)} can be called
+   * concurrently by multiple threads.
+   */
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final DiskCacheCodec.Encoder<O> encoder;
 
     private DiskAppender() {
+      OutputStream output = null;
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        output = openOutput(StandardOpenOption.APPEND);
+        this.encoder = codec.newEncoder(output);
       } catch (IOException e) {
+        IOUtils.closeQuietly(output);
         throw new IllegalStateException("Fail to open file " + file, e);
       }
     }
 
-    public DiskAppender append(O object) {
+    public synchronized DiskAppender append(O object) {
       try {
-        output.writeObject(object);
-        output.reset();
+        encoder.write(object);
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
@@ -98,7 +117,7 @@ public class DiskCache<O extends Serializable> {
 
     @Override
     public void close() {
-      system2.close(output);
+      system2.close(encoder);
     }
   }
 }
@@ -0,0 +1,53 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.sonar.core.util.CloseableIterator;
+
+/**
+ * Format of the objects stored by {@link DiskCache}. Streams are already buffered.
+ */
+public interface DiskCacheCodec<O> {
+
+  /**
+   * Called once when the cache file is created, before any call to {@link #newEncoder(OutputStream)}.
+   */
+  void writeHeader(OutputStream output) throws IOException;
+
+  /**
+   * Encoder appending objects to the end of the file. Its method {@link Encoder#close()}
+   * must close {@code output}.
+   */
+  Encoder<O> newEncoder(OutputStream output) throws IOException;
+
+  /**
+   * Iterator on all the objects of the file, including header. It must close {@code input}
+   * when closed.
+   */
+  CloseableIterator<O> newDecoder(InputStream input) throws IOException;
+
+  interface Encoder<O> extends Closeable {
+    void write(O object) throws IOException;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import com.google.common.base.Splitter;
+import java.net.HttpURLConnection;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+
+/**
+ * Conditional GET of web services. The entity tag returned in the header {@code ETag} identifies
+ * the version of the data. Clients which send it back in the header {@code If-None-Match} get
+ * the status 304 without content as long as the data does not change.
+ */
+public class ETags {
+
+  public static final String ETAG = "ETag";
+  public static final String IF_NONE_MATCH = "If-None-Match";
+
+  private static final Splitter TAGS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+  private ETags() {
+    // only statics
+  }
+
+  /**
+   * @param version any string which changes when the data returned by the web service changes
+   */
+  public static String of(String version) {
+    return "\"" + DigestUtils.md5Hex(version) + "\"";
+  }
+
+  /**
+   * Sets the header {@code ETag} of the response. If the client already has this version of the data,
+   * then the status 304 is set and {@code true} is returned. In this case the content must not be written.
+   */
+  public static boolean writeNotModifiedIfMatch(Request request, Response response, String version) {
+    String etag = of(version);
+    response.setHeader(ETAG, etag);
+    if (matches(request.header(IF_NONE_MATCH), etag)) {
+      response.stream().setStatus(HttpURLConnection.HTTP_NOT_MODIFIED);
+      IOUtils.closeQuietly(response.stream().output());
+      return true;
+    }
+    return false;
+  }
+
+  private static boolean matches(@Nullable String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : TAGS_SPLITTER.split(ifNoneMatch)) {
+      if ("*".equals(tag) || etag.equals(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
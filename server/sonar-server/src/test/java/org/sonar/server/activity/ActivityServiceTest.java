@@ -19,6 +19,7 @@
  */
 package org.sonar.server.activity;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.assertj.core.data.MapEntry;
@@ -56,6 +57,7 @@ public class ActivityServiceTest {
 
   @Before
   public void before() {
+    es.truncateIndices();
     DbClient dbClient = db.getDbClient();
     ActivityIndexer indexer = new ActivityIndexer(dbClient, es.client());
     // indexers are disabled by default
@@ -88,4 +90,28 @@ public class ActivityServiceTest {
     assertThat(docs.get(0).getDetails()).containsOnly(MapEntry.entry("foo", "bar"));
   }
 
+  @Test
+  public void insert_and_index_activities_at_once() {
+    List<Activity> activities = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Activity activity = new Activity();
+      activity.setType(Activity.Type.QPROFILE);
+      activity.setAction("ACTION_" + i);
+      activity.setMessage("MSG_" + i);
+      activities.add(activity);
+    }
+    service.save(activities);
+
+    assertThat(db.countRowsOfTable("activities")).isEqualTo(3);
+    List<ActivityDoc> docs = es.getDocuments("activities", "activity", ActivityDoc.class);
+    assertThat(docs).extracting("action").containsOnly("ACTION_0", "ACTION_1", "ACTION_2");
+  }
+
+  @Test
+  public void do_nothing_when_no_activities() {
+    service.save(new ArrayList<Activity>());
+
+    assertThat(db.countRowsOfTable("activities")).isEqualTo(0);
+  }
+
 }
@@ -61,7 +61,7 @@ public class BatchWsTest {
     tester = new WsTester(new BatchWs(batchIndex,
       new GlobalAction(mock(DbClient.class), mock(PropertiesDao.class), userSessionRule),
       new ProjectAction(mock(ProjectDataLoader.class)),
-      new IssuesAction(mock(DbClient.class), mock(IssueIndex.class), userSessionRule, mock(ComponentFinder.class))));
+      new IssuesAction(mock(DbClient.class), mock(IssueIndex.class), userSessionRule, mock(ComponentFinder.class), mock(ServerIssuesExport.class))));
   }
 
   @Test
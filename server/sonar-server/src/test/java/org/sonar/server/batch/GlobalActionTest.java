@@ -36,9 +36,11 @@ import org.sonar.db.property.PropertiesDao;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.ETags;
 import org.sonar.server.ws.WsTester;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -82,6 +84,24 @@ public class GlobalActionTest {
     request.execute().assertJson(getClass(), "return_global_referentials.json");
   }
 
+  @Test
+  public void not_modified_when_global_settings_did_not_change() throws Exception {
+    userSessionRule.setGlobalPermissions(GlobalPermissions.SCAN_EXECUTION, GlobalPermissions.PREVIEW_EXECUTION);
+    when(propertiesDao.selectGlobalProperties(session)).thenReturn(newArrayList(new PropertyDto().setKey("foo").setValue("bar")));
+
+    String etag = tester.newGetRequest("batch", "global").execute().header(ETags.ETAG);
+    assertThat(etag).isNotEmpty();
+
+    WsTester.Result result = tester.newGetRequest("batch", "global").setHeader(ETags.IF_NONE_MATCH, etag).execute();
+    result.assertNotModified();
+    assertThat(result.outputAsString()).isEmpty();
+
+    when(propertiesDao.selectGlobalProperties(session)).thenReturn(newArrayList(new PropertyDto().setKey("foo").setValue("baz")));
+    result = tester.newGetRequest("batch", "global").setHeader(ETags.IF_NONE_MATCH, etag).execute();
+    assertThat(result.header(ETags.ETAG)).isNotEqualTo(etag);
+    assertThat(result.outputAsString()).contains("baz");
+  }
+
   @Test
   public void return_global_settings() throws Exception {
     userSessionRule.setGlobalPermissions(GlobalPermissions.SCAN_EXECUTION, GlobalPermissions.PREVIEW_EXECUTION);
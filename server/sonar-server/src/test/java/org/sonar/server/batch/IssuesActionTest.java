@@ -22,12 +22,15 @@ package org.sonar.server.batch;
 
 import java.io.ByteArrayInputStream;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.security.DefaultGroups;
@@ -39,6 +42,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.process.ProcessProperties;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.issue.IssueTesting;
@@ -49,6 +53,7 @@ import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.issue.index.IssueIndexer;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.ETags;
 import org.sonar.server.ws.WsTester;
 import org.sonar.test.DbTests;
 
@@ -72,23 +77,30 @@ public class IssuesActionTest {
   @Rule
   public UserSessionRule userSessionRule = UserSessionRule.standalone();
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   IssueIndex issueIndex;
   IssueIndexer issueIndexer;
   IssueAuthorizationIndexer issueAuthorizationIndexer;
 
   WsTester tester;
 
+  ServerIssuesExport issuesExport;
+
   IssuesAction issuesAction;
 
   @Before
-  public void before() {
+  public void before() throws Exception {
     db.truncateTables();
     es.truncateIndices();
 
     issueIndex = new IssueIndex(es.client(), System2.INSTANCE, userSessionRule);
     issueIndexer = new IssueIndexer(null, es.client());
     issueAuthorizationIndexer = new IssueAuthorizationIndexer(null, es.client());
-    issuesAction = new IssuesAction(db.getDbClient(), issueIndex, userSessionRule, new ComponentFinder(db.getDbClient()));
+    Settings settings = new Settings().setProperty(ProcessProperties.PATH_DATA, temp.newFolder().getAbsolutePath());
+    issuesExport = new ServerIssuesExport(db.getDbClient(), settings);
+    issuesAction = new IssuesAction(db.getDbClient(), issueIndex, userSessionRule, new ComponentFinder(db.getDbClient()), issuesExport);
 
     tester = new WsTester(new BatchWs(new BatchIndex(mock(Server.class)), issuesAction));
   }
@@ -313,6 +325,77 @@ public class IssuesActionTest {
     assertThat(serverIssue.getModuleKey()).isEqualTo(MODULE_KEY);
   }
 
+  @Test
+  public void not_modified_when_issues_did_not_change() throws Exception {
+    ComponentDto project = ComponentTesting.newProjectDto("ABCD").setKey(PROJECT_KEY);
+    ComponentDto file = ComponentTesting.newFileDto(project, "CDEF").setKey(FILE_KEY);
+    db.getDbClient().componentDao().insert(db.getSession(), project, file);
+    db.getSession().commit();
+    indexIssues(IssueTesting.newDoc("EFGH", file).setTechnicalUpdateDate(new Date(1000L)));
+    userSessionRule.login("henry").setGlobalPermissions(GlobalPermissions.PREVIEW_EXECUTION);
+
+    WsTester.Result result = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).execute();
+    String etag = result.header(ETags.ETAG);
+    assertThat(etag).isNotEmpty();
+    assertThat(result.output()).isNotEmpty();
+
+    result = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).setHeader(ETags.IF_NONE_MATCH, etag).execute();
+    result.assertNotModified();
+    assertThat(result.output()).isEmpty();
+
+    // issue is updated
+    indexIssues(IssueTesting.newDoc("EFGH", file).setTechnicalUpdateDate(new Date(2000L)));
+    result = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).setHeader(ETags.IF_NONE_MATCH, etag).execute();
+    assertThat(result.header(ETags.ETAG)).isNotEqualTo(etag);
+    assertThat(result.output()).isNotEmpty();
+  }
+
+  @Test
+  public void issues_of_project_are_read_from_export_when_up_to_date() throws Exception {
+    ComponentDto project = ComponentTesting.newProjectDto("ABCD").setKey(PROJECT_KEY);
+    ComponentDto module = ComponentTesting.newModuleDto("BCDE", project).setKey(MODULE_KEY);
+    ComponentDto file = ComponentTesting.newFileDto(module, "CDEF").setKey(FILE_KEY);
+    db.getDbClient().componentDao().insert(db.getSession(), project, module, file);
+    db.getSession().commit();
+    indexIssues(IssueTesting.newDoc("EFGH", file).setTechnicalUpdateDate(new Date(1000L)));
+    userSessionRule.login("henry").setGlobalPermissions(GlobalPermissions.PREVIEW_EXECUTION);
+
+    // export is done with the version of issues in index, but its content differs from index to verify where issues are read
+    Map<String, String> keysByUuid = issuesExport.selectModuleKeysByUuid(db.getSession(), project);
+    String version = ServerIssuesExport.version(project, keysByUuid, issueIndex.selectProjectIssuesForBatchExportVersion(project.uuid()));
+    issuesExport.export(project.uuid(), version, keysByUuid, Arrays.asList(IssueTesting.newDoc("FROM_EXPORT", file)).iterator());
+
+    WsTester.TestRequest request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY);
+    assertThat(ServerIssue.parseDelimitedFrom(new ByteArrayInputStream(request.execute().output())).getKey()).isEqualTo("FROM_EXPORT");
+
+    // export is not used for modules
+    request = tester.newGetRequest("batch", "issues").setParam("key", MODULE_KEY);
+    assertThat(ServerIssue.parseDelimitedFrom(new ByteArrayInputStream(request.execute().output())).getKey()).isEqualTo("EFGH");
+
+    // issue is updated, so export is outdated
+    indexIssues(IssueTesting.newDoc("EFGH", file).setTechnicalUpdateDate(new Date(2000L)));
+    request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY);
+    assertThat(ServerIssue.parseDelimitedFrom(new ByteArrayInputStream(request.execute().output())).getKey()).isEqualTo("EFGH");
+  }
+
+  @Test
+  public void export_is_not_used_when_user_can_not_browse_project() throws Exception {
+    ComponentDto project = ComponentTesting.newProjectDto("ABCD").setKey(PROJECT_KEY);
+    ComponentDto file = ComponentTesting.newFileDto(project, "CDEF").setKey(FILE_KEY);
+    db.getDbClient().componentDao().insert(db.getSession(), project, file);
+    db.getSession().commit();
+    issueIndexer.index(Arrays.asList(IssueTesting.newDoc("EFGH", file)).iterator());
+    addIssueAuthorization(project.uuid(), null, "john");
+    userSessionRule.login("henry").setGlobalPermissions(GlobalPermissions.PREVIEW_EXECUTION);
+
+    Map<String, String> keysByUuid = issuesExport.selectModuleKeysByUuid(db.getSession(), project);
+    String version = ServerIssuesExport.version(project, keysByUuid, issueIndex.selectProjectIssuesForBatchExportVersion(project.uuid()));
+    issuesExport.export(project.uuid(), version, keysByUuid, Arrays.asList(IssueTesting.newDoc("EFGH", file)).iterator());
+
+    WsTester.TestRequest request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY);
+    assertThat(request.execute().output()).isEmpty();
+  }
+
   @Test(expected = ForbiddenException.class)
   public void fail_without_preview_permission() throws Exception {
     userSessionRule.login("henry").setGlobalPermissions(GlobalPermissions.PROVISIONING);
@@ -20,11 +20,14 @@
 
 package org.sonar.server.batch;
 
+import java.net.HttpURLConnection;
+import java.util.Date;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.sonar.batch.protocol.input.FileData;
 import org.sonar.batch.protocol.input.ProjectRepositories;
+import org.sonar.server.ws.ETags;
 import org.sonar.server.ws.TestResponse;
 import org.sonar.server.ws.WsActionTester;
 import org.sonarqube.ws.MediaTypes;
@@ -88,4 +91,37 @@ public class ProjectActionTest {
     WsProjectResponse wsProjectResponse = WsProjectResponse.parseFrom(result.getInputStream());
     assertThat(wsProjectResponse.getFileDataByModuleAndPath()).isEmpty();
   }
+
+  @Test
+  public void not_modified_when_project_data_did_not_change() throws Exception {
+    ProjectRepositories projectRepositories = new ProjectRepositories().addFileData("module-1", "src/Foo.java", new FileData("hash", "rev"));
+    projectRepositories.setLastAnalysisDate(new Date(1000L));
+    when(projectDataLoader.load(any(ProjectDataQuery.class))).thenReturn(projectRepositories);
+
+    TestResponse result = ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .execute();
+    String etag = result.getHeader(ETags.ETAG);
+    assertThat(etag).isNotEmpty();
+
+    // date of last analysis is ignored
+    projectRepositories.setLastAnalysisDate(new Date(2000L));
+    result = ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setHeader(ETags.IF_NONE_MATCH, etag)
+      .execute();
+    assertThat(result.getStatus()).isEqualTo(HttpURLConnection.HTTP_NOT_MODIFIED);
+    assertThat(result.getInput()).isEmpty();
+
+    projectRepositories.addFileData("module-1", "src/Bar.java", new FileData("hash2", "rev"));
+    result = ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setHeader(ETags.IF_NONE_MATCH, etag)
+      .execute();
+    assertThat(result.getHeader(ETags.ETAG)).isNotEqualTo(etag);
+    assertThat(WsProjectResponse.parseFrom(result.getInputStream()).getFileDataByModuleAndPath()).hasSize(1);
+  }
 }
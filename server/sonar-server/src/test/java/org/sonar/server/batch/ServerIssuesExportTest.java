@@ -0,0 +1,125 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.batch.protocol.input.BatchInput.ServerIssue;
+import org.sonar.db.DbClient;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.process.ProcessProperties;
+import org.sonar.server.issue.IssueTesting;
+import org.sonar.server.issue.index.IssueDoc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ServerIssuesExportTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  ComponentDto project = ComponentTesting.newProjectDto("PROJECT_UUID").setKey("PROJECT_KEY");
+  ComponentDto file = ComponentTesting.newFileDto(project, "FILE_UUID").setKey("FILE_KEY");
+  Map<String, String> keysByUuid = Collections.singletonMap("PROJECT_UUID", "PROJECT_KEY");
+  File dataDir;
+  ServerIssuesExport underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    dataDir = temp.newFolder();
+    underTest = new ServerIssuesExport(mock(DbClient.class), new Settings().setProperty(ProcessProperties.PATH_DATA, dataDir.getAbsolutePath()));
+  }
+
+  @Test
+  public void write_exported_issues_if_version_matches() throws Exception {
+    underTest.export("PROJECT_UUID", "V1", keysByUuid, Arrays.<IssueDoc>asList(
+      IssueTesting.newDoc("ISSUE1", file).setRuleKey("squid:S001"),
+      IssueTesting.newDoc("ISSUE2", file).setRuleKey("squid:S002")).iterator());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertThat(underTest.writeIfUpToDate("PROJECT_UUID", "V1", output)).isTrue();
+
+    ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+    ServerIssue issue = ServerIssue.parseDelimitedFrom(input);
+    assertThat(issue.getKey()).isEqualTo("ISSUE1");
+    assertThat(issue.getModuleKey()).isEqualTo("PROJECT_KEY");
+    assertThat(issue.getRuleKey()).isEqualTo("S001");
+    assertThat(ServerIssue.parseDelimitedFrom(input).getKey()).isEqualTo("ISSUE2");
+    assertThat(ServerIssue.parseDelimitedFrom(input)).isNull();
+  }
+
+  @Test
+  public void do_not_write_exported_issues_if_version_does_not_match() {
+    underTest.export("PROJECT_UUID", "V1", keysByUuid, Arrays.asList(IssueTesting.newDoc("ISSUE1", file)).iterator());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertThat(underTest.writeIfUpToDate("PROJECT_UUID", "V2", output)).isFalse();
+    assertThat(output.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void do_not_write_anything_if_project_has_no_export() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertThat(underTest.writeIfUpToDate("PROJECT_UUID", "V1", output)).isFalse();
+    assertThat(output.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void export_replaces_previous_export() {
+    underTest.export("PROJECT_UUID", "V1", keysByUuid, Arrays.asList(IssueTesting.newDoc("ISSUE1", file)).iterator());
+    underTest.export("PROJECT_UUID", "V2", keysByUuid, Collections.<IssueDoc>emptyIterator());
+
+    assertThat(underTest.writeIfUpToDate("PROJECT_UUID", "V1", new ByteArrayOutputStream())).isFalse();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertThat(underTest.writeIfUpToDate("PROJECT_UUID", "V2", output)).isTrue();
+    assertThat(output.size()).isEqualTo(0);
+    assertThat(new File(dataDir, "ce/issues").list()).containsOnly("PROJECT_UUID.pb");
+  }
+
+  @Test
+  public void delete_export() {
+    underTest.export("PROJECT_UUID", "V1", keysByUuid, Arrays.asList(IssueTesting.newDoc("ISSUE1", file)).iterator());
+
+    underTest.deleteIfExists("PROJECT_UUID");
+    underTest.deleteIfExists("UNKNOWN");
+
+    assertThat(underTest.writeIfUpToDate("PROJECT_UUID", "V1", new ByteArrayOutputStream())).isFalse();
+  }
+
+  @Test
+  public void version_depends_on_component_modules_and_issues() {
+    String version = ServerIssuesExport.version(project, keysByUuid, "1-1000");
+
+    assertThat(ServerIssuesExport.version(project, keysByUuid, "1-1000")).isEqualTo(version);
+    assertThat(ServerIssuesExport.version(project, keysByUuid, "1-2000")).isNotEqualTo(version);
+    assertThat(ServerIssuesExport.version(project, Collections.singletonMap("PROJECT_UUID", "RENAMED"), "1-1000")).isNotEqualTo(version);
+  }
+}
@@ -28,7 +28,10 @@ import org.junit.Test;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.batch.protocol.output.BatchReportWriter;
+import org.sonar.batch.protocol.output.FileStructure;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.computation.step.StepMetrics;
+import org.sonar.server.computation.step.StepMetricsHolderImpl;
 
 import static com.google.common.collect.ImmutableList.of;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -55,12 +58,13 @@ public class BatchReportReaderImplTest {
   @Rule
   public JUnitTempFolder tempFolder = new JUnitTempFolder();
 
+  private BatchReportDirectoryHolder holder;
   private BatchReportWriter writer;
   private BatchReportReaderImpl underTest;
 
   @Before
   public void setUp() {
-    BatchReportDirectoryHolder holder = new ImmutableBatchReportDirectoryHolder(tempFolder.newDir());
+    holder = new ImmutableBatchReportDirectoryHolder(tempFolder.newDir());
     underTest = new BatchReportReaderImpl(holder);
     writer = new BatchReportWriter(holder.getDirectory());
   }
@@ -315,4 +319,40 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void read_packed_report() throws IOException {
+    writer.writeComponent(COMPONENT);
+    writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    writer.packComponentData();
+
+    BatchReportReaderImpl packedReader = new BatchReportReaderImpl(new ImmutableBatchReportDirectoryHolder(writer.getFileStructure().containerFile().getParentFile()));
+
+    assertThat(packedReader.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    CloseableIterator<String> source = packedReader.readFileSource(COMPONENT_REF).get();
+    assertThat(source).containsExactly("1", "2", "3");
+    source.close();
+    CloseableIterator<BatchReport.Test> tests = packedReader.readTests(COMPONENT_REF);
+    assertThat(tests).containsExactly(TEST_1, TEST_2);
+    tests.close();
+    assertThat(packedReader.readCoverageDetails(COMPONENT_REF)).isEmpty();
+  }
+
+  @Test
+  public void size_of_read_data_is_added_to_metrics_of_current_step() throws IOException {
+    StepMetricsHolderImpl stepMetricsHolder = new StepMetricsHolderImpl();
+    BatchReportReaderImpl reader = new BatchReportReaderImpl(holder, stepMetricsHolder);
+    File file = writer.getSourceFile(COMPONENT_REF);
+    FileUtils.writeLines(file, of("1", "2", "3"));
+    writer.writeComponentMeasures(COMPONENT_REF, of(MEASURE));
+
+    stepMetricsHolder.startStep();
+    reader.readFileSource(COMPONENT_REF).get().close();
+    reader.readComponentMeasures(COMPONENT_REF).close();
+    reader.readComponentIssues(COMPONENT_REF).close();
+    StepMetrics metrics = stepMetricsHolder.stopStep("Read report", 10L, 0L);
+
+    assertThat(metrics.getReportBytesRead()).isEqualTo(file.length() + writer.getFileStructure().fileFor(FileStructure.Domain.MEASURES, COMPONENT_REF).length());
+  }
 }
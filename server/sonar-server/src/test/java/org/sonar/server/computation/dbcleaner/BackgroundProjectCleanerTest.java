@@ -0,0 +1,103 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.dbcleaner;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.Settings;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.purge.IdUuidPair;
+import org.sonar.db.purge.PurgeProfiler;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class BackgroundProjectCleanerTest {
+
+  private static final IdUuidPair PROJECT = new IdUuidPair(12L, "PROJECT_UUID");
+
+  DbClient dbClient = mock(DbClient.class);
+  DbSession session = mock(DbSession.class);
+  ProjectCleaner projectCleaner = mock(ProjectCleaner.class);
+  PurgeExecutorService executorService = mock(PurgeExecutorService.class);
+  CeConfiguration ceConfiguration = mock(CeConfiguration.class);
+  Settings settings = new Settings();
+
+  BackgroundProjectCleaner underTest = new BackgroundProjectCleaner(dbClient, projectCleaner, executorService, ceConfiguration);
+
+  @Test
+  public void purge_history_in_background() {
+    when(dbClient.openSession(anyBoolean())).thenReturn(session);
+    when(ceConfiguration.getPurgeMaxDbUsage()).thenReturn(50);
+
+    assertThat(underTest.schedule(PROJECT, settings)).isTrue();
+    verifyZeroInteractions(projectCleaner);
+
+    runSubmittedTask(1);
+
+    verify(projectCleaner).purgeHistory(eq(session), eq(PROJECT), eq(settings), any(PurgeProfiler.class));
+    verify(session).commit();
+    verify(dbClient).closeSession(session);
+  }
+
+  @Test
+  public void do_not_schedule_purge_of_project_which_is_pending() {
+    when(dbClient.openSession(anyBoolean())).thenReturn(session);
+    when(ceConfiguration.getPurgeMaxDbUsage()).thenReturn(100);
+
+    assertThat(underTest.schedule(PROJECT, settings)).isTrue();
+    assertThat(underTest.schedule(PROJECT, settings)).isFalse();
+    assertThat(underTest.schedule(new IdUuidPair(13L, "OTHER_UUID"), settings)).isTrue();
+
+    runSubmittedTask(2);
+
+    // purge is done, so it can be scheduled again
+    assertThat(underTest.schedule(PROJECT, settings)).isTrue();
+  }
+
+  @Test
+  public void failure_of_purge_is_logged_and_does_not_block_next_purge_of_project() {
+    when(dbClient.openSession(anyBoolean())).thenReturn(session);
+    when(ceConfiguration.getPurgeMaxDbUsage()).thenReturn(50);
+    doThrow(new IllegalStateException("db is down")).when(projectCleaner).purgeHistory(eq(session), eq(PROJECT), eq(settings), any(PurgeProfiler.class));
+
+    underTest.schedule(PROJECT, settings);
+    runSubmittedTask(1);
+
+    verify(dbClient).closeSession(session);
+    assertThat(underTest.schedule(PROJECT, settings)).isTrue();
+  }
+
+  private void runSubmittedTask(int submittedTasks) {
+    ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(executorService, times(submittedTasks)).submit(taskCaptor.capture());
+    taskCaptor.getAllValues().get(0).run();
+  }
+}
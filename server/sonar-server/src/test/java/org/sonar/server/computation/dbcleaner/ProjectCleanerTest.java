@@ -39,6 +39,7 @@ import org.sonar.server.issue.index.IssueIndex;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -90,7 +91,7 @@ public class ProjectCleanerTest {
 
     underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings);
 
-    verify(periodCleaner).clean(any(DbSession.class), any(Long.class), any(Settings.class));
+    verify(periodCleaner).clean(any(DbSession.class), any(Long.class), any(Settings.class), any(PurgeProfiler.class));
     verify(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
     verify(issueIndex).deleteClosedIssuesOfProjectBefore(any(String.class), any(Date.class));
   }
@@ -106,10 +107,52 @@ public class ProjectCleanerTest {
 
   @Test
   public void if_profiler_cleaning_fails_it_should_not_interrupt_program_execution() {
-    doThrow(RuntimeException.class).when(periodCleaner).clean(any(DbSession.class), anyLong(), any(Settings.class));
+    doThrow(RuntimeException.class).when(periodCleaner).clean(any(DbSession.class), anyLong(), any(Settings.class), any(PurgeProfiler.class));
 
     underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings);
 
-    verify(periodCleaner).clean(any(DbSession.class), anyLong(), any(Settings.class));
+    verify(periodCleaner).clean(any(DbSession.class), anyLong(), any(Settings.class), any(PurgeProfiler.class));
+  }
+
+  @Test
+  public void deleteAbortedBuildsAndDisableOrphans_does_not_purge_history() {
+    underTest.deleteAbortedBuildsAndDisableOrphans(mock(DbSession.class), mock(IdUuidPair.class), settings);
+
+    verify(dao).deleteAbortedBuildsAndDisableOrphans(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+    verify(dao, never()).purgeHistory(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeProfiler.class));
+    verifyZeroInteractions(periodCleaner, issueIndex);
+  }
+
+  @Test
+  public void if_deleteAbortedBuildsAndDisableOrphans_fails_it_should_not_interrupt_program_execution() {
+    doThrow(RuntimeException.class).when(dao).deleteAbortedBuildsAndDisableOrphans(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class),
+      any(PurgeProfiler.class));
+
+    underTest.deleteAbortedBuildsAndDisableOrphans(mock(DbSession.class), mock(IdUuidPair.class), settings);
+  }
+
+  @Test
+  public void purgeHistory_uses_given_profiler() {
+    settings.setProperty(PurgeConstants.DAYS_BEFORE_DELETING_CLOSED_ISSUES, 5);
+    settings.setProperty(CoreProperties.PROFILING_LOG_PROPERTY, true);
+    PurgeProfiler purgeProfiler = mock(PurgeProfiler.class);
+
+    underTest.purgeHistory(mock(DbSession.class), mock(IdUuidPair.class), settings, purgeProfiler);
+
+    verify(periodCleaner).clean(any(DbSession.class), anyLong(), any(Settings.class), eq(purgeProfiler));
+    verify(dao).purgeHistory(any(DbSession.class), any(PurgeConfiguration.class), eq(purgeProfiler));
+    verify(dao, never()).deleteAbortedBuildsAndDisableOrphans(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+    verify(issueIndex).deleteClosedIssuesOfProjectBefore(any(String.class), any(Date.class));
+    verify(purgeProfiler).dump(anyLong(), any(Logger.class));
+    verifyZeroInteractions(profiler);
+  }
+
+  @Test
+  public void if_purgeHistory_fails_it_should_not_interrupt_program_execution() {
+    doThrow(RuntimeException.class).when(dao).purgeHistory(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeProfiler.class));
+
+    underTest.purgeHistory(mock(DbSession.class), mock(IdUuidPair.class), settings, profiler);
+
+    verify(dao).purgeHistory(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeProfiler.class));
   }
 }
@@ -48,6 +48,8 @@ import org.sonar.server.computation.component.TypeAwareVisitor;
 import org.sonar.server.computation.issue.commonrule.CommonRuleEngineImpl;
 import org.sonar.server.computation.qualityprofile.ActiveRulesHolderRule;
 import org.sonar.server.computation.source.SourceLinesRepositoryRule;
+import org.sonar.server.computation.step.StepMetricsHolderImpl;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
 import org.sonar.server.issue.IssueTesting;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -57,6 +59,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.sonar.server.computation.component.ReportComponent.builder;
 
 public class IntegrateIssuesVisitorTest {
@@ -120,7 +123,14 @@ public class IntegrateIssuesVisitorTest {
   public void setUp() throws Exception {
     treeRootHolder.setRoot(PROJECT);
     issueCache = new IssueCache(temp.newFile(), System2.INSTANCE);
-    underTest = new IntegrateIssuesVisitor(tracker, issueCache, issueLifecycle, issueVisitors, componentsWithUnprocessedIssues, componentIssuesRepository);
+    underTest = newVisitor(1);
+  }
+
+  private IntegrateIssuesVisitor newVisitor(int workerCount) {
+    CeConfiguration ceConfiguration = mock(CeConfiguration.class);
+    when(ceConfiguration.getIssueTrackingWorkerCount()).thenReturn(workerCount);
+    return new IntegrateIssuesVisitor(tracker, issueCache, issueLifecycle, issueVisitors, componentsWithUnprocessedIssues, componentIssuesRepository,
+      treeRootHolder, ceConfiguration, new StepMetricsHolderImpl());
   }
 
   @Test
@@ -279,6 +289,39 @@ public class IntegrateIssuesVisitorTest {
     assertThat(componentIssuesRepository.getIssues(PROJECT)).isEmpty();
   }
 
+  @Test
+  public void load_data_of_files_concurrently() throws Exception {
+    underTest = newVisitor(2);
+    componentsWithUnprocessedIssues.setUuids(newHashSet(FILE_UUID));
+    RuleKey ruleKey = RuleTesting.XOO_X1;
+    addBaseIssue(ruleKey);
+    BatchReport.Issue reportIssue = BatchReport.Issue.newBuilder()
+      .setMsg("the message")
+      .setRuleRepository(ruleKey.repository())
+      .setRuleKey(ruleKey.rule())
+      .setSeverity(Constants.Severity.BLOCKER)
+      .build();
+    reportReader.putIssues(FILE_REF, asList(reportIssue));
+    fileSourceRepository.addLine(FILE_REF, "line1");
+
+    underTest.visitAny(FILE);
+    assertThat(componentIssuesRepository.getIssues(FILE_REF)).hasSize(1);
+    underTest.visitAny(PROJECT);
+    ((IntegrateIssuesVisitor) underTest).close();
+
+    ArgumentCaptor<DefaultIssue> rawIssueCaptor = ArgumentCaptor.forClass(DefaultIssue.class);
+    ArgumentCaptor<DefaultIssue> baseIssueCaptor = ArgumentCaptor.forClass(DefaultIssue.class);
+    verify(issueLifecycle).mergeExistingOpenIssue(rawIssueCaptor.capture(), baseIssueCaptor.capture());
+    assertThat(rawIssueCaptor.getValue().severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(baseIssueCaptor.getValue().key()).isEqualTo("ISSUE");
+    verify(issueVisitor).beforeComponent(FILE);
+    verify(issueVisitor).afterComponent(FILE);
+    verify(issueVisitor).beforeComponent(PROJECT);
+    List<DefaultIssue> issues = newArrayList(issueCache.traverse());
+    assertThat(issues).hasSize(1);
+    assertThat(componentsWithUnprocessedIssues.getUuids()).isEmpty();
+  }
+
   private void addBaseIssue(RuleKey ruleKey) {
     ComponentDto project = ComponentTesting.newProjectDto(PROJECT_UUID).setKey(PROJECT_KEY);
     ComponentDto file = ComponentTesting.newFileDto(project, FILE_UUID).setKey(FILE_KEY);
@@ -0,0 +1,224 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.junit.Assert.fail;
+
+public class IssueCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void write_and_read_all_fields() throws Exception {
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(3).setEndLine(5))
+      .build();
+    FieldDiffs change = new FieldDiffs()
+      .setIssueKey("ISSUE1")
+      .setUserLogin("john")
+      .setCreationDate(new Date(1_400_000_000_000L))
+      .setDiff("technicalDebt", null, 10L)
+      .setDiff("severity", Severity.MINOR, Severity.MAJOR);
+    FieldDiffs currentChange = new FieldDiffs()
+      .setDiff("status", Issue.STATUS_OPEN, Issue.STATUS_CLOSED);
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE1")
+      .setComponentUuid("FILE1")
+      .setComponentKey("PROJECT:File1")
+      .setModuleUuid("MODULE1")
+      .setModuleUuidPath(".PROJECT1.MODULE1.")
+      .setProjectUuid("PROJECT1")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("squid", "S001"))
+      .setLanguage("java")
+      .setSeverity(Severity.MAJOR)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(12)
+      .setEffortToFix(2.5)
+      .setDebt(Duration.create(10L))
+      .setStatus(Issue.STATUS_CLOSED)
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setReporter("reporter")
+      .setAssignee("assignee")
+      .setChecksum("abc")
+      .setAttributes(ImmutableMap.of("JIRA", "FOO-123"))
+      .setAuthorLogin("author")
+      .setActionPlanKey("PLAN1")
+      .setTags(Arrays.asList("bug", "performance"))
+      .setLocations(locations)
+      .setCreationDate(new Date(1_300_000_000_000L))
+      .setUpdateDate(new Date(1_400_000_000_000L))
+      .setCloseDate(new Date(1_500_000_000_000L))
+      .addChange(change)
+      .setCurrentChange(currentChange)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_600_000_000_000L);
+    issue.addComment(new DefaultIssueComment()
+      .setKey("COMMENT1")
+      .setIssueKey("ISSUE1")
+      .setUserLogin("john")
+      .setMarkdownText("a *comment*")
+      .setCreatedAt(new Date(1_400_000_000_000L))
+      .setNew(true));
+
+    DefaultIssue read = writeAndRead(issue).get(0);
+
+    assertThat(read.key()).isEqualTo("ISSUE1");
+    assertThat(read.componentUuid()).isEqualTo("FILE1");
+    assertThat(read.componentKey()).isEqualTo("PROJECT:File1");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE1");
+    assertThat(read.moduleUuidPath()).isEqualTo(".PROJECT1.MODULE1.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT1");
+    assertThat(read.projectKey()).isEqualTo("PROJECT");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("squid", "S001"));
+    assertThat(read.language()).isEqualTo("java");
+    assertThat(read.severity()).isEqualTo(Severity.MAJOR);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("the message");
+    assertThat(read.line()).isEqualTo(12);
+    assertThat(read.effortToFix()).isEqualTo(2.5);
+    assertThat(read.debt()).isEqualTo(Duration.create(10L));
+    assertThat(read.status()).isEqualTo(Issue.STATUS_CLOSED);
+    assertThat(read.resolution()).isEqualTo(Issue.RESOLUTION_FIXED);
+    assertThat(read.reporter()).isEqualTo("reporter");
+    assertThat(read.assignee()).isEqualTo("assignee");
+    assertThat(read.checksum()).isEqualTo("abc");
+    assertThat(read.attributes()).containsOnly(entry("JIRA", "FOO-123"));
+    assertThat(read.authorLogin()).isEqualTo("author");
+    assertThat(read.actionPlanKey()).isEqualTo("PLAN1");
+    assertThat(read.tags()).containsExactly("bug", "performance");
+    assertThat(read.<DbIssues.Locations>getLocations()).isEqualTo(locations);
+    assertThat(read.creationDate()).isEqualTo(new Date(1_300_000_000_000L));
+    assertThat(read.updateDate()).isEqualTo(new Date(1_400_000_000_000L));
+    assertThat(read.closeDate()).isEqualTo(new Date(1_500_000_000_000L));
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isBeingClosed()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+    assertThat(read.selectedAt()).isEqualTo(1_600_000_000_000L);
+
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT1");
+    assertThat(comment.issueKey()).isEqualTo("ISSUE1");
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.markdownText()).isEqualTo("a *comment*");
+    assertThat(comment.createdAt()).isEqualTo(new Date(1_400_000_000_000L));
+    assertThat(comment.updatedAt()).isNull();
+    assertThat(comment.isNew()).isTrue();
+
+    assertThat(read.changes()).hasSize(2);
+    FieldDiffs readChange = read.changes().get(0);
+    assertThat(readChange.issueKey()).isEqualTo("ISSUE1");
+    assertThat(readChange.userLogin()).isEqualTo("john");
+    assertThat(readChange.creationDate()).isEqualTo(new Date(1_400_000_000_000L));
+    assertThat(readChange.toString()).isEqualTo("technicalDebt=10,severity=MINOR|MAJOR");
+    assertThat(readChange.get("technicalDebt").oldValue()).isNull();
+    assertThat(readChange.get("technicalDebt").newValue()).isEqualTo(10L);
+    assertThat(read.currentChange()).isSameAs(read.changes().get(1));
+    assertThat(read.currentChange().toString()).isEqualTo("status=OPEN|CLOSED");
+  }
+
+  @Test
+  public void write_and_read_issue_with_only_mandatory_fields() throws Exception {
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE1");
+
+    DefaultIssue read = writeAndRead(issue).get(0);
+
+    assertThat(read.key()).isEqualTo("ISSUE1");
+    assertThat(read.ruleKey()).isNull();
+    assertThat(read.status()).isNull();
+    assertThat(read.line()).isNull();
+    assertThat(read.effortToFix()).isNull();
+    assertThat(read.debt()).isNull();
+    assertThat(read.creationDate()).isNull();
+    assertThat(read.getLocations()).isNull();
+    assertThat(read.attributes()).isEmpty();
+    assertThat(read.tags()).isEmpty();
+    assertThat(read.comments()).isEmpty();
+    assertThat(read.changes()).isEmpty();
+    assertThat(read.currentChange()).isNull();
+    assertThat(read.isNew()).isTrue();
+    assertThat(read.selectedAt()).isNull();
+  }
+
+  @Test
+  public void traverse_issues_of_multiple_appenders() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    try (CloseableIterator<DefaultIssue> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender().append(new DefaultIssue().setKey("ISSUE1")).append(new DefaultIssue().setKey("ISSUE2")).close();
+    cache.newAppender().append(new DefaultIssue().setKey("ISSUE3")).close();
+
+    try (CloseableIterator<DefaultIssue> traverse = cache.traverse()) {
+      assertThat(newArrayList(traverse)).extracting("key").containsExactly("ISSUE1", "ISSUE2", "ISSUE3");
+    }
+  }
+
+  @Test
+  public void fail_if_locations_are_not_protobuf() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    try {
+      cache.newAppender().append(new DefaultIssue().setKey("ISSUE1").setLocations("foo"));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Unsupported type of locations: java.lang.String");
+    }
+  }
+
+  private List<DefaultIssue> writeAndRead(DefaultIssue issue) throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    cache.newAppender().append(issue).close();
+    try (CloseableIterator<DefaultIssue> traverse = cache.traverse()) {
+      return newArrayList(traverse);
+    }
+  }
+}
@@ -70,6 +70,12 @@ public class BestValueOptimizationTest {
     assertThat(underTest.apply(newMeasureBuilder().create(false))).isFalse();
   }
 
+  @Test
+  public void apply_depends_only_on_type_of_component() {
+    assertThat(BestValueOptimization.from(METRIC_BOOLEAN_TRUE, Component.Type.FILE).apply(newMeasureBuilder().create(true))).isTrue();
+    assertThat(BestValueOptimization.from(METRIC_BOOLEAN_TRUE, Component.Type.DIRECTORY).apply(newMeasureBuilder().create(true))).isFalse();
+  }
+
   @Test
   public void apply_returns_false_if_measure_has_anything_else_than_value_for_Boolean_Metric_and_best_value_1() {
     Predicate<Measure> underTest = BestValueOptimization.from(METRIC_BOOLEAN_TRUE, FILE_COMPONENT);
@@ -0,0 +1,96 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.sonar.server.computation.step.StepMetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CEStepsStatusImplTest {
+
+  private CEStepsStatusImpl underTest = new CEStepsStatusImpl();
+
+  @Test
+  public void no_statistics_by_default() {
+    assertThat(underTest.getStepStatistics()).isEmpty();
+    assertThat(underTest.getMostExpensiveProjects()).isEmpty();
+  }
+
+  @Test
+  public void cumulate_metrics_per_step() {
+    underTest.add("P1", Arrays.asList(new StepMetrics("step1", 50L, 1_000L, 200L, 0L), new StepMetrics("step2", 2_000L, 10L, 0L, 30L)));
+    underTest.add("P2", Arrays.asList(new StepMetrics("step1", 150L, 3_000L, 100L, 0L)));
+
+    List<StepStatistics> statistics = underTest.getStepStatistics();
+    assertThat(statistics).extracting("step").containsExactly("step1", "step2");
+
+    StepStatistics step1 = statistics.get(0);
+    assertThat(step1.getCount()).isEqualTo(2L);
+    assertThat(step1.getTotalDurationMs()).isEqualTo(200L);
+    assertThat(step1.getMaxDurationMs()).isEqualTo(150L);
+    assertThat(step1.getDurationHistogram()).containsExactly(1L, 1L, 0L, 0L, 0L, 0L);
+    assertThat(step1.getTotalAllocatedBytes()).isEqualTo(4_000L);
+    assertThat(step1.getTotalReportBytesRead()).isEqualTo(300L);
+    assertThat(step1.getTotalRowsWritten()).isEqualTo(0L);
+
+    StepStatistics step2 = statistics.get(1);
+    assertThat(step2.getCount()).isEqualTo(1L);
+    assertThat(step2.getDurationHistogram()).containsExactly(0L, 0L, 1L, 0L, 0L, 0L);
+    assertThat(step2.getTotalRowsWritten()).isEqualTo(30L);
+  }
+
+  @Test
+  public void most_expensive_projects_are_sorted_by_duration_of_last_processing() {
+    underTest.add("P1", Arrays.asList(new StepMetrics("step1", 50L, 0L, 0L, 0L), new StepMetrics("step2", 20L, 0L, 0L, 5L)));
+    underTest.add("P2", Arrays.asList(new StepMetrics("step1", 500L, 0L, 0L, 0L)));
+    underTest.add("P3", Arrays.asList(new StepMetrics("step1", 10L, 0L, 0L, 0L)));
+    // last processing of P2 replaces the previous one
+    underTest.add("P2", Arrays.asList(new StepMetrics("step1", 5L, 0L, 0L, 0L)));
+
+    List<ProjectStatistics> projects = underTest.getMostExpensiveProjects();
+    assertThat(projects).extracting("projectKey").containsExactly("P1", "P3", "P2");
+    assertThat(projects.get(0).getDurationMs()).isEqualTo(70L);
+    assertThat(projects.get(0).getRowsWritten()).isEqualTo(5L);
+  }
+
+  @Test
+  public void keep_only_the_most_expensive_projects() {
+    for (int i = 0; i < CEStepsStatusImpl.MOST_EXPENSIVE_PROJECTS + 5; i++) {
+      underTest.add("P" + i, Arrays.asList(new StepMetrics("step1", i, 0L, 0L, 0L)));
+    }
+
+    List<ProjectStatistics> projects = underTest.getMostExpensiveProjects();
+    assertThat(projects).hasSize(CEStepsStatusImpl.MOST_EXPENSIVE_PROJECTS);
+    assertThat(projects.get(0).getProjectKey()).isEqualTo("P" + (CEStepsStatusImpl.MOST_EXPENSIVE_PROJECTS + 4));
+  }
+
+  @Test
+  public void tasks_without_project_or_without_steps_are_not_listed_in_projects() {
+    underTest.add(null, Arrays.asList(new StepMetrics("step1", 50L, 0L, 0L, 0L)));
+    underTest.add("P1", Collections.<StepMetrics>emptyList());
+
+    assertThat(underTest.getStepStatistics()).hasSize(1);
+    assertThat(underTest.getMostExpensiveProjects()).isEmpty();
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.Test;
+import org.sonar.server.computation.step.StepMetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ComputeEngineStepsMonitorTest {
+
+  private CEStepsStatusImpl stepsStatus = new CEStepsStatusImpl();
+  private ComputeEngineStepsMonitor underTest = new ComputeEngineStepsMonitor(stepsStatus);
+
+  @Test
+  public void name_is_ComputeEngineSteps() {
+    assertThat(underTest.name()).isEqualTo("ComputeEngineSteps");
+  }
+
+  @Test
+  public void attributes_have_an_entry_per_step_and_the_most_expensive_projects() {
+    stepsStatus.add("P1", Arrays.asList(new StepMetrics("step1", 50L, 1_000L, 200L, 10L)));
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes).containsOnlyKeys("step1", "Most expensive projects (ms)");
+    assertThat((Map<String, Object>) attributes.get("step1")).containsOnly(
+      entry("Executions", 1L),
+      entry("Total duration (ms)", 50L),
+      entry("Max duration (ms)", 50L),
+      entry("Allocated heap (bytes)", 1_000L),
+      entry("Report read (bytes)", 200L),
+      entry("Rows written", 10L));
+    assertThat((Map<String, Object>) attributes.get("Most expensive projects (ms)")).containsOnly(entry("P1", 50L));
+  }
+
+  @Test
+  public void get_methods_delegate_to_CEStepsStatus() {
+    stepsStatus.add("P1", Arrays.asList(new StepMetrics("step1", 50L, 1_000L, 200L, 10L)));
+
+    assertThat(underTest.getStepStatistics()).extracting("step").containsExactly("step1");
+    assertThat(underTest.getMostExpensiveProjects()).extracting("projectKey").containsExactly("P1");
+  }
+}
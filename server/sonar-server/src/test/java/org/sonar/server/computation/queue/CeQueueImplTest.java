@@ -20,6 +20,7 @@
 package org.sonar.server.computation.queue;
 
 import com.google.common.base.Optional;
+import java.util.Arrays;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -34,6 +35,8 @@ import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.server.computation.monitoring.CEQueueStatus;
 import org.sonar.server.computation.monitoring.CEQueueStatusImpl;
+import org.sonar.server.computation.monitoring.CEStepsStatusImpl;
+import org.sonar.server.computation.step.StepMetrics;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
@@ -57,12 +60,16 @@ public class CeQueueImplTest {
 
   UuidFactory uuidFactory = UuidFactoryImpl.INSTANCE;
   CEQueueStatus queueStatus = new CEQueueStatusImpl();
+  CEStepsStatusImpl stepsStatus = new CEStepsStatusImpl();
   CeQueueListener listener = mock(CeQueueListener.class);
-  CeQueue underTest = new CeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, new CeQueueListener[] {listener});
+  CeQueueSubmitNotifier.Listener submitListener = mock(CeQueueSubmitNotifier.Listener.class);
+  CeQueueSubmitNotifier submitNotifier = new CeQueueSubmitNotifier();
+  CeQueue underTest = new CeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, stepsStatus, submitNotifier, new CeQueueListener[] {listener});
 
   @Before
   public void setUp() throws Exception {
     queueStatus.initPendingCount(0);
+    submitNotifier.addListener(submitListener);
   }
 
   @Test
@@ -84,6 +91,7 @@ public class CeQueueImplTest {
     assertThat(queueDto.get().getSubmitterLogin()).isEqualTo("rob");
     assertThat(queueDto.get().getCreatedAt()).isEqualTo(1_450_000_000_000L);
     assertThat(queueStatus.getReceivedCount()).isEqualTo(1L);
+    verify(submitListener).onSubmitted(task);
   }
 
   @Test
@@ -127,6 +135,30 @@ public class CeQueueImplTest {
     assertThat(history.get().getSnapshotId()).isNull();
   }
 
+  @Test
+  public void remove_sets_step_metrics_in_CeActivity_and_in_statistics_of_steps() {
+    CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTaskResult taskResult = newTaskResult(663L);
+    when(taskResult.getStepMetrics()).thenReturn(Arrays.asList(new StepMetrics("step1", 100L, 2_000L, 300L, 4L)));
+
+    underTest.remove(underTest.peek().get(), CeActivityDto.Status.SUCCESS, taskResult);
+
+    Optional<CeActivityDto> history = dbTester.getDbClient().ceActivityDao().selectByUuid(dbTester.getSession(), task.getUuid());
+    assertThat(StepMetrics.fromJson(history.get().getStepMetrics())).extracting("step").containsExactly("step1");
+    assertThat(stepsStatus.getStepStatistics()).extracting("step").containsExactly("step1");
+  }
+
+  @Test
+  public void remove_does_not_set_step_metrics_in_CeActivity_when_CeTaskResult_has_no_metrics() {
+    CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
+
+    underTest.remove(underTest.peek().get(), CeActivityDto.Status.SUCCESS, newTaskResult(null));
+
+    Optional<CeActivityDto> history = dbTester.getDbClient().ceActivityDao().selectByUuid(dbTester.getSession(), task.getUuid());
+    assertThat(history.get().getStepMetrics()).isNull();
+    assertThat(stepsStatus.getStepStatistics()).isEmpty();
+  }
+
   @Test
   public void remove_sets_snapshotId_in_CeActivity_when_CeTaskResult_has_no_snapshot_id() {
     CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
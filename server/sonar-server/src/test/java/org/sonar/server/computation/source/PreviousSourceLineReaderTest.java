@@ -0,0 +1,65 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.source;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PreviousSourceLineReaderTest {
+
+  @Test
+  public void copy_highlighting_and_symbols_of_previous_lines() {
+    PreviousSourceLineReader reader = new PreviousSourceLineReader(Arrays.asList(
+      DbFileSources.Line.newBuilder().setLine(1).setSource("a").setHighlighting("0,1,k").setSymbols("0,1,1").setUtLineHits(3).build(),
+      DbFileSources.Line.newBuilder().setLine(3).setSource("c").setHighlighting("0,1,s").build()).iterator());
+
+    DbFileSources.Line.Builder line1 = DbFileSources.Line.newBuilder().setLine(1);
+    DbFileSources.Line.Builder line2 = DbFileSources.Line.newBuilder().setLine(2);
+    DbFileSources.Line.Builder line3 = DbFileSources.Line.newBuilder().setLine(3);
+    reader.read(line1);
+    reader.read(line2);
+    reader.read(line3);
+
+    assertThat(line1.getHighlighting()).isEqualTo("0,1,k");
+    assertThat(line1.getSymbols()).isEqualTo("0,1,1");
+    // only highlighting and symbols are copied
+    assertThat(line1.hasSource()).isFalse();
+    assertThat(line1.hasUtLineHits()).isFalse();
+    assertThat(line2.hasHighlighting()).isFalse();
+    assertThat(line2.hasSymbols()).isFalse();
+    assertThat(line3.getHighlighting()).isEqualTo("0,1,s");
+    assertThat(line3.hasSymbols()).isFalse();
+  }
+
+  @Test
+  public void do_nothing_when_no_previous_lines() {
+    PreviousSourceLineReader reader = new PreviousSourceLineReader(Collections.<DbFileSources.Line>emptyIterator());
+
+    DbFileSources.Line.Builder line1 = DbFileSources.Line.newBuilder().setLine(1);
+    reader.read(line1);
+
+    assertThat(line1.hasHighlighting()).isFalse();
+    assertThat(line1.hasSymbols()).isFalse();
+  }
+}
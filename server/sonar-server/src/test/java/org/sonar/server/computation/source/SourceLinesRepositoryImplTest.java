@@ -20,10 +20,15 @@
 
 package org.sonar.server.computation.source;
 
+import com.google.common.base.Optional;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
 import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.db.DbTester;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.batch.BatchReportReaderRule;
 import org.sonar.server.computation.component.Component;
 
@@ -47,7 +52,10 @@ public class SourceLinesRepositoryImplTest {
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
 
-  SourceLinesRepositoryImpl underTest = new SourceLinesRepositoryImpl(reportReader);
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+
+  SourceLinesRepositoryImpl underTest = new SourceLinesRepositoryImpl(dbTester.getDbClient(), reportReader);
 
   @Test
   public void read_lines_from_report() throws Exception {
@@ -83,8 +91,88 @@ public class SourceLinesRepositoryImplTest {
     assertThat(underTest.readLines(FILE)).isEmpty();
   }
 
+  @Test
+  public void read_lines_of_unchanged_file_from_db() throws Exception {
+    dbTester.truncateTables();
+    reportReader.putComponent(createFileBatchComponent(2).toBuilder().setIsUnchanged(true).build());
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    data.addLinesBuilder().setLine(1).setSource("line1");
+    data.addLinesBuilder().setLine(2).setSource("line2");
+    dbTester.getDbClient().fileSourceDao().insert(new FileSourceDto()
+      .setProjectUuid("PROJECT_UUID")
+      .setFileUuid(FILE_UUID)
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setSourceData(data.build())
+      .setCreatedAt(1000L)
+      .setUpdatedAt(1000L));
+
+    assertThat(underTest.readLines(FILE)).containsOnly("line1", "line2");
+  }
+
+  @Test
+  public void fail_with_ISE_when_unchanged_file_has_no_source_in_db() throws Exception {
+    dbTester.truncateTables();
+    // source of unchanged files is not in the report
+    reportReader.putComponent(createFileBatchComponent(2).toBuilder().setIsUnchanged(true).build());
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("File 'ReportComponent{ref=2, key='FILE_KEY', type=FILE}' is unchanged but has no source code in database");
+
+    underTest.readLines(FILE);
+  }
+
+  @Test
+  public void select_previous_source_data_only_once() throws Exception {
+    dbTester.truncateTables();
+    reportReader.putComponent(createFileBatchComponent(1).toBuilder().setIsUnchanged(true).build());
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    data.addLinesBuilder().setLine(1).setSource("line1");
+    dbTester.getDbClient().fileSourceDao().insert(new FileSourceDto()
+      .setProjectUuid("PROJECT_UUID")
+      .setFileUuid(FILE_UUID)
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setSourceData(data.build())
+      .setCreatedAt(1000L)
+      .setUpdatedAt(1000L));
+
+    assertThat(underTest.readLines(FILE)).containsOnly("line1");
+
+    // data is not selected again
+    dbTester.truncateTables();
+    assertThat(underTest.readPreviousSourceData(FILE).get().getLines(0).getSource()).isEqualTo("line1");
+    assertThat(underTest.readLines(FILE)).containsOnly("line1");
+  }
+
+  @Test
+  public void read_previous_source_data_from_db() throws Exception {
+    dbTester.truncateTables();
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    data.addLinesBuilder().setLine(1).setSource("line1").setHighlighting("0,4,k");
+    dbTester.getDbClient().fileSourceDao().insert(new FileSourceDto()
+      .setProjectUuid("PROJECT_UUID")
+      .setFileUuid(FILE_UUID)
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setSourceData(data.build())
+      .setCreatedAt(1000L)
+      .setUpdatedAt(1000L));
+
+    Optional<DbFileSources.Data> previousData = underTest.readPreviousSourceData(FILE);
+
+    assertThat(previousData.isPresent()).isTrue();
+    assertThat(previousData.get().getLines(0).getHighlighting()).isEqualTo("0,4,k");
+  }
+
+  @Test
+  public void read_previous_source_data_returns_absent_when_file_has_no_source_in_db() throws Exception {
+    dbTester.truncateTables();
+
+    assertThat(underTest.readPreviousSourceData(FILE).isPresent()).isFalse();
+  }
+
   @Test
   public void fail_with_ISE_when_file_has_no_source() throws Exception {
+    reportReader.putComponent(createFileBatchComponent(1));
+
     thrown.expect(IllegalStateException.class);
     thrown.expectMessage("File 'ReportComponent{ref=2, key='FILE_KEY', type=FILE}' has no source code");
 
@@ -20,12 +20,16 @@
 
 package org.sonar.server.computation.source;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.rules.ExternalResource;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.server.computation.component.Component;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -35,10 +39,12 @@ import static org.sonar.server.computation.component.Component.Type.FILE;
 public class SourceLinesRepositoryRule extends ExternalResource implements SourceLinesRepository {
 
   private Multimap<Integer, String> lines = ArrayListMultimap.create();
+  private Map<Integer, DbFileSources.Data> previousSourceData = new HashMap<>();
 
   @Override
   protected void after() {
     lines.clear();
+    previousSourceData.clear();
   }
 
   @Override
@@ -52,6 +58,15 @@ public class SourceLinesRepositoryRule extends ExternalResource implements Sourc
     return CloseableIterator.from(componentLines.iterator());
   }
 
+  @Override
+  public Optional<DbFileSources.Data> readPreviousSourceData(Component file) {
+    checkNotNull(file, "Component should not be bull");
+    if (!file.getType().equals(FILE)) {
+      throw new IllegalArgumentException(String.format("Component '%s' is not a file", file));
+    }
+    return Optional.fromNullable(previousSourceData.get(file.getReportAttributes().getRef()));
+  }
+
   public SourceLinesRepositoryRule addLine(int componentRef, String line) {
     this.lines.put(componentRef, line);
     return this;
@@ -62,4 +77,9 @@ public class SourceLinesRepositoryRule extends ExternalResource implements Sourc
     return this;
   }
 
+  public SourceLinesRepositoryRule setPreviousSourceData(int componentRef, DbFileSources.Data data) {
+    this.previousSourceData.put(componentRef, data);
+    return this;
+  }
+
 }
@@ -20,19 +20,31 @@
 package org.sonar.server.computation.step;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.InOrder;
+import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.sonar.server.computation.step.ComputationStepData.COMPONENT_TREE;
+import static org.sonar.server.computation.step.ComputationStepData.FILE_SOURCES;
+import static org.sonar.server.computation.step.ComputationStepData.TEST_INDEX;
+import static org.sonar.server.computation.step.ComputationStepData.TEST_SOURCES;
 
 public class ComputationStepExecutorTest {
   @Rule
@@ -90,6 +102,94 @@ public class ComputationStepExecutorTest {
     assertThat(infoLogs.get(1)).contains("step2 | time=");
   }
 
+  @Test
+  public void execute_records_metrics_of_each_ComputationStep() {
+    System2 system2 = mock(System2.class);
+    when(system2.now()).thenReturn(1_000L, 1_200L, 2_000L, 2_050L);
+    final StepMetricsHolderImpl stepMetricsHolder = new StepMetricsHolderImpl();
+    ComputationStep step1 = new RecordingStep("step1", new CopyOnWriteArrayList<String>(), EnumSet.of(COMPONENT_TREE), EnumSet.of(FILE_SOURCES)) {
+      @Override
+      public void execute() {
+        stepMetricsHolder.addRowsWritten(10);
+        stepMetricsHolder.addRowsWritten(5);
+      }
+    };
+    ComputationStep step2 = mockComputationStep("step2");
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2), mockCeConfiguration(1), stepMetricsHolder, system2)
+      .execute();
+
+    List<StepMetrics> metrics = stepMetricsHolder.getStepMetrics();
+    assertThat(metrics).extracting("step").containsExactly("step1", "step2");
+    assertThat(metrics).extracting("durationMs").containsExactly(200L, 50L);
+    assertThat(metrics).extracting("rowsWritten").containsExactly(15L, 0L);
+  }
+
+  @Test
+  public void execute_runs_concurrently_adjacent_ConcurrentComputationSteps_which_do_not_conflict() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(2);
+    ComputationStep step1 = new LatchStep("step1", latch, EnumSet.of(COMPONENT_TREE), EnumSet.of(FILE_SOURCES));
+    ComputationStep step2 = new LatchStep("step2", latch, EnumSet.of(COMPONENT_TREE), EnumSet.of(TEST_SOURCES));
+
+    // each step waits for the other one to be started, this would block forever if steps were executed sequentially
+    new ComputationStepExecutor(mockComputationSteps(step1, step2), mockCeConfiguration(2))
+      .execute();
+
+    assertThat(latch.getCount()).isEqualTo(0);
+    assertThat(logTester.logs(LoggerLevel.INFO)).hasSize(2);
+  }
+
+  @Test
+  public void execute_runs_in_order_ConcurrentComputationSteps_which_conflict() {
+    final List<String> executed = new CopyOnWriteArrayList<>();
+    ComputationStep step1 = new RecordingStep("step1", executed, EnumSet.of(COMPONENT_TREE), EnumSet.of(TEST_SOURCES));
+    ComputationStep step2 = new RecordingStep("step2", executed, EnumSet.of(TEST_SOURCES), EnumSet.of(TEST_INDEX));
+    ComputationStep step3 = new RecordingStep("step3", executed, EnumSet.of(COMPONENT_TREE), EnumSet.of(TEST_INDEX));
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2, step3), mockCeConfiguration(3))
+      .execute();
+
+    assertThat(executed).containsExactly("step1", "step2", "step3");
+  }
+
+  @Test
+  public void execute_runs_all_steps_when_ConcurrentComputationSteps_are_not_adjacent() {
+    final List<String> executed = new CopyOnWriteArrayList<>();
+    ComputationStep step1 = new RecordingStep("step1", executed, EnumSet.of(COMPONENT_TREE), EnumSet.of(FILE_SOURCES));
+    ComputationStep step2 = mockComputationStep("step2");
+    ComputationStep step3 = new RecordingStep("step3", executed, EnumSet.of(COMPONENT_TREE), EnumSet.of(TEST_SOURCES));
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2, step3), mockCeConfiguration(2))
+      .execute();
+
+    verify(step2).execute();
+    assertThat(executed).containsExactly("step1", "step3");
+  }
+
+  @Test
+  public void execute_let_exception_thrown_by_ConcurrentComputationStep_go_up_as_is() {
+    final String message = "Exception should go up";
+    ComputationStep step1 = new RecordingStep("step1", new CopyOnWriteArrayList<String>(), EnumSet.of(COMPONENT_TREE), EnumSet.of(FILE_SOURCES)) {
+      @Override
+      public void execute() {
+        throw new IllegalArgumentException(message);
+      }
+    };
+    ComputationStep step2 = new RecordingStep("step2", new CopyOnWriteArrayList<String>(), EnumSet.of(COMPONENT_TREE), EnumSet.of(TEST_SOURCES));
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage(message);
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2), mockCeConfiguration(2))
+      .execute();
+  }
+
+  private static CeConfiguration mockCeConfiguration(int stepWorkerCount) {
+    CeConfiguration res = mock(CeConfiguration.class);
+    when(res.getStepWorkerCount()).thenReturn(stepWorkerCount);
+    return res;
+  }
+
   private static ComputationSteps mockComputationSteps(ComputationStep... computationSteps) {
     ComputationSteps steps = mock(ComputationSteps.class);
     when(steps.instances()).thenReturn(Arrays.asList(computationSteps));
@@ -101,4 +201,60 @@ public class ComputationStepExecutorTest {
     when(mock.getDescription()).thenReturn(desc);
     return mock;
   }
+
+  private static class RecordingStep implements ConcurrentComputationStep {
+    private final String description;
+    private final List<String> executed;
+    private final Set<ComputationStepData> readData;
+    private final Set<ComputationStepData> writtenData;
+
+    private RecordingStep(String description, List<String> executed, Set<ComputationStepData> readData, Set<ComputationStepData> writtenData) {
+      this.description = description;
+      this.executed = executed;
+      this.readData = readData;
+      this.writtenData = writtenData;
+    }
+
+    @Override
+    public void execute() {
+      executed.add(description);
+    }
+
+    @Override
+    public Set<ComputationStepData> getReadData() {
+      return readData;
+    }
+
+    @Override
+    public Set<ComputationStepData> getWrittenData() {
+      return writtenData;
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+  }
+
+  private static class LatchStep extends RecordingStep {
+    private final CountDownLatch latch;
+
+    private LatchStep(String description, CountDownLatch latch, Set<ComputationStepData> readData, Set<ComputationStepData> writtenData) {
+      super(description, new CopyOnWriteArrayList<String>(), readData, writtenData);
+      this.latch = latch;
+    }
+
+    @Override
+    public void execute() {
+      latch.countDown();
+      try {
+        if (!latch.await(10, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("Steps have not been executed concurrently");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    }
+  }
 }
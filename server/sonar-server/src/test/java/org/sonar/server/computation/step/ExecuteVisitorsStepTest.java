@@ -36,6 +36,7 @@ import org.sonar.server.computation.metric.MetricImpl;
 import org.sonar.server.computation.metric.MetricRepositoryRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.sonar.api.measures.CoreMetrics.NCLOC;
 import static org.sonar.api.measures.CoreMetrics.NCLOC_KEY;
 import static org.sonar.server.computation.component.Component.Type.DIRECTORY;
@@ -117,6 +118,37 @@ public class ExecuteVisitorsStepTest {
     assertThat(measureRepository.getAddedRawMeasure(ROOT_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(2);
   }
 
+  @Test
+  public void close_visitors_when_crawl_fails() throws Exception {
+    FailingCloseableVisitor visitor = new FailingCloseableVisitor();
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, Arrays.<ComponentVisitor>asList(visitor));
+
+    try {
+      underStep.execute();
+      fail();
+    } catch (RuntimeException e) {
+      assertThat(visitor.closed).isTrue();
+    }
+  }
+
+  private static class FailingCloseableVisitor extends TypeAwareVisitorAdapter implements AutoCloseable {
+    private boolean closed = false;
+
+    public FailingCloseableVisitor() {
+      super(CrawlerDepthLimit.FILE, ComponentVisitor.Order.POST_ORDER);
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      throw new IllegalStateException("Fail to visit " + file.getKey());
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
   private class TestTypeAwareVisitor extends TypeAwareVisitorAdapter {
 
     public TestTypeAwareVisitor() {
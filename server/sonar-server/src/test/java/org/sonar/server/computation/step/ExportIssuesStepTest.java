@@ -0,0 +1,102 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDao;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.server.batch.ServerIssuesExport;
+import org.sonar.server.computation.batch.TreeRootHolderRule;
+import org.sonar.server.issue.index.IssueDoc;
+import org.sonar.server.issue.index.IssueIndex;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.server.computation.component.Component.Type.PROJECT;
+import static org.sonar.server.computation.component.ReportComponent.builder;
+
+public class ExportIssuesStepTest {
+
+  static final String PROJECT_UUID = "PROJECT_UUID";
+
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule()
+    .setRoot(builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey("PROJECT_KEY").build());
+
+  DbClient dbClient = mock(DbClient.class);
+  DbSession session = mock(DbSession.class);
+  ComponentDao componentDao = mock(ComponentDao.class);
+  IssueIndex issueIndex = mock(IssueIndex.class);
+  ServerIssuesExport issuesExport = mock(ServerIssuesExport.class);
+  ComponentDto project = ComponentTesting.newProjectDto(PROJECT_UUID).setKey("PROJECT_KEY");
+  Map<String, String> keysByUuid = Collections.singletonMap(PROJECT_UUID, "PROJECT_KEY");
+  Iterator<IssueDoc> issues = Collections.<IssueDoc>emptyIterator();
+
+  ExportIssuesStep underTest = new ExportIssuesStep(dbClient, issueIndex, issuesExport, treeRootHolder);
+
+  @Test
+  public void export_issues_of_project_with_version_loaded_before_issues() {
+    prepareMocks();
+
+    underTest.execute();
+
+    InOrder inOrder = inOrder(issueIndex, issuesExport);
+    inOrder.verify(issueIndex).selectProjectIssuesForBatchExportVersion(PROJECT_UUID);
+    inOrder.verify(issueIndex).selectProjectIssuesForBatchExport(PROJECT_UUID);
+    inOrder.verify(issuesExport).export(PROJECT_UUID, ServerIssuesExport.version(project, keysByUuid, "2-1000"), keysByUuid, issues);
+    verify(dbClient).closeSession(session);
+  }
+
+  @Test
+  public void delete_export_when_export_fails() {
+    prepareMocks();
+    doThrow(new IllegalStateException("Disk is full")).when(issuesExport).export(anyString(), anyString(), anyMapOf(String.class, String.class),
+      any(Iterator.class));
+
+    underTest.execute();
+
+    verify(issuesExport).deleteIfExists(PROJECT_UUID);
+    verify(dbClient).closeSession(session);
+  }
+
+  private void prepareMocks() {
+    when(dbClient.openSession(anyBoolean())).thenReturn(session);
+    when(dbClient.componentDao()).thenReturn(componentDao);
+    when(componentDao.selectOrFailByUuid(session, PROJECT_UUID)).thenReturn(project);
+    when(issuesExport.selectModuleKeysByUuid(session, project)).thenReturn(keysByUuid);
+    when(issueIndex.selectProjectIssuesForBatchExportVersion(PROJECT_UUID)).thenReturn("2-1000");
+    when(issueIndex.selectProjectIssuesForBatchExport(PROJECT_UUID)).thenReturn(issues);
+  }
+}
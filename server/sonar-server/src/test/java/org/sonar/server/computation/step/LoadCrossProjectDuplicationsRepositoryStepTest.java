@@ -28,6 +28,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -65,16 +66,23 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
   static final int PROJECT_REF = 1;
   static final int FILE_REF = 2;
   static final String CURRENT_FILE_KEY = "FILE_KEY";
+  static final int OTHER_CURRENT_FILE_REF = 3;
+  static final String OTHER_CURRENT_FILE_KEY = "OTHER_CURRENT_FILE_KEY";
 
   static final Component CURRENT_FILE = ReportComponent.builder(FILE, FILE_REF)
     .setKey(CURRENT_FILE_KEY)
     .setFileAttributes(new FileAttributes(false, XOO_LANGUAGE))
     .build();
 
+  static final Component OTHER_CURRENT_FILE = ReportComponent.builder(FILE, OTHER_CURRENT_FILE_REF)
+    .setKey(OTHER_CURRENT_FILE_KEY)
+    .setFileAttributes(new FileAttributes(false, XOO_LANGUAGE))
+    .build();
+
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(
     ReportComponent.builder(PROJECT, PROJECT_REF)
-      .addChildren(CURRENT_FILE
+      .addChildren(CURRENT_FILE, OTHER_CURRENT_FILE
       ).build());
 
   @Rule
@@ -85,6 +93,9 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
 
   CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder = mock(CrossProjectDuplicationStatusHolder.class);
 
+  @Rule
+  public JUnitTempFolder tempFolder = new JUnitTempFolder();
+
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
@@ -97,7 +108,7 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
   Snapshot baseProjectSnapshot;
 
   ComputationStep underTest = new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
-    integrateCrossProjectDuplications, dbClient);
+    integrateCrossProjectDuplications, dbClient, tempFolder);
 
   @Before
   public void setUp() throws Exception {
@@ -260,6 +271,52 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
       );
   }
 
+  @Test
+  public void call_compute_cpd_on_files_sharing_duplications() throws Exception {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    analysisMetadataHolder.setBaseProjectSnapshot(baseProjectSnapshot);
+
+    ComponentDto otherProject = createProject("OTHER_PROJECT_KEY");
+    SnapshotDto otherProjectSnapshot = createProjectSnapshot(otherProject);
+
+    ComponentDto otherFIle = createFile("OTHER_FILE_KEY", otherProject);
+    SnapshotDto otherFileSnapshot = createFileSnapshot(otherFIle, otherProjectSnapshot);
+
+    String hash = "a8998353e96320ec";
+    DuplicationUnitDto duplicate = new DuplicationUnitDto()
+      .setHash(hash)
+      .setStartLine(40)
+      .setEndLine(55)
+      .setIndexInFile(0)
+      .setProjectSnapshotId(otherProjectSnapshot.getId())
+      .setSnapshotId(otherFileSnapshot.getId());
+    dbClient.duplicationDao().insert(dbSession, duplicate);
+    dbSession.commit();
+
+    BatchReport.CpdTextBlock originBlock = BatchReport.CpdTextBlock.newBuilder()
+      .setHash(hash)
+      .setStartLine(30)
+      .setEndLine(45)
+      .setStartTokenIndex(0)
+      .setEndTokenIndex(10)
+      .build();
+    batchReportReader.putDuplicationBlocks(FILE_REF, asList(originBlock));
+    batchReportReader.putDuplicationBlocks(OTHER_CURRENT_FILE_REF, asList(originBlock));
+
+    underTest.execute();
+
+    // candidate block is loaded once but is provided for both files
+    List<Block> duplicationBlocks = asList(
+      new Block.Builder()
+        .setResourceId(otherFIle.getKey())
+        .setBlockHash(new ByteArray(hash))
+        .setIndexInFile(duplicate.getIndexInFile())
+        .setLines(duplicate.getStartLine(), duplicate.getEndLine())
+        .build());
+    verify(integrateCrossProjectDuplications).computeCpd(eq(CURRENT_FILE), anyCollectionOf(Block.class), eq(duplicationBlocks));
+    verify(integrateCrossProjectDuplications).computeCpd(eq(OTHER_CURRENT_FILE), anyCollectionOf(Block.class), eq(duplicationBlocks));
+  }
+
   @Test
   public void nothing_to_do_when_cross_project_duplication_is_disabled() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(false);
@@ -46,11 +46,14 @@ import org.sonar.server.computation.duplication.InnerDuplicate;
 import org.sonar.server.computation.duplication.TextBlock;
 import org.sonar.server.computation.scm.Changeset;
 import org.sonar.server.computation.scm.ScmInfoRepositoryRule;
+import org.sonar.server.computation.source.SourceLinesRepositoryImpl;
 import org.sonar.server.computation.source.SourceLinesRepositoryRule;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
 import org.sonar.test.DbTests;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -64,6 +67,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   private static final long NOW = 123456789L;
 
   private System2 system2 = mock(System2.class);
+  private CeConfiguration ceConfiguration = mock(CeConfiguration.class);
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
@@ -90,7 +94,9 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   public void setup() {
     dbTester.truncateTables();
     when(system2.now()).thenReturn(NOW);
-    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository);
+    when(ceConfiguration.getFileSourceWorkerCount()).thenReturn(2);
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository, new StepMetricsHolderImpl(),
+      ceConfiguration);
   }
 
   @Override
@@ -122,6 +128,43 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(data.getLines(1).getSource()).isEqualTo("line2");
   }
 
+  @Test
+  public void persist_sources_of_many_files_in_order() {
+    int fileCount = 50;
+    Component[] files = new Component[fileCount];
+    BatchReport.Component.Builder module = BatchReport.Component.newBuilder()
+      .setRef(2)
+      .setType(Constants.ComponentType.MODULE);
+    for (int i = 0; i < fileCount; i++) {
+      int fileRef = 10 + i;
+      files[i] = ReportComponent.builder(Component.Type.FILE, fileRef).setUuid("FILE_" + i).setKey("MODULE_KEY:src/Foo" + i + ".java").build();
+      module.addChildRef(fileRef);
+      reportReader.putComponent(BatchReport.Component.newBuilder()
+        .setRef(fileRef)
+        .setType(Constants.ComponentType.FILE)
+        .build());
+      fileSourceRepository.addLine(fileRef, "line of file " + i);
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
+      ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(files).build())
+      .build());
+    reportReader.putComponent(BatchReport.Component.newBuilder()
+      .setRef(1)
+      .setType(Constants.ComponentType.PROJECT)
+      .addChildRef(2)
+      .build());
+    reportReader.putComponent(module.build());
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i);
+      DbFileSources.Data data = FileSourceDto.decodeSourceData(fileSourceDto.getBinaryData());
+      assertThat(data.getLines(0).getSource()).isEqualTo("line of file " + i);
+    }
+  }
+
   @Test
   public void persist_source_hashes() {
     initBasicReport(2);
@@ -325,6 +368,39 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(past);
   }
 
+  @Test
+  public void update_sources_of_file_in_directory() {
+    long past = 150000L;
+    dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
+      .setProjectUuid(PROJECT_UUID)
+      .setFileUuid(FILE_UUID)
+      .setDataType(Type.SOURCE)
+      .setSourceData(DbFileSources.Data.newBuilder()
+        .addLines(DbFileSources.Line.newBuilder().setLine(1).setSource("old line"))
+        .build())
+      .setCreatedAt(past)
+      .setUpdatedAt(past));
+    dbTester.getSession().commit();
+
+    initBasicReport(1);
+    // hashes of previous sources are selected when the directory of the file is visited
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
+      ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
+        ReportComponent.builder(Component.Type.DIRECTORY, 4).setUuid("DIRECTORY").setKey("MODULE_KEY:src").addChildren(
+          ReportComponent.builder(Component.Type.FILE, FILE_REF).setUuid(FILE_UUID).setKey("MODULE_KEY:src/Foo.java").build())
+          .build())
+        .build())
+      .build());
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(1);
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getSource()).isEqualTo("line1");
+    assertThat(fileSourceDto.getCreatedAt()).isEqualTo(past);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+  }
+
   @Test
   public void update_sources_when_source_updated() {
     // Existing sources
@@ -435,6 +511,72 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isEqualTo("rev-1");
   }
 
+  @Test
+  public void reuse_source_highlighting_and_symbols_of_previous_analysis_when_file_is_unchanged() {
+    long past = 150000L;
+    DbFileSources.Data previousData = DbFileSources.Data.newBuilder()
+      .addLines(DbFileSources.Line.newBuilder().setLine(1).setSource("line1").setHighlighting("0,4,k").setSymbols("1,2,1"))
+      .addLines(DbFileSources.Line.newBuilder().setLine(2).setSource("line2").setUtLineHits(1))
+      .build();
+    dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
+      .setProjectUuid(PROJECT_UUID)
+      .setFileUuid(FILE_UUID)
+      .setSourceData(previousData)
+      .setCreatedAt(past)
+      .setUpdatedAt(past));
+    dbTester.getSession().commit();
+    fileSourceRepository.setPreviousSourceData(FILE_REF, previousData);
+
+    initBasicReport(0);
+    reportReader.putComponent(BatchReport.Component.newBuilder()
+      .setRef(FILE_REF)
+      .setType(Constants.ComponentType.FILE)
+      .setLines(2)
+      .setIsUnchanged(true)
+      .build());
+    // coverage is still read from the report
+    reportReader.putCoverage(FILE_REF, newArrayList(BatchReport.Coverage.newBuilder()
+      .setLine(1)
+      .setUtHits(true)
+      .build()));
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    DbFileSources.Data data = FileSourceDto.decodeSourceData(fileSourceDto.getBinaryData());
+    assertThat(data.getLinesList()).hasSize(2);
+    assertThat(data.getLines(0).getSource()).isEqualTo("line1");
+    assertThat(data.getLines(0).getHighlighting()).isEqualTo("0,4,k");
+    assertThat(data.getLines(0).getSymbols()).isEqualTo("1,2,1");
+    assertThat(data.getLines(0).getUtLineHits()).isEqualTo(1);
+    assertThat(data.getLines(1).getSource()).isEqualTo("line2");
+    assertThat(data.getLines(1).hasUtLineHits()).isFalse();
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+  }
+
+  @Test
+  public void fail_when_file_is_unchanged_but_has_no_source_in_db() {
+    initBasicReport(0);
+    reportReader.putComponent(BatchReport.Component.newBuilder()
+      .setRef(FILE_REF)
+      .setType(Constants.ComponentType.FILE)
+      .setLines(2)
+      .setIsUnchanged(true)
+      .build());
+    // as done by the scanner, source of unchanged file is not in the report
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, new SourceLinesRepositoryImpl(dbClient, reportReader), scmInfoRepository,
+      duplicationRepository, new StepMetricsHolderImpl(), ceConfiguration);
+
+    try {
+      underTest.execute();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Cannot persist sources of MODULE_KEY:src/Foo.java");
+      assertThat(e.getCause()).hasMessageContaining("is unchanged but has no source code in database");
+    }
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(0);
+  }
+
   private void initBasicReport(int numberOfLines) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
@@ -43,9 +43,12 @@ import org.sonar.server.computation.measure.MeasureRepositoryRule;
 import org.sonar.server.computation.measure.MeasureToMeasureDto;
 import org.sonar.server.computation.metric.MetricRepositoryRule;
 import org.sonar.server.computation.period.Period;
+import org.sonar.server.computation.taskprocessor.CeConfiguration;
 import org.sonar.test.DbTests;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.sonar.api.measures.CoreMetrics.CLASS_COMPLEXITY_DISTRIBUTION;
 import static org.sonar.api.measures.CoreMetrics.CLASS_COMPLEXITY_DISTRIBUTION_KEY;
 import static org.sonar.api.measures.CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION;
@@ -103,13 +106,18 @@ public class PersistMeasuresStepTest extends BaseStepTest {
   ComponentDto intermediate2Dto;
   ComponentDto leafDto;
 
+  StepMetricsHolderImpl stepMetricsHolder = new StepMetricsHolderImpl();
+  CeConfiguration ceConfiguration = mock(CeConfiguration.class);
   PersistMeasuresStep underTest;
 
   @Before
   public void setUp() {
     dbTester.truncateTables();
+    // small batches to insert measures with several statements
+    when(ceConfiguration.getMeasureInsertBatchSize()).thenReturn(3);
 
-    underTest = new PersistMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(dbIdsRepository), treeRootHolder, measureRepository);
+    underTest = new PersistMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(dbIdsRepository), treeRootHolder, measureRepository, stepMetricsHolder,
+      ceConfiguration, System2.INSTANCE);
   }
 
   private void setupReportComponents() {
@@ -231,6 +239,17 @@ public class PersistMeasuresStepTest extends BaseStepTest {
     assertThat(dto.get("severity")).isNull();
   }
 
+  @Test
+  public void inserted_rows_are_added_to_metrics_of_step() {
+    setupReportComponents();
+
+    stepMetricsHolder.startStep();
+    insertMeasures();
+    StepMetrics stepMetrics = stepMetricsHolder.stopStep(underTest.getDescription(), 10L, 0L);
+
+    assertThat(stepMetrics.getRowsWritten()).isEqualTo(4L);
+  }
+
   /**
    * Horrible trick to support oracle retuning number as BigDecimal and DbTester#select converting BigDecimal with no
    * scale to Long instead of Double when all other DBs will return a Double anyway.
@@ -40,8 +40,9 @@ public class PublishTaskResultStepTest {
 
   private DbIdsRepository dbIdsRepository = mock(DbIdsRepository.class);
   private MutableTaskResultHolder taskResultHolder = new MutableTaskResultHolderImpl();
+  private StepMetricsHolderImpl stepMetricsHolder = new StepMetricsHolderImpl();
 
-  private PublishTaskResultStep underTest = new PublishTaskResultStep(taskResultHolder, treeRootHolder, dbIdsRepository);
+  private PublishTaskResultStep underTest = new PublishTaskResultStep(taskResultHolder, treeRootHolder, dbIdsRepository, stepMetricsHolder);
 
   @Test
   public void verify_getDescription() {
@@ -58,4 +59,14 @@ public class PublishTaskResultStepTest {
 
     assertThat(taskResultHolder.getResult().getSnapshotId()).isEqualTo(snapshotId);
   }
+
+  @Test
+  public void TaskResult_returns_metrics_of_steps_executed_after_publication() {
+    underTest.execute();
+
+    stepMetricsHolder.startStep();
+    stepMetricsHolder.stopStep("step1", 10L, 0L);
+
+    assertThat(taskResultHolder.getResult().getStepMetrics()).extracting("step").containsExactly("step1");
+  }
 }
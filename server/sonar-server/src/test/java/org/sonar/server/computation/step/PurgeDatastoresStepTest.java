@@ -39,6 +39,7 @@ import org.sonar.server.computation.component.MutableDbIdsRepositoryRule;
 import org.sonar.server.computation.component.ReportComponent;
 import org.sonar.server.computation.component.SettingsRepository;
 import org.sonar.server.computation.component.ViewsComponent;
+import org.sonar.server.computation.dbcleaner.BackgroundProjectCleaner;
 import org.sonar.server.computation.dbcleaner.ProjectCleaner;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.util.WrapInSingleElementArray;
@@ -46,6 +47,7 @@ import org.sonar.server.util.WrapInSingleElementArray;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -64,9 +66,11 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
   public MutableDbIdsRepositoryRule dbIdsRepository = MutableDbIdsRepositoryRule.standalone();
 
   ProjectCleaner projectCleaner = mock(ProjectCleaner.class);
+  BackgroundProjectCleaner backgroundProjectCleaner = mock(BackgroundProjectCleaner.class);
   SettingsRepository settingsRepository = mock(SettingsRepository.class);
 
-  PurgeDatastoresStep underTest = new PurgeDatastoresStep(mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS), projectCleaner, dbIdsRepository, treeRootHolder, settingsRepository);
+  PurgeDatastoresStep underTest = new PurgeDatastoresStep(mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS), projectCleaner, backgroundProjectCleaner, dbIdsRepository, treeRootHolder,
+    settingsRepository);
 
   @Test
   public void call_purge_method_of_the_purge_task_for_project() {
@@ -123,20 +127,27 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
 
     underTest.execute();
 
-    verifyNoMoreInteractions(projectCleaner);
+    verifyNoMoreInteractions(projectCleaner, backgroundProjectCleaner);
   }
 
   private void verify_call_purge_method_of_the_purge_task(Component project) {
     treeRootHolder.setRoot(project);
-    when(settingsRepository.getSettings(project)).thenReturn(new Settings());
+    Settings settings = new Settings();
+    when(settingsRepository.getSettings(project)).thenReturn(settings);
     dbIdsRepository.setComponentId(project, PROJECT_ID);
 
     underTest.execute();
 
     ArgumentCaptor<IdUuidPair> argumentCaptor = ArgumentCaptor.forClass(IdUuidPair.class);
-    verify(projectCleaner).purge(any(DbSession.class), argumentCaptor.capture(), any(Settings.class));
+    verify(projectCleaner).deleteAbortedBuildsAndDisableOrphans(any(DbSession.class), argumentCaptor.capture(), eq(settings));
     assertThat(argumentCaptor.getValue().getId()).isEqualTo(PROJECT_ID);
     assertThat(argumentCaptor.getValue().getUuid()).isEqualTo(PROJECT_UUID);
+
+    // history is purged in background
+    verify(backgroundProjectCleaner).schedule(argumentCaptor.capture(), eq(settings));
+    assertThat(argumentCaptor.getValue().getId()).isEqualTo(PROJECT_ID);
+    assertThat(argumentCaptor.getValue().getUuid()).isEqualTo(PROJECT_UUID);
+    verifyNoMoreInteractions(projectCleaner, backgroundProjectCleaner);
   }
 
   private static Object[][] dataproviderFromComponentTypeValues(Predicate<Component.Type> predicate) {
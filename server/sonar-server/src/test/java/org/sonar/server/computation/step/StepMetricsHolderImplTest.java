@@ -0,0 +1,138 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StepMetricsHolderImplTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private StepMetricsHolderImpl underTest = new StepMetricsHolderImpl();
+
+  @Test
+  public void no_metrics_by_default() {
+    assertThat(underTest.getStepMetrics()).isEmpty();
+  }
+
+  @Test
+  public void record_counters_of_started_step() {
+    underTest.startStep();
+    underTest.addRowsWritten(3);
+    underTest.addReportBytesRead(100);
+    underTest.addRowsWritten(2);
+    StepMetrics metrics = underTest.stopStep("step1", 10L, 2_000L);
+
+    assertThat(metrics.getStep()).isEqualTo("step1");
+    assertThat(metrics.getDurationMs()).isEqualTo(10L);
+    assertThat(metrics.getAllocatedBytes()).isEqualTo(2_000L);
+    assertThat(metrics.getRowsWritten()).isEqualTo(5L);
+    assertThat(metrics.getReportBytesRead()).isEqualTo(100L);
+    assertThat(underTest.getStepMetrics()).containsExactly(metrics);
+  }
+
+  @Test
+  public void counters_are_ignored_when_no_step_is_started() {
+    underTest.addRowsWritten(3);
+    underTest.startStep();
+    StepMetrics metrics = underTest.stopStep("step1", 10L, 0L);
+    underTest.addRowsWritten(3);
+
+    assertThat(metrics.getRowsWritten()).isEqualTo(0L);
+  }
+
+  @Test
+  public void counters_are_attributed_to_the_step_of_the_current_thread() throws Exception {
+    underTest.startStep();
+    underTest.addRowsWritten(1);
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      StepMetrics otherThreadMetrics = executorService.submit(new Callable<StepMetrics>() {
+        @Override
+        public StepMetrics call() {
+          underTest.startStep();
+          underTest.addRowsWritten(10);
+          return underTest.stopStep("step2", 5L, 0L);
+        }
+      }).get();
+      assertThat(otherThreadMetrics.getRowsWritten()).isEqualTo(10L);
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertThat(underTest.stopStep("step1", 20L, 0L).getRowsWritten()).isEqualTo(1L);
+    assertThat(underTest.getStepMetrics()).extracting("step").containsExactly("step2", "step1");
+  }
+
+  @Test
+  public void counters_of_helper_threads_are_attributed_to_the_step_they_are_bound_to() throws Exception {
+    underTest.startStep();
+    underTest.addReportBytesRead(1);
+    final StepCounters counters = underTest.getCurrentCounters();
+
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      for (int i = 0; i < 10; i++) {
+        executorService.submit(new Runnable() {
+          @Override
+          public void run() {
+            underTest.bind(counters);
+            try {
+              underTest.addReportBytesRead(10);
+            } finally {
+              underTest.unbind();
+            }
+            underTest.addReportBytesRead(100);
+          }
+        }).get();
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertThat(underTest.stopStep("step1", 20L, 0L).getReportBytesRead()).isEqualTo(101L);
+  }
+
+  @Test
+  public void no_current_counters_when_no_step_is_started() {
+    assertThat(underTest.getCurrentCounters()).isNull();
+
+    underTest.bind(null);
+    underTest.addRowsWritten(3);
+
+    assertThat(underTest.getCurrentCounters()).isNull();
+  }
+
+  @Test
+  public void fail_to_stop_step_if_not_started() {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("No step has been started by the current thread");
+
+    underTest.stopStep("step1", 10L, 0L);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StepMetricsTest {
+
+  @Test
+  public void to_and_from_json() {
+    List<StepMetrics> metrics = Arrays.asList(
+      new StepMetrics("Extract report", 100L, 2_000L, 3_000L, 0L),
+      new StepMetrics("Persist measures", 250L, 5_000L, 0L, 120L));
+
+    String json = StepMetrics.toJson(metrics);
+    List<StepMetrics> read = StepMetrics.fromJson(json);
+
+    assertThat(json).isEqualTo("[{\"step\":\"Extract report\",\"durationMs\":100,\"allocatedBytes\":2000,\"reportBytesRead\":3000,\"rowsWritten\":0}," +
+      "{\"step\":\"Persist measures\",\"durationMs\":250,\"allocatedBytes\":5000,\"reportBytesRead\":0,\"rowsWritten\":120}]");
+    assertThat(read).extracting("step").containsExactly("Extract report", "Persist measures");
+    assertThat(read).extracting("durationMs").containsExactly(100L, 250L);
+    assertThat(read).extracting("allocatedBytes").containsExactly(2_000L, 5_000L);
+    assertThat(read).extracting("reportBytesRead").containsExactly(3_000L, 0L);
+    assertThat(read).extracting("rowsWritten").containsExactly(0L, 120L);
+  }
+
+  @Test
+  public void missing_counters_are_read_as_zero() {
+    List<StepMetrics> read = StepMetrics.fromJson("[{\"step\":\"Extract report\",\"durationMs\":100}]");
+
+    assertThat(read).hasSize(1);
+    assertThat(read.get(0).getAllocatedBytes()).isEqualTo(0L);
+    assertThat(read.get(0).getRowsWritten()).isEqualTo(0L);
+  }
+
+  @Test
+  public void empty_json_array() {
+    assertThat(StepMetrics.toJson(Collections.<StepMetrics>emptyList())).isEqualTo("[]");
+    assertThat(StepMetrics.fromJson("[]")).isEmpty();
+  }
+}
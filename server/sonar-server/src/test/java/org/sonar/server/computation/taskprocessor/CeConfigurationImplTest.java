@@ -0,0 +1,152 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.taskprocessor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.MessageException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CeConfigurationImplTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private Settings settings = new Settings();
+
+  @Test
+  public void getWorkerCount_returns_1_when_property_is_not_set() {
+    assertThat(new CeConfigurationImpl(settings).getWorkerCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void getWorkerCount_returns_value_of_property() {
+    settings.setProperty(CeConfigurationImpl.WORKER_COUNT_PROPERTY, 4);
+
+    assertThat(new CeConfigurationImpl(settings).getWorkerCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void constructor_fails_if_worker_count_is_0() {
+    settings.setProperty(CeConfigurationImpl.WORKER_COUNT_PROPERTY, 0);
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("Value of property sonar.ce.workerCount must be a strictly positive integer (got 0)");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void getQueuePollingDelay_returns_2_seconds_when_property_is_not_set() {
+    assertThat(new CeConfigurationImpl(settings).getQueuePollingDelay()).isEqualTo(2L);
+  }
+
+  @Test
+  public void getQueuePollingDelay_returns_value_of_property() {
+    settings.setProperty(CeConfigurationImpl.QUEUE_POLLING_DELAY_PROPERTY, 10);
+
+    assertThat(new CeConfigurationImpl(settings).getQueuePollingDelay()).isEqualTo(10L);
+  }
+
+  @Test
+  public void getStepWorkerCount_returns_1_when_property_is_not_set() {
+    assertThat(new CeConfigurationImpl(settings).getStepWorkerCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void getStepWorkerCount_returns_value_of_property() {
+    settings.setProperty(CeConfigurationImpl.STEP_WORKER_COUNT_PROPERTY, 3);
+
+    assertThat(new CeConfigurationImpl(settings).getStepWorkerCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void getIssueTrackingWorkerCount_returns_1_when_property_is_not_set() {
+    assertThat(new CeConfigurationImpl(settings).getIssueTrackingWorkerCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void getIssueTrackingWorkerCount_returns_value_of_property() {
+    settings.setProperty(CeConfigurationImpl.ISSUE_TRACKING_WORKER_COUNT_PROPERTY, 4);
+
+    assertThat(new CeConfigurationImpl(settings).getIssueTrackingWorkerCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void getFileSourceWorkerCount_returns_1_when_property_is_not_set() {
+    assertThat(new CeConfigurationImpl(settings).getFileSourceWorkerCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void getFileSourceWorkerCount_returns_value_of_property() {
+    settings.setProperty(CeConfigurationImpl.FILE_SOURCE_WORKER_COUNT_PROPERTY, 3);
+
+    assertThat(new CeConfigurationImpl(settings).getFileSourceWorkerCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void getMeasureInsertBatchSize_returns_1000_when_property_is_not_set() {
+    assertThat(new CeConfigurationImpl(settings).getMeasureInsertBatchSize()).isEqualTo(1000);
+  }
+
+  @Test
+  public void getMeasureInsertBatchSize_returns_value_of_property() {
+    settings.setProperty(CeConfigurationImpl.MEASURE_INSERT_BATCH_SIZE_PROPERTY, 50);
+
+    assertThat(new CeConfigurationImpl(settings).getMeasureInsertBatchSize()).isEqualTo(50);
+  }
+
+  @Test
+  public void getPurgeWorkerCount_returns_2_when_property_is_not_set() {
+    assertThat(new CeConfigurationImpl(settings).getPurgeWorkerCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void getPurgeWorkerCount_returns_value_of_property() {
+    settings.setProperty(CeConfigurationImpl.PURGE_WORKER_COUNT_PROPERTY, 3);
+
+    assertThat(new CeConfigurationImpl(settings).getPurgeWorkerCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void getPurgeMaxDbUsage_returns_50_when_property_is_not_set() {
+    assertThat(new CeConfigurationImpl(settings).getPurgeMaxDbUsage()).isEqualTo(50);
+  }
+
+  @Test
+  public void getPurgeMaxDbUsage_returns_value_of_property() {
+    settings.setProperty(CeConfigurationImpl.PURGE_MAX_DB_USAGE_PROPERTY, 100);
+
+    assertThat(new CeConfigurationImpl(settings).getPurgeMaxDbUsage()).isEqualTo(100);
+  }
+
+  @Test
+  public void constructor_fails_if_purge_max_db_usage_is_greater_than_100() {
+    settings.setProperty(CeConfigurationImpl.PURGE_MAX_DB_USAGE_PROPERTY, 101);
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("Value of property sonar.ce.purgeMaxDbUsage must be a percentage between 1 and 100 (got 101)");
+
+    new CeConfigurationImpl(settings);
+  }
+}
@@ -42,6 +42,8 @@ import javax.annotation.concurrent.Immutable;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
+import org.sonar.server.computation.queue.CeQueueSubmitNotifier;
+import org.sonar.server.computation.queue.CeTask;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -59,7 +61,49 @@ public class CeProcessingSchedulerImplTest {
   private SchedulerCall regularDelayedPoll = new SchedulerCall(ceWorkerRunnable, 2L, TimeUnit.SECONDS);
   private SchedulerCall notDelayedPoll = new SchedulerCall(ceWorkerRunnable);
 
-  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(processingExecutorService, ceWorkerRunnable);
+  private CeQueueSubmitNotifier submitNotifier = new CeQueueSubmitNotifier();
+  private CeConfiguration ceConfiguration = mockCeConfiguration(1);
+
+  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, submitNotifier);
+
+  @Test
+  public void startScheduling_schedules_one_polling_per_worker() throws Exception {
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(mockCeConfiguration(3), processingExecutorService, ceWorkerRunnable, submitNotifier);
+
+    underTest.startScheduling();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+        regularDelayedPoll,
+        regularDelayedPoll,
+        regularDelayedPoll
+    );
+  }
+
+  @Test
+  public void submission_of_a_task_wakes_up_a_waiting_worker() throws Exception {
+    when(ceWorkerRunnable.call()).thenReturn(false);
+    underTest.startScheduling();
+
+    submitNotifier.notifySubmitted(mock(CeTask.class));
+
+    // worker is woken up without delay, then waits again with regular delay as queue is empty
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+        regularDelayedPoll,
+        notDelayedPoll,
+        regularDelayedPoll
+    );
+    assertThat(processingExecutorService.futures.poll().isCancelled()).isTrue();
+  }
+
+  @Test
+  public void submission_of_a_task_does_not_wake_up_workers_once_stopped() throws Exception {
+    underTest.startScheduling();
+    underTest.stop();
+
+    submitNotifier.notifySubmitted(mock(CeTask.class));
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(regularDelayedPoll);
+  }
 
   @Test
   public void polls_without_delay_when_CeWorkerCallable_returns_true() throws Exception {
@@ -172,6 +216,13 @@ public class CeProcessingSchedulerImplTest {
     );
   }
 
+  private static CeConfiguration mockCeConfiguration(int workerCount) {
+    CeConfiguration res = mock(CeConfiguration.class);
+    when(res.getWorkerCount()).thenReturn(workerCount);
+    when(res.getQueuePollingDelay()).thenReturn(2L);
+    return res;
+  }
+
   private void startSchedulingAndRun() throws ExecutionException, InterruptedException {
     underTest.startScheduling();
 
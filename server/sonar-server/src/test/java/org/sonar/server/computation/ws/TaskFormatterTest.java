@@ -37,6 +37,7 @@ import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.server.computation.log.CeLogging;
 import org.sonar.server.computation.log.LogFileRef;
+import org.sonar.server.computation.step.StepMetrics;
 import org.sonarqube.ws.WsCe;
 
 import static java.util.Arrays.asList;
@@ -178,6 +179,24 @@ public class TaskFormatterTest {
     assertThat(wsTask.getExecutionTimeMs()).isEqualTo(500L);
     assertThat(wsTask.getAnalysisId()).isEqualTo("123456");
     assertThat(wsTask.getLogs()).isFalse();
+    assertThat(wsTask.getStepsList()).isEmpty();
+  }
+
+  @Test
+  public void formatActivity_has_metrics_of_steps() {
+    CeActivityDto dto = newActivity("UUID", "COMPONENT_UUID", CeActivityDto.Status.SUCCESS);
+    dto.setStepMetrics(StepMetrics.toJson(asList(
+      new StepMetrics("Extract report", 100L, 2_000L, 3_000L, 0L),
+      new StepMetrics("Persist measures", 200L, 4_000L, 0L, 50L))));
+
+    WsCe.Task wsTask = underTest.formatActivity(db.getSession(), dto);
+
+    assertThat(wsTask.getStepsList()).extracting("name").containsExactly("Extract report", "Persist measures");
+    WsCe.TaskStep step = wsTask.getSteps(1);
+    assertThat(step.getDurationMs()).isEqualTo(200L);
+    assertThat(step.getAllocatedBytes()).isEqualTo(4_000L);
+    assertThat(step.getReportBytesRead()).isEqualTo(0L);
+    assertThat(step.getRowsWritten()).isEqualTo(50L);
   }
 
   @Test
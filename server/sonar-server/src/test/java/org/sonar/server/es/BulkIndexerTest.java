@@ -19,7 +19,12 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.base.Function;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Range;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
@@ -30,8 +35,10 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.util.Map;
+import javax.annotation.Nonnull;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class BulkIndexerTest {
 
@@ -88,6 +95,62 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void convert_and_index_documents_concurrently() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    indexer.addAll(ContiguousSet.create(Range.closedOpen(0, 1000), DiscreteDomain.integers()).iterator(), new Function<Integer, ActionRequest>() {
+      @Override
+      public ActionRequest apply(@Nonnull Integer input) {
+        return newIndexRequest(input);
+      }
+    });
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(1000);
+    assertThat(indexer.getIndexedDocuments()).isEqualTo(1000);
+    assertThat(indexer.getBulkRequests()).isGreaterThan(1);
+    assertThat(indexer.getRejections()).isEqualTo(0);
+  }
+
+  @Test
+  public void convert_documents_in_calling_thread_when_they_fit_in_a_single_chunk() {
+    final Thread callingThread = Thread.currentThread();
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.addAll(ContiguousSet.create(Range.closedOpen(0, 10), DiscreteDomain.integers()).iterator(), new Function<Integer, ActionRequest>() {
+      @Override
+      public ActionRequest apply(@Nonnull Integer input) {
+        assertThat(Thread.currentThread()).isSameAs(callingThread);
+        return newIndexRequest(input);
+      }
+    });
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(10);
+    assertThat(indexer.getIndexedDocuments()).isEqualTo(10);
+  }
+
+  @Test
+  public void fail_if_conversion_fails() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    try {
+      indexer.addAll(ContiguousSet.create(Range.closedOpen(0, 10), DiscreteDomain.integers()).iterator(), new Function<Integer, ActionRequest>() {
+        @Override
+        public ActionRequest apply(@Nonnull Integer input) {
+          throw new IllegalStateException("Fail to convert " + input);
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).startsWith("Fail to convert");
+    } finally {
+      indexer.stop();
+    }
+  }
+
   @Test
   public void bulk_delete() throws Exception {
     int max = 500;
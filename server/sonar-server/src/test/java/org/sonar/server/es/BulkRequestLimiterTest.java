@@ -0,0 +1,102 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkRequestLimiterTest {
+
+  @Test
+  public void increase_limit_after_each_round_of_requests() {
+    BulkRequestLimiter limiter = new BulkRequestLimiter(2, 3);
+
+    completeRequests(limiter, 2, 10L);
+    assertThat(limiter.limit()).isEqualTo(3);
+
+    // max limit is reached
+    completeRequests(limiter, 10, 10L);
+    assertThat(limiter.limit()).isEqualTo(3);
+    assertThat(limiter.highestLimit()).isEqualTo(3);
+  }
+
+  @Test
+  public void halve_limit_when_request_is_rejected() {
+    BulkRequestLimiter limiter = new BulkRequestLimiter(4, 8);
+
+    limiter.acquire();
+    limiter.release(10L, true);
+    assertThat(limiter.limit()).isEqualTo(2);
+
+    limiter.acquire();
+    limiter.release(10L, true);
+    limiter.acquire();
+    limiter.release(10L, true);
+    assertThat(limiter.limit()).isEqualTo(1);
+    assertThat(limiter.highestLimit()).isEqualTo(4);
+  }
+
+  @Test
+  public void decrease_limit_when_latency_is_degraded() {
+    BulkRequestLimiter limiter = new BulkRequestLimiter(4, 8);
+    completeRequests(limiter, 1, 10L);
+
+    completeRequests(limiter, 1, 100L);
+    assertThat(limiter.limit()).isEqualTo(3);
+  }
+
+  @Test
+  public void block_when_limit_is_reached() throws Exception {
+    final BulkRequestLimiter limiter = new BulkRequestLimiter(1, 1);
+    limiter.acquire();
+
+    final CountDownLatch acquired = new CountDownLatch(1);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        limiter.acquire();
+        acquired.countDown();
+      }
+    };
+    thread.start();
+    assertThat(acquired.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    assertThat(limiter.awaitCompletion(10, TimeUnit.MILLISECONDS)).isFalse();
+
+    limiter.release(10L, false);
+    assertThat(acquired.await(10, TimeUnit.SECONDS)).isTrue();
+    limiter.release(10L, false);
+    assertThat(limiter.awaitCompletion(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_if_invalid_limits() {
+    new BulkRequestLimiter(4, 2);
+  }
+
+  private static void completeRequests(BulkRequestLimiter limiter, int count, long latencyMs) {
+    for (int i = 0; i < count; i++) {
+      limiter.acquire();
+      limiter.release(latencyMs, false);
+    }
+  }
+}
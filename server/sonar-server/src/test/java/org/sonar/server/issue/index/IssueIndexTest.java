@@ -1279,6 +1279,48 @@ public class IssueIndexTest {
     assertThat(Lists.newArrayList(index.selectIssuesForBatch(ComponentTesting.newProjectDto()))).isEmpty();
   }
 
+  @Test
+  public void version_of_issues_for_batch_changes_when_issues_change() {
+    ComponentDto project = ComponentTesting.newProjectDto();
+    ComponentDto file = ComponentTesting.newFileDto(project);
+
+    assertThat(index.selectIssuesForBatchVersion(project)).isEqualTo("0");
+
+    indexIssues(IssueTesting.newDoc("ISSUE1", file).setTechnicalUpdateDate(new Date(1000L)));
+    String version = index.selectIssuesForBatchVersion(project);
+    assertThat(version).isEqualTo("1-1000");
+    assertThat(index.selectIssuesForBatchVersion(file)).isEqualTo(version);
+
+    indexIssues(IssueTesting.newDoc("ISSUE1", file).setTechnicalUpdateDate(new Date(2000L)));
+    assertThat(index.selectIssuesForBatchVersion(project)).isEqualTo("1-2000");
+
+    indexIssues(IssueTesting.newDoc("ISSUE2", file).setTechnicalUpdateDate(new Date(1500L)));
+    assertThat(index.selectIssuesForBatchVersion(project)).isEqualTo("2-2000");
+
+    // closed issues are not returned to batch
+    indexIssues(IssueTesting.newDoc("ISSUE3", file).setTechnicalUpdateDate(new Date(3000L)).setStatus(Issue.STATUS_CLOSED));
+    assertThat(index.selectIssuesForBatchVersion(project)).isEqualTo("2-2000");
+  }
+
+  @Test
+  public void select_project_issues_for_batch_export_without_verifying_permissions() {
+    ComponentDto project = ComponentTesting.newProjectDto();
+    ComponentDto module = ComponentTesting.newModuleDto(project);
+    ComponentDto file = ComponentTesting.newFileDto(module);
+
+    assertThat(index.selectProjectIssuesForBatchExportVersion(project.uuid())).isEqualTo("0");
+
+    // project can be seen by nobody
+    indexIssue(IssueTesting.newDoc("ISSUE1", module).setTechnicalUpdateDate(new Date(1000L)), null, null);
+    indexIssue(IssueTesting.newDoc("ISSUE2", file).setTechnicalUpdateDate(new Date(2000L)), null, null);
+    indexIssue(IssueTesting.newDoc("CLOSE_ISSUE", file).setStatus(Issue.STATUS_CLOSED).setResolution(Issue.RESOLUTION_FIXED), null, null);
+
+    assertThat(Lists.newArrayList(index.selectIssuesForBatch(project))).isEmpty();
+    assertThat(Lists.newArrayList(index.selectProjectIssuesForBatchExport(project.uuid()))).hasSize(2);
+    assertThat(index.selectProjectIssuesForBatchExportVersion(project.uuid())).isEqualTo("2-2000");
+    assertThat(Lists.newArrayList(index.selectProjectIssuesForBatchExport(ComponentTesting.newProjectDto().uuid()))).isEmpty();
+  }
+
   @Test
   public void fail_to_search_issues_for_batch_on_not_allowed_scope() {
     try {
@@ -21,6 +21,7 @@ package org.sonar.server.notification;
 
 import com.google.common.collect.Sets;
 import java.util.Arrays;
+import java.util.Collections;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -31,14 +32,19 @@ import org.sonar.db.DbClient;
 import org.sonar.db.property.PropertiesDao;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static java.util.Collections.singletonList;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.same;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -67,7 +73,7 @@ public class NotificationServiceTest {
     when(commentOnIssueCreatedByMe.getType()).thenReturn("issue-changes");
     when(qualityGateChange.getKey()).thenReturn("QGateChange");
     when(qualityGateChange.getType()).thenReturn("qgate-changes");
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(Collections.<Notification>emptyList());
 
     Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L);
 
@@ -175,7 +181,8 @@ public class NotificationServiceTest {
   @Test
   public void shouldNotStopWhenException() {
     setUpMocks();
-    when(manager.getFromQueue()).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenThrow(new RuntimeException("Unexpected exception"))
+      .thenReturn(singletonList(notification)).thenReturn(Collections.<Notification>emptyList());
     doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(CREATOR_SIMON, emailChannel)).when(commentOnIssueCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
@@ -186,6 +193,79 @@ public class NotificationServiceTest {
     verify(gtalkChannel, never()).deliver(notification, ASSIGNEE_SIMON);
   }
 
+  @Test
+  public void deliver_notifications_by_batch() {
+    setUpMocks();
+    Notification otherNotification = mock(Notification.class);
+    when(manager.getFromQueue(NotificationService.DEQUEUE_BATCH_SIZE)).thenReturn(Arrays.asList(notification, otherNotification))
+      .thenReturn(Collections.<Notification>emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+
+    service.processQueue();
+
+    verify(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel).deliver(otherNotification, ASSIGNEE_SIMON);
+    assertThat(service.getDeliveredCount()).isEqualTo(2);
+    assertThat(service.getPendingDeliveries()).isEqualTo(0);
+  }
+
+  @Test
+  public void retry_failed_delivery() {
+    setUpMocks();
+    service = spy(service);
+    doReturn(0L).when(service).retryDelayMs(anyInt());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+    doThrow(new IllegalStateException("SMTP server is down")).doNothing().when(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+
+    service.processQueue();
+
+    verify(emailChannel, times(2)).deliver(notification, ASSIGNEE_SIMON);
+    assertThat(service.getDeliveredCount()).isEqualTo(1);
+    assertThat(service.getRetryCount()).isEqualTo(1);
+    assertThat(service.getFailedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void give_up_delivery_after_max_attempts() {
+    setUpMocks();
+    service = spy(service);
+    doReturn(0L).when(service).retryDelayMs(anyInt());
+    doAnswer(addUser(ASSIGNEE_SIMON, new NotificationChannel[] {emailChannel, gtalkChannel}))
+      .when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+    doThrow(new IllegalStateException("SMTP server is down")).when(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+
+    service.processQueue();
+
+    verify(emailChannel, times(NotificationService.MAX_DELIVERY_ATTEMPTS)).deliver(notification, ASSIGNEE_SIMON);
+    // other channels are not impacted
+    verify(gtalkChannel).deliver(notification, ASSIGNEE_SIMON);
+    assertThat(service.getFailedCount()).isEqualTo(1);
+    assertThat(service.getDeliveredCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void enqueue_again_notifications_not_delivered_when_service_is_stopped() {
+    setUpMocks();
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+
+    service.stop();
+    service.processQueue();
+
+    verify(emailChannel, never()).deliver(notification, ASSIGNEE_SIMON);
+    verify(manager).scheduleForSending(singletonList(notification));
+    assertThat(service.getPendingDeliveries()).isEqualTo(0);
+    assertThat(service.getFailedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void retry_delay_is_doubled_on_each_retry() {
+    setUpMocks();
+
+    assertThat(service.retryDelayMs(1)).isEqualTo(1000L);
+    assertThat(service.retryDelayMs(2)).isEqualTo(2000L);
+    assertThat(service.retryDelayMs(3)).isEqualTo(4000L);
+  }
+
   @Test
   public void shouldNotAddNullAsUser() {
     setUpMocks();
@@ -217,7 +297,8 @@ public class NotificationServiceTest {
   public void shouldLogEvery10Minutes() {
     setUpMocks();
     // Emulate 2 notifications in DB
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(singletonList(notification))
+      .thenReturn(Collections.<Notification>emptyList());
     when(manager.count()).thenReturn(1L).thenReturn(0L);
     service = spy(service);
     // Emulate processing of each notification take 10 min to have a log each time
@@ -30,7 +30,11 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.config.EmailSettings;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
+import org.sonar.plugins.emailnotifications.api.EmailTemplate;
 import org.subethamail.wiser.Wiser;
 import org.subethamail.wiser.WiserMessage;
 
@@ -182,7 +186,26 @@ public class EmailNotificationChannelTest {
       .setTo("user@nowhere")
       .setSubject("Foo")
       .setMessage("Bar");
-    channel.deliver(emailMessage);
+    assertThat(channel.deliver(emailMessage)).isFalse();
+  }
+
+  @Test
+  public void fail_to_deliver_notification_when_unable_to_send_email() {
+    configure();
+    server.stop();
+    User user = mock(User.class);
+    when(user.email()).thenReturn("user@nowhere");
+    UserFinder userFinder = mock(UserFinder.class);
+    when(userFinder.findByLogin("simon")).thenReturn(user);
+    Notification notification = new Notification("test");
+    EmailTemplate template = mock(EmailTemplate.class);
+    when(template.format(notification)).thenReturn(new EmailMessage().setSubject("Foo").setMessage("Bar"));
+    channel = new EmailNotificationChannel(configuration, new EmailTemplate[] {template}, userFinder);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to send email to simon");
+
+    channel.deliver(notification, "simon");
   }
 
   @Test
@@ -0,0 +1,60 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import org.junit.Test;
+import org.sonar.server.notification.DefaultNotificationManager;
+import org.sonar.server.notification.NotificationService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NotificationMonitorTest {
+
+  DefaultNotificationManager manager = mock(DefaultNotificationManager.class);
+  NotificationService service = mock(NotificationService.class);
+  NotificationMonitor underTest = new NotificationMonitor(manager, service);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("Notifications");
+  }
+
+  @Test
+  public void queue_and_delivery_attributes() {
+    when(manager.count()).thenReturn(42L);
+    when(service.getPendingDeliveries()).thenReturn(3);
+    when(service.getDeliveredCount()).thenReturn(100L);
+    when(service.getFailedCount()).thenReturn(2L);
+    when(service.getRetryCount()).thenReturn(5L);
+    when(service.getAverageDeliveryLatencyMs()).thenReturn(250L);
+
+    LinkedHashMap<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes).containsEntry("Queue Size", 42L);
+    assertThat(attributes).containsEntry("Pending Deliveries", 3);
+    assertThat(attributes).containsEntry("Delivered", 100L);
+    assertThat(attributes).containsEntry("Failed Deliveries", 2L);
+    assertThat(attributes).containsEntry("Retried Deliveries", 5L);
+    assertThat(attributes).containsEntry("Average Delivery Latency (ms)", 250L);
+  }
+}
@@ -50,6 +50,7 @@ import org.sonar.db.issue.IssueDto;
 import org.sonar.db.purge.PurgeDao;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
+import org.sonar.server.batch.ServerIssuesExport;
 import org.sonar.server.component.ComponentCleanerService;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.db.component.SnapshotTesting;
@@ -113,7 +114,7 @@ public class BulkDeleteActionTest {
         new ComponentCleanerService(dbClient,
           new IssueAuthorizationIndexer(dbClient, es.client()),
           new IssueIndexer(dbClient, es.client()),
-          new TestIndexer(dbClient, es.client()), mockResourceTypes, new ComponentFinder(dbClient)),
+          new TestIndexer(dbClient, es.client()), mockResourceTypes, new ComponentFinder(dbClient), mock(ServerIssuesExport.class)),
         dbClient,
         userSessionRule)));
     userSessionRule.setGlobalPermissions(GlobalPermissions.SYSTEM_ADMIN);
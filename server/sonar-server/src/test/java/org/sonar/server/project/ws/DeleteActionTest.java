@@ -48,6 +48,7 @@ import org.sonar.db.issue.IssueDto;
 import org.sonar.db.purge.PurgeDao;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
+import org.sonar.server.batch.ServerIssuesExport;
 import org.sonar.server.component.ComponentCleanerService;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.db.component.SnapshotTesting;
@@ -119,7 +120,8 @@ public class DeleteActionTest {
           new IssueIndexer(dbClient, es.client()),
           new TestIndexer(dbClient, es.client()),
           mockResourceTypes,
-          new ComponentFinder(dbClient)),
+          new ComponentFinder(dbClient),
+          mock(ServerIssuesExport.class)),
         new ComponentFinder(dbClient),
         dbClient,
         userSessionRule)));
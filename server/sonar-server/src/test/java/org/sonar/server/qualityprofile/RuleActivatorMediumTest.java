@@ -1034,6 +1034,46 @@ public class RuleActivatorMediumTest {
     verifyHasActiveRule(XOO_P3_KEY, RuleTesting.XOO_X2, Severity.BLOCKER, ActiveRuleDto.INHERITED, Collections.<String, String>emptyMap());
   }
 
+  @Test
+  public void bulk_activate_on_inheritance_tree_keeps_overridden_rules() {
+    createChildProfiles();
+
+    // x1 is activated on P2 and propagated to P3
+    RuleActivation activation = new RuleActivation(RuleTesting.XOO_X1).setSeverity(Severity.BLOCKER).setParameter("max", "7");
+    activate(activation, XOO_P2_KEY);
+
+    RuleQuery query = new RuleQuery().setRepositories(Arrays.asList("xoo"));
+    BulkChangeResult result = ruleActivator.bulkActivate(query, XOO_P1_KEY, Severity.MINOR);
+
+    dbSession.clearCache();
+    assertThat(result.countSucceeded()).isGreaterThanOrEqualTo(2);
+    verifyHasActiveRule(XOO_P1_KEY, RuleTesting.XOO_X1, Severity.MINOR, null, ImmutableMap.of("max", "10"));
+    verifyHasActiveRule(XOO_P1_KEY, RuleTesting.XOO_X2, Severity.MINOR, null, Collections.<String, String>emptyMap());
+    // P2 now overrides x1, so P3 is not changed
+    verifyHasActiveRule(XOO_P2_KEY, RuleTesting.XOO_X1, Severity.BLOCKER, ActiveRuleDto.OVERRIDES, ImmutableMap.of("max", "7"));
+    verifyHasActiveRule(XOO_P3_KEY, RuleTesting.XOO_X1, Severity.BLOCKER, ActiveRuleDto.INHERITED, ImmutableMap.of("max", "7"));
+    verifyHasActiveRule(XOO_P2_KEY, RuleTesting.XOO_X2, Severity.MINOR, ActiveRuleDto.INHERITED, Collections.<String, String>emptyMap());
+    verifyHasActiveRule(XOO_P3_KEY, RuleTesting.XOO_X2, Severity.MINOR, ActiveRuleDto.INHERITED, Collections.<String, String>emptyMap());
+    assertThat(db.qualityProfileDao().selectByKey(dbSession, XOO_P3_KEY).getRulesUpdatedAt()).isNotNull();
+  }
+
+  @Test
+  public void bulk_deactivate_on_inheritance_tree() {
+    createChildProfiles();
+    activate(new RuleActivation(RuleTesting.XOO_X1), XOO_P1_KEY);
+    activate(new RuleActivation(RuleTesting.XOO_X2), XOO_P1_KEY);
+    assertThat(countActiveRules(XOO_P3_KEY)).isEqualTo(2);
+
+    BulkChangeResult result = ruleActivator.bulkDeactivate(new RuleQuery().setActivation(true).setQProfileKey(XOO_P1_KEY), XOO_P1_KEY);
+
+    dbSession.clearCache();
+    assertThat(result.countSucceeded()).isEqualTo(2);
+    assertThat(result.getChanges()).hasSize(6);
+    verifyZeroActiveRules(XOO_P1_KEY);
+    verifyZeroActiveRules(XOO_P2_KEY);
+    verifyZeroActiveRules(XOO_P3_KEY);
+  }
+
   private int countActiveRules(String profileKey) {
     List<ActiveRuleDto> activeRuleDtos = db.activeRuleDao().selectByProfileKey(dbSession, profileKey);
     List<ActiveRule> activeRules = Lists.newArrayList(index.findByProfile(profileKey));
@@ -20,6 +20,7 @@
 package org.sonar.server.rule;
 
 import com.google.common.collect.Sets;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import org.junit.Before;
@@ -35,9 +36,13 @@ import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.debt.CharacteristicDao;
+import org.sonar.db.debt.CharacteristicDto;
+import org.sonar.db.loadedtemplate.LoadedTemplateDao;
+import org.sonar.db.loadedtemplate.LoadedTemplateDto;
 import org.sonar.db.qualityprofile.QualityProfileDao;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleParamDto;
+import org.sonar.db.version.DatabaseVersion;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.qualityprofile.RuleActivator;
 import org.sonar.server.qualityprofile.db.ActiveRuleDao;
@@ -71,7 +76,7 @@ public class RegisterRulesTest {
     RuleDao ruleDao = new RuleDao(system);
     ActiveRuleDao activeRuleDao = new ActiveRuleDao(new QualityProfileDao(dbTester.myBatis(), system), ruleDao, system);
     dbClient = new DbClient(dbTester.database(), dbTester.myBatis(), ruleDao, activeRuleDao,
-      new QualityProfileDao(dbTester.myBatis(), system), new CharacteristicDao(dbTester.myBatis()));
+      new QualityProfileDao(dbTester.myBatis(), system), new CharacteristicDao(dbTester.myBatis()), new LoadedTemplateDao(dbTester.myBatis()));
   }
 
   @Test
@@ -192,6 +197,82 @@ public class RegisterRulesTest {
     assertThat(rule2.getUpdatedAt()).isEqualTo(DATE2);
   }
 
+  @Test
+  public void do_not_register_unchanged_repository() {
+    execute(new FakeRepositoryV1());
+    List<LoadedTemplateDto> hashes = selectRepositoryHashes();
+    assertThat(hashes).hasSize(1);
+    assertThat(hashes.get(0).getKey()).startsWith("fake:");
+
+    RuleKey ruleKey1 = RuleKey.of("fake", "rule1");
+    RuleDto rule1 = dbClient.deprecatedRuleDao().getNullableByKey(dbTester.getSession(), ruleKey1);
+    rule1.setName("Name changed in db");
+    dbClient.deprecatedRuleDao().update(dbTester.getSession(), rule1);
+    dbTester.getSession().commit();
+
+    when(system.now()).thenReturn(DATE2.getTime());
+    execute(new FakeRepositoryV1());
+
+    // definition did not change, so the rule is not registered again
+    rule1 = dbClient.deprecatedRuleDao().getNullableByKey(dbTester.getSession(), ruleKey1);
+    assertThat(rule1.getName()).isEqualTo("Name changed in db");
+    assertThat(selectRepositoryHashes()).extracting("key").containsOnly(hashes.get(0).getKey());
+  }
+
+  @Test
+  public void replace_hash_of_changed_repository() {
+    execute(new FakeRepositoryV1());
+    String hashV1 = selectRepositoryHashes().get(0).getKey();
+
+    execute(new FakeRepositoryV2());
+
+    List<LoadedTemplateDto> hashes = selectRepositoryHashes();
+    assertThat(hashes).hasSize(1);
+    assertThat(hashes.get(0).getKey()).startsWith("fake:").isNotEqualTo(hashV1);
+  }
+
+  @Test
+  public void register_rules_again_after_database_upgrade() {
+    execute(new FakeRepositoryV1());
+    RulesDefinition.Context context = new RulesDefinition.Context();
+    new FakeRepositoryV1().define(context);
+    RulesDefinition.Repository repository = context.repository("fake");
+    String hash = RuleRepositoryHash.of(repository, Collections.<String, CharacteristicDto>emptyMap(), DatabaseVersion.LAST_VERSION);
+    assertThat(selectRepositoryHashes()).extracting("key").containsOnly(hash);
+
+    // simulate a registration by the previous version of SonarQube
+    String hashOfPreviousVersion = RuleRepositoryHash.of(repository, Collections.<String, CharacteristicDto>emptyMap(), DatabaseVersion.LAST_VERSION - 1);
+    assertThat(hashOfPreviousVersion).isNotEqualTo(hash);
+    dbClient.loadedTemplateDao().delete(dbTester.getSession(), LoadedTemplateDto.RULE_REPOSITORY_TYPE, hash);
+    dbClient.loadedTemplateDao().insert(new LoadedTemplateDto(hashOfPreviousVersion, LoadedTemplateDto.RULE_REPOSITORY_TYPE), dbTester.getSession());
+    RuleKey ruleKey1 = RuleKey.of("fake", "rule1");
+    RuleDto rule1 = dbClient.deprecatedRuleDao().getNullableByKey(dbTester.getSession(), ruleKey1);
+    rule1.setName("Name changed in db");
+    dbClient.deprecatedRuleDao().update(dbTester.getSession(), rule1);
+    dbTester.getSession().commit();
+
+    execute(new FakeRepositoryV1());
+
+    rule1 = dbClient.deprecatedRuleDao().getNullableByKey(dbTester.getSession(), ruleKey1);
+    assertThat(rule1.getName()).isEqualTo("One");
+    assertThat(selectRepositoryHashes()).extracting("key").containsOnly(hash);
+  }
+
+  @Test
+  public void register_rules_again_when_language_is_installed_again() {
+    execute(new FakeRepositoryV1());
+
+    // language is uninstalled -> rules are removed
+    execute(mock(Languages.class), new FakeRepositoryV1());
+    RuleKey ruleKey1 = RuleKey.of("fake", "rule1");
+    assertThat(dbClient.deprecatedRuleDao().getNullableByKey(dbTester.getSession(), ruleKey1).getStatus()).isEqualTo(RuleStatus.REMOVED);
+    assertThat(selectRepositoryHashes()).isEmpty();
+
+    execute(new FakeRepositoryV1());
+    assertThat(dbClient.deprecatedRuleDao().getNullableByKey(dbTester.getSession(), ruleKey1).getStatus()).isEqualTo(RuleStatus.BETA);
+    assertThat(selectRepositoryHashes()).hasSize(1);
+  }
+
   @Test
   public void mass_insert() {
     execute(new BigRepository());
@@ -210,16 +291,23 @@ public class RegisterRulesTest {
   }
 
   private void execute(RulesDefinition... defs) {
-    RuleDefinitionsLoader loader = new RuleDefinitionsLoader(mock(DeprecatedRulesDefinitionLoader.class), new RuleRepositories(), mock(CommonRuleDefinitionsImpl.class), defs);
     Languages languages = mock(Languages.class);
     when(languages.get("java")).thenReturn(mock(Language.class));
+    execute(languages, defs);
+  }
 
+  private void execute(Languages languages, RulesDefinition... defs) {
+    RuleDefinitionsLoader loader = new RuleDefinitionsLoader(mock(DeprecatedRulesDefinitionLoader.class), new RuleRepositories(), mock(CommonRuleDefinitionsImpl.class), defs);
     RegisterRules task = new RegisterRules(loader, ruleActivator, dbClient, languages);
     task.start();
     // Execute a commit to refresh session state as the task is using its own session
     dbTester.getSession().commit();
   }
 
+  private List<LoadedTemplateDto> selectRepositoryHashes() {
+    return dbClient.loadedTemplateDao().selectByType(dbTester.getSession(), LoadedTemplateDto.RULE_REPOSITORY_TYPE);
+  }
+
   private RuleParamDto getParam(List<RuleParamDto> params, String key) {
     for (RuleParamDto param : params) {
       if (param.getName().equals(key)) {
@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.sonar.api.server.rule.RulesDefinition;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 public class RuleDefinitionsLoaderTest {
@@ -53,6 +54,46 @@ public class RuleDefinitionsLoaderTest {
     assertThat(output.repository("squid")).isNotNull();
   }
 
+  @Test
+  public void load_definitions_of_many_plugins() {
+    RulesDefinition[] definitions = new RulesDefinition[50];
+    for (int i = 0; i < definitions.length; i++) {
+      definitions[i] = new NumberedDefinitions(i);
+    }
+    RulesDefinition.Context context = new RuleDefinitionsLoader(mock(DeprecatedRulesDefinitionLoader.class), output, mock(CommonRuleDefinitions.class), definitions).load();
+
+    assertThat(context.repositories()).hasSize(definitions.length);
+    assertThat(context.repository("repo49").rules()).extracting("key").containsOnly("rule49");
+    assertThat(output.repositories()).hasSize(definitions.length);
+  }
+
+  @Test
+  public void merge_definitions_of_plugins_in_plugin_order() {
+    RulesDefinition[] definitions = new RulesDefinition[20];
+    for (int i = 0; i < definitions.length; i++) {
+      definitions[i] = new SharedRepositoryDefinitions(i);
+    }
+    RulesDefinition.Context context = new RuleDefinitionsLoader(mock(DeprecatedRulesDefinitionLoader.class), output, mock(CommonRuleDefinitions.class), definitions).load();
+
+    RulesDefinition.Repository repository = context.repository("shared");
+    // name of the first plugin, rule of the last one
+    assertThat(repository.name()).isEqualTo("Shared 0");
+    assertThat(repository.rules()).hasSize(1);
+    assertThat(repository.rule("rule").name()).isEqualTo("Rule 19");
+  }
+
+  @Test
+  public void fail_if_a_plugin_definition_fails() {
+    try {
+      new RuleDefinitionsLoader(mock(DeprecatedRulesDefinitionLoader.class), output, mock(CommonRuleDefinitions.class), new RulesDefinition[] {
+        new SquidDefinitions(), new FailingDefinitions()
+      }).load();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Invalid definition");
+    }
+  }
+
   @Test
   public void define_common_rules() throws Exception {
     CommonRuleDefinitions commonRulesDefinitions = new FakeCommonRuleDefinitions();
@@ -104,6 +145,48 @@ public class RuleDefinitionsLoaderTest {
     }
   }
 
+  static class NumberedDefinitions implements RulesDefinition {
+    private final int index;
+
+    NumberedDefinitions(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public void define(Context context) {
+      NewRepository repo = context.createRepository("repo" + index, "java");
+      repo.createRule("rule" + index)
+        .setName("Rule " + index)
+        .setHtmlDescription("Description of rule " + index);
+      repo.done();
+    }
+  }
+
+  static class SharedRepositoryDefinitions implements RulesDefinition {
+    private final int index;
+
+    SharedRepositoryDefinitions(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public void define(Context context) {
+      NewRepository repo = context.createRepository("shared", "java");
+      repo.setName("Shared " + index);
+      repo.createRule("rule")
+        .setName("Rule " + index)
+        .setHtmlDescription("Description of rule " + index);
+      repo.done();
+    }
+  }
+
+  static class FailingDefinitions implements RulesDefinition {
+    @Override
+    public void define(Context context) {
+      throw new IllegalStateException("Invalid definition");
+    }
+  }
+
   static class PluginCommonRuleDefinitions implements RulesDefinition {
     @Override
     public void define(RulesDefinition.Context context) {
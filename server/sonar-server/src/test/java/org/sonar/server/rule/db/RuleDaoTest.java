@@ -20,6 +20,8 @@
 package org.sonar.server.rule.db;
 
 import com.google.common.collect.Iterables;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -96,6 +98,17 @@ public class RuleDaoTest {
     assertThat(dao.getNullableByKey(dbTester.getSession(), RuleKey.of("Unknown", "AvoidComparison"))).isNull();
   }
 
+  @Test
+  public void select_by_keys() {
+    dbTester.prepareDbUnit(getClass(), "select_by_rule_key.xml");
+
+    List<RuleDto> rules = dao.selectByKeys(dbTester.getSession(),
+      Arrays.asList(RuleKey.of("checkstyle", "AvoidComparison"), RuleKey.of("checkstyle", "AvoidNull"), RuleKey.of("checkstyle", "Unknown")));
+    assertThat(rules).extracting("id").containsOnly(1, 2);
+
+    assertThat(dao.selectByKeys(dbTester.getSession(), Collections.<RuleKey>emptyList())).isEmpty();
+  }
+
   @Test
   public void select_by_name() {
     dbTester.prepareDbUnit(getClass(), "select_by_name.xml");
@@ -288,6 +301,14 @@ public class RuleDaoTest {
     assertThat(ruleDto.getRuleId()).isEqualTo(1);
   }
 
+  @Test
+  public void select_parameters_by_rule_ids() {
+    dbTester.prepareDbUnit(getClass(), "select_parameters_by_rule_ids.xml");
+
+    assertThat(dao.selectRuleParamsByRuleIds(dbTester.getSession(), Arrays.asList(1, 2))).extracting("name").containsOnly("myParameter", "otherParam");
+    assertThat(dao.selectRuleParamsByRuleIds(dbTester.getSession(), Arrays.asList(2))).extracting("name").containsOnly("otherParam");
+  }
+
   @Test
   public void insert_parameter() {
     dbTester.prepareDbUnit(getClass(), "insert_parameter.xml");
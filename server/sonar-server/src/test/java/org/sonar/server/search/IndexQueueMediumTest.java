@@ -0,0 +1,123 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.db.DbSession;
+import org.sonar.db.rule.RuleDto;
+import org.sonar.db.rule.RuleTesting;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.rule.db.RuleDao;
+import org.sonar.server.rule.index.RuleIndex;
+import org.sonar.server.tester.ServerTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexQueueMediumTest {
+
+  @ClassRule
+  public static ServerTester tester = new ServerTester();
+
+  DbClient db;
+  RuleDao dao;
+  RuleIndex index;
+  DbSession dbSession;
+
+  @Before
+  public void before() {
+    tester.clearDbAndIndexes();
+    db = tester.get(DbClient.class);
+    dao = tester.get(RuleDao.class);
+    index = tester.get(RuleIndex.class);
+    dbSession = db.openSession(false);
+  }
+
+  @After
+  public void after() {
+    dbSession.close();
+  }
+
+  @Test
+  public void index_actions_split_in_several_bulk_requests() {
+    for (int i = 0; i < 2500; i++) {
+      dao.insert(dbSession, RuleTesting.newDto(RuleKey.of("bulk", "r_" + i)));
+    }
+    dbSession.commit();
+
+    assertThat(index.countAll()).isEqualTo(2500L);
+  }
+
+  @Test
+  public void keep_order_of_actions_on_same_document() {
+    RuleDto rule = RuleTesting.newDto(RuleKey.of("bulk", "r_1")).setName("first");
+    dao.insert(dbSession, rule);
+    for (int i = 0; i < 1500; i++) {
+      dao.insert(dbSession, RuleTesting.newDto(RuleKey.of("bulk", "other_" + i)));
+    }
+    dao.update(dbSession, rule.setName("second"));
+    dbSession.commit();
+
+    assertThat(index.getByKey(RuleKey.of("bulk", "r_1")).name()).isEqualTo("second");
+  }
+
+  @Test
+  public void index_actions_committed_concurrently() throws Exception {
+    int threads = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            DbSession session = db.openSession(false);
+            try {
+              for (int i = 0; i < 50; i++) {
+                dao.insert(session, RuleTesting.newDto(RuleKey.of("concurrent" + thread, "r_" + i)));
+                session.commit();
+              }
+            } finally {
+              session.close();
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(index.countAll()).isEqualTo(threads * 50L);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import java.net.HttpURLConnection;
+import org.junit.Test;
+import org.sonar.api.server.ws.internal.SimpleGetRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ETagsTest {
+
+  SimpleGetRequest request = new SimpleGetRequest();
+  ServletResponse response = new ServletResponse();
+
+  @Test
+  public void etag_is_quoted_and_depends_on_version() {
+    assertThat(ETags.of("v1")).startsWith("\"").endsWith("\"").isEqualTo(ETags.of("v1"));
+    assertThat(ETags.of("v1")).isNotEqualTo(ETags.of("v2"));
+  }
+
+  @Test
+  public void set_etag_when_request_is_not_conditional() {
+    assertThat(ETags.writeNotModifiedIfMatch(request, response, "v1")).isFalse();
+
+    assertThat(response.getHeader(ETags.ETAG)).isEqualTo(ETags.of("v1"));
+    assertThat(response.stream().httpStatus()).isEqualTo(HttpURLConnection.HTTP_OK);
+  }
+
+  @Test
+  public void not_modified_when_client_has_same_version() {
+    request.setHeader(ETags.IF_NONE_MATCH, ETags.of("v0") + ", " + ETags.of("v1"));
+
+    assertThat(ETags.writeNotModifiedIfMatch(request, response, "v1")).isTrue();
+
+    assertThat(response.getHeader(ETags.ETAG)).isEqualTo(ETags.of("v1"));
+    assertThat(response.stream().httpStatus()).isEqualTo(HttpURLConnection.HTTP_NOT_MODIFIED);
+    assertThat(response.stream().outputAsString()).isEmpty();
+  }
+
+  @Test
+  public void modified_when_client_has_other_version() {
+    request.setHeader(ETags.IF_NONE_MATCH, ETags.of("v0"));
+
+    assertThat(ETags.writeNotModifiedIfMatch(request, response, "v1")).isFalse();
+
+    assertThat(response.stream().httpStatus()).isEqualTo(HttpURLConnection.HTTP_OK);
+  }
+
+  @Test
+  public void wildcard_matches_any_version() {
+    request.setHeader(ETags.IF_NONE_MATCH, "*");
+
+    assertThat(ETags.writeNotModifiedIfMatch(request, response, "v1")).isTrue();
+  }
+}
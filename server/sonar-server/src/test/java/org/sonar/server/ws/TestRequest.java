@@ -31,6 +31,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class TestRequest extends ValidatingRequest {
 
   private final Map<String, String> params = new HashMap<>();
+  private final Map<String, String> headers = new HashMap<>();
   private String method = "GET";
   private String mimeType = "application/octet-stream";
 
@@ -82,6 +83,18 @@ public class TestRequest extends ValidatingRequest {
     return this;
   }
 
+  public TestRequest setHeader(String name, String value) {
+    checkNotNull(name);
+    checkNotNull(value);
+    this.headers.put(name, value);
+    return this;
+  }
+
+  @Override
+  public String header(String name) {
+    return headers.get(name);
+  }
+
   public TestResponse execute() {
     try {
       DumbResponse response = new DumbResponse();
@@ -55,6 +55,8 @@ public class WsTester {
 
     private Map<String, String> params = Maps.newHashMap();
 
+    private Map<String, String> headers = Maps.newHashMap();
+
     private TestRequest(String method) {
       this.method = method;
     }
@@ -91,6 +93,16 @@ public class WsTester {
       return params.get(key);
     }
 
+    public TestRequest setHeader(String name, String value) {
+      headers.put(name, value);
+      return this;
+    }
+
+    @Override
+    public String header(String name) {
+      return headers.get(name);
+    }
+
     @Override
     protected InputStream readInputStreamParam(String key) {
       String param = readParam(key);
@@ -244,6 +256,11 @@ public class WsTester {
       return this;
     }
 
+    @CheckForNull
+    public String header(String name) {
+      return response.getHeader(name);
+    }
+
     public Result assertHeader(String name, String value) {
       assertThat(response.getHeader(name)).isEqualTo(value);
       return this;
@@ -19,19 +19,33 @@
  */
 package org.sonar.batch.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
+/**
+ * Reads a report generated by {@link BatchReportWriter}. Data of components are read from
+ * the container file when the report has been packed (see {@link BatchReportWriter#packComponentData()}),
+ * otherwise from the legacy layout of one file per component.
+ */
 public class BatchReportReader {
 
   private final FileStructure fileStructure;
+  @CheckForNull
+  private final ReportContainerReader container;
 
   public BatchReportReader(File dir) {
     this.fileStructure = new FileStructure(dir);
+    File containerFile = fileStructure.containerFile();
+    this.container = fileExists(containerFile) ? new ReportContainerReader(containerFile) : null;
   }
 
   public BatchReport.Metadata readMetadata() {
@@ -51,114 +65,170 @@ public class BatchReportReader {
   }
 
   public CloseableIterator<BatchReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Measure.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.MEASURES, componentRef, BatchReport.Measure.PARSER);
   }
 
   @CheckForNull
   public BatchReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, BatchReport.Changesets.PARSER);
-    }
-    return null;
+    return readComponentMessage(FileStructure.Domain.CHANGESETS, componentRef, BatchReport.Changesets.PARSER);
   }
 
   public BatchReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    BatchReport.Component component = readComponentMessage(FileStructure.Domain.COMPONENT, componentRef, BatchReport.Component.PARSER);
+    if (component == null) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: "
+        + fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef));
     }
-    return Protobuf.read(file, BatchReport.Component.PARSER);
+    return component;
   }
 
   public CloseableIterator<BatchReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Issue.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.ISSUES, componentRef, BatchReport.Issue.PARSER);
   }
 
   public CloseableIterator<BatchReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Duplication.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.DUPLICATIONS, componentRef, BatchReport.Duplication.PARSER);
   }
 
   public CloseableIterator<BatchReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef, BatchReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<BatchReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Symbol.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.SYMBOLS, componentRef, BatchReport.Symbol.PARSER);
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
   }
 
   public CloseableIterator<BatchReport.SyntaxHighlighting> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.SyntaxHighlighting.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef, BatchReport.SyntaxHighlighting.PARSER);
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.COVERAGES, componentRef);
   }
 
   public CloseableIterator<BatchReport.Coverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Coverage.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.COVERAGES, fileRef, BatchReport.Coverage.PARSER);
   }
 
+  /**
+   * @deprecated use {@link #openComponentData(FileStructure.Domain, int)} with {@link FileStructure.Domain#SOURCE}, which
+   * does not extract the source from the container to disk.
+   */
+  @Deprecated
   @CheckForNull
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
-    if (fileExists(file)) {
-      return file;
-    }
-    return null;
+    return componentFile(FileStructure.Domain.SOURCE, fileRef);
   }
 
+  /**
+   * @deprecated use {@link #openComponentData(FileStructure.Domain, int)} with {@link FileStructure.Domain#TESTS}, which
+   * does not extract the tests from the container to disk.
+   */
+  @Deprecated
   @CheckForNull
   public File readTests(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
+    return componentFile(FileStructure.Domain.TESTS, testFileRef);
+  }
+
+  /**
+   * @deprecated use {@link #openComponentData(FileStructure.Domain, int)} with {@link FileStructure.Domain#COVERAGE_DETAILS},
+   * which does not extract the coverage details from the container to disk.
+   */
+  @Deprecated
+  @CheckForNull
+  public File readCoverageDetails(int testFileRef) {
+    return componentFile(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  }
+
+  public boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    if (container != null) {
+      return container.hasData(domain, componentRef);
+    }
+    return fileExists(fileStructure.fileFor(domain, componentRef));
+  }
+
+  /**
+   * Size in bytes of the raw data of a component, or 0 if the report does not contain data of the given domain
+   * for the component.
+   */
+  public long sizeOfComponentData(FileStructure.Domain domain, int componentRef) {
+    if (container != null) {
+      return container.length(domain, componentRef);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    return fileExists(file) ? file.length() : 0L;
+  }
+
+  /**
+   * Opens the raw data of a component. The caller is responsible for closing the stream.
+   *
+   * @return {@code null} if the report does not contain data of the given domain for the component
+   */
+  @CheckForNull
+  public InputStream openComponentData(FileStructure.Domain domain, int componentRef) {
+    if (container != null) {
+      return container.openStream(domain, componentRef);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (!fileExists(file)) {
+      return null;
+    }
+    try {
+      return FileUtils.openInputStream(file);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open file " + file, e);
+    }
+  }
+
+  private <MSG extends Message> CloseableIterator<MSG> readComponentStream(FileStructure.Domain domain, int componentRef, Parser<MSG> parser) {
+    if (container != null) {
+      InputStream input = container.openStream(domain, componentRef);
+      return input == null ? CloseableIterator.<MSG>emptyCloseableIterator() : Protobuf.readStream(input, parser);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
     if (fileExists(file)) {
-      return file;
+      return Protobuf.readStream(file, parser);
     }
+    return emptyCloseableIterator();
+  }
 
+  @CheckForNull
+  private <MSG extends Message> MSG readComponentMessage(FileStructure.Domain domain, int componentRef, Parser<MSG> parser) {
+    if (container != null) {
+      InputStream input = container.openStream(domain, componentRef);
+      return input == null ? null : Protobuf.read(input, parser);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (fileExists(file)) {
+      return Protobuf.read(file, parser);
+    }
     return null;
   }
 
+  /**
+   * Legacy file of a component. When the report is packed, the data is extracted from the container
+   * on first access.
+   */
   @CheckForNull
-  public File readCoverageDetails(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  private File componentFile(FileStructure.Domain domain, int componentRef) {
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (container != null && !fileExists(file)) {
+      try (InputStream input = container.openStream(domain, componentRef)) {
+        if (input == null) {
+          return null;
+        }
+        FileUtils.copyInputStreamToFile(input, file);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to extract file " + file + " from report container", e);
+      }
+    }
     if (fileExists(file)) {
       return file;
     }
-
     return null;
   }
 
@@ -138,4 +138,12 @@ public class BatchReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  /**
+   * Moves the data of all components into a single indexed file, see {@link FileStructure#containerFile()}.
+   * Must be the last write to the report, as the files of components are deleted.
+   */
+  public File packComponentData() {
+    return ReportContainerWriter.pack(fileStructure);
+  }
+
 }
@@ -48,6 +48,22 @@ public class FileStructure {
       this.filePrefix = filePrefix;
       this.fileSuffix = fileSuffix;
     }
+
+    /**
+     * Reference of the component which data is stored in the file with the specified name,
+     * or -1 if the file does not belong to this domain.
+     */
+    int refOf(String fileName) {
+      if (fileName.length() > filePrefix.length() + fileSuffix.length() && fileName.startsWith(filePrefix) && fileName.endsWith(fileSuffix)) {
+        String ref = fileName.substring(filePrefix.length(), fileName.length() - fileSuffix.length());
+        try {
+          return Integer.parseInt(ref);
+        } catch (NumberFormatException e) {
+          return -1;
+        }
+      }
+      return -1;
+    }
   }
 
   private final File dir;
@@ -71,6 +87,18 @@ public class FileStructure {
     return new File(dir, "activerules.pb");
   }
 
+  /**
+   * Single file containing the data of all components, indexed by {@link Domain} and component reference.
+   * It replaces the files returned by {@link #fileFor(Domain, int)} once the report is packed.
+   */
+  public File containerFile() {
+    return new File(dir, "components.dat");
+  }
+
+  File root() {
+    return dir;
+  }
+
   public File fileFor(Domain domain, int componentRef) {
     return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
   }
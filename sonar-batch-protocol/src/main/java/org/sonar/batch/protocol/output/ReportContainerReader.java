@@ -0,0 +1,198 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.CheckForNull;
+
+import static org.sonar.batch.protocol.output.ReportContainerWriter.ENTRY_SIZE;
+import static org.sonar.batch.protocol.output.ReportContainerWriter.HEADER_SIZE;
+import static org.sonar.batch.protocol.output.ReportContainerWriter.MAGIC;
+import static org.sonar.batch.protocol.output.ReportContainerWriter.VERSION;
+
+/**
+ * Random access to the container written by {@link ReportContainerWriter}. The file is memory-mapped
+ * once, so reading the data of a component does not open any file. Files bigger than 2Gb are mapped
+ * in several segments, each one ending on an entry boundary.
+ * <p>
+ * The channel is closed as soon as the file is mapped. Mappings remain valid until buffers are garbage-collected.
+ * </p>
+ */
+class ReportContainerReader {
+
+  private static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+  private final File file;
+  private final MappedByteBuffer[] segments;
+  // indexes per domain ordinal, refs are sorted
+  private final int[][] refs;
+  private final int[][] segmentIndexes;
+  private final int[][] positions;
+  private final int[][] lengths;
+
+  ReportContainerReader(File file) {
+    this.file = file;
+    FileStructure.Domain[] domains = FileStructure.Domain.values();
+    this.refs = new int[domains.length][];
+    this.segmentIndexes = new int[domains.length][];
+    this.positions = new int[domains.length][];
+    this.lengths = new int[domains.length][];
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      FileChannel channel = randomAccessFile.getChannel();
+      int entryCount = readHeader(channel);
+      ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) ENTRY_SIZE * entryCount);
+      this.segments = mapSegments(channel, table, entryCount, domains);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read report container " + file, e);
+    }
+  }
+
+  private int readHeader(FileChannel channel) throws IOException {
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+    if (header.getInt() != MAGIC) {
+      throw new IllegalStateException("File is not a report container: " + file);
+    }
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new IllegalStateException("Unsupported version " + version + " of report container: " + file);
+    }
+    return header.getInt();
+  }
+
+  private MappedByteBuffer[] mapSegments(FileChannel channel, ByteBuffer table, int entryCount, FileStructure.Domain[] domains) throws IOException {
+    int[] countPerDomain = new int[domains.length];
+    for (int i = 0; i < entryCount; i++) {
+      countPerDomain[table.get(i * ENTRY_SIZE)]++;
+    }
+    for (int d = 0; d < domains.length; d++) {
+      refs[d] = new int[countPerDomain[d]];
+      segmentIndexes[d] = new int[countPerDomain[d]];
+      positions[d] = new int[countPerDomain[d]];
+      lengths[d] = new int[countPerDomain[d]];
+    }
+
+    // entries are stored in the same order than data, so offsets are increasing
+    List<MappedByteBuffer> mapped = new ArrayList<>();
+    int[] indexPerDomain = new int[domains.length];
+    long segmentStart = HEADER_SIZE + (long) ENTRY_SIZE * entryCount;
+    long segmentEnd = segmentStart;
+    for (int i = 0; i < entryCount; i++) {
+      int domain = table.get();
+      int ref = table.getInt();
+      long offset = table.getLong();
+      int length = table.getInt();
+      if (offset + length - segmentStart > MAX_SEGMENT_SIZE) {
+        mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+        segmentStart = offset;
+      }
+      segmentEnd = offset + length;
+
+      int index = indexPerDomain[domain]++;
+      refs[domain][index] = ref;
+      segmentIndexes[domain][index] = mapped.size();
+      positions[domain][index] = (int) (offset - segmentStart);
+      lengths[domain][index] = length;
+    }
+    mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+    return mapped.toArray(new MappedByteBuffer[mapped.size()]);
+  }
+
+  boolean hasData(FileStructure.Domain domain, int componentRef) {
+    return indexOf(domain, componentRef) >= 0;
+  }
+
+  /**
+   * Length in bytes of the data of the component, or 0 if the container does not have data for it.
+   */
+  int length(FileStructure.Domain domain, int componentRef) {
+    int index = indexOf(domain, componentRef);
+    return index < 0 ? 0 : lengths[domain.ordinal()][index];
+  }
+
+  /**
+   * Stream on the data of the component, or {@code null} if the container does not have data for it.
+   */
+  @CheckForNull
+  InputStream openStream(FileStructure.Domain domain, int componentRef) {
+    int index = indexOf(domain, componentRef);
+    if (index < 0) {
+      return null;
+    }
+    int d = domain.ordinal();
+    ByteBuffer buffer = segments[segmentIndexes[d][index]].duplicate();
+    buffer.position(positions[d][index]);
+    buffer.limit(positions[d][index] + lengths[d][index]);
+    return new ByteBufferInputStream(buffer.slice());
+  }
+
+  private int indexOf(FileStructure.Domain domain, int componentRef) {
+    return Arrays.binarySearch(refs[domain.ordinal()], componentRef);
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(bytes, off, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int) Math.max(0L, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Packs the files of all components of a report into a single file, see {@link FileStructure#containerFile()}.
+ * <p>
+ * Layout of the container:
+ * <ul>
+ *   <li>header: magic number, format version and number of entries (3 ints)</li>
+ *   <li>offset table, sorted by domain then by component ref: domain ordinal (byte), component ref (int),
+ *   absolute offset of data (long) and length of data (int)</li>
+ *   <li>data of all entries, concatenated in the order of the table</li>
+ * </ul>
+ * </p>
+ */
+class ReportContainerWriter {
+
+  static final int MAGIC = 0x53515243;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 3 * 4;
+  static final int ENTRY_SIZE = 1 + 4 + 8 + 4;
+
+  private ReportContainerWriter() {
+    // only static stuff
+  }
+
+  /**
+   * Writes the container and deletes the packed component files.
+   */
+  static File pack(FileStructure fileStructure) {
+    List<Entry> entries = listEntries(fileStructure.root());
+    File container = fileStructure.containerFile();
+    try {
+      write(container, entries);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write report container " + container, e);
+    }
+    for (Entry entry : entries) {
+      FileUtils.deleteQuietly(entry.file);
+    }
+    return container;
+  }
+
+  private static List<Entry> listEntries(File dir) {
+    List<Entry> entries = new ArrayList<>();
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return entries;
+    }
+    for (File file : files) {
+      if (!file.isFile()) {
+        continue;
+      }
+      for (FileStructure.Domain domain : FileStructure.Domain.values()) {
+        int ref = domain.refOf(file.getName());
+        if (ref >= 0) {
+          if (file.length() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Report file is too big to be packed: " + file);
+          }
+          entries.add(new Entry(domain, ref, file));
+          break;
+        }
+      }
+    }
+    Collections.sort(entries, EntryComparator.INSTANCE);
+    return entries;
+  }
+
+  private static void write(File container, List<Entry> entries) throws IOException {
+    try (FileOutputStream output = new FileOutputStream(container, false)) {
+      DataOutputStream header = new DataOutputStream(new BufferedOutputStream(output));
+      header.writeInt(MAGIC);
+      header.writeInt(VERSION);
+      header.writeInt(entries.size());
+      long offset = HEADER_SIZE + (long) ENTRY_SIZE * entries.size();
+      for (Entry entry : entries) {
+        header.writeByte(entry.domain.ordinal());
+        header.writeInt(entry.ref);
+        header.writeLong(offset);
+        header.writeInt((int) entry.length);
+        offset += entry.length;
+      }
+      header.flush();
+
+      FileChannel target = output.getChannel();
+      for (Entry entry : entries) {
+        try (FileChannel source = new FileInputStream(entry.file).getChannel()) {
+          long position = 0L;
+          while (position < entry.length) {
+            position += source.transferTo(position, entry.length - position, target);
+          }
+        }
+      }
+    }
+  }
+
+  private static class Entry {
+    private final FileStructure.Domain domain;
+    private final int ref;
+    private final File file;
+    private final long length;
+
+    private Entry(FileStructure.Domain domain, int ref, File file) {
+      this.domain = domain;
+      this.ref = ref;
+      this.file = file;
+      this.length = file.length();
+    }
+  }
+
+  private enum EntryComparator implements Comparator<Entry> {
+    INSTANCE;
+
+    @Override
+    public int compare(Entry o1, Entry o2) {
+      int domainComparison = o1.domain.compareTo(o2.domain);
+      if (domainComparison != 0) {
+        return domainComparison;
+      }
+      return Integer.compare(o1.ref, o2.ref);
+    }
+  }
+}
@@ -379,6 +379,8 @@ public class BatchReportReaderTest {
     try (InputStream inputStream = FileUtils.openInputStream(underTest.readFileSource(1))) {
       assertThat(IOUtils.readLines(inputStream)).containsOnly("line1", "line2");
     }
+    assertThat(underTest.sizeOfComponentData(FileStructure.Domain.SOURCE, 1)).isEqualTo(11L);
+    assertThat(underTest.sizeOfComponentData(FileStructure.Domain.SOURCE, UNKNOWN_COMPONENT_REF)).isEqualTo(0L);
   }
 
   @Test
@@ -0,0 +1,132 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.core.util.CloseableIterator;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReportContainerReaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  File dir;
+  BatchReportWriter writer;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder();
+    writer = new BatchReportWriter(dir);
+  }
+
+  @Test
+  public void pack_component_files_into_container() throws Exception {
+    writer.writeMetadata(BatchReport.Metadata.newBuilder().setRootComponentRef(1).build());
+    writer.writeComponent(BatchReport.Component.newBuilder().setRef(1).build());
+    writer.writeComponent(BatchReport.Component.newBuilder().setRef(2).build());
+    writer.writeComponentMeasures(2, asList(BatchReport.Measure.newBuilder().setStringValue("foo").build()));
+    FileUtils.write(writer.getSourceFile(2), "line1\nline2", StandardCharsets.UTF_8);
+
+    File container = writer.packComponentData();
+
+    assertThat(container).isEqualTo(writer.getFileStructure().containerFile()).isFile();
+    assertThat(writer.getFileStructure().fileFor(FileStructure.Domain.COMPONENT, 1)).doesNotExist();
+    assertThat(writer.getFileStructure().fileFor(FileStructure.Domain.MEASURES, 2)).doesNotExist();
+    assertThat(writer.getSourceFile(2)).doesNotExist();
+    // files which are not related to components are kept
+    assertThat(writer.getFileStructure().metadataFile()).isFile();
+  }
+
+  @Test
+  public void read_packed_report() throws Exception {
+    writer.writeMetadata(BatchReport.Metadata.newBuilder().setRootComponentRef(1).build());
+    writer.writeComponent(BatchReport.Component.newBuilder().setRef(1).addChildRef(2).build());
+    writer.writeComponent(BatchReport.Component.newBuilder().setRef(2).setPath("src/Foo.java").build());
+    writer.writeComponentIssues(2, asList(
+      BatchReport.Issue.newBuilder().setMsg("issue 1").build(),
+      BatchReport.Issue.newBuilder().setMsg("issue 2").build()));
+    writer.writeComponentChangesets(BatchReport.Changesets.newBuilder().setComponentRef(2).build());
+    FileUtils.write(writer.getSourceFile(2), "line1\nline2", StandardCharsets.UTF_8);
+    writer.packComponentData();
+
+    BatchReportReader reader = new BatchReportReader(dir);
+
+    assertThat(reader.readMetadata().getRootComponentRef()).isEqualTo(1);
+    assertThat(reader.readComponent(1).getChildRefList()).containsExactly(2);
+    assertThat(reader.readComponent(2).getPath()).isEqualTo("src/Foo.java");
+    assertThat(reader.readChangesets(2).getComponentRef()).isEqualTo(2);
+    assertThat(reader.readChangesets(1)).isNull();
+    try (CloseableIterator<BatchReport.Issue> issues = reader.readComponentIssues(2)) {
+      assertThat(issues.next().getMsg()).isEqualTo("issue 1");
+      assertThat(issues.next().getMsg()).isEqualTo("issue 2");
+      assertThat(issues.hasNext()).isFalse();
+    }
+    assertThat(reader.readComponentIssues(1).hasNext()).isFalse();
+    assertThat(reader.hasComponentData(FileStructure.Domain.SOURCE, 2)).isTrue();
+    assertThat(reader.hasComponentData(FileStructure.Domain.SOURCE, 1)).isFalse();
+    try (InputStream source = reader.openComponentData(FileStructure.Domain.SOURCE, 2)) {
+      assertThat(IOUtils.toString(source, StandardCharsets.UTF_8)).isEqualTo("line1\nline2");
+    }
+    assertThat(reader.openComponentData(FileStructure.Domain.SOURCE, 3)).isNull();
+    assertThat(reader.sizeOfComponentData(FileStructure.Domain.SOURCE, 2)).isEqualTo(11L);
+    assertThat(reader.sizeOfComponentData(FileStructure.Domain.SOURCE, 3)).isEqualTo(0L);
+  }
+
+  @Test
+  public void extract_legacy_file_from_container_on_demand() throws Exception {
+    FileUtils.write(writer.getSourceFile(2), "line1\nline2", StandardCharsets.UTF_8);
+    writer.packComponentData();
+
+    BatchReportReader reader = new BatchReportReader(dir);
+
+    File source = reader.readFileSource(2);
+    assertThat(source).isEqualTo(writer.getSourceFile(2));
+    assertThat(FileUtils.readFileToString(source, StandardCharsets.UTF_8)).isEqualTo("line1\nline2");
+    assertThat(reader.readFileSource(3)).isNull();
+  }
+
+  @Test
+  public void read_empty_container() {
+    writer.packComponentData();
+
+    BatchReportReader reader = new BatchReportReader(dir);
+
+    assertThat(reader.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isFalse();
+    assertThat(reader.readComponentMeasures(1).hasNext()).isFalse();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_if_file_is_not_a_container() throws Exception {
+    FileUtils.write(new FileStructure(dir).containerFile(), "not a container with a header");
+
+    new ReportContainerReader(new FileStructure(dir).containerFile());
+  }
+}
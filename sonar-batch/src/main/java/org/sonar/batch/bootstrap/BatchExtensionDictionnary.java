@@ -26,10 +26,18 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.ClassUtils;
 import org.sonar.api.batch.CheckProject;
@@ -154,6 +162,67 @@ public class BatchExtensionDictionnary {
     return Collections2.filter(sortedList, Predicates.in(extensions));
   }
 
+  /**
+   * For each extension, the extensions of the collection that must be executed before it, according
+   * to {@link DependsUpon}, {@link DependedUpon} and {@link Phase}. Dependencies are transitive.
+   * Extensions which do not depend on each other can be executed concurrently.
+   */
+  public <T> Map<T, Set<T>> getTransitiveDependencies(Collection<T> extensions) {
+    Map<Object, Set<Object>> edges = new HashMap<>();
+    for (T extension : extensions) {
+      for (Object dependency : getDependencies(extension)) {
+        addEdge(edges, extension, dependency);
+      }
+      for (Object generates : getDependents(extension)) {
+        addEdge(edges, generates, extension);
+      }
+      Phase.Name phase = evaluatePhase(extension);
+      addEdge(edges, extension, phase);
+      for (Phase.Name name : Phase.Name.values()) {
+        if (phase.compareTo(name) < 0) {
+          addEdge(edges, name, extension);
+        } else if (phase.compareTo(name) > 0) {
+          addEdge(edges, extension, name);
+        }
+      }
+    }
+
+    Set<Object> candidates = new HashSet<Object>(extensions);
+    Map<T, Set<T>> result = new LinkedHashMap<>();
+    for (T extension : extensions) {
+      Set<T> dependencies = new LinkedHashSet<>();
+      Set<Object> visited = new HashSet<>();
+      Deque<Object> toVisit = new ArrayDeque<>();
+      toVisit.push(extension);
+      while (!toVisit.isEmpty()) {
+        Object node = toVisit.pop();
+        Set<Object> nodeDependencies = edges.get(node);
+        if (nodeDependencies == null) {
+          continue;
+        }
+        for (Object dependency : nodeDependencies) {
+          if (visited.add(dependency)) {
+            if (dependency != extension && candidates.contains(dependency)) {
+              dependencies.add((T) dependency);
+            }
+            toVisit.push(dependency);
+          }
+        }
+      }
+      result.put(extension, dependencies);
+    }
+    return result;
+  }
+
+  private static void addEdge(Map<Object, Set<Object>> edges, Object from, Object to) {
+    Set<Object> targets = edges.get(from);
+    if (targets == null) {
+      targets = new HashSet<>();
+      edges.put(from, targets);
+    }
+    targets.add(to);
+  }
+
   /**
    * Extension dependencies
    */
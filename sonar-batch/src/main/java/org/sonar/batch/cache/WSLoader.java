@@ -22,7 +22,9 @@ package org.sonar.batch.cache;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
@@ -33,6 +35,9 @@ import org.sonar.batch.bootstrap.BatchWsClient;
 import org.sonar.home.cache.PersistentCache;
 import org.sonarqube.ws.client.GetRequest;
 import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.WsResponse;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
 
 import static org.sonar.batch.cache.WSLoader.ServerStatus.ACCESSIBLE;
 import static org.sonar.batch.cache.WSLoader.ServerStatus.NOT_ACCESSIBLE;
@@ -41,6 +46,8 @@ import static org.sonar.batch.cache.WSLoader.ServerStatus.UNKNOWN;
 public class WSLoader {
   private static final Logger LOG = Loggers.get(WSLoader.class);
   private static final String FAIL_MSG = "Server is not accessible and data is not cached";
+  private static final String ETAG = "ETag";
+  private static final String IF_NONE_MATCH = "If-None-Match";
 
   public enum ServerStatus {
     UNKNOWN, ACCESSIBLE, NOT_ACCESSIBLE
@@ -58,11 +65,20 @@ public class WSLoader {
   private DataLoader<String> stringServerLoader = new DataLoader<String>() {
     @Override
     public String load(String id) throws IOException {
-      GetRequest getRequest = new GetRequest(id);
-      try (Reader reader = wsClient.call(getRequest).contentReader()) {
+      String etag = getCachedETag(id);
+      WsResponse response = callServer(id, etag);
+      if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        String cached = cache.getString(id);
+        if (cached != null) {
+          return cached;
+        }
+        response = callServer(id, null);
+      }
+      try (Reader reader = response.contentReader()) {
         String str = IOUtils.toString(reader);
         try {
           cache.put(id, str.getBytes(StandardCharsets.UTF_8));
+          putETag(id, response, etag);
         } catch (IOException e) {
           throw new IllegalStateException("Error saving to WS cache", e);
         }
@@ -81,10 +97,19 @@ public class WSLoader {
   private DataLoader<InputStream> streamServerLoader = new DataLoader<InputStream>() {
     @Override
     public InputStream load(String id) throws IOException {
-      GetRequest getRequest = new GetRequest(id);
-      try (InputStream is = wsClient.call(getRequest).contentStream()) {
+      String etag = getCachedETag(id);
+      WsResponse response = callServer(id, etag);
+      if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        InputStream cached = cache.getStream(id);
+        if (cached != null) {
+          return cached;
+        }
+        response = callServer(id, null);
+      }
+      try (InputStream is = response.contentStream()) {
         try {
           cache.put(id, is);
+          putETag(id, response, etag);
         } catch (IOException e) {
           throw new IllegalStateException("Error saving to WS cache", e);
         }
@@ -149,6 +174,38 @@ public class WSLoader {
     }
   }
 
+  /**
+   * When the entity tag of the cached data is known, the server answers 304 Not Modified
+   * if the data did not change. The cached data is then reused instead of being downloaded again.
+   */
+  private WsResponse callServer(String id, @Nullable String etag) {
+    GetRequest getRequest = new GetRequest(id);
+    if (etag != null) {
+      getRequest.setHeader(IF_NONE_MATCH, etag);
+    }
+    return wsClient.call(getRequest);
+  }
+
+  @CheckForNull
+  private String getCachedETag(String id) throws IOException {
+    String etag = cache.getString(etagKey(id));
+    return isNullOrEmpty(etag) ? null : etag;
+  }
+
+  private void putETag(String id, WsResponse response, @Nullable String previousETag) throws IOException {
+    String etag = response.header(ETAG);
+    if (etag != null) {
+      cache.put(etagKey(id), etag.getBytes(StandardCharsets.UTF_8));
+    } else if (previousETag != null) {
+      // previous tag does not identify the cached data anymore
+      cache.put(etagKey(id), new byte[0]);
+    }
+  }
+
+  static String etagKey(String id) {
+    return id + "#etag";
+  }
+
   public LoadStrategy getDefaultStrategy() {
     return this.defautLoadStrategy;
   }
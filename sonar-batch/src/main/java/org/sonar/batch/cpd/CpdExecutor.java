@@ -22,6 +22,7 @@ package org.sonar.batch.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
@@ -39,22 +40,52 @@ import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 
+import javax.annotation.CheckForNull;
+
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.collect.FluentIterable.from;
+import static org.sonar.batch.util.BatchUtils.readStrictlyPositiveInt;
 
 /**
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * When property {@link #THREADS_PROPERTY} is greater than 1, files are processed by a pool of threads, which share the
+ * index in read-only mode. The detection of duplications of a file is cancelled when it lasts more than
+ * {@link #TIMEOUT_PROPERTY} seconds, without stopping the detection on other files. Duplications are written to
+ * the report, by the calling thread, as soon as the detection of a file is completed.
+ * </p>
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
 
+  public static final String THREADS_PROPERTY = "sonar.cpd.threads";
+  public static final String TIMEOUT_PROPERTY = "sonar.cpd.timeout";
+  private static final String THREAD_NAME_PREFIX = "cpd-";
+  // 5 minutes
+  private static final int DEFAULT_TIMEOUT = 300;
+  /**
+   * Number of files submitted to the pool of threads per thread. It bounds the number of blocks loaded in memory.
+   */
+  private static final int PENDING_FILES_PER_THREAD = 4;
+  private static final long POLL_DELAY_MS = 100L;
+
   private final SonarDuplicationsIndex index;
   private final ReportPublisher publisher;
   private final BatchComponentCache batchComponentCache;
@@ -68,6 +99,15 @@ public class CpdExecutor {
   }
 
   public void execute() {
+    int threads = readStrictlyPositiveInt(settings, THREADS_PROPERTY, 1);
+    if (threads <= 1) {
+      executeSequentially();
+    } else {
+      executeConcurrently(threads, TimeUnit.SECONDS.toMillis(readStrictlyPositiveInt(settings, TIMEOUT_PROPERTY, DEFAULT_TIMEOUT)));
+    }
+  }
+
+  private void executeSequentially() {
     Iterator<ResourceBlocks> it = index.iterator();
 
     while (it.hasNext()) {
@@ -76,12 +116,99 @@ public class CpdExecutor {
     }
   }
 
-  private void runCpdAnalysis(String resource, Collection<Block> fileBlocks) {
-    LOG.debug("Detection of duplications for {}", resource);
+  @VisibleForTesting
+  void executeConcurrently(int threads, long timeoutMs) {
+    ExecutorService executorService = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_PREFIX + "%d").setDaemon(true).build());
+    try {
+      CompletionService<List<CloneGroup>> completionService = new ExecutorCompletionService<>(executorService);
+      Map<Future<List<CloneGroup>>, DetectionTask> pending = new HashMap<>();
+      // sorts the index, so that it can then be read concurrently
+      Iterator<ResourceBlocks> it = index.iterator();
+      int maxPending = threads * PENDING_FILES_PER_THREAD;
 
+      while (it.hasNext() || !pending.isEmpty()) {
+        while (it.hasNext() && pending.size() < maxPending) {
+          ResourceBlocks resourceBlocks = it.next();
+          BatchComponent component = getComponent(resourceBlocks.resourceId());
+          if (component != null) {
+            DetectionTask task = new DetectionTask(component, resourceBlocks.blocks());
+            pending.put(completionService.submit(task), task);
+          }
+        }
+        Future<List<CloneGroup>> completed = completionService.poll(POLL_DELAY_MS, TimeUnit.MILLISECONDS);
+        if (completed != null) {
+          // cancelled tasks are also returned by the completion service, but they are no more pending
+          DetectionTask task = pending.remove(completed);
+          if (task != null) {
+            saveDuplications(task.component, getResult(completed, task));
+          }
+        }
+        cancelTimedOut(pending, timeoutMs);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Detection of duplications has been interrupted", e);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static List<CloneGroup> getResult(Future<List<CloneGroup>> future, DetectionTask task) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail during detection of duplication for " + task.component.key(), e.getCause());
+    }
+  }
+
+  private static void cancelTimedOut(Map<Future<List<CloneGroup>>, DetectionTask> pending, long timeoutMs) {
+    long now = System.currentTimeMillis();
+    Iterator<Map.Entry<Future<List<CloneGroup>>, DetectionTask>> it = pending.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Future<List<CloneGroup>>, DetectionTask> entry = it.next();
+      long startedAt = entry.getValue().startedAt;
+      if (startedAt > 0 && now - startedAt > timeoutMs) {
+        // the detection algorithm does not check interruptions, so the thread is released only once the detection is completed
+        entry.getKey().cancel(true);
+        it.remove();
+        LOG.warn("Timeout during detection of duplications for {}. No duplications are saved for this file.", entry.getValue().component.inputComponent());
+      }
+    }
+  }
+
+  private final class DetectionTask implements Callable<List<CloneGroup>> {
+    private final BatchComponent component;
+    private final Collection<Block> fileBlocks;
+    private volatile long startedAt = 0L;
+
+    private DetectionTask(BatchComponent component, Collection<Block> fileBlocks) {
+      this.component = component;
+      this.fileBlocks = fileBlocks;
+    }
+
+    @Override
+    public List<CloneGroup> call() {
+      startedAt = System.currentTimeMillis();
+      LOG.debug("Detection of duplications for {}", component.key());
+      return filter(component, SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
+    }
+  }
+
+  @CheckForNull
+  private BatchComponent getComponent(String resource) {
     BatchComponent component = batchComponentCache.get(resource);
     if (component == null) {
       LOG.error("Resource not found in component cache: {}. Skipping CPD computation for it", resource);
+    }
+    return component;
+  }
+
+  private void runCpdAnalysis(String resource, Collection<Block> fileBlocks) {
+    LOG.debug("Detection of duplications for {}", resource);
+
+    BatchComponent component = getComponent(resource);
+    if (component == null) {
       return;
     }
 
@@ -92,6 +219,10 @@ public class CpdExecutor {
       throw new IllegalStateException("Fail during detection of duplication for " + resource, e);
     }
 
+    saveDuplications(component, filter(component, duplications));
+  }
+
+  private List<CloneGroup> filter(BatchComponent component, List<CloneGroup> duplications) {
     InputFile inputFile = (InputFile) component.inputComponent();
 
     List<CloneGroup> filtered;
@@ -101,8 +232,7 @@ public class CpdExecutor {
     } else {
       filtered = duplications;
     }
-
-    saveDuplications(component, filtered);
+    return filtered;
   }
 
   @VisibleForTesting
@@ -22,6 +22,7 @@ package org.sonar.batch.index;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
 import javax.annotation.CheckForNull;
@@ -30,6 +31,9 @@ import org.sonar.api.batch.BatchSide;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.resources.Resource;
 
+/**
+ * Thread-safe, as components may be added by sensors executed concurrently.
+ */
 @BatchSide
 public class BatchComponentCache {
   // components by key
@@ -38,19 +42,19 @@ public class BatchComponentCache {
   private BatchComponent root;
 
   @CheckForNull
-  public BatchComponent get(String componentKey) {
+  public synchronized BatchComponent get(String componentKey) {
     return components.get(componentKey);
   }
 
-  public BatchComponent get(Resource resource) {
+  public synchronized BatchComponent get(Resource resource) {
     return components.get(resource.getEffectiveKey());
   }
 
-  public BatchComponent get(InputComponent inputComponent) {
+  public synchronized BatchComponent get(InputComponent inputComponent) {
     return components.get(inputComponent.key());
   }
 
-  public BatchComponent add(Resource resource, @Nullable Resource parentResource) {
+  public synchronized BatchComponent add(Resource resource, @Nullable Resource parentResource) {
     String componentKey = resource.getEffectiveKey();
     Preconditions.checkState(!Strings.isNullOrEmpty(componentKey), "Missing resource effective key");
     BatchComponent parent = parentResource != null ? get(parentResource.getEffectiveKey()) : null;
@@ -62,11 +66,14 @@ public class BatchComponentCache {
     return batchComponent;
   }
 
-  public Collection<BatchComponent> all() {
-    return components.values();
+  /**
+   * Snapshot of the components, in order of addition.
+   */
+  public synchronized Collection<BatchComponent> all() {
+    return new ArrayList<>(components.values());
   }
 
-  public BatchComponent getRoot() {
+  public synchronized BatchComponent getRoot() {
     return root;
   }
 }
@@ -0,0 +1,69 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import java.util.Iterator;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+
+/**
+ * Backend of a {@link Cache}. Keys are made of one or more parts, and are hierarchical: the operations
+ * accepting a prefix apply to all the keys starting with the given parts.
+ *
+ * @see CachesManager.Storage
+ */
+interface CacheStorage<V> {
+
+  void put(Object[] key, V value);
+
+  @CheckForNull
+  V get(Object[] key);
+
+  boolean containsKey(Object[] key);
+
+  boolean remove(Object[] key);
+
+  /**
+   * Removes the key equal to {@code prefix} and all the keys starting with it.
+   */
+  void clear(Object[] prefix);
+
+  void clear();
+
+  /**
+   * Distinct parts at depth {@code prefix.length} of the keys starting with {@code prefix}.
+   */
+  Set<Object> keySet(Object[] prefix);
+
+  /**
+   * Lazy iterator on values of keys starting with {@code prefix}, sorted by key
+   */
+  Iterator<V> values(Object[] prefix);
+
+  /**
+   * Lazy iterator on entries of keys starting with {@code prefix}, sorted by key
+   */
+  Iterator<Cache.Entry<V>> entries(Object[] prefix);
+
+  /**
+   * Releases resources. The storage must not be used anymore.
+   */
+  void close();
+}
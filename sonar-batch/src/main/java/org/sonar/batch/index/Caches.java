@@ -21,8 +21,10 @@ package org.sonar.batch.index;
 
 import com.google.common.collect.Maps;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import com.google.common.base.Preconditions;
 import com.persistit.Exchange;
@@ -32,18 +34,22 @@ import com.persistit.Persistit;
 import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
 import com.persistit.Volume;
+import org.apache.commons.io.FileUtils;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.BatchSide;
 
 @BatchSide
 public class Caches implements Startable {
-  private final Map<String, Exchange> cacheMap = Maps.newHashMap();
+  private final Map<String, CacheStorage<?>> cacheMap = Maps.newHashMap();
+  private final CachesManager.Storage storage;
   private Persistit persistit;
   private Volume volume;
+  private File offHeapDir;
 
   public Caches(CachesManager caches) {
     persistit = caches.persistit();
-    doStart();
+    storage = caches.storage();
+    doStart(caches);
   }
 
   @Override
@@ -51,7 +57,15 @@ public class Caches implements Startable {
     // done in constructor
   }
 
-  private void doStart() {
+  private void doStart(CachesManager caches) {
+    if (storage == CachesManager.Storage.OFF_HEAP) {
+      try {
+        offHeapDir = Files.createTempDirectory(caches.tempDir().toPath(), "offheap").toFile();
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to create a cache directory", e);
+      }
+      return;
+    }
     try {
       persistit.flush();
       volume = persistit.createTemporaryVolume();
@@ -60,29 +74,39 @@ public class Caches implements Startable {
     }
   }
 
+  /**
+   * Coders are used by all storages to serialize values
+   */
   public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
     CoderManager cm = persistit.getCoderManager();
     cm.registerValueCoder(clazz, coder);
   }
 
   public <V> Cache<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
+    Preconditions.checkState(offHeapDir != null || (volume != null && volume.isOpened()), "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: " + cacheName);
     try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Cache<V> cache = new Cache<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
-      return cache;
+      CacheStorage<V> cacheStorage = createStorage(cacheName);
+      cacheMap.put(cacheName, cacheStorage);
+      return new Cache<>(cacheStorage);
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create cache: " + cacheName, e);
     }
   }
 
+  private <V> CacheStorage<V> createStorage(String cacheName) throws PersistitException {
+    if (offHeapDir != null) {
+      return new OffHeapCacheStorage<>(cacheName, offHeapDir, persistit);
+    }
+    Exchange exchange = persistit.getExchange(volume, cacheName, true);
+    exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+    return new PersistitCacheStorage<>(cacheName, persistit, exchange);
+  }
+
   @Override
   public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
+    for (CacheStorage<?> cacheStorage : cacheMap.values()) {
+      cacheStorage.close();
     }
 
     cacheMap.clear();
@@ -96,5 +120,9 @@ public class Caches implements Startable {
       }
       volume = null;
     }
+    if (offHeapDir != null) {
+      FileUtils.deleteQuietly(offHeapDir);
+      offHeapDir = null;
+    }
   }
 }
@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.index;
 
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
 
 import com.persistit.Persistit;
@@ -28,8 +29,10 @@ import org.apache.commons.io.FileUtils;
 import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.BatchSide;
+import org.sonar.batch.bootstrap.GlobalProperties;
 
 import java.io.File;
+import java.util.Locale;
 import java.util.Properties;
 
 /**
@@ -39,15 +42,56 @@ import java.util.Properties;
  */
 @BatchSide
 public class CachesManager implements Startable {
+
+  public static final String STORAGE_PROPERTY = "sonar.batch.cacheStorage";
+
+  /**
+   * Backends of {@link Cache}. Whatever the storage, values are serialized by Persistit
+   * coders registered with {@link Caches#registerValueCoder(Class, com.persistit.encoding.ValueCoder)}.
+   */
+  public enum Storage {
+    /**
+     * Temporary Persistit volume. Accesses are serialized.
+     */
+    PERSISTIT,
+    /**
+     * Memory-mapped log supporting concurrent accesses, see {@link OffHeapCacheStorage}
+     */
+    OFF_HEAP
+  }
+
   private File tempDir;
   private Persistit persistit;
   private final TempFolder tempFolder;
+  private final Storage storage;
 
   public CachesManager(TempFolder tempFolder) {
+    this(tempFolder, Storage.PERSISTIT);
+  }
+
+  public CachesManager(TempFolder tempFolder, GlobalProperties bootstrapProps) {
+    this(tempFolder, parseStorage(bootstrapProps.property(STORAGE_PROPERTY)));
+  }
+
+  CachesManager(TempFolder tempFolder, Storage storage) {
     this.tempFolder = tempFolder;
+    this.storage = storage;
     initPersistit();
   }
 
+  private static Storage parseStorage(String value) {
+    if (value == null || value.isEmpty()) {
+      return Storage.PERSISTIT;
+    }
+    String normalized = value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_');
+    for (Storage candidate : Storage.values()) {
+      if (candidate.name().equals(normalized)) {
+        return candidate;
+      }
+    }
+    throw MessageException.of(String.format("Unsupported value of property %s: %s. Supported values are 'persistit' and 'off_heap'", STORAGE_PROPERTY, value));
+  }
+
   private void initPersistit() {
     try {
       tempDir = tempFolder.newDir("caches");
@@ -96,4 +140,8 @@ public class CachesManager implements Startable {
   Persistit persistit() {
     return persistit;
   }
+
+  Storage storage() {
+    return storage;
+  }
 }
@@ -21,6 +21,7 @@ package org.sonar.batch.index;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -54,6 +55,9 @@ import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.batch.sensor.DefaultSensorStorage;
 import org.sonar.core.component.ComponentKeys;
 
+/**
+ * Thread-safe, as resources and measures may be added by sensors executed concurrently.
+ */
 public class DefaultIndex extends SonarIndex {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultIndex.class);
@@ -110,11 +114,11 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Project getProject() {
+  public synchronized Project getProject() {
     return currentProject;
   }
 
-  public void setCurrentProject(Project project, DefaultSensorStorage sensorStorage) {
+  public synchronized void setCurrentProject(Project project, DefaultSensorStorage sensorStorage) {
     this.currentProject = project;
 
     // the following components depend on the current module, so they need to be reloaded.
@@ -124,7 +128,7 @@ public class DefaultIndex extends SonarIndex {
   /**
    * Keep only project stuff
    */
-  public void clear() {
+  public synchronized void clear() {
     Iterator<Map.Entry<Resource, Bucket>> it = buckets.entrySet().iterator();
     while (it.hasNext()) {
       Map.Entry<Resource, Bucket> entry = it.next();
@@ -168,7 +172,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Measure addMeasure(Resource resource, Measure measure) {
+  public synchronized Measure addMeasure(Resource resource, Measure measure) {
     Bucket bucket = getBucket(resource);
     if (bucket != null) {
       return sensorStorage.saveMeasure(resource, measure);
@@ -181,9 +185,12 @@ public class DefaultIndex extends SonarIndex {
     return dependency;
   }
 
+  /**
+   * Snapshot of the indexed resources
+   */
   @Override
-  public Set<Resource> getResources() {
-    return buckets.keySet();
+  public synchronized Set<Resource> getResources() {
+    return Sets.newLinkedHashSet(buckets.keySet());
   }
 
   @Override
@@ -206,14 +213,14 @@ public class DefaultIndex extends SonarIndex {
    * Does nothing if the resource is already registered.
    */
   @Override
-  public Resource addResource(Resource resource) {
+  public synchronized Resource addResource(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null ? bucket.getResource() : null;
   }
 
   @Override
   @CheckForNull
-  public <R extends Resource> R getResource(@Nullable R reference) {
+  public synchronized <R extends Resource> R getResource(@Nullable R reference) {
     Bucket bucket = getBucket(reference);
     if (bucket != null) {
       return (R) bucket.getResource();
@@ -222,7 +229,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public List<Resource> getChildren(Resource resource) {
+  public synchronized List<Resource> getChildren(Resource resource) {
     List<Resource> children = Lists.newLinkedList();
     Bucket bucket = getBucket(resource);
     if (bucket != null) {
@@ -234,7 +241,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Resource getParent(Resource resource) {
+  public synchronized Resource getParent(Resource resource) {
     Bucket bucket = getBucket(resource);
     if (bucket != null && bucket.getParent() != null) {
       return bucket.getParent().getResource();
@@ -243,7 +250,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean index(Resource resource) {
+  public synchronized boolean index(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null;
   }
@@ -256,7 +263,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean index(Resource resource, Resource parentReference) {
+  public synchronized boolean index(Resource resource, Resource parentReference) {
     Bucket bucket = doIndex(resource, parentReference);
     return bucket != null;
   }
@@ -303,7 +310,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean isIndexed(@Nullable Resource reference, boolean acceptExcluded) {
+  public synchronized boolean isIndexed(@Nullable Resource reference, boolean acceptExcluded) {
     return getBucket(reference) != null;
   }
 
@@ -0,0 +1,371 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.google.common.collect.ImmutableMap;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Thread-safe storage keeping values out of the heap.
+ * <p>
+ * Values are encoded with the {@link com.persistit.encoding.ValueCoder}s registered in {@link Caches}, then appended
+ * to a log of memory-mapped files. Only keys and locations of values in the log are kept on heap, in a sorted
+ * index that supports the hierarchical operations of {@link Cache}. The log is append-only: space of removed or
+ * replaced values is reclaimed when the storage is closed.
+ * </p>
+ */
+class OffHeapCacheStorage<V> implements CacheStorage<V> {
+
+  static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final int RECORD_HEADER_SIZE = 4;
+
+  private final String name;
+  private final File dir;
+  private final Persistit persistit;
+  private final int segmentSize;
+  private final ConcurrentSkipListMap<Object[], Long> index = new ConcurrentSkipListMap<>(KeyComparator.INSTANCE);
+  private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<Codec> codecs = new ThreadLocal<Codec>() {
+    @Override
+    protected Codec initialValue() {
+      return new Codec(persistit);
+    }
+  };
+
+  // guarded by this
+  private int currentPosition = 0;
+
+  OffHeapCacheStorage(String name, File dir, Persistit persistit) {
+    this(name, dir, persistit, DEFAULT_SEGMENT_SIZE);
+  }
+
+  OffHeapCacheStorage(String name, File dir, Persistit persistit, int segmentSize) {
+    this.name = name;
+    this.dir = dir;
+    this.persistit = persistit;
+    this.segmentSize = segmentSize;
+  }
+
+  @Override
+  public void put(Object[] key, V value) {
+    try {
+      index.put(key.clone(), codecs.get().encode(value));
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to put element in the cache " + name, e);
+    }
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object[] key) {
+    Long location = index.get(key);
+    if (location == null) {
+      return null;
+    }
+    return read(location);
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    return index.containsKey(key);
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    return index.remove(key) != null;
+  }
+
+  @Override
+  public void clear(Object[] prefix) {
+    range(prefix).clear();
+  }
+
+  @Override
+  public void clear() {
+    index.clear();
+  }
+
+  @Override
+  public Set<Object> keySet(Object[] prefix) {
+    Set<Object> keys = new LinkedHashSet<>();
+    for (Object[] key : range(prefix).keySet()) {
+      if (key.length > prefix.length) {
+        keys.add(key[prefix.length]);
+      }
+    }
+    return keys;
+  }
+
+  @Override
+  public Iterator<V> values(Object[] prefix) {
+    return new RangeIterator<V>(range(prefix), prefix.length) {
+      @Override
+      protected V convert(Object[] key, V value) {
+        return value;
+      }
+    };
+  }
+
+  @Override
+  public Iterator<Cache.Entry<V>> entries(Object[] prefix) {
+    return new RangeIterator<Cache.Entry<V>>(range(prefix), prefix.length) {
+      @Override
+      protected Cache.Entry<V> convert(Object[] key, V value) {
+        return new Cache.Entry<>(key.clone(), value);
+      }
+    };
+  }
+
+  /**
+   * Deletes the segments of this storage only, the directory being shared by all the caches. It is
+   * deleted by {@link Caches#stop()}.
+   */
+  @Override
+  public void close() {
+    index.clear();
+    synchronized (this) {
+      for (int segmentIndex = 0; segmentIndex < segments.size(); segmentIndex++) {
+        FileUtils.deleteQuietly(segmentFile(segmentIndex));
+      }
+      segments.clear();
+      currentPosition = 0;
+    }
+  }
+
+  /**
+   * Keys equal to {@code prefix} or starting with it
+   */
+  private ConcurrentNavigableMap<Object[], Long> range(Object[] prefix) {
+    Object[] to = Arrays.copyOf(prefix, prefix.length + 1);
+    to[prefix.length] = KeyComparator.AFTER;
+    return index.subMap(prefix, true, to, false);
+  }
+
+  private long append(byte[] bytes, int length) {
+    int recordSize = RECORD_HEADER_SIZE + length;
+    int segmentIndex;
+    int position;
+    synchronized (this) {
+      if (segments.isEmpty() || currentPosition + recordSize > segments.get(segments.size() - 1).capacity()) {
+        segments.add(newSegment(Math.max(segmentSize, recordSize)));
+        currentPosition = 0;
+      }
+      segmentIndex = segments.size() - 1;
+      position = currentPosition;
+      currentPosition += recordSize;
+    }
+    // space is reserved, so copy can be done concurrently
+    ByteBuffer buffer = segments.get(segmentIndex).duplicate();
+    buffer.position(position);
+    buffer.putInt(length);
+    buffer.put(bytes, 0, length);
+    return ((long) segmentIndex << 32) | position;
+  }
+
+  private V read(long location) {
+    ByteBuffer buffer = segments.get((int) (location >>> 32)).duplicate();
+    buffer.position((int) location);
+    int length = buffer.getInt();
+    try {
+      return codecs.get().decode(buffer, length);
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to get element from cache " + name, e);
+    }
+  }
+
+  private MappedByteBuffer newSegment(int size) {
+    File file = segmentFile(segments.size());
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(size);
+      // mapping remains valid when file is closed
+      return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create segment of cache " + name + ": " + file, e);
+    }
+  }
+
+  private File segmentFile(int segmentIndex) {
+    return new File(dir, name + "-" + segmentIndex + ".log");
+  }
+
+  /**
+   * Not thread-safe, one instance per thread.
+   */
+  private class Codec {
+    private final Value value;
+    private byte[] bytes = new byte[256];
+
+    private Codec(Persistit persistit) {
+      this.value = new Value(persistit);
+      this.value.setMaximumSize(Value.MAXIMUM_SIZE);
+    }
+
+    private long encode(V object) {
+      value.clear();
+      value.put(object);
+      return append(value.getEncodedBytes(), value.getEncodedSize());
+    }
+
+    @SuppressWarnings("unchecked")
+    private V decode(ByteBuffer buffer, int length) {
+      if (bytes.length < length) {
+        bytes = new byte[Math.max(length, 2 * bytes.length)];
+      }
+      buffer.get(bytes, 0, length);
+      value.clear();
+      value.putEncodedBytes(bytes, 0, length);
+      return (V) value.get();
+    }
+  }
+
+  private abstract class RangeIterator<T> implements Iterator<T> {
+    private final Iterator<Map.Entry<Object[], Long>> delegate;
+    private final int prefixLength;
+    private Map.Entry<Object[], Long> nextEntry;
+
+    private RangeIterator(ConcurrentNavigableMap<Object[], Long> range, int prefixLength) {
+      this.delegate = range.entrySet().iterator();
+      this.prefixLength = prefixLength;
+    }
+
+    protected abstract T convert(Object[] key, V value);
+
+    @Override
+    public boolean hasNext() {
+      while (nextEntry == null && delegate.hasNext()) {
+        Map.Entry<Object[], Long> entry = delegate.next();
+        if (entry.getKey().length > prefixLength) {
+          nextEntry = entry;
+        }
+      }
+      return nextEntry != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry<Object[], Long> entry = nextEntry;
+      nextEntry = null;
+      return convert(entry.getKey(), read(entry.getValue()));
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Removing an item is not supported");
+    }
+  }
+
+  /**
+   * Sorts keys part by part, similarly to Persistit: parts of different types are sorted by type,
+   * and a key is lower than the keys it is a prefix of.
+   */
+  enum KeyComparator implements Comparator<Object[]> {
+    INSTANCE;
+
+    static final Object AFTER = new Object();
+
+    private static final Map<Class<?>, Integer> TYPE_RANKS = ImmutableMap.<Class<?>, Integer>builder()
+      .put(Boolean.class, 1)
+      .put(Byte.class, 2)
+      .put(Short.class, 3)
+      .put(Character.class, 4)
+      .put(Integer.class, 5)
+      .put(Long.class, 6)
+      .put(Float.class, 7)
+      .put(Double.class, 8)
+      .put(BigInteger.class, 9)
+      .put(BigDecimal.class, 10)
+      .put(String.class, 11)
+      .put(Date.class, 12)
+      .build();
+    private static final int NULL_RANK = 0;
+    private static final int OTHER_RANK = 13;
+
+    @Override
+    public int compare(Object[] o1, Object[] o2) {
+      int length = Math.min(o1.length, o2.length);
+      for (int i = 0; i < length; i++) {
+        int comparison = compareParts(o1[i], o2[i]);
+        if (comparison != 0) {
+          return comparison;
+        }
+      }
+      return Integer.compare(o1.length, o2.length);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareParts(@CheckForNull Object part1, @CheckForNull Object part2) {
+      if (part1 == part2) {
+        return 0;
+      }
+      if (part1 == AFTER) {
+        return 1;
+      }
+      if (part2 == AFTER) {
+        return -1;
+      }
+      int rankComparison = Integer.compare(rank(part1), rank(part2));
+      if (rankComparison != 0 || part1 == null || part2 == null) {
+        return rankComparison;
+      }
+      if (part1.getClass() == part2.getClass() && part1 instanceof Comparable) {
+        return ((Comparable) part1).compareTo(part2);
+      }
+      int classComparison = part1.getClass().getName().compareTo(part2.getClass().getName());
+      if (classComparison != 0) {
+        return classComparison;
+      }
+      return part1.toString().compareTo(part2.toString());
+    }
+
+    private static int rank(@CheckForNull Object part) {
+      if (part == null) {
+        return NULL_RANK;
+      }
+      Integer rank = TYPE_RANKS.get(part.getClass());
+      return rank == null ? OTHER_RANK : rank;
+    }
+  }
+}
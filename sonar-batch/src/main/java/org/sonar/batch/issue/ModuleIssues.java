@@ -61,7 +61,10 @@ public class ModuleIssues {
     this.componentCache = componentCache;
   }
 
-  public boolean initAndAddIssue(Issue issue) {
+  /**
+   * Synchronized, as builders are shared and sensors can be executed concurrently
+   */
+  public synchronized boolean initAndAddIssue(Issue issue) {
     InputComponent inputComponent = issue.primaryLocation().inputComponent();
     BatchComponent component = componentCache.get(inputComponent);
 
@@ -148,7 +151,7 @@ public class ModuleIssues {
     return rule;
   }
 
-  public void write(BatchComponent component, BatchReport.Issue rawIssue) {
+  public synchronized void write(BatchComponent component, BatchReport.Issue rawIssue) {
     reportPublisher.getWriter().appendComponentIssue(component.batchId(), rawIssue);
   }
 
@@ -30,7 +30,6 @@ import java.util.List;
 import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.AnalysisMode;
@@ -49,6 +48,7 @@ import org.sonar.batch.protocol.output.BatchReport.Component;
 import org.sonar.batch.protocol.output.BatchReport.Metadata;
 import org.sonar.batch.protocol.output.BatchReport.Symbol;
 import org.sonar.batch.protocol.output.BatchReportReader;
+import org.sonar.batch.protocol.output.FileStructure;
 import org.sonar.batch.report.BatchReportUtils;
 import org.sonar.batch.report.ReportPublisher;
 import org.sonar.batch.scan.ProjectScanContainer;
@@ -258,7 +258,7 @@ public class TaskResult implements org.sonar.batch.mediumtest.ScanTaskObserver {
 
   public BatchReport.Test testExecutionFor(InputFile testFile, String testName) {
     int ref = reportComponents.get(((DefaultInputFile) testFile).key()).getRef();
-    try (InputStream inputStream = FileUtils.openInputStream(getReportReader().readTests(ref))) {
+    try (InputStream inputStream = getReportReader().openComponentData(FileStructure.Domain.TESTS, ref)) {
       BatchReport.Test test = BatchReport.Test.PARSER.parseDelimitedFrom(inputStream);
       while (test != null) {
         if (test.getName().equals(testName)) {
@@ -274,7 +274,7 @@ public class TaskResult implements org.sonar.batch.mediumtest.ScanTaskObserver {
 
   public BatchReport.CoverageDetail coveragePerTestFor(InputFile testFile, String testName) {
     int ref = reportComponents.get(((DefaultInputFile) testFile).key()).getRef();
-    try (InputStream inputStream = FileUtils.openInputStream(getReportReader().readCoverageDetails(ref))) {
+    try (InputStream inputStream = getReportReader().openComponentData(FileStructure.Domain.COVERAGE_DETAILS, ref)) {
       BatchReport.CoverageDetail details = BatchReport.CoverageDetail.PARSER.parseDelimitedFrom(inputStream);
       while (details != null) {
         if (details.getTestName().equals(testName)) {
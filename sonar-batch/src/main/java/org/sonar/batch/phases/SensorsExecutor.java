@@ -20,42 +20,181 @@
 package org.sonar.batch.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.sonar.api.batch.BatchSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
 import org.sonar.batch.events.EventBus;
 
+import javax.annotation.CheckForNull;
+
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.sonar.batch.util.BatchUtils.readStrictlyPositiveInt;
 
+/**
+ * Executes the sensors of a module, in the order defined by {@link BatchExtensionDictionnary}.
+ * <p>
+ * When property {@link #THREADS_PROPERTY} is greater than 1, sensors are executed by a pool of threads. A sensor
+ * starts once all the sensors it depends upon (through {@link org.sonar.api.batch.DependsUpon},
+ * {@link org.sonar.api.batch.DependedUpon} or {@link org.sonar.api.batch.Phase}) are completed, so sensors which
+ * share state must declare dependencies to be executed in parallel mode. The storage of measures, issues, highlighting,
+ * symbols and coverage, as well as the index of resources, are thread-safe.
+ * </p>
+ */
 @BatchSide
 public class SensorsExecutor {
 
+  public static final String THREADS_PROPERTY = "sonar.batch.sensorThreads";
+  private static final String THREAD_NAME_PREFIX = "sensor-";
+
   private EventBus eventBus;
   private Project module;
   private BatchExtensionDictionnary selector;
+  private final int threads;
 
   public SensorsExecutor(BatchExtensionDictionnary selector, Project project, EventBus eventBus) {
     this.selector = selector;
     this.eventBus = eventBus;
     this.module = project;
+    this.threads = 1;
+  }
+
+  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, EventBus eventBus, Settings settings) {
+    this.selector = selector;
+    this.eventBus = eventBus;
+    this.module = project;
+    this.threads = readStrictlyPositiveInt(settings, THREADS_PROPERTY, 1);
   }
 
   public void execute(SensorContext context) {
     Collection<Sensor> sensors = selector.select(Sensor.class, module, true, null);
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), true));
 
-    for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+    if (threads <= 1 || sensors.size() <= 1) {
+      for (Sensor sensor : sensors) {
+        executeSensor(context, sensor);
+      }
+    } else {
+      executeConcurrently(context, sensors);
     }
 
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), false));
   }
 
   private void executeSensor(SensorContext context, Sensor sensor) {
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    fireEvent(new SensorExecutionEvent(sensor, true));
     sensor.analyse(module, context);
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+    fireEvent(new SensorExecutionEvent(sensor, false));
+  }
+
+  /**
+   * Event handlers, for example the profilers, are not expected to be thread-safe
+   */
+  private void fireEvent(SensorExecutionEvent event) {
+    synchronized (eventBus) {
+      eventBus.fireEvent(event);
+    }
+  }
+
+  private void executeConcurrently(SensorContext context, Collection<Sensor> sensors) {
+    Map<Sensor, Set<Sensor>> dependencies = selector.getTransitiveDependencies(sensors);
+    ExecutorService executorService = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_PREFIX + "%d").build());
+    try {
+      // sensors are submitted in order and executed by a FIFO executor, therefore the dependencies of a sensor are always
+      // either running or completed when the sensor starts waiting for them
+      Map<Sensor, Future<Boolean>> futures = new IdentityHashMap<>();
+      List<Future<Boolean>> orderedFutures = new ArrayList<>(sensors.size());
+      for (Sensor sensor : sensors) {
+        List<Future<Boolean>> sensorDependencies = new ArrayList<>();
+        for (Sensor dependency : dependencies.get(sensor)) {
+          Future<Boolean> dependencyFuture = futures.get(dependency);
+          if (dependencyFuture != null) {
+            sensorDependencies.add(dependencyFuture);
+          }
+        }
+        Future<Boolean> future = executorService.submit(new SensorCallable(context, sensor, sensorDependencies));
+        futures.put(sensor, future);
+        orderedFutures.add(future);
+      }
+      waitForCompletion(orderedFutures);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Waits for all sensors to complete and rethrows, as is, the exception thrown by the first failed sensor.
+   */
+  private static void waitForCompletion(List<Future<Boolean>> futures) {
+    Throwable failure = null;
+    for (Future<Boolean> future : futures) {
+      Throwable sensorFailure = getFailure(future);
+      if (failure == null) {
+        failure = sensorFailure;
+      }
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    if (failure != null) {
+      throw new IllegalStateException("Execution of sensor failed", failure);
+    }
+  }
+
+  @CheckForNull
+  private static Throwable getFailure(Future<Boolean> future) {
+    try {
+      future.get();
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return e;
+    }
+  }
+
+  private final class SensorCallable implements Callable<Boolean> {
+    private final SensorContext context;
+    private final Sensor sensor;
+    private final List<Future<Boolean>> dependencies;
+
+    private SensorCallable(SensorContext context, Sensor sensor, List<Future<Boolean>> dependencies) {
+      this.context = context;
+      this.sensor = sensor;
+      this.dependencies = dependencies;
+    }
+
+    /**
+     * @return {@code false} if the sensor has not been executed because one of its dependencies failed
+     */
+    @Override
+    public Boolean call() throws Exception {
+      for (Future<Boolean> dependency : dependencies) {
+        if (getFailure(dependency) != null || !dependency.get()) {
+          return false;
+        }
+      }
+      executeSensor(context, sensor);
+      return true;
+    }
   }
 }
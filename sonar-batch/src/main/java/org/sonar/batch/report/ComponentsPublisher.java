@@ -43,10 +43,12 @@ public class ComponentsPublisher implements ReportPublisherStep {
 
   private final BatchComponentCache resourceCache;
   private final ImmutableProjectReactor reactor;
+  private final IncrementalReport incrementalReport;
 
-  public ComponentsPublisher(ImmutableProjectReactor reactor, BatchComponentCache resourceCache) {
+  public ComponentsPublisher(ImmutableProjectReactor reactor, BatchComponentCache resourceCache, IncrementalReport incrementalReport) {
     this.reactor = reactor;
     this.resourceCache = resourceCache;
+    this.incrementalReport = incrementalReport;
   }
 
   @Override
@@ -74,7 +76,11 @@ public class ComponentsPublisher implements ReportPublisherStep {
 
     if (batchComponent.isFile()) {
       builder.setIsTest(ResourceUtils.isUnitTestFile(r));
-      builder.setLines(((InputFile) batchComponent.inputComponent()).lines());
+      InputFile inputFile = (InputFile) batchComponent.inputComponent();
+      builder.setLines(inputFile.lines());
+      if (incrementalReport.isUnchanged(inputFile)) {
+        builder.setIsUnchanged(true);
+      }
     }
     String name = getName(r);
     if (name != null) {
@@ -0,0 +1,52 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.report;
+
+import org.sonar.api.batch.BatchSide;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.config.Settings;
+
+/**
+ * When {@link #INCREMENTAL_PROP_KEY} is enabled, the files which have the same hash as in the previous analysis
+ * are flagged as unchanged in the report and their source, syntax highlighting and symbols are not published.
+ * The Compute Engine reuses the ones persisted by the previous analysis.
+ */
+@BatchSide
+public class IncrementalReport {
+
+  public static final String INCREMENTAL_PROP_KEY = "sonar.report.incremental";
+
+  private final boolean enabled;
+
+  public IncrementalReport(Settings settings) {
+    this.enabled = settings.getBoolean(INCREMENTAL_PROP_KEY);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Status of files is {@link InputFile.Status#SAME} only when the server knows the hash of the previous version of the file.
+   */
+  public boolean isUnchanged(InputFile inputFile) {
+    return enabled && inputFile.status() == InputFile.Status.SAME;
+  }
+}
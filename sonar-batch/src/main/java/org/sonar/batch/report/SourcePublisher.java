@@ -38,9 +38,11 @@ import java.nio.charset.StandardCharsets;
 public class SourcePublisher implements ReportPublisherStep {
 
   private final BatchComponentCache resourceCache;
+  private final IncrementalReport incrementalReport;
 
-  public SourcePublisher(BatchComponentCache resourceCache) {
+  public SourcePublisher(BatchComponentCache resourceCache, IncrementalReport incrementalReport) {
     this.resourceCache = resourceCache;
+    this.incrementalReport = incrementalReport;
   }
 
   @Override
@@ -51,6 +53,10 @@ public class SourcePublisher implements ReportPublisherStep {
       }
 
       DefaultInputFile inputFile = (DefaultInputFile) resource.inputComponent();
+      if (incrementalReport.isUnchanged(inputFile)) {
+        // source is already known by the server
+        continue;
+      }
       File iofile = writer.getSourceFile(resource.batchId());
       int line = 0;
       try (FileOutputStream output = new FileOutputStream(iofile); BOMInputStream bomIn = new BOMInputStream(new FileInputStream(inputFile.file()),
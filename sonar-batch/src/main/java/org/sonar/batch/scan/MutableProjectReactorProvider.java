@@ -22,6 +22,7 @@ package org.sonar.batch.scan;
 import org.apache.commons.io.FileUtils;
 import org.picocontainer.injectors.ProviderAdapter;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.batch.scan.filesystem.FileMetadataSnapshot;
 
 import java.io.File;
 import java.io.IOException;
@@ -38,9 +39,19 @@ public class MutableProjectReactorProvider extends ProviderAdapter {
     return reactor;
   }
 
+  /**
+   * Deletes the content of the working directory, except the file index which is reused from one analysis to another
+   */
   private static void cleanDirectory(File dir) {
     try {
-      FileUtils.deleteDirectory(dir);
+      File[] children = dir.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          if (!FileMetadataSnapshot.DIRECTORY_NAME.equals(child.getName())) {
+            FileUtils.forceDelete(child);
+          }
+        }
+      }
       Files.createDirectories(dir.toPath());
     } catch (IOException e) {
       throw new IllegalStateException("Failed to recreate working directory: " + dir.getAbsolutePath(), e);
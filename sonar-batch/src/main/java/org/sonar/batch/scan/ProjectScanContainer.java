@@ -61,6 +61,7 @@ import org.sonar.batch.profiling.PhasesSumUpTimeProfiler;
 import org.sonar.batch.report.ActiveRulesPublisher;
 import org.sonar.batch.report.AnalysisContextReportPublisher;
 import org.sonar.batch.report.ComponentsPublisher;
+import org.sonar.batch.report.IncrementalReport;
 import org.sonar.batch.report.CoveragePublisher;
 import org.sonar.batch.report.MeasuresPublisher;
 import org.sonar.batch.report.MetadataPublisher;
@@ -197,6 +198,7 @@ public class ProjectScanContainer extends ComponentContainer {
 
       // Report
       ReportPublisher.class,
+      IncrementalReport.class,
       AnalysisContextReportPublisher.class,
       MetadataPublisher.class,
       ActiveRulesPublisher.class,
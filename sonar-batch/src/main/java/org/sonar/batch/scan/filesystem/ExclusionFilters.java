@@ -20,16 +20,23 @@
 package org.sonar.batch.scan.filesystem;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.BatchSide;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.PathPattern;
 import org.sonar.api.scan.filesystem.FileExclusions;
+import org.sonar.api.utils.WildcardPattern;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @BatchSide
 public class ExclusionFilters {
 
+  private static final String ALL_FILES_SUFFIX = "/**";
+
   private static final Logger LOG = LoggerFactory.getLogger(ExclusionFilters.class);
 
   private final FileExclusions exclusionSettings;
@@ -38,6 +45,8 @@ public class ExclusionFilters {
   private PathPattern[] mainExclusions;
   private PathPattern[] testInclusions;
   private PathPattern[] testExclusions;
+  private WildcardPattern[] mainDirectoryExclusions;
+  private WildcardPattern[] testDirectoryExclusions;
 
   public ExclusionFilters(FileExclusions exclusions) {
     this.exclusionSettings = exclusions;
@@ -48,6 +57,8 @@ public class ExclusionFilters {
     mainExclusions = prepareMainExclusions();
     testInclusions = prepareTestInclusions();
     testExclusions = prepareTestExclusions();
+    mainDirectoryExclusions = prepareDirectoryExclusions((String[]) ArrayUtils.addAll(exclusionSettings.sourceExclusions(), computeTestInclusions()));
+    testDirectoryExclusions = prepareDirectoryExclusions(exclusionSettings.testExclusions());
     log("Included sources: ", mainInclusions);
     log("Excluded sources: ", mainExclusions);
     log("Included tests: ", testInclusions);
@@ -99,6 +110,38 @@ public class ExclusionFilters {
     return true;
   }
 
+  /**
+   * Whether all the files of a directory are excluded, so that the directory does not need to be walked. Only relative
+   * exclusion patterns ending with "/**" are considered.
+   *
+   * @param relativePath path of the directory relative to module basedir
+   */
+  public boolean isExcludedDirectory(String relativePath, InputFile.Type type) {
+    WildcardPattern[] patterns;
+    if (InputFile.Type.MAIN == type) {
+      patterns = mainDirectoryExclusions;
+    } else if (InputFile.Type.TEST == type) {
+      patterns = testDirectoryExclusions;
+    } else {
+      throw new IllegalArgumentException("Unknown file type: " + type);
+    }
+    return WildcardPattern.match(patterns, relativePath);
+  }
+
+  private static WildcardPattern[] prepareDirectoryExclusions(String[] exclusions) {
+    List<WildcardPattern> result = new ArrayList<>();
+    for (String exclusion : exclusions) {
+      String trimmed = StringUtils.trim(exclusion);
+      if (!StringUtils.startsWithIgnoreCase(trimmed, "file:") && trimmed.endsWith(ALL_FILES_SUFFIX)) {
+        String directoryPattern = StringUtils.removeEnd(trimmed, ALL_FILES_SUFFIX);
+        if (!directoryPattern.isEmpty()) {
+          result.add(WildcardPattern.create(directoryPattern));
+        }
+      }
+    }
+    return result.toArray(new WildcardPattern[result.size()]);
+  }
+
   PathPattern[] prepareMainInclusions() {
     if (exclusionSettings.sourceInclusions().length > 0) {
       // User defined params
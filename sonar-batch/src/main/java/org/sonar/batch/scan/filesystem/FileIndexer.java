@@ -20,11 +20,6 @@
 package org.sonar.batch.scan.filesystem;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FileFilterUtils;
-import org.apache.commons.io.filefilter.HiddenFileFilter;
-import org.apache.commons.io.filefilter.IOFileFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.BatchSide;
@@ -35,12 +30,22 @@ import org.sonar.api.batch.fs.internal.DefaultInputDir;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.utils.MessageException;
+import org.sonar.batch.util.BatchUtils;
 import org.sonar.batch.util.ProgressReport;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -52,20 +57,21 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Index input files into {@link InputPathCache}.
+ * Index input files into {@link InputPathCache}. Metadata of the files which are unchanged since the previous analysis
+ * is not computed again, see {@link FileMetadataSnapshot}.
  */
 @BatchSide
 public class FileIndexer {
 
   private static final Logger LOG = LoggerFactory.getLogger(FileIndexer.class);
 
-  private static final IOFileFilter DIR_FILTER = FileFilterUtils.and(HiddenFileFilter.VISIBLE, FileFilterUtils.notFileFilter(FileFilterUtils.prefixFileFilter(".")));
-  private static final IOFileFilter FILE_FILTER = FileFilterUtils.and(HiddenFileFilter.VISIBLE, FileFilterUtils.notFileFilter(FileFilterUtils.nameFileFilter(".sonar_lock")));
+  private static final String LOCK_FILE_NAME = ".sonar_lock";
 
   private final List<InputFileFilter> filters;
   private final boolean isAggregator;
   private final ExclusionFilters exclusionFilters;
   private final InputFileBuilderFactory inputFileBuilderFactory;
+  private final File snapshotFile;
 
   private ProgressReport progressReport;
   private ExecutorService executorService;
@@ -77,6 +83,19 @@ public class FileIndexer {
     this.exclusionFilters = exclusionFilters;
     this.inputFileBuilderFactory = inputFileBuilderFactory;
     this.isAggregator = !def.getSubProjects().isEmpty();
+    this.snapshotFile = snapshotFile(def);
+  }
+
+  @CheckForNull
+  private static File snapshotFile(ProjectDefinition def) {
+    ProjectDefinition root = def;
+    while (root.getParent() != null) {
+      root = root.getParent();
+    }
+    if (root.getWorkDir() == null) {
+      return null;
+    }
+    return new File(new File(root.getWorkDir(), FileMetadataSnapshot.DIRECTORY_NAME), BatchUtils.cleanKeyForFilename(def.getKeyWithBranch()));
   }
 
   void index(DefaultModuleFileSystem fileSystem) {
@@ -89,18 +108,24 @@ public class FileIndexer {
     exclusionFilters.prepare();
 
     Progress progress = new Progress();
+    FileMetadataSnapshot snapshot = snapshotFile == null ? null : FileMetadataSnapshot.load(snapshotFile);
 
     InputFileBuilder inputFileBuilder = inputFileBuilderFactory.create(fileSystem);
     int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
     executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("FileIndexer-%d").build());
     tasks = new ArrayList<>();
-    indexFiles(fileSystem, progress, inputFileBuilder, fileSystem.sources(), InputFile.Type.MAIN);
-    indexFiles(fileSystem, progress, inputFileBuilder, fileSystem.tests(), InputFile.Type.TEST);
+    indexFiles(fileSystem, progress, inputFileBuilder, snapshot, fileSystem.sources(), InputFile.Type.MAIN);
+    indexFiles(fileSystem, progress, inputFileBuilder, snapshot, fileSystem.tests(), InputFile.Type.TEST);
 
     waitForTasksToComplete();
 
     progressReport.stop(progress.count() + " files indexed");
 
+    if (snapshot != null) {
+      snapshot.save();
+      LOG.debug("{} files unchanged since previous analysis", snapshot.reusedCount());
+    }
+
     if (exclusionFilters.hasPattern()) {
       LOG.info(progress.excludedByPatternsCount() + " files ignored because of inclusion/exclusion patterns");
     }
@@ -120,30 +145,65 @@ public class FileIndexer {
     }
   }
 
-  private void indexFiles(DefaultModuleFileSystem fileSystem, Progress progress, InputFileBuilder inputFileBuilder, List<File> sources, InputFile.Type type) {
+  private void indexFiles(DefaultModuleFileSystem fileSystem, Progress progress, InputFileBuilder inputFileBuilder, @Nullable FileMetadataSnapshot snapshot,
+    List<File> sources, InputFile.Type type) {
     for (File dirOrFile : sources) {
       if (dirOrFile.isDirectory()) {
-        indexDirectory(inputFileBuilder, fileSystem, progress, dirOrFile, type);
+        indexDirectory(inputFileBuilder, fileSystem, progress, snapshot, dirOrFile, type);
       } else {
-        indexFile(inputFileBuilder, fileSystem, progress, dirOrFile, type);
+        indexFile(inputFileBuilder, fileSystem, progress, snapshot, dirOrFile, type);
       }
     }
   }
 
-  private void indexDirectory(InputFileBuilder inputFileBuilder, DefaultModuleFileSystem fileSystem, Progress status, File dirToIndex, InputFile.Type type) {
-    Collection<File> files = FileUtils.listFiles(dirToIndex, FILE_FILTER, DIR_FILTER);
-    for (File file : files) {
-      indexFile(inputFileBuilder, fileSystem, status, file, type);
+  private void indexDirectory(final InputFileBuilder inputFileBuilder, final DefaultModuleFileSystem fileSystem, final Progress status,
+    @Nullable final FileMetadataSnapshot snapshot, final File dirToIndex, final InputFile.Type type) {
+    final Path root = dirToIndex.toPath();
+    try {
+      Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          if (!dir.equals(root) && (Files.isHidden(dir) || dir.getFileName().toString().startsWith(".") || isExcluded(fileSystem, dir, type))) {
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+          if (attrs.isRegularFile() && !Files.isHidden(file) && !LOCK_FILE_NAME.equals(file.getFileName().toString())) {
+            indexFile(inputFileBuilder, fileSystem, status, snapshot, file.toFile(), type);
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          LOG.debug("Ignore file that can't be read: " + file, e);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to index files of directory " + dirToIndex, e);
     }
   }
 
-  private void indexFile(InputFileBuilder inputFileBuilder, DefaultModuleFileSystem fileSystem, Progress progress, File sourceFile, InputFile.Type type) {
+  /**
+   * Directories which contain only excluded files are not walked
+   */
+  private boolean isExcluded(DefaultModuleFileSystem fileSystem, Path dir, InputFile.Type type) {
+    String relativePath = new PathResolver().relativePath(fileSystem.baseDir(), dir.toFile());
+    return relativePath != null && exclusionFilters.isExcludedDirectory(relativePath, type);
+  }
+
+  private void indexFile(InputFileBuilder inputFileBuilder, DefaultModuleFileSystem fileSystem, Progress progress, @Nullable FileMetadataSnapshot snapshot,
+    File sourceFile, InputFile.Type type) {
     DefaultInputFile inputFile = inputFileBuilder.create(sourceFile);
     if (inputFile != null) {
       // Set basedir on input file prior to adding it to the FS since exclusions filters may require the absolute path
       inputFile.setModuleBaseDir(fileSystem.baseDirPath());
       if (exclusionFilters.accept(inputFile, type)) {
-        indexFile(inputFileBuilder, fileSystem, progress, inputFile, type);
+        indexFile(inputFileBuilder, fileSystem, progress, snapshot, inputFile, type);
       } else {
         progress.increaseExcludedByPatternsCount();
       }
@@ -151,12 +211,12 @@ public class FileIndexer {
   }
 
   private void indexFile(final InputFileBuilder inputFileBuilder, final DefaultModuleFileSystem fs,
-    final Progress status, final DefaultInputFile inputFile, final InputFile.Type type) {
+    final Progress status, @Nullable final FileMetadataSnapshot snapshot, final DefaultInputFile inputFile, final InputFile.Type type) {
 
     tasks.add(executorService.submit(new Callable<Void>() {
       @Override
       public Void call() {
-        DefaultInputFile completedInputFile = inputFileBuilder.completeAndComputeMetadata(inputFile, type);
+        DefaultInputFile completedInputFile = inputFileBuilder.completeAndComputeMetadata(inputFile, type, snapshot);
         if (completedInputFile != null && accept(completedInputFile)) {
           fs.add(completedInputFile);
           status.markAsIndexed(completedInputFile);
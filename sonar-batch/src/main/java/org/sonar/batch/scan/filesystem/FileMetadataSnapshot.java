@@ -0,0 +1,213 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metadata of the files indexed by the previous analysis of a module, keyed by relative path. The metadata
+ * of a file is reused as long as its size, last modification date and charset are unchanged, so that the
+ * file does not have to be read again.
+ * <p>
+ * Snapshots are stored in the directory {@link #DIRECTORY_NAME} of the root project working directory, which
+ * is kept when the working directory is cleaned.
+ * </p>
+ */
+public class FileMetadataSnapshot {
+
+  public static final String DIRECTORY_NAME = "file-index";
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileMetadataSnapshot.class);
+  private static final int VERSION = 1;
+
+  /**
+   * Files modified less than this delay before the start of indexing are not stored, as a further
+   * modification may not change their last modification date, depending on the precision of the file system.
+   */
+  private static final long MODIFICATION_DATE_PRECISION_MS = 2000L;
+
+  private final File file;
+  private final long startTime;
+  private final Map<String, Entry> previous;
+  private final Map<String, Entry> current = new ConcurrentHashMap<>();
+  private final AtomicInteger reused = new AtomicInteger();
+
+  private FileMetadataSnapshot(File file, long startTime, Map<String, Entry> previous) {
+    this.file = file;
+    this.startTime = startTime;
+    this.previous = previous;
+  }
+
+  /**
+   * Loads the snapshot stored in the given file. An empty snapshot is returned if the file does not exist or can't be read.
+   */
+  static FileMetadataSnapshot load(File file) {
+    Map<String, Entry> entries = Collections.emptyMap();
+    if (file.isFile()) {
+      try {
+        entries = read(file);
+      } catch (IOException | RuntimeException e) {
+        LOG.debug("Ignore invalid file index " + file.getAbsolutePath(), e);
+      }
+    }
+    return new FileMetadataSnapshot(file, System.currentTimeMillis(), entries);
+  }
+
+  private static Map<String, Entry> read(File file) throws IOException {
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (input.readInt() != VERSION) {
+        return Collections.emptyMap();
+      }
+      int count = input.readInt();
+      Map<String, Entry> entries = new HashMap<>(count * 2);
+      for (int i = 0; i < count; i++) {
+        String relativePath = input.readUTF();
+        entries.put(relativePath, Entry.read(input));
+      }
+      return entries;
+    }
+  }
+
+  /**
+   * Initializes the metadata of the given file from the previous analysis.
+   *
+   * @return {@code false} if the file has changed since the previous analysis, so that its metadata must be computed
+   */
+  boolean initMetadata(DefaultInputFile inputFile, long size, long lastModified, Charset charset) {
+    Entry entry = previous.get(inputFile.relativePath());
+    if (entry == null || entry.size != size || entry.lastModified != lastModified || !entry.charset.equals(charset.name())) {
+      return false;
+    }
+    inputFile.setLines(entry.lines);
+    inputFile.setNonBlankLines(entry.nonBlankLines);
+    inputFile.setLastValidOffset(entry.lastValidOffset);
+    inputFile.setHash(entry.hash);
+    inputFile.setOriginalLineOffsets(entry.originalLineOffsets);
+    reused.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Records the metadata of the given file, which must be initialized.
+   */
+  void put(DefaultInputFile inputFile, long size, long lastModified) {
+    if (lastModified > startTime - MODIFICATION_DATE_PRECISION_MS) {
+      return;
+    }
+    current.put(inputFile.relativePath(), new Entry(size, lastModified, inputFile.charset().name(), inputFile.lines(), inputFile.nonBlankLines(),
+      inputFile.lastValidOffset(), inputFile.hash(), inputFile.originalLineOffsets()));
+  }
+
+  int reusedCount() {
+    return reused.get();
+  }
+
+  /**
+   * Stores the files recorded by {@link #put(DefaultInputFile, long, long)}, replacing the previous snapshot.
+   */
+  void save() {
+    try {
+      Files.createDirectories(file.getParentFile().toPath());
+      File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        output.writeInt(VERSION);
+        output.writeInt(current.size());
+        for (Map.Entry<String, Entry> entry : current.entrySet()) {
+          output.writeUTF(entry.getKey());
+          entry.getValue().write(output);
+        }
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      // the snapshot is an optimization only
+      LOG.warn("Fail to store file index " + file.getAbsolutePath(), e);
+    }
+  }
+
+  private static class Entry {
+    private final long size;
+    private final long lastModified;
+    private final String charset;
+    private final int lines;
+    private final int nonBlankLines;
+    private final int lastValidOffset;
+    private final String hash;
+    private final int[] originalLineOffsets;
+
+    private Entry(long size, long lastModified, String charset, int lines, int nonBlankLines, int lastValidOffset, String hash, int[] originalLineOffsets) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.charset = charset;
+      this.lines = lines;
+      this.nonBlankLines = nonBlankLines;
+      this.lastValidOffset = lastValidOffset;
+      this.hash = hash;
+      this.originalLineOffsets = originalLineOffsets;
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+      output.writeLong(size);
+      output.writeLong(lastModified);
+      output.writeUTF(charset);
+      output.writeInt(lines);
+      output.writeInt(nonBlankLines);
+      output.writeInt(lastValidOffset);
+      output.writeUTF(hash);
+      output.writeInt(originalLineOffsets.length);
+      for (int offset : originalLineOffsets) {
+        output.writeInt(offset);
+      }
+    }
+
+    private static Entry read(DataInputStream input) throws IOException {
+      long size = input.readLong();
+      long lastModified = input.readLong();
+      String charset = input.readUTF();
+      int lines = input.readInt();
+      int nonBlankLines = input.readInt();
+      int lastValidOffset = input.readInt();
+      String hash = input.readUTF();
+      int[] originalLineOffsets = new int[input.readInt()];
+      for (int i = 0; i < originalLineOffsets.length; i++) {
+        originalLineOffsets[i] = input.readInt();
+      }
+      return new Entry(size, lastModified, charset, lines, nonBlankLines, lastValidOffset, hash, originalLineOffsets);
+    }
+  }
+}
@@ -30,6 +30,7 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.scan.filesystem.PathResolver;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import java.io.File;
 
@@ -91,6 +92,15 @@ class InputFileBuilder {
    */
   @CheckForNull
   DefaultInputFile completeAndComputeMetadata(DefaultInputFile inputFile, InputFile.Type type) {
+    return completeAndComputeMetadata(inputFile, type, null);
+  }
+
+  /**
+   * Same as {@link #completeAndComputeMetadata(DefaultInputFile, InputFile.Type)}, but metadata is taken from the
+   * given snapshot when the file is unchanged since the previous analysis.
+   */
+  @CheckForNull
+  DefaultInputFile completeAndComputeMetadata(DefaultInputFile inputFile, InputFile.Type type, @Nullable FileMetadataSnapshot snapshot) {
     inputFile.setType(type);
     inputFile.setModuleBaseDir(fs.baseDir().toPath());
     inputFile.setCharset(fs.encoding());
@@ -101,7 +111,17 @@ class InputFileBuilder {
     }
     inputFile.setLanguage(lang);
 
-    inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), fs.encoding()));
+    if (snapshot == null) {
+      inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), fs.encoding()));
+    } else {
+      File file = inputFile.file();
+      long size = file.length();
+      long lastModified = file.lastModified();
+      if (!snapshot.initMetadata(inputFile, size, lastModified, fs.encoding())) {
+        inputFile.initMetadata(fileMetadata.readMetadata(file, fs.encoding()));
+      }
+      snapshot.put(inputFile, size, lastModified);
+    }
 
     inputFile.setStatus(statusDetection.status(inputFile.moduleKey(), inputFile.relativePath(), inputFile.hash()));
 
@@ -57,6 +57,7 @@ import org.sonar.batch.issue.ModuleIssues;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.batch.protocol.output.BatchReportWriter;
 import org.sonar.batch.report.BatchReportUtils;
+import org.sonar.batch.report.IncrementalReport;
 import org.sonar.batch.report.ReportPublisher;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.batch.sensor.coverage.CoverageExclusions;
@@ -94,16 +95,19 @@ public class DefaultSensorStorage implements SensorStorage {
   private final BatchComponentCache componentCache;
   private final ReportPublisher reportPublisher;
   private final MeasureCache measureCache;
+  private final IncrementalReport incrementalReport;
 
   public DefaultSensorStorage(MetricFinder metricFinder, ModuleIssues moduleIssues,
     Settings settings, FileSystem fs, ActiveRules activeRules,
-    CoverageExclusions coverageExclusions, BatchComponentCache componentCache, ReportPublisher reportPublisher, MeasureCache measureCache) {
+    CoverageExclusions coverageExclusions, BatchComponentCache componentCache, ReportPublisher reportPublisher, MeasureCache measureCache,
+    IncrementalReport incrementalReport) {
     this.metricFinder = metricFinder;
     this.moduleIssues = moduleIssues;
     this.coverageExclusions = coverageExclusions;
     this.componentCache = componentCache;
     this.reportPublisher = reportPublisher;
     this.measureCache = measureCache;
+    this.incrementalReport = incrementalReport;
   }
 
   private Metric findMetricOrFail(String metricKey) {
@@ -115,7 +119,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(Measure newMeasure) {
+  public synchronized void store(Measure newMeasure) {
     DefaultMeasure<?> measure = (DefaultMeasure<?>) newMeasure;
     org.sonar.api.measures.Metric m = findMetricOrFail(measure.metric().key());
     org.sonar.api.measures.Measure measureToSave = new org.sonar.api.measures.Measure(m);
@@ -128,7 +132,10 @@ public class DefaultSensorStorage implements SensorStorage {
     }
   }
 
-  public org.sonar.api.measures.Measure saveMeasure(Resource resource, org.sonar.api.measures.Measure measure) {
+  /**
+   * Synchronized so that sensors executed concurrently can not save the same measure twice
+   */
+  public synchronized org.sonar.api.measures.Measure saveMeasure(Resource resource, org.sonar.api.measures.Measure measure) {
     if (DEPRECATED_METRICS_KEYS.contains(measure.getMetricKey())) {
       // Ignore deprecated metrics
       return null;
@@ -172,6 +179,9 @@ public class DefaultSensorStorage implements SensorStorage {
     }
   }
 
+  /**
+   * Not synchronized, {@link ModuleIssues#initAndAddIssue(Issue)} is already thread-safe
+   */
   @Override
   public void store(Issue issue) {
     moduleIssues.initAndAddIssue(issue);
@@ -185,15 +195,24 @@ public class DefaultSensorStorage implements SensorStorage {
     return (File) r.resource();
   }
 
+  /**
+   * Synchronized so that sensors executed concurrently do not write the report of the same file at the same time
+   */
   @Override
-  public void store(DefaultHighlighting highlighting) {
-    BatchReportWriter writer = reportPublisher.getWriter();
+  public synchronized void store(DefaultHighlighting highlighting) {
     DefaultInputFile inputFile = (DefaultInputFile) highlighting.inputFile();
+    if (incrementalReport.isUnchanged(inputFile)) {
+      return;
+    }
+    BatchReportWriter writer = reportPublisher.getWriter();
     writer.writeComponentSyntaxHighlighting(componentCache.get(inputFile).batchId(),
       Iterables.transform(highlighting.getSyntaxHighlightingRuleSet(), new BuildSyntaxHighlighting()));
   }
 
-  public void store(DefaultInputFile inputFile, Map<Symbol, Set<TextRange>> referencesBySymbol) {
+  public synchronized void store(DefaultInputFile inputFile, Map<Symbol, Set<TextRange>> referencesBySymbol) {
+    if (incrementalReport.isUnchanged(inputFile)) {
+      return;
+    }
     BatchReportWriter writer = reportPublisher.getWriter();
     writer.writeComponentSymbols(componentCache.get(inputFile).batchId(),
       Iterables.transform(referencesBySymbol.entrySet(), new Function<Map.Entry<Symbol, Set<TextRange>>, BatchReport.Symbol>() {
@@ -223,8 +242,11 @@ public class DefaultSensorStorage implements SensorStorage {
       }));
   }
 
+  /**
+   * Synchronized so that the coverage measures of a file are saved all together
+   */
   @Override
-  public void store(DefaultCoverage defaultCoverage) {
+  public synchronized void store(DefaultCoverage defaultCoverage) {
     File file = getFile(defaultCoverage.inputFile());
     if (coverageExclusions.hasMatchingPattern(file)) {
       return;
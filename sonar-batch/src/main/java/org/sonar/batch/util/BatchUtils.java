@@ -33,6 +33,8 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.MessageException;
 
 public class BatchUtils {
   private static final Logger LOG = LoggerFactory.getLogger(BatchUtils.class);
@@ -70,6 +72,26 @@ public class BatchUtils {
     return o.getClass().getName();
   }
 
+  /**
+   * @return the value of the given property, or the default value if the property is not set
+   * @throws MessageException if the value is not a strictly positive integer
+   */
+  public static int readStrictlyPositiveInt(Settings settings, String key, int defaultValue) {
+    if (!settings.hasKey(key)) {
+      return defaultValue;
+    }
+    String value = settings.getString(key);
+    try {
+      int result = Integer.parseInt(value.trim());
+      if (result > 0) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      // fail below
+    }
+    throw MessageException.of(String.format("Value of property %s must be a strictly positive integer (got %s)", key, value));
+  }
+
   @CheckForNull
   public static String getServerVersion() {
     InputStream is = BatchUtils.class.getResourceAsStream("/sq-version.txt");
@@ -41,6 +41,8 @@ import org.sonar.core.platform.ComponentContainer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
@@ -207,6 +209,26 @@ public class BatchExtensionDictionnaryTest {
     assertThat(extensions.get(1)).isEqualTo(b);
   }
 
+  @Test
+  public void transitiveDependencies() {
+    BatchExtension a = new GeneratesSomething("foo");
+    BatchExtension b = new MethodDependentOf("foo");
+    BatchExtension c = new MethodDependentOf(b);
+    BatchExtension d = new MethodDependentOf(null);
+    BatchExtension pre = new PreSensor();
+    BatchExtension post = new PostSensor();
+
+    BatchExtensionDictionnary selector = newSelector(a, b, c, d, pre, post);
+    Map<BatchExtension, Set<BatchExtension>> dependencies = selector.getTransitiveDependencies(Arrays.asList(a, b, c, d, pre, post));
+
+    assertThat(dependencies.get(pre)).isEmpty();
+    assertThat(dependencies.get(a)).containsOnly(pre);
+    assertThat(dependencies.get(b)).containsOnly(a, pre);
+    assertThat(dependencies.get(c)).containsOnly(a, b, pre);
+    assertThat(dependencies.get(d)).containsOnly(pre);
+    assertThat(dependencies.get(post)).containsOnly(a, b, c, d, pre);
+  }
+
   @Test
   public void useClassAnnotationsOnInterfaces() {
     BatchExtension a = new InterfaceDependedUpon() {
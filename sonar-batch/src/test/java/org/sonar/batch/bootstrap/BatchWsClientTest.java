@@ -67,6 +67,17 @@ public class BatchWsClientTest {
     assertThat(debugLogs.get(0)).contains("GET 200 https://local/api/issues/search | time=");
   }
 
+  @Test
+  public void do_not_fail_if_not_modified() throws Exception {
+    WsRequest request = newRequest();
+    WsResponse response = newResponse().setCode(304);
+    when(wsClient.wsConnector().call(request)).thenReturn(response);
+
+    WsResponse result = new BatchWsClient(wsClient, false).call(request);
+
+    assertThat(result).isSameAs(response);
+  }
+
   @Test
   public void fail_if_requires_credentials() throws Exception {
     expectedException.expect(MessageException.class);
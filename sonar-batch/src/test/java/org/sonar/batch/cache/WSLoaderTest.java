@@ -21,11 +21,13 @@ package org.sonar.batch.cache;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import org.apache.commons.io.IOUtils;
 import org.hamcrest.Matchers;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.sonar.batch.bootstrap.BatchWsClient;
@@ -42,6 +44,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -97,6 +100,7 @@ public class WSLoaderTest {
     assertThat(result.get()).isEqualTo(input);
 
     InOrder inOrder = inOrder(ws, cache);
+    inOrder.verify(cache).getString(WSLoader.etagKey(ID));
     inOrder.verify(ws).call(any(WsRequest.class));
     inOrder.verify(cache).put(eq(ID), any(InputStream.class));
     inOrder.verify(cache).getStream(ID);
@@ -178,7 +182,8 @@ public class WSLoaderTest {
       loader.loadString(ID);
       fail("IllegalStateException expected");
     } catch (HttpException e) {
-      // cache should not be used
+      // cache should not be used, except to get the entity tag of cached data
+      verify(cache).getString(WSLoader.etagKey(ID));
       verifyNoMoreInteractions(cache);
     }
   }
@@ -224,10 +229,56 @@ public class WSLoaderTest {
     assertResult(loader.loadString(ID), serverValue, false);
 
     // should not fetch from cache
+    verify(cache).getString(WSLoader.etagKey(ID));
     verify(cache).put(ID, serverValue.getBytes());
     verifyNoMoreInteractions(cache);
   }
 
+  @Test
+  public void reuse_cached_data_when_not_modified_on_server() throws IOException {
+    when(cache.getString(WSLoader.etagKey(ID))).thenReturn("\"abc\"");
+    when(cache.getString(ID)).thenReturn(cacheValue);
+    when(ws.call(any(WsRequest.class))).thenReturn(new MockWsResponse().setCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+    WSLoader loader = new WSLoader(LoadStrategy.SERVER_FIRST, cache, ws);
+
+    // data is up-to-date, so it is not considered as loaded from cache
+    assertResult(loader.loadString(ID), cacheValue, false);
+
+    ArgumentCaptor<WsRequest> request = ArgumentCaptor.forClass(WsRequest.class);
+    verify(ws).call(request.capture());
+    assertThat(request.getValue().getHeaders()).containsEntry("If-None-Match", "\"abc\"");
+    verify(cache, never()).put(eq(ID), any(byte[].class));
+  }
+
+  @Test
+  public void store_entity_tag_of_downloaded_data() throws IOException {
+    when(cache.getString(WSLoader.etagKey(ID))).thenReturn("\"abc\"");
+    when(ws.call(any(WsRequest.class))).thenReturn(new MockWsResponse().setContent(serverValue).setHeader("ETag", "\"def\""));
+    WSLoader loader = new WSLoader(LoadStrategy.SERVER_FIRST, cache, ws);
+
+    assertResult(loader.loadString(ID), serverValue, false);
+
+    InOrder inOrder = inOrder(cache);
+    inOrder.verify(cache).put(ID, serverValue.getBytes());
+    inOrder.verify(cache).put(WSLoader.etagKey(ID), "\"def\"".getBytes());
+  }
+
+  @Test
+  public void download_again_when_not_modified_but_data_is_not_cached_anymore() throws IOException {
+    when(cache.getString(WSLoader.etagKey(ID))).thenReturn("\"abc\"");
+    when(ws.call(any(WsRequest.class)))
+      .thenReturn(new MockWsResponse().setCode(HttpURLConnection.HTTP_NOT_MODIFIED))
+      .thenReturn(new MockWsResponse().setContent(serverValue));
+    WSLoader loader = new WSLoader(LoadStrategy.SERVER_FIRST, cache, ws);
+
+    assertResult(loader.loadString(ID), serverValue, false);
+
+    assertUsedServer(2);
+    verify(cache).put(ID, serverValue.getBytes());
+    // tag of previous data is removed
+    verify(cache).put(WSLoader.etagKey(ID), new byte[0]);
+  }
+
   @Test(expected = IllegalStateException.class)
   public void test_server_only() throws IOException {
     turnServerOffline();
@@ -22,33 +22,44 @@ package org.sonar.batch.cpd;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.batch.cpd.index.SonarDuplicationsIndex;
 import org.sonar.batch.index.BatchComponent;
 import org.sonar.batch.index.BatchComponentCache;
 import org.sonar.batch.protocol.output.BatchReportReader;
+import org.sonar.batch.protocol.output.FileStructure;
 import org.sonar.batch.protocol.output.BatchReportWriter;
 import org.sonar.batch.protocol.output.BatchReport.Duplicate;
 import org.sonar.batch.protocol.output.BatchReport.Duplication;
 import org.sonar.batch.report.ReportPublisher;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -65,6 +76,9 @@ public class CpdExecutorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   // private AbstractCpdEngine engine;
 
   private BatchReportReader reader;
@@ -197,6 +211,72 @@ public class CpdExecutorTest {
     assertDuplication(dups[1], 15, 214, batchComponent3.batchId(), 15, 214);
   }
   
+  @Test
+  public void detect_duplications_of_files_concurrently() {
+    when(index.iterator()).thenReturn(Arrays.asList(newResourceBlocks(batchComponent1, 1L), newResourceBlocks(batchComponent2, 2L)).iterator());
+
+    executor.executeConcurrently(2, 10000L);
+
+    assertThat(reader.hasComponentData(FileStructure.Domain.DUPLICATIONS, batchComponent1.batchId())).isTrue();
+    assertThat(reader.hasComponentData(FileStructure.Domain.DUPLICATIONS, batchComponent2.batchId())).isTrue();
+  }
+
+  @Test
+  public void timeout_cancels_detection_of_the_file_only() {
+    final CountDownLatch latch = new CountDownLatch(1);
+    when(index.getBySequenceHash(new ByteArray(1L))).thenAnswer(new Answer<Collection<Block>>() {
+      @Override
+      public Collection<Block> answer(InvocationOnMock invocation) throws Throwable {
+        latch.await();
+        return Collections.emptyList();
+      }
+    });
+    when(index.iterator()).thenReturn(Arrays.asList(newResourceBlocks(batchComponent1, 1L), newResourceBlocks(batchComponent2, 2L)).iterator());
+
+    try {
+      executor.executeConcurrently(2, 50L);
+    } finally {
+      latch.countDown();
+    }
+
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .contains("Timeout during detection of duplications for " + batchComponent1.inputComponent() + ". No duplications are saved for this file.");
+    assertThat(reader.hasComponentData(FileStructure.Domain.DUPLICATIONS, batchComponent1.batchId())).isFalse();
+    assertThat(reader.hasComponentData(FileStructure.Domain.DUPLICATIONS, batchComponent2.batchId())).isTrue();
+  }
+
+  @Test
+  public void fail_if_detection_fails() {
+    when(index.getBySequenceHash(any(ByteArray.class))).thenThrow(new IllegalArgumentException("Boom"));
+    when(index.iterator()).thenReturn(Arrays.asList(newResourceBlocks(batchComponent1, 1L)).iterator());
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Fail during detection of duplication for " + batchComponent1.key());
+
+    executor.executeConcurrently(2, 10000L);
+  }
+
+  @Test
+  public void fail_if_threads_property_is_not_a_positive_integer() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "0");
+
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("Value of property sonar.cpd.threads must be a strictly positive integer (got 0)");
+
+    executor.execute();
+  }
+
+  private static ResourceBlocks newResourceBlocks(BatchComponent component, long hash) {
+    Block block = Block.builder()
+      .setResourceId(component.key())
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(0)
+      .setLines(1, 2)
+      .setUnit(0, 10)
+      .build();
+    return new ResourceBlocks(component.key(), Arrays.asList(block));
+  }
+
   private Duplication[] readDuplications(int expected) {
     assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
@@ -26,6 +26,7 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import com.google.common.collect.ImmutableMap;
 import org.sonar.api.CoreProperties;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.batch.bootstrap.GlobalProperties;
 import org.sonar.batch.bootstrap.GlobalTempFolderProvider;
 
@@ -42,10 +43,14 @@ public abstract class AbstractCachesTest {
   protected Caches caches;
 
   private static CachesManager createCacheOnTemp() {
+    return new CachesManager(createTempFolder());
+  }
+
+  protected static TempFolder createTempFolder() {
     Map<String, String> props = ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
       CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath());
 
-    return new CachesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(props)));
+    return new GlobalTempFolderProvider().provide(new GlobalProperties(props));
   }
 
   @BeforeClass
@@ -56,10 +61,14 @@ public abstract class AbstractCachesTest {
 
   @Before
   public void start() {
-    caches = new Caches(cachesManager);
+    caches = createCaches();
     caches.start();
   }
 
+  protected Caches createCaches() {
+    return new Caches(cachesManager);
+  }
+
   @After
   public void stop() {
     if (caches != null) {
@@ -0,0 +1,158 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapCacheStorageTest extends AbstractCachesTest {
+
+  @Rule
+  public TemporaryFolder dirs = new TemporaryFolder();
+
+  File dir;
+  OffHeapCacheStorage<String> underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = dirs.newFolder();
+    underTest = new OffHeapCacheStorage<>("test", dir, cachesManager.persistit(), 1024);
+  }
+
+  @After
+  public void tearDown() {
+    underTest.close();
+  }
+
+  @Test
+  public void replace_value() {
+    underTest.put(new Object[] {"a"}, "first");
+    underTest.put(new Object[] {"a"}, "second");
+
+    assertThat(underTest.get(new Object[] {"a"})).isEqualTo("second");
+    assertThat(Iterators.size(underTest.values(new Object[0]))).isEqualTo(1);
+  }
+
+  @Test
+  public void values_are_spread_over_segments() {
+    for (int i = 0; i < 1000; i++) {
+      underTest.put(new Object[] {"key", i}, "value" + i);
+    }
+
+    assertThat(dir.listFiles().length).isGreaterThan(1);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(underTest.get(new Object[] {"key", i})).isEqualTo("value" + i);
+    }
+  }
+
+  @Test
+  public void value_bigger_than_segment() {
+    String big = Strings.repeat("a", 10_000);
+    underTest.put(new Object[] {"small"}, "a");
+    underTest.put(new Object[] {"big"}, big);
+    underTest.put(new Object[] {"other"}, "b");
+
+    assertThat(underTest.get(new Object[] {"small"})).isEqualTo("a");
+    assertThat(underTest.get(new Object[] {"big"})).isEqualTo(big);
+    assertThat(underTest.get(new Object[] {"other"})).isEqualTo("b");
+  }
+
+  @Test
+  public void sort_keys_like_persistit() {
+    underTest.put(new Object[] {"b"}, "b");
+    underTest.put(new Object[] {10}, "10");
+    underTest.put(new Object[] {"a", "x"}, "ax");
+    underTest.put(new Object[] {2}, "2");
+    underTest.put(new Object[] {"a"}, "a");
+
+    assertThat(underTest.values(new Object[0])).containsExactly("2", "10", "a", "ax", "b");
+    assertThat(underTest.keySet(new Object[0])).containsExactly(2, 10, "a", "b");
+  }
+
+  @Test
+  public void key_is_copied() {
+    Object[] key = {"a"};
+    underTest.put(key, "a");
+    key[0] = "b";
+
+    assertThat(underTest.get(new Object[] {"a"})).isEqualTo("a");
+    assertThat(underTest.containsKey(new Object[] {"b"})).isFalse();
+  }
+
+  @Test
+  public void delete_only_own_files_on_close() {
+    OffHeapCacheStorage<String> other = new OffHeapCacheStorage<>("other", dir, cachesManager.persistit(), 1024);
+    other.put(new Object[] {"a"}, "a");
+    underTest.put(new Object[] {"a"}, "a");
+
+    underTest.close();
+
+    assertThat(dir).exists();
+    assertThat(dir.list()).containsOnly("other-0.log");
+    assertThat(other.get(new Object[] {"a"})).isEqualTo("a");
+    other.close();
+    assertThat(dir.list()).isEmpty();
+  }
+
+  @Test
+  public void concurrent_writes_and_reads() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = 0; i < 500; i++) {
+              underTest.put(new Object[] {thread, i}, thread + "-" + i);
+              assertThat(underTest.get(new Object[] {thread, i})).isEqualTo(thread + "-" + i);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    for (int t = 0; t < 4; t++) {
+      assertThat(underTest.keySet(new Object[] {t})).hasSize(500);
+      assertThat(underTest.get(new Object[] {t, 499})).isEqualTo(t + "-499");
+    }
+  }
+}
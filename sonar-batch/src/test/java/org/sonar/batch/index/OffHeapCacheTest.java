@@ -0,0 +1,49 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/**
+ * Same behavior as the default storage
+ */
+public class OffHeapCacheTest extends CacheTest {
+
+  private static CachesManager offHeapCachesManager;
+
+  @BeforeClass
+  public static void startOffHeapClass() {
+    offHeapCachesManager = new CachesManager(createTempFolder(), CachesManager.Storage.OFF_HEAP);
+    offHeapCachesManager.start();
+  }
+
+  @AfterClass
+  public static void stopOffHeapClass() {
+    if (offHeapCachesManager != null) {
+      offHeapCachesManager.stop();
+    }
+  }
+
+  @Override
+  protected Caches createCaches() {
+    return new Caches(offHeapCachesManager);
+  }
+}
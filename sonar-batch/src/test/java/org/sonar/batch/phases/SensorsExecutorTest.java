@@ -0,0 +1,196 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.phases;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.utils.MessageException;
+import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
+import org.sonar.batch.events.EventBus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SensorsExecutorTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  Project project = new Project("project");
+  BatchExtensionDictionnary selector = mock(BatchExtensionDictionnary.class);
+  SensorContext context = mock(SensorContext.class);
+  List<String> executions = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void execute_sensors_sequentially_by_default() {
+    FakeSensor sensor1 = new FakeSensor("sensor1");
+    FakeSensor sensor2 = new FakeSensor("sensor2");
+    when(selector.select(Sensor.class, project, true, null)).thenReturn(Arrays.<Sensor>asList(sensor1, sensor2));
+
+    new SensorsExecutor(selector, project, mock(EventBus.class), new Settings()).execute(context);
+
+    assertThat(executions).containsExactly("sensor1", "sensor2");
+    assertThat(sensor1.thread).isEqualTo(Thread.currentThread().getName());
+    assertThat(sensor2.thread).isEqualTo(Thread.currentThread().getName());
+  }
+
+  @Test
+  public void execute_independent_sensors_concurrently() {
+    CountDownLatch latch = new CountDownLatch(2);
+    FakeSensor sensor1 = new WaitingSensor("sensor1", latch);
+    FakeSensor sensor2 = new WaitingSensor("sensor2", latch);
+    when(selector.select(Sensor.class, project, true, null)).thenReturn(Arrays.<Sensor>asList(sensor1, sensor2));
+    when(selector.getTransitiveDependencies(anyCollection())).thenReturn(ImmutableMap.<Object, Set<Object>>of(
+      sensor1, Collections.emptySet(),
+      sensor2, Collections.emptySet()));
+
+    newParallelExecutor("2").execute(context);
+
+    // each sensor can complete only if the other one runs at the same time
+    assertThat(sensor1.completed).isTrue();
+    assertThat(sensor2.completed).isTrue();
+    assertThat(sensor1.thread).startsWith("sensor-");
+  }
+
+  @Test
+  public void dependent_sensors_are_executed_in_order() {
+    FakeSensor sensor1 = new FakeSensor("sensor1");
+    FakeSensor sensor2 = new FakeSensor("sensor2");
+    FakeSensor sensor3 = new FakeSensor("sensor3");
+    when(selector.select(Sensor.class, project, true, null)).thenReturn(Arrays.<Sensor>asList(sensor1, sensor2, sensor3));
+    when(selector.getTransitiveDependencies(anyCollection())).thenReturn(ImmutableMap.<Object, Set<Object>>of(
+      sensor1, Collections.emptySet(),
+      sensor2, Collections.<Object>singleton(sensor1),
+      sensor3, Collections.<Object>singleton(sensor2)));
+
+    newParallelExecutor("4").execute(context);
+
+    assertThat(executions).containsExactly("sensor1", "sensor2", "sensor3");
+  }
+
+  @Test
+  public void rethrow_failure_of_sensor() {
+    FakeSensor sensor1 = new FailingSensor("sensor1");
+    FakeSensor sensor2 = new FakeSensor("sensor2");
+    when(selector.select(Sensor.class, project, true, null)).thenReturn(Arrays.<Sensor>asList(sensor1, sensor2));
+    when(selector.getTransitiveDependencies(anyCollection())).thenReturn(ImmutableMap.<Object, Set<Object>>of(
+      sensor1, Collections.emptySet(),
+      sensor2, Collections.<Object>singleton(sensor1)));
+
+    try {
+      newParallelExecutor("2").execute(context);
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("sensor1 failed");
+      // dependents of a failed sensor are not executed
+      assertThat(executions).isEmpty();
+      return;
+    }
+    throw new AssertionError("Failure of sensor should be rethrown");
+  }
+
+  @Test
+  public void fail_if_invalid_number_of_threads() {
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("Value of property sonar.batch.sensorThreads must be a strictly positive integer (got 0)");
+
+    newParallelExecutor("0");
+  }
+
+  private SensorsExecutor newParallelExecutor(String threads) {
+    Settings settings = new Settings();
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, threads);
+    return new SensorsExecutor(selector, project, mock(EventBus.class), settings);
+  }
+
+  private class FakeSensor implements Sensor {
+    final String name;
+    volatile String thread;
+    volatile boolean completed = false;
+
+    FakeSensor(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+
+    @Override
+    public void analyse(Project module, SensorContext context) {
+      thread = Thread.currentThread().getName();
+      doAnalyse();
+      executions.add(name);
+      completed = true;
+    }
+
+    void doAnalyse() {
+      // nothing by default
+    }
+  }
+
+  private class WaitingSensor extends FakeSensor {
+    private final CountDownLatch latch;
+
+    WaitingSensor(String name, CountDownLatch latch) {
+      super(name);
+      this.latch = latch;
+    }
+
+    @Override
+    void doAnalyse() {
+      latch.countDown();
+      try {
+        if (!latch.await(10, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("Sensors are not executed concurrently");
+        }
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  private class FailingSensor extends FakeSensor {
+    FailingSensor(String name) {
+      super(name);
+    }
+
+    @Override
+    void doAnalyse() {
+      throw new IllegalStateException(name + " failed");
+    }
+  }
+}
@@ -25,9 +25,11 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputDir;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.Java;
 import org.sonar.api.resources.Project;
@@ -87,7 +89,7 @@ public class ComponentsPublisherTest {
 
     ImmutableProjectReactor reactor = new ImmutableProjectReactor(rootDef);
 
-    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache);
+    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache, new IncrementalReport(new Settings()));
 
     File outputDir = temp.newFolder();
     BatchReportWriter writer = new BatchReportWriter(outputDir);
@@ -148,7 +150,7 @@ public class ComponentsPublisherTest {
 
     ImmutableProjectReactor reactor = new ImmutableProjectReactor(rootDef);
 
-    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache);
+    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache, new IncrementalReport(new Settings()));
 
     File outputDir = temp.newFolder();
     BatchReportWriter writer = new BatchReportWriter(outputDir);
@@ -167,4 +169,39 @@ public class ComponentsPublisherTest {
     assertThat(module1Protobuf.getLink(0).getType()).isEqualTo(ComponentLinkType.CI);
     assertThat(module1Protobuf.getLink(0).getHref()).isEqualTo("http://ci");
   }
+
+  @Test
+  public void flag_unchanged_files_when_report_is_incremental() throws Exception {
+    ProjectDefinition rootDef = ProjectDefinition.create().setKey("foo");
+    rootDef.properties().put(CoreProperties.PROJECT_VERSION_PROPERTY, "1.0");
+    Project root = new Project("foo").setName("Root project")
+      .setAnalysisDate(DateUtils.parseDate(("2012-12-12")));
+    root.setId(1).setUuid("PROJECT_UUID");
+    resourceCache.add(root, null).setInputComponent(new DefaultInputModule("foo"));
+
+    Directory dir = Directory.create("src");
+    dir.setEffectiveKey("foo:src");
+    dir.setId(2).setUuid("DIR_UUID");
+    resourceCache.add(dir, root).setInputComponent(new DefaultInputDir("foo", "src"));
+
+    org.sonar.api.resources.File sameFile = org.sonar.api.resources.File.create("src/Same.java", Java.INSTANCE, false);
+    sameFile.setEffectiveKey("foo:src/Same.java");
+    sameFile.setId(3).setUuid("SAME_FILE_UUID");
+    resourceCache.add(sameFile, dir).setInputComponent(new DefaultInputFile("foo", "src/Same.java").setLines(2).setStatus(InputFile.Status.SAME));
+
+    org.sonar.api.resources.File changedFile = org.sonar.api.resources.File.create("src/Changed.java", Java.INSTANCE, false);
+    changedFile.setEffectiveKey("foo:src/Changed.java");
+    changedFile.setId(4).setUuid("CHANGED_FILE_UUID");
+    resourceCache.add(changedFile, dir).setInputComponent(new DefaultInputFile("foo", "src/Changed.java").setLines(2).setStatus(InputFile.Status.CHANGED));
+
+    Settings settings = new Settings().setProperty(IncrementalReport.INCREMENTAL_PROP_KEY, true);
+    ComponentsPublisher publisher = new ComponentsPublisher(new ImmutableProjectReactor(rootDef), resourceCache, new IncrementalReport(settings));
+
+    File outputDir = temp.newFolder();
+    publisher.publish(new BatchReportWriter(outputDir));
+
+    BatchReportReader reader = new BatchReportReader(outputDir);
+    assertThat(reader.readComponent(3).getIsUnchanged()).isTrue();
+    assertThat(reader.readComponent(4).getIsUnchanged()).isFalse();
+  }
 }
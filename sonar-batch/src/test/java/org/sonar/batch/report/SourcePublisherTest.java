@@ -28,8 +28,10 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.batch.index.BatchComponentCache;
@@ -50,18 +52,21 @@ public class SourcePublisherTest {
 
   private org.sonar.api.resources.File sampleFile;
 
+  private DefaultInputFile inputFile;
+
+  private BatchComponentCache resourceCache = new BatchComponentCache();
+
   @Before
   public void prepare() throws IOException {
     Project p = new Project("foo").setAnalysisDate(new Date(1234567L));
-    BatchComponentCache resourceCache = new BatchComponentCache();
     sampleFile = org.sonar.api.resources.File.create("src/Foo.php");
     sampleFile.setEffectiveKey("foo:src/Foo.php");
     resourceCache.add(p, null).setInputComponent(new DefaultInputModule("foo"));
     File baseDir = temp.newFolder();
     sourceFile = new File(baseDir, "src/Foo.php");
-    resourceCache.add(sampleFile, null).setInputComponent(
-      new DefaultInputFile("foo", "src/Foo.php").setLines(5).setModuleBaseDir(baseDir.toPath()).setCharset(StandardCharsets.ISO_8859_1));
-    publisher = new SourcePublisher(resourceCache);
+    inputFile = new DefaultInputFile("foo", "src/Foo.php").setLines(5).setModuleBaseDir(baseDir.toPath()).setCharset(StandardCharsets.ISO_8859_1);
+    resourceCache.add(sampleFile, null).setInputComponent(inputFile);
+    publisher = new SourcePublisher(resourceCache, new IncrementalReport(new Settings()));
     File outputDir = temp.newFolder();
     writer = new BatchReportWriter(outputDir);
   }
@@ -76,6 +81,17 @@ public class SourcePublisherTest {
     assertThat(FileUtils.readFileToString(out, StandardCharsets.UTF_8)).isEqualTo("");
   }
 
+  @Test
+  public void do_not_publish_source_of_unchanged_file_when_report_is_incremental() throws Exception {
+    FileUtils.write(sourceFile, "1\n2\n3\n4\n", StandardCharsets.ISO_8859_1);
+    inputFile.setStatus(InputFile.Status.SAME);
+    Settings settings = new Settings().setProperty(IncrementalReport.INCREMENTAL_PROP_KEY, true);
+
+    new SourcePublisher(resourceCache, new IncrementalReport(settings)).publish(writer);
+
+    assertThat(writer.getSourceFile(2)).doesNotExist();
+  }
+
   @Test
   public void publishSourceWithLastEmptyLine() throws Exception {
     FileUtils.write(sourceFile, "1\n2\n3\n4\n", StandardCharsets.ISO_8859_1);
@@ -122,6 +122,24 @@ public class ExclusionFiltersTest {
     assertThat(filter.accept(inputFile, InputFile.Type.MAIN)).isFalse();
   }
 
+  @Test
+  public void exclude_directories() {
+    Settings settings = new Settings();
+    settings.setProperty(CoreProperties.PROJECT_EXCLUSIONS_PROPERTY, "**/generated/**,src/main/java/**/*Dao.java,file:/tmp/**");
+    settings.setProperty(CoreProperties.PROJECT_TEST_INCLUSIONS_PROPERTY, "src/test/**");
+    settings.setProperty(CoreProperties.PROJECT_TEST_EXCLUSIONS_PROPERTY, "src/test/resources/**");
+    ExclusionFilters filter = new ExclusionFilters(new FileExclusions(settings));
+    filter.prepare();
+
+    assertThat(filter.isExcludedDirectory("src/main/java/generated", InputFile.Type.MAIN)).isTrue();
+    assertThat(filter.isExcludedDirectory("generated", InputFile.Type.MAIN)).isTrue();
+    assertThat(filter.isExcludedDirectory("src/main/java", InputFile.Type.MAIN)).isFalse();
+    assertThat(filter.isExcludedDirectory("src/test", InputFile.Type.MAIN)).isTrue();
+    assertThat(filter.isExcludedDirectory("src/main/java/generated", InputFile.Type.TEST)).isFalse();
+    assertThat(filter.isExcludedDirectory("src/test", InputFile.Type.TEST)).isFalse();
+    assertThat(filter.isExcludedDirectory("src/test/resources", InputFile.Type.TEST)).isTrue();
+  }
+
   @Test
   public void trim_pattern() {
     Settings settings = new Settings();
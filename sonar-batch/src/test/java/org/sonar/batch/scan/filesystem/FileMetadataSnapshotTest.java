@@ -0,0 +1,117 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileMetadataSnapshotTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void reuse_metadata_of_unchanged_files() throws IOException {
+    File file = new File(temp.newFolder(), "file-index/foo");
+    FileMetadataSnapshot snapshot = FileMetadataSnapshot.load(file);
+    snapshot.put(newInputFile("src/Foo.java"), 42L, 1000L);
+    snapshot.save();
+    assertThat(file).exists();
+
+    snapshot = FileMetadataSnapshot.load(file);
+    DefaultInputFile inputFile = new DefaultInputFile("foo", "src/Foo.java");
+    assertThat(snapshot.initMetadata(inputFile, 42L, 1000L, StandardCharsets.UTF_8)).isTrue();
+    assertThat(inputFile.lines()).isEqualTo(3);
+    assertThat(inputFile.nonBlankLines()).isEqualTo(2);
+    assertThat(inputFile.lastValidOffset()).isEqualTo(12);
+    assertThat(inputFile.hash()).isEqualTo("abcdef");
+    assertThat(inputFile.originalLineOffsets()).containsExactly(0, 4, 8);
+    assertThat(snapshot.reusedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void compute_metadata_of_changed_files() throws IOException {
+    File file = new File(temp.newFolder(), "foo");
+    FileMetadataSnapshot snapshot = FileMetadataSnapshot.load(file);
+    snapshot.put(newInputFile("src/Foo.java"), 42L, 1000L);
+    snapshot.save();
+
+    snapshot = FileMetadataSnapshot.load(file);
+    assertThat(snapshot.initMetadata(new DefaultInputFile("foo", "src/Foo.java"), 43L, 1000L, StandardCharsets.UTF_8)).isFalse();
+    assertThat(snapshot.initMetadata(new DefaultInputFile("foo", "src/Foo.java"), 42L, 2000L, StandardCharsets.UTF_8)).isFalse();
+    assertThat(snapshot.initMetadata(new DefaultInputFile("foo", "src/Foo.java"), 42L, 1000L, StandardCharsets.UTF_16)).isFalse();
+    assertThat(snapshot.initMetadata(new DefaultInputFile("foo", "src/Bar.java"), 42L, 1000L, StandardCharsets.UTF_8)).isFalse();
+    assertThat(snapshot.reusedCount()).isZero();
+  }
+
+  @Test
+  public void do_not_store_recently_modified_files() throws IOException {
+    File file = new File(temp.newFolder(), "foo");
+    FileMetadataSnapshot snapshot = FileMetadataSnapshot.load(file);
+    snapshot.put(newInputFile("src/Foo.java"), 42L, System.currentTimeMillis());
+    snapshot.save();
+
+    snapshot = FileMetadataSnapshot.load(file);
+    assertThat(snapshot.initMetadata(new DefaultInputFile("foo", "src/Foo.java"), 42L, 1000L, StandardCharsets.UTF_8)).isFalse();
+  }
+
+  @Test
+  public void only_keep_files_of_last_analysis() throws IOException {
+    File file = new File(temp.newFolder(), "foo");
+    FileMetadataSnapshot snapshot = FileMetadataSnapshot.load(file);
+    snapshot.put(newInputFile("src/Foo.java"), 42L, 1000L);
+    snapshot.save();
+    snapshot = FileMetadataSnapshot.load(file);
+    snapshot.put(newInputFile("src/Bar.java"), 42L, 1000L);
+    snapshot.save();
+
+    snapshot = FileMetadataSnapshot.load(file);
+    assertThat(snapshot.initMetadata(new DefaultInputFile("foo", "src/Foo.java"), 42L, 1000L, StandardCharsets.UTF_8)).isFalse();
+    assertThat(snapshot.initMetadata(new DefaultInputFile("foo", "src/Bar.java"), 42L, 1000L, StandardCharsets.UTF_8)).isTrue();
+  }
+
+  @Test
+  public void ignore_invalid_snapshot() throws IOException {
+    File file = temp.newFile();
+    FileUtils.write(file, "not a snapshot");
+
+    FileMetadataSnapshot snapshot = FileMetadataSnapshot.load(file);
+    assertThat(snapshot.initMetadata(new DefaultInputFile("foo", "src/Foo.java"), 42L, 1000L, StandardCharsets.UTF_8)).isFalse();
+  }
+
+  private static DefaultInputFile newInputFile(String relativePath) {
+    return new DefaultInputFile("foo", relativePath)
+      .setCharset(StandardCharsets.UTF_8)
+      .setLines(3)
+      .setNonBlankLines(2)
+      .setLastValidOffset(12)
+      .setHash("abcdef")
+      .setOriginalLineOffsets(new int[] {0, 4, 8});
+  }
+}
@@ -19,12 +19,19 @@
  */
 package org.sonar.batch.util;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.MessageException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class BatchUtilsTest {
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   @Test
   public void encodeForUrl() throws Exception {
     assertThat(BatchUtils.encodeForUrl(null)).isEqualTo("");
@@ -48,4 +55,23 @@ public class BatchUtilsTest {
     assertThat(BatchUtils.describe(withToString)).isEqualTo(("desc"));
     assertThat(BatchUtils.describe(withoutToString)).isEqualTo("java.lang.Object");
   }
+
+  @Test
+  public void readStrictlyPositiveInt() {
+    Settings settings = new Settings();
+    assertThat(BatchUtils.readStrictlyPositiveInt(settings, "foo", 3)).isEqualTo(3);
+
+    settings.setProperty("foo", " 5 ");
+    assertThat(BatchUtils.readStrictlyPositiveInt(settings, "foo", 3)).isEqualTo(5);
+  }
+
+  @Test
+  public void readStrictlyPositiveInt_fails_if_not_strictly_positive() {
+    Settings settings = new Settings();
+    settings.setProperty("foo", "0");
+
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("Value of property foo must be a strictly positive integer (got 0)");
+    BatchUtils.readStrictlyPositiveInt(settings, "foo", 3);
+  }
 }
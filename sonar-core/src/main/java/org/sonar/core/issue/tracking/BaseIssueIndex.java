@@ -0,0 +1,222 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Index of the base issues used by {@link Tracker} to match raw issues. It is built once per tracking, for
+ * all the heuristics. Rules, line hashes and messages are interned to int identifiers, so keys are composed
+ * of primitive values and searching a raw issue does not allocate any object.
+ * <p/>
+ * Each heuristic returns the first base issue, in the order of input, which has the same key as the raw
+ * issue and which is not matched yet.
+ */
+class BaseIssueIndex<BASE extends Trackable> {
+
+  enum Heuristic {
+    // same rule, same line and same line hash
+    LINE_AND_LINE_HASH,
+    // same rule, same message and same line hash
+    LINE_HASH_AND_MESSAGE,
+    // same rule, same line and same message
+    LINE_AND_MESSAGE,
+    // same rule and same line hash
+    LINE_HASH
+  }
+
+  private static final int NO_LINE = Integer.MIN_VALUE;
+  private static final int UNKNOWN = -1;
+
+  private final List<BASE> bases;
+  private final Map<RuleKey, Integer> ruleIds = new HashMap<>();
+  private final Map<String, Integer> lineHashIds = new HashMap<>();
+  private final Map<String, Integer> messageIds = new HashMap<>();
+  private final Map<Heuristic, Map<Key, Bucket>> bucketsByHeuristic = new EnumMap<>(Heuristic.class);
+  // reused for lookups
+  private final Key probe = new Key();
+
+  BaseIssueIndex(Collection<BASE> bases) {
+    this.bases = new ArrayList<>(bases);
+    for (Heuristic heuristic : Heuristic.values()) {
+      bucketsByHeuristic.put(heuristic, new HashMap<Key, Bucket>());
+    }
+    for (int index = 0; index < this.bases.size(); index++) {
+      BASE base = this.bases.get(index);
+      int rule = intern(ruleIds, base.getRuleKey());
+      int line = line(base);
+      int lineHash = intern(lineHashIds, lineHash(base));
+      int message = intern(messageIds, base.getMessage());
+      for (Heuristic heuristic : Heuristic.values()) {
+        setProbe(heuristic, rule, line, lineHash, message);
+        Map<Key, Bucket> buckets = bucketsByHeuristic.get(heuristic);
+        Bucket bucket = buckets.get(probe);
+        if (bucket == null) {
+          bucket = new Bucket();
+          buckets.put(probe.copy(), bucket);
+        }
+        bucket.add(index);
+      }
+    }
+  }
+
+  @CheckForNull
+  BASE findUnmatched(Heuristic heuristic, Trackable raw, Tracking<?, BASE> tracking) {
+    int rule = idOf(ruleIds, raw.getRuleKey());
+    int lineHash = UNKNOWN;
+    int message = UNKNOWN;
+    if (heuristic != Heuristic.LINE_AND_MESSAGE) {
+      lineHash = idOf(lineHashIds, lineHash(raw));
+      if (lineHash == UNKNOWN) {
+        return null;
+      }
+    }
+    if (heuristic == Heuristic.LINE_HASH_AND_MESSAGE || heuristic == Heuristic.LINE_AND_MESSAGE) {
+      message = idOf(messageIds, raw.getMessage());
+      if (message == UNKNOWN) {
+        return null;
+      }
+    }
+    if (rule == UNKNOWN) {
+      return null;
+    }
+    setProbe(heuristic, rule, line(raw), lineHash, message);
+    Bucket bucket = bucketsByHeuristic.get(heuristic).get(probe);
+    if (bucket == null) {
+      return null;
+    }
+    // matched issues are never unmatched, so they can be skipped definitively
+    while (bucket.head < bucket.size) {
+      BASE base = bases.get(bucket.indexes[bucket.head]);
+      if (tracking.containsUnmatchedBase(base)) {
+        return base;
+      }
+      bucket.head++;
+    }
+    return null;
+  }
+
+  private void setProbe(Heuristic heuristic, int rule, int line, int lineHash, int message) {
+    switch (heuristic) {
+      case LINE_AND_LINE_HASH:
+        probe.set(rule, line, lineHash);
+        break;
+      case LINE_HASH_AND_MESSAGE:
+        probe.set(rule, message, lineHash);
+        break;
+      case LINE_AND_MESSAGE:
+        probe.set(rule, line, message);
+        break;
+      case LINE_HASH:
+        probe.set(rule, lineHash, 0);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported heuristic " + heuristic);
+    }
+  }
+
+  private static <T> int intern(Map<T, Integer> ids, @Nullable T value) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = ids.size();
+      ids.put(value, id);
+    }
+    return id;
+  }
+
+  private static <T> int idOf(Map<T, Integer> ids, @Nullable T value) {
+    Integer id = ids.get(value);
+    return id == null ? UNKNOWN : id;
+  }
+
+  private static int line(Trackable trackable) {
+    Integer line = trackable.getLine();
+    return line == null ? NO_LINE : line;
+  }
+
+  private static String lineHash(Trackable trackable) {
+    return StringUtils.defaultString(trackable.getLineHash(), "");
+  }
+
+  private static final class Key {
+    private int first;
+    private int second;
+    private int third;
+    private int hash;
+
+    void set(int first, int second, int third) {
+      this.first = first;
+      this.second = second;
+      this.third = third;
+      this.hash = 31 * (31 * first + second) + third;
+    }
+
+    Key copy() {
+      Key copy = new Key();
+      copy.set(first, second, third);
+      return copy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return first == that.first && second == that.second && third == that.third;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * Indexes of base issues, in the order of input
+   */
+  private static final class Bucket {
+    private int[] indexes = new int[1];
+    private int size = 0;
+    // index in "indexes" of the first base issue which may be unmatched
+    private int head = 0;
+
+    void add(int index) {
+      if (size == indexes.length) {
+        indexes = Arrays.copyOf(indexes, size * 2);
+      }
+      indexes[size] = index;
+      size++;
+    }
+  }
+}
@@ -93,6 +93,10 @@ public class Tracking<RAW extends Trackable, BASE extends Trackable> {
     return Iterables.filter(bases, unmatchedBasePredicate);
   }
 
+  Collection<BASE> getBases() {
+    return bases;
+  }
+
   boolean containsUnmatchedBase(BASE base) {
     return !baseToRaw.containsKey(base);
   }
@@ -417,6 +417,41 @@ public class TrackerTest {
     assertThat(Iterables.getOnlyElement(openManualIssues.get(1))).isSameAs(issue);
   }
 
+  @Test
+  public void base_issues_with_same_key_are_matched_in_order_of_input() {
+    FakeInput baseInput = new FakeInput("H1");
+    Issue base1 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue base2 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue base3 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    FakeInput rawInput = new FakeInput("H1");
+    Issue raw1 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue raw2 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw1)).isSameAs(base1);
+    assertThat(tracking.baseFor(raw2)).isSameAs(base2);
+    assertThat(tracking.getUnmatchedBases()).containsOnly(base3);
+  }
+
+  @Test
+  public void heuristics_do_not_match_base_issues_already_matched() {
+    FakeInput baseInput = new FakeInput("H1", "H2");
+    Issue base1 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg1");
+    Issue base2 = baseInput.createIssueOnLine(2, RULE_SYSTEM_PRINT, "msg2");
+
+    FakeInput rawInput = new FakeInput("H1", "H2", "H1");
+    // matched with base1 by line and line hash
+    Issue raw1 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg2");
+    // same message and same line hash as base1, which is already matched
+    Issue raw2 = rawInput.createIssueOnLine(3, RULE_SYSTEM_PRINT, "msg1");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw1)).isSameAs(base1);
+    assertThat(tracking.baseFor(raw2)).isNull();
+    assertThat(tracking.getUnmatchedBases()).containsOnly(base2);
+  }
+
   private static class Issue implements Trackable {
     private final RuleKey ruleKey;
     private final Integer line;
@@ -47,6 +47,7 @@ public class CeActivityDto {
   private long createdAt;
   private long updatedAt;
   private Long executionTimeMs;
+  private String stepMetrics;
 
   CeActivityDto() {
     // required for MyBatis
@@ -177,6 +178,19 @@ public class CeActivityDto {
     return this;
   }
 
+  /**
+   * Metrics of the computation steps executed by the task, as a JSON array
+   */
+  @CheckForNull
+  public String getStepMetrics() {
+    return stepMetrics;
+  }
+
+  public CeActivityDto setStepMetrics(@Nullable String s) {
+    this.stepMetrics = s;
+    return this;
+  }
+
   @CheckForNull
   public Long getSnapshotId() {
     return snapshotId;
@@ -20,7 +20,9 @@
 package org.sonar.db.ce;
 
 import com.google.common.base.Optional;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.sonar.api.utils.System2;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
@@ -80,14 +82,28 @@ public class CeQueueDao implements Dao {
     return mapper(dbSession).countAll();
   }
 
+  /**
+   * Marks as in progress the oldest pending task of which no other task of the same component is already in progress.
+   * <p>
+   * This method can safely be called concurrently by several workers: when the oldest candidate is taken by another
+   * worker, the next candidate is tried, but never a task of a component for which an older candidate exists, so that
+   * tasks of a given component are always processed one at a time and in order of submission.
+   * </p>
+   */
   public Optional<CeQueueDto> peek(DbSession session) {
-    List<String> taskUuids = mapper(session).selectEligibleForPeek();
-    if (taskUuids.isEmpty()) {
-      return Optional.absent();
+    List<CeQueueDto> eligibles = mapper(session).selectEligibleForPeek();
+    Set<String> triedComponentUuids = new HashSet<>();
+    for (CeQueueDto eligible : eligibles) {
+      String componentUuid = eligible.getComponentUuid();
+      if (componentUuid != null && !triedComponentUuids.add(componentUuid)) {
+        continue;
+      }
+      Optional<CeQueueDto> peeked = tryToPeek(session, eligible.getUuid());
+      if (peeked.isPresent()) {
+        return peeked;
+      }
     }
-
-    String taskUuid = taskUuids.get(0);
-    return tryToPeek(session, taskUuid);
+    return Optional.absent();
   }
 
   private Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
@@ -30,7 +30,7 @@ public interface CeQueueMapper {
 
   List<CeQueueDto> selectAllInAscOrder();
 
-  List<String> selectEligibleForPeek();
+  List<CeQueueDto> selectEligibleForPeek();
 
   @CheckForNull
   CeQueueDto selectByUuid(@Param("uuid") String uuid);
@@ -19,6 +19,7 @@
  */
 package org.sonar.db.loadedtemplate;
 
+import java.util.List;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
@@ -59,6 +60,10 @@ public class LoadedTemplateDao implements Dao {
     session.getMapper(LoadedTemplateMapper.class).insert(loadedTemplateDto);
   }
 
+  public List<LoadedTemplateDto> selectByType(DbSession session, String type) {
+    return session.getMapper(LoadedTemplateMapper.class).selectByType(type);
+  }
+
   public void delete(DbSession session, String type, String key) {
     session.getMapper(LoadedTemplateMapper.class).delete(type, key);
   }
@@ -21,6 +21,7 @@
 package org.sonar.db.measure;
 
 import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import java.util.Collection;
 import java.util.List;
@@ -36,6 +37,12 @@ import static com.google.common.collect.FluentIterable.from;
 
 public class MeasureDao implements Dao {
 
+  /**
+   * Maximum number of rows inserted by a single statement. 17 parameters are bound per row, so
+   * statements stay below the limit of 2100 parameters of SQL Server.
+   */
+  public static final int MAX_ROWS_PER_INSERT = 100;
+
   public boolean existsByKey(DbSession session, String componentKey, String metricKey) {
     return mapper(session).countByComponentAndMetric(componentKey, metricKey) > 0;
   }
@@ -110,9 +117,17 @@ public class MeasureDao implements Dao {
     mapper(session).insert(measureDto);
   }
 
+  /**
+   * Inserts the measures with multi-row statements of at most {@link #MAX_ROWS_PER_INSERT} rows.
+   */
   public void insert(DbSession session, Collection<MeasureDto> items) {
-    for (MeasureDto item : items) {
-      insert(session, item);
+    MeasureMapper mapper = mapper(session);
+    for (List<MeasureDto> partition : Iterables.partition(items, MAX_ROWS_PER_INSERT)) {
+      if (partition.size() == 1) {
+        mapper.insert(partition.get(0));
+      } else {
+        mapper.insertMany(partition);
+      }
     }
   }
 
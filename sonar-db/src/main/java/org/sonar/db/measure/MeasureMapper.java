@@ -47,5 +47,7 @@ public interface MeasureMapper {
 
   void insert(MeasureDto measureDto);
 
+  void insertMany(@Param("measures") List<MeasureDto> measures);
+
   List<String> selectMetricKeysForSnapshot(@Param("snapshotId") long snapshotId);
 }
@@ -23,8 +23,11 @@ package org.sonar.db.notification;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
@@ -32,10 +35,16 @@ import org.sonar.api.notifications.Notification;
 import org.sonar.api.utils.SonarException;
 
 /**
+ * Notifications are stored as compressed serialized objects. Uncompressed data, stored
+ * by versions prior to 5.4, is still supported.
+ *
  * @since 3.7.1
  */
 public class NotificationQueueDto {
 
+  private static final int GZIP_MAGIC_FIRST_BYTE = GZIPInputStream.GZIP_MAGIC & 0xFF;
+  private static final int GZIP_MAGIC_SECOND_BYTE = (GZIPInputStream.GZIP_MAGIC >> 8) & 0xFF;
+
   private Long id;
   private byte[] data;
 
@@ -65,7 +74,7 @@ public class NotificationQueueDto {
   public static NotificationQueueDto toNotificationQueueDto(Notification notification) {
     ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
     try {
-      ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+      ObjectOutputStream objectOutputStream = new ObjectOutputStream(new GZIPOutputStream(byteArrayOutputStream));
       objectOutputStream.writeObject(notification);
       objectOutputStream.close();
       return new NotificationQueueDto().setData(byteArrayOutputStream.toByteArray());
@@ -85,7 +94,8 @@ public class NotificationQueueDto {
     ByteArrayInputStream byteArrayInputStream = null;
     try {
       byteArrayInputStream = new ByteArrayInputStream(this.data);
-      ObjectInputStream objectInputStream = new ObjectInputStream(byteArrayInputStream);
+      InputStream input = isCompressed(this.data) ? new GZIPInputStream(byteArrayInputStream) : byteArrayInputStream;
+      ObjectInputStream objectInputStream = new ObjectInputStream(input);
       Object result = objectInputStream.readObject();
       objectInputStream.close();
       return (Notification) result;
@@ -94,4 +104,8 @@ public class NotificationQueueDto {
     }
   }
 
+  private static boolean isCompressed(byte[] data) {
+    return data.length >= 2 && (data[0] & 0xFF) == GZIP_MAGIC_FIRST_BYTE && (data[1] & 0xFF) == GZIP_MAGIC_SECOND_BYTE;
+  }
+
 }
@@ -45,6 +45,10 @@ import static org.sonar.api.utils.DateUtils.dateToLong;
  */
 public class PurgeDao implements Dao {
   private static final Logger LOG = Loggers.get(PurgeDao.class);
+  /**
+   * Number of analyses which data are purged by the same statements
+   */
+  private static final int MAX_ANALYSES_PER_CHUNK = 100;
   private final MyBatis mybatis;
   private final ResourceDao resourceDao;
   private final System2 system2;
@@ -67,17 +71,40 @@ public class PurgeDao implements Dao {
   }
 
   public void purge(DbSession session, PurgeConfiguration conf, PurgeListener listener, PurgeProfiler profiler) {
+    deleteAbortedBuildsAndDisableOrphans(session, conf, listener, profiler);
+    purgeHistory(session, conf, profiler);
+  }
+
+  /**
+   * The part of the purge which relates to the last analysis: the snapshots of aborted analyses are deleted and
+   * the components which are not part of the last analysis are disabled. It must be executed before another
+   * analysis of the same project is processed.
+   */
+  public void deleteAbortedBuildsAndDisableOrphans(DbSession session, PurgeConfiguration conf, PurgeListener listener, PurgeProfiler profiler) {
     PurgeMapper mapper = session.getMapper(PurgeMapper.class);
     PurgeCommands commands = new PurgeCommands(session, mapper, profiler);
     List<ResourceDto> projects = getProjects(conf.rootProjectIdUuid().getId(), session);
     for (ResourceDto project : projects) {
-      LOG.debug("-> Clean " + project.getLongName() + " [id=" + project.getId() + "]");
       deleteAbortedBuilds(project, commands);
-      purge(project, conf.scopesWithoutHistoricalData(), commands);
     }
     for (ResourceDto project : projects) {
       disableOrphanResources(project, session, mapper, listener);
     }
+  }
+
+  /**
+   * The part of the purge which relates to the history of the project: data of past analyses which are not needed
+   * anymore and old closed issues are deleted. It does not depend on the last analysis, so it can be executed later.
+   * Analyses are purged by chunks of {@value #MAX_ANALYSES_PER_CHUNK}.
+   */
+  public void purgeHistory(DbSession session, PurgeConfiguration conf, PurgeProfiler profiler) {
+    PurgeMapper mapper = session.getMapper(PurgeMapper.class);
+    PurgeCommands commands = new PurgeCommands(session, mapper, profiler);
+    List<ResourceDto> projects = getProjects(conf.rootProjectIdUuid().getId(), session);
+    for (ResourceDto project : projects) {
+      LOG.debug("-> Clean " + project.getLongName() + " [id=" + project.getId() + "]");
+      purge(session, project, conf.scopesWithoutHistoricalData(), commands, profiler);
+    }
     deleteOldClosedIssues(conf, mapper);
   }
 
@@ -106,28 +133,36 @@ public class PurgeDao implements Dao {
     return !commands.selectSnapshotIds(query).isEmpty();
   }
 
-  private static void purge(ResourceDto project, String[] scopesWithoutHistoricalData, PurgeCommands purgeCommands) {
+  private static void purge(DbSession session, ResourceDto project, String[] scopesWithoutHistoricalData, PurgeCommands purgeCommands, PurgeProfiler profiler) {
+    // the purge can be executed while the next analysis of the project is processed, so its
+    // unprocessed snapshots must be excluded
     List<Long> projectSnapshotIds = purgeCommands.selectSnapshotIds(
       PurgeSnapshotQuery.create()
         .setResourceId(project.getId())
         .setIslast(false)
+        .setStatus(new String[] {"P"})
         .setNotPurged(true)
       );
-    for (final Long projectSnapshotId : projectSnapshotIds) {
-      LOG.debug("<- Clean snapshot " + projectSnapshotId);
+    int done = 0;
+    for (List<Long> chunk : Lists.partition(projectSnapshotIds, MAX_ANALYSES_PER_CHUNK)) {
       if (!ArrayUtils.isEmpty(scopesWithoutHistoricalData)) {
         PurgeSnapshotQuery query = PurgeSnapshotQuery.create()
           .setIslast(false)
           .setScopes(scopesWithoutHistoricalData)
-          .setRootSnapshotId(projectSnapshotId);
+          .setRootSnapshotIds(chunk);
         purgeCommands.deleteSnapshots(query);
       }
 
-      PurgeSnapshotQuery query = PurgeSnapshotQuery.create().setRootSnapshotId(projectSnapshotId).setNotPurged(true);
+      PurgeSnapshotQuery query = PurgeSnapshotQuery.create().setRootSnapshotIds(chunk).setNotPurged(true);
       purgeCommands.purgeSnapshots(query);
 
       // must be executed at the end for reentrance
-      purgeCommands.purgeSnapshots(PurgeSnapshotQuery.create().setId(projectSnapshotId).setNotPurged(true));
+      purgeCommands.purgeSnapshots(PurgeSnapshotQuery.create().setIds(chunk).setNotPurged(true));
+
+      session.commit();
+      profiler.pause();
+      done += chunk.size();
+      profiler.progress("Clean analyses of " + project.getKey(), done, projectSnapshotIds.size());
     }
   }
 
@@ -29,12 +29,29 @@ import java.util.Map;
 import java.util.Map.Entry;
 import org.sonar.api.utils.TimeUtils;
 import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 
+/**
+ * Measures the time spent in each kind of purge operation.
+ * <p>
+ * It can also throttle the purge: when the maximum db usage is lower than 100%, the duration of each operation
+ * is converted into a pause, so that the time spent in db does not exceed the given percentage of the total time
+ * of the purge. Pauses are cumulated until {@link #pause()} is called, out of any transaction.
+ * As a consequence an instance must not be shared by purges executed concurrently.
+ * </p>
+ */
 public class PurgeProfiler {
 
+  private static final Logger LOG = Loggers.get(PurgeProfiler.class);
+  private static final int NO_THROTTLING = 100;
+
   private Map<String, Long> durations = new HashMap<>();
   private long startTime;
   private String currentTable;
+  private long pausedTime = 0L;
+  private long pendingPause = 0L;
+  private long resetTime;
+  private final int maxDbUsagePercent;
   private final Clock clock;
 
   public PurgeProfiler() {
@@ -43,11 +60,31 @@ public class PurgeProfiler {
 
   @VisibleForTesting
   PurgeProfiler(Clock clock) {
+    this(clock, NO_THROTTLING);
+  }
+
+  @VisibleForTesting
+  PurgeProfiler(Clock clock, int maxDbUsagePercent) {
+    if (maxDbUsagePercent < 1 || maxDbUsagePercent > NO_THROTTLING) {
+      throw new IllegalArgumentException("Max db usage must be between 1 and 100 (got " + maxDbUsagePercent + ")");
+    }
     this.clock = clock;
+    this.maxDbUsagePercent = maxDbUsagePercent;
+    this.resetTime = clock.now();
+  }
+
+  /**
+   * @param maxDbUsagePercent percentage of time, between 1 and 100, the purge is allowed to spend in db
+   */
+  public static PurgeProfiler throttled(int maxDbUsagePercent) {
+    return new PurgeProfiler(new Clock(), maxDbUsagePercent);
   }
 
   public void reset() {
     durations.clear();
+    pausedTime = 0L;
+    pendingPause = 0L;
+    resetTime = clock.now();
   }
 
   void start(String table) {
@@ -62,7 +99,41 @@ public class PurgeProfiler {
     } else {
       cumulatedDuration = 0L;
     }
-    durations.put(currentTable, cumulatedDuration + (clock.now() - startTime));
+    long duration = clock.now() - startTime;
+    durations.put(currentTable, cumulatedDuration + duration);
+    throttle(duration);
+  }
+
+  private void throttle(long dbDuration) {
+    if (maxDbUsagePercent < NO_THROTTLING && dbDuration > 0) {
+      pendingPause += dbDuration * (NO_THROTTLING - maxDbUsagePercent) / maxDbUsagePercent;
+    }
+  }
+
+  /**
+   * Pauses the thread for the time cumulated by the operations executed since the previous pause, if the purge
+   * is throttled. Must be called after commit, so that no locks are held during the pause.
+   */
+  public void pause() {
+    if (pendingPause > 0) {
+      clock.sleep(pendingPause);
+      pausedTime += pendingPause;
+      pendingPause = 0L;
+    }
+  }
+
+  /**
+   * Logs (debug level) the progress of a long purge operation, with the time elapsed since last reset.
+   */
+  void progress(String operation, int done, int total) {
+    LOG.debug("{}: {}/{} | time={}", operation, done, total, TimeUtils.formatDuration(clock.now() - resetTime));
+  }
+
+  /**
+   * Total time spent in pauses because of throttling
+   */
+  public long getPausedTime() {
+    return pausedTime;
   }
 
   public void dump(long totalTime, Logger logger) {
@@ -80,6 +151,9 @@ public class PurgeProfiler {
         .append(" (").append((int) (entry.getValue() / percent)).append("%)");
       logger.info(sb.toString());
     }
+    if (pausedTime > 0) {
+      logger.info("   o throttling pauses: " + TimeUtils.formatDuration(pausedTime) + " (" + (int) (pausedTime / percent) + "%)");
+    }
   }
 
   private static List<Entry<String, Long>> truncateList(List<Entry<String, Long>> sortedFullList) {
@@ -99,6 +173,14 @@ public class PurgeProfiler {
     public long now() {
       return System.currentTimeMillis();
     }
+
+    public void sleep(long duration) {
+      try {
+        Thread.sleep(duration);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
 }
@@ -19,10 +19,14 @@
  */
 package org.sonar.db.purge;
 
+import java.util.List;
+
 public final class PurgeSnapshotQuery {
   private Long id;
   private Long rootProjectId;
   private Long rootSnapshotId;
+  private List<Long> rootSnapshotIds;
+  private List<Long> ids;
   private Long resourceId;
   private String[] scopes;
   private String[] qualifiers;
@@ -110,6 +114,30 @@ public final class PurgeSnapshotQuery {
     return this;
   }
 
+  public List<Long> getRootSnapshotIds() {
+    return rootSnapshotIds;
+  }
+
+  /**
+   * Snapshots of several analyses at once. The number of ids must not be greater than 1000 (limit of Oracle).
+   */
+  public PurgeSnapshotQuery setRootSnapshotIds(List<Long> rootSnapshotIds) {
+    this.rootSnapshotIds = rootSnapshotIds;
+    return this;
+  }
+
+  public List<Long> getIds() {
+    return ids;
+  }
+
+  /**
+   * The number of ids must not be greater than 1000 (limit of Oracle).
+   */
+  public PurgeSnapshotQuery setIds(List<Long> ids) {
+    this.ids = ids;
+    return this;
+  }
+
   public Long getResourceId() {
     return resourceId;
   }
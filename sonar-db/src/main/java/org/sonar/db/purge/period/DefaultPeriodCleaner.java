@@ -21,7 +21,11 @@
 package org.sonar.db.purge.period;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import org.sonar.api.config.Settings;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.utils.DateUtils;
@@ -37,6 +41,10 @@ import org.sonar.db.purge.PurgeableSnapshotDto;
 public class DefaultPeriodCleaner {
 
   private static final Logger LOG = Loggers.get(DefaultPeriodCleaner.class);
+  /**
+   * Number of analyses which are deleted by the same statements
+   */
+  private static final int MAX_ANALYSES_PER_CHUNK = 100;
   private final PurgeDao purgeDao;
   private final PurgeProfiler profiler;
 
@@ -46,23 +54,41 @@ public class DefaultPeriodCleaner {
   }
 
   public void clean(DbSession session, long projectId, Settings settings) {
-    doClean(projectId, new Filters(settings).all(), session);
+    clean(session, projectId, settings, profiler);
+  }
+
+  /**
+   * Same as {@link #clean(DbSession, long, Settings)}, but time is measured by the given profiler
+   */
+  public void clean(DbSession session, long projectId, Settings settings, PurgeProfiler purgeProfiler) {
+    doClean(projectId, new Filters(settings).all(), session, purgeProfiler);
   }
 
   @VisibleForTesting
   void doClean(long projectId, List<Filter> filters, DbSession session) {
+    doClean(projectId, filters, session, profiler);
+  }
+
+  private void doClean(long projectId, List<Filter> filters, DbSession session, PurgeProfiler purgeProfiler) {
     List<PurgeableSnapshotDto> history = selectProjectSnapshots(projectId, session);
+    // filters are applied to the whole history, so a snapshot can be selected by several filters
+    Set<Long> snapshotIds = new LinkedHashSet<>();
     for (Filter filter : filters) {
       filter.log();
-      delete(filter.filter(history), session);
+      for (PurgeableSnapshotDto snapshot : filter.filter(history)) {
+        LOG.debug("<- Delete snapshot: {} [{}]", DateUtils.formatDateTime(snapshot.getDate()), snapshot.getSnapshotId());
+        snapshotIds.add(snapshot.getSnapshotId());
+      }
     }
+    delete(new ArrayList<>(snapshotIds), session, purgeProfiler);
   }
 
-  private void delete(List<PurgeableSnapshotDto> snapshots, DbSession session) {
-    for (PurgeableSnapshotDto snapshot : snapshots) {
-      LOG.debug("<- Delete snapshot: {} [{}]", DateUtils.formatDateTime(snapshot.getDate()), snapshot.getSnapshotId());
-      purgeDao.deleteSnapshots(PurgeSnapshotQuery.create().setRootSnapshotId(snapshot.getSnapshotId()), session, profiler);
-      purgeDao.deleteSnapshots(PurgeSnapshotQuery.create().setId(snapshot.getSnapshotId()), session, profiler);
+  private void delete(List<Long> snapshotIds, DbSession session, PurgeProfiler purgeProfiler) {
+    for (List<Long> chunk : Lists.partition(snapshotIds, MAX_ANALYSES_PER_CHUNK)) {
+      purgeDao.deleteSnapshots(PurgeSnapshotQuery.create().setRootSnapshotIds(chunk), session, purgeProfiler);
+      purgeDao.deleteSnapshots(PurgeSnapshotQuery.create().setIds(chunk), session, purgeProfiler);
+      session.commit();
+      purgeProfiler.pause();
     }
   }
 
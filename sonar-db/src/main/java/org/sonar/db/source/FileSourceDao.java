@@ -27,11 +27,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.db.Dao;
+import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.source.FileSourceDto.Type;
@@ -50,6 +52,18 @@ public class FileSourceDao implements Dao {
     return mapper(session).select(fileUuid, Type.SOURCE);
   }
 
+  /**
+   * Hashes, revision and dates of the sources of the given files. Binary data and line hashes are not loaded.
+   */
+  public List<FileSourceDto> selectSourceHashesByFileUuids(final DbSession session, Collection<String> fileUuids) {
+    return DatabaseUtils.executeLargeInputs(fileUuids, new Function<List<String>, List<FileSourceDto>>() {
+      @Override
+      public List<FileSourceDto> apply(List<String> partition) {
+        return mapper(session).selectHashesByFileUuids(partition, Type.SOURCE);
+      }
+    });
+  }
+
   @CheckForNull
   public FileSourceDto selectTest(String fileUuid) {
     DbSession session = mybatis.openSession(false);
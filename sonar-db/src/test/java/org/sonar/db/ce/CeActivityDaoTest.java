@@ -62,6 +62,7 @@ public class CeActivityDaoTest {
     assertThat(saved.get().getExecutedAt()).isEqualTo(1_500_000_000_500L);
     assertThat(saved.get().getExecutionTimeMs()).isEqualTo(500L);
     assertThat(saved.get().getSnapshotId()).isEqualTo(123_456);
+    assertThat(saved.get().getStepMetrics()).isEqualTo("[{\"step\":\"Extract report\",\"durationMs\":100}]");
     assertThat(saved.get().toString()).isNotEmpty();
   }
 
@@ -252,6 +253,7 @@ public class CeActivityDaoTest {
     dto.setExecutedAt(1_500_000_000_500L);
     dto.setExecutionTimeMs(500L);
     dto.setSnapshotId(123_456L);
+    dto.setStepMetrics("[{\"step\":\"Extract report\",\"durationMs\":100}]");
     underTest.insert(db.getSession(), dto);
   }
 
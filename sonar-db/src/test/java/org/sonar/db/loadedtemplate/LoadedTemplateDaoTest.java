@@ -19,6 +19,7 @@
  */
 package org.sonar.db.loadedtemplate;
 
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.utils.System2;
@@ -43,6 +44,17 @@ public class LoadedTemplateDaoTest {
     assertThat(dao.countByTypeAndKey("PROFILE", "HOTSPOTS"), is(0));
   }
 
+  @Test
+  public void select_by_type() {
+    dbTester.prepareDbUnit(getClass(), "select_by_type.xml");
+
+    List<LoadedTemplateDto> templates = dao.selectByType(dbTester.getSession(), "RULE_REPOSITORY");
+
+    assertThat(templates.size(), is(2));
+    assertThat(templates.get(0).getType(), is("RULE_REPOSITORY"));
+    assertThat(dao.selectByType(dbTester.getSession(), "UNKNOWN").isEmpty(), is(true));
+  }
+
   @Test
   public void shouldInsert() {
     dbTester.prepareDbUnit(getClass(), "shouldInsert.xml");
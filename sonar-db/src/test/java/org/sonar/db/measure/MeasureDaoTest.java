@@ -460,6 +460,28 @@ public class MeasureDaoTest {
     assertThat(db.countRowsOfTable("project_measures")).isEqualTo(2);
   }
 
+  @Test
+  public void insert_measures_with_several_multi_rows_statements() {
+    db.prepareDbUnit(getClass(), "empty.xml");
+    List<MeasureDto> measures = newArrayList();
+    for (int i = 0; i < MeasureDao.MAX_ROWS_PER_INSERT * 2 + 1; i++) {
+      measures.add(new MeasureDto()
+        .setSnapshotId(2L)
+        .setMetricId(i)
+        .setComponentId(6L)
+        .setValue((double) i)
+        .setData(i % 2 == 0 ? null : ("data " + i)));
+    }
+
+    underTest.insert(db.getSession(), measures);
+    db.getSession().commit();
+
+    assertThat(db.countRowsOfTable("project_measures")).isEqualTo(MeasureDao.MAX_ROWS_PER_INSERT * 2 + 1);
+    MeasureDto last = underTest.selectBySnapshotAndMetrics(db.getSession(), 2L, newArrayList(MeasureDao.MAX_ROWS_PER_INSERT * 2)).get(0);
+    assertThat(last.getValue()).isEqualTo(MeasureDao.MAX_ROWS_PER_INSERT * 2);
+    assertThat(underTest.selectBySnapshotAndMetrics(db.getSession(), 2L, newArrayList(1)).get(0).getData()).isEqualTo("data 1");
+  }
+
   private static Map<Long, PastMeasureDto> pastMeasuresById(List<PastMeasureDto> pastMeasures) {
     return FluentIterable.from(pastMeasures).uniqueIndex(new Function<PastMeasureDto, Long>() {
       @Nullable
@@ -0,0 +1,66 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.notification;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import org.junit.Test;
+import org.sonar.api.notifications.Notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NotificationQueueDtoTest {
+
+  @Test
+  public void write_and_read_compressed_notification() throws Exception {
+    Notification notification = new Notification("new-issues").setFieldValue("projectKey", "org.sonar:sample").setDefaultMessage("10 new issues");
+    for (int i = 0; i < 10; i++) {
+      notification.setFieldValue("count." + i, String.valueOf(i));
+    }
+
+    NotificationQueueDto dto = NotificationQueueDto.toNotificationQueueDto(notification);
+
+    assertThat(dto.getData().length).isLessThan(serialize(notification).length);
+    Notification read = dto.toNotification();
+    assertThat(read.getType()).isEqualTo("new-issues");
+    assertThat(read.getFieldValue("projectKey")).isEqualTo("org.sonar:sample");
+    assertThat(read.getDefaultMessage()).isEqualTo("10 new issues");
+  }
+
+  @Test
+  public void read_uncompressed_notification_stored_by_previous_versions() throws Exception {
+    NotificationQueueDto dto = new NotificationQueueDto().setData(serialize(new Notification("new-issues")));
+
+    assertThat(dto.toNotification().getType()).isEqualTo("new-issues");
+  }
+
+  @Test
+  public void read_no_data() throws Exception {
+    assertThat(new NotificationQueueDto().toNotification()).isNull();
+  }
+
+  private static byte[] serialize(Notification notification) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+    objectOutput.writeObject(notification);
+    objectOutput.close();
+    return output.toByteArray();
+  }
+}
@@ -68,6 +68,14 @@ public class PurgeDaoTest {
     dbTester.assertDbUnit(getClass(), "shouldPurgeProject-result.xml", "projects", "snapshots");
   }
 
+  @Test
+  public void purge_history_ignores_unprocessed_snapshots() {
+    dbTester.prepareDbUnit(getClass(), "purge_history_ignores_unprocessed_snapshots.xml");
+    underTest.purgeHistory(dbSession, newConfigurationWith30Days(), new PurgeProfiler());
+    dbSession.commit();
+    dbTester.assertDbUnit(getClass(), "purge_history_ignores_unprocessed_snapshots.xml", "projects", "snapshots");
+  }
+
   @Test
   public void delete_file_sources_of_disabled_resources() {
     dbTester.prepareDbUnit(getClass(), "delete_file_sources_of_disabled_resources.xml");
@@ -23,6 +23,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.utils.log.Logger;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.contains;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -80,6 +81,49 @@ public class PurgeProfilerTest {
     verify(logger).info(contains("bar: 5ms"));
   }
 
+  @Test
+  public void throttle_purge() {
+    profiler = new PurgeProfiler(clock, 20);
+
+    profiler.start("foo");
+    clock.sleep(10);
+    profiler.stop();
+
+    profiler.start("bar");
+    clock.sleep(5);
+    profiler.stop();
+
+    // pauses are delayed until the caller is out of transaction
+    assertThat(profiler.getPausedTime()).isEqualTo(0L);
+    assertThat(clock.now()).isEqualTo(15L);
+
+    profiler.pause();
+
+    // db usage is 20%, so each operation is followed by a pause of 4 times its duration
+    assertThat(profiler.getPausedTime()).isEqualTo(60L);
+    assertThat(clock.now()).isEqualTo(75L);
+
+    profiler.dump(75, logger);
+    verify(logger).info(contains("foo: 10ms"));
+    verify(logger).info(contains("throttling pauses: 60ms"));
+  }
+
+  @Test
+  public void no_throttling_by_default() {
+    profiler.start("foo");
+    clock.sleep(10);
+    profiler.stop();
+    profiler.pause();
+
+    assertThat(profiler.getPausedTime()).isEqualTo(0L);
+    assertThat(clock.now()).isEqualTo(10L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_if_max_db_usage_is_not_a_percentage() {
+    new PurgeProfiler(clock, 0);
+  }
+
   private class MockedClock extends PurgeProfiler.Clock {
     private long now = 0;
 
@@ -88,6 +132,7 @@ public class PurgeProfilerTest {
       return now;
     }
 
+    @Override
     public void sleep(long duration) {
       now += duration;
     }
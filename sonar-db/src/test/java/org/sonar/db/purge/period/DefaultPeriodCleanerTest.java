@@ -59,8 +59,9 @@ public class DefaultPeriodCleanerTest {
 
     verify(filter1).log();
     verify(filter2).log();
-    verify(dao, times(2)).deleteSnapshots(argThat(newRootSnapshotQuery()), eq(session), any(PurgeProfiler.class));
-    verify(dao, times(2)).deleteSnapshots(argThat(newSnapshotIdQuery()), eq(session), any(PurgeProfiler.class));
+    // snapshot selected by both filters is deleted only once
+    verify(dao, times(1)).deleteSnapshots(argThat(newRootSnapshotQuery()), eq(session), any(PurgeProfiler.class));
+    verify(dao, times(1)).deleteSnapshots(argThat(newSnapshotIdQuery()), eq(session), any(PurgeProfiler.class));
   }
 
   private BaseMatcher<PurgeSnapshotQuery> newRootSnapshotQuery() {
@@ -68,7 +69,7 @@ public class DefaultPeriodCleanerTest {
       @Override
       public boolean matches(Object o) {
         PurgeSnapshotQuery query = (PurgeSnapshotQuery) o;
-        return ObjectUtils.equals(query.getRootSnapshotId(), 999L);
+        return ObjectUtils.equals(query.getRootSnapshotIds(), Arrays.asList(999L));
       }
     };
   }
@@ -78,7 +79,7 @@ public class DefaultPeriodCleanerTest {
       @Override
       public boolean matches(Object o) {
         PurgeSnapshotQuery query = (PurgeSnapshotQuery) o;
-        return ObjectUtils.equals(query.getId(), 999L);
+        return ObjectUtils.equals(query.getIds(), Arrays.asList(999L));
       }
     };
   }
@@ -23,6 +23,8 @@ package org.sonar.db.source;
 import com.google.common.base.Function;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
@@ -61,6 +63,22 @@ public class FileSourceDaoTest {
     assertThat(fileSourceDto.getRevision()).isEqualTo("123456789");
   }
 
+  @Test
+  public void select_source_hashes_by_file_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    List<FileSourceDto> dtos = underTest.selectSourceHashesByFileUuids(session, Arrays.asList("FILE1_UUID", "UNKNOWN_UUID"));
+
+    assertThat(dtos).hasSize(1);
+    FileSourceDto dto = dtos.get(0);
+    assertThat(dto.getFileUuid()).isEqualTo("FILE1_UUID");
+    assertThat(dto.getDataHash()).isEqualTo("hash");
+    assertThat(dto.getSrcHash()).isEqualTo("FILE_HASH");
+    assertThat(dto.getRevision()).isEqualTo("123456789");
+    assertThat(dto.getUpdatedAt()).isEqualTo(1500000000000L);
+    assertThat(dto.getBinaryData()).isNull();
+  }
+
   @Test
   public void select_line_hashes() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -44,6 +44,10 @@ import javax.annotation.Nullable;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * This implementation is not thread-safe. However once sorted, which is done by {@link #iterator()}, concurrent
+ * invocations of {@link #getBySequenceHash(ByteArray)} are safe as long as no block is inserted.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -70,8 +74,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -138,7 +140,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     int startUnit = blockData[offset++];
     int endUnit = blockData[offset];
 
-    return blockBuilder
+    return Block.builder()
       .setResourceId(resourceId)
       .setBlockHash(blockHash)
       .setIndexInFile(indexInFile)
@@ -222,15 +224,21 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
+    // binary search does not use the free slot at the end of blockData, so that concurrent searches are possible
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
     }
-
-    int index = DataUtils.binarySearch(byBlockHash);
+    int index = lower;
 
     List<Block> result = new ArrayList<>();
-    while (index < size && !isLessByHash(size, index)) {
+    while (index < size && compareHash(index, hash) == 0) {
       // extract block (note that there is no need to extract hash)
       String resourceId = resourceIds[index];
       result.add(createBlock(index, resourceId, sequenceHash));
@@ -323,6 +331,22 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     return false;
   }
 
+  /**
+   * Compares the hash of block at index i with the given hash
+   */
+  private int compareHash(int i, int[] hash) {
+    int i2 = i * blockInts;
+    for (int k = 0; k < hashInts; k++, i2++) {
+      if (blockData[i2] < hash[k]) {
+        return -1;
+      }
+      if (blockData[i2] > hash[k]) {
+        return 1;
+      }
+    }
+    return 0;
+  }
+
   private final DataUtils.Sortable byBlockHash = new DataUtils.Sortable() {
     @Override
     public void swap(int i, int j) {
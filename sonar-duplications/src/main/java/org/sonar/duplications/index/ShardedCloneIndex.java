@@ -0,0 +1,514 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import com.google.common.base.Preconditions;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+import org.sonar.duplications.utils.FastStringComparator;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Provides an index able to hold the blocks of many projects, for example for cross-project detection of duplications.
+ * <p>
+ * Blocks are distributed into shards by the first bits of their hash. Inserted blocks are buffered in memory, in flat
+ * arrays as done by {@link PackedMemoryCloneIndex}. Once the number of buffered blocks reaches a threshold, each shard is
+ * sorted by hash and the buffer is spilled as a "run" into a file of the given directory. Runs are memory-mapped, so
+ * that a lookup by hash is a binary search into the relevant shard of each run and a scan of the relevant shard of the
+ * buffer. Each run also contains a directory of its blocks sorted by resource, used by {@link #getByResourceId(String)}.
+ * </p>
+ * <p>
+ * Resources can be removed. Their blocks are filtered out from queries and are not written in the next runs, but
+ * existing runs are never rewritten. A resource inserted again after its removal is considered as a new resource.
+ * </p>
+ * <p>
+ * This implementation is not thread-safe. Method {@link #close()} deletes the files of runs.
+ * </p>
+ */
+public class ShardedCloneIndex extends AbstractCloneIndex implements Closeable {
+
+  private static final int DEFAULT_HASH_BYTES = 8;
+  private static final int DEFAULT_SHARD_BITS = 8;
+  private static final int DEFAULT_SPILL_THRESHOLD = 1 << 20;
+  private static final int INITIAL_SHARD_CAPACITY = 64;
+
+  /**
+   * Internal id of resource, then index in file, first line, last line, first unit and last unit
+   */
+  private static final int BLOCK_INTS = 6;
+
+  private final File directory;
+  private final int hashInts;
+  private final int recordInts;
+  private final int shardBits;
+  private final int spillThreshold;
+
+  private final Map<String, Integer> resourceIds = new HashMap<>();
+  private final List<String> resources = new ArrayList<>();
+  private final BitSet removedResources = new BitSet();
+
+  private final int[][] buffers;
+  private final int[] bufferSizes;
+  private int bufferedBlocks = 0;
+
+  private final List<Run> runs = new ArrayList<>();
+
+  private final Block.Builder blockBuilder = Block.builder();
+
+  public ShardedCloneIndex(File directory) {
+    this(directory, DEFAULT_HASH_BYTES, DEFAULT_SHARD_BITS, DEFAULT_SPILL_THRESHOLD);
+  }
+
+  /**
+   * @param directory directory of the files of runs, which is created if it does not exist
+   * @param hashBytes size of hash in bytes
+   * @param shardBits the index is divided into 2^shardBits shards
+   * @param spillThreshold number of blocks buffered in memory before being spilled into a run
+   */
+  public ShardedCloneIndex(File directory, int hashBytes, int shardBits, int spillThreshold) {
+    Preconditions.checkArgument(hashBytes >= 4 && hashBytes % 4 == 0, "Size of hash must be a multiple of 4 bytes: %s", hashBytes);
+    Preconditions.checkArgument(shardBits >= 0 && shardBits <= 16, "Number of bits of shards must be between 0 and 16: %s", shardBits);
+    Preconditions.checkArgument(spillThreshold > 0, "Spill threshold must be positive: %s", spillThreshold);
+    this.directory = directory;
+    this.hashInts = hashBytes / 4;
+    this.recordInts = hashInts + BLOCK_INTS;
+    this.shardBits = shardBits;
+    Preconditions.checkArgument((long) spillThreshold * (recordInts + 1) * 4 <= Integer.MAX_VALUE, "Spill threshold is too high: %s", spillThreshold);
+    this.spillThreshold = spillThreshold;
+    int shards = 1 << shardBits;
+    this.buffers = new int[shards][];
+    this.bufferSizes = new int[shards];
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation does not guarantee that blocks would be sorted by index.</strong>
+   * </p>
+   */
+  @Override
+  public Collection<Block> getByResourceId(String resourceId) {
+    Integer id = resourceIds.get(resourceId);
+    if (id == null) {
+      return Collections.emptyList();
+    }
+    List<Block> result = new ArrayList<>();
+    for (Run run : runs) {
+      run.addBlocksOfResource(id, resourceId, result);
+    }
+    for (int shard = 0; shard < buffers.length; shard++) {
+      int[] buffer = buffers[shard];
+      IntData shardData = IntData.of(buffer);
+      for (int offset = 0; offset < bufferSizes[shard] * recordInts; offset += recordInts) {
+        if (buffer[offset + hashInts] == id) {
+          result.add(readBlock(shardData, offset, null));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    int[] hash = toHashInts(sequenceHash);
+    int shard = shardOf(hash);
+    List<Block> result = new ArrayList<>();
+    for (Run run : runs) {
+      run.addBlocksOfHash(shard, hash, sequenceHash, result);
+    }
+    int[] buffer = buffers[shard];
+    IntData shardData = IntData.of(buffer);
+    for (int offset = 0; offset < bufferSizes[shard] * recordInts; offset += recordInts) {
+      if (compareHash(shardData, offset, hash) == 0 && !removedResources.get(buffer[offset + hashInts])) {
+        result.add(readBlock(shardData, offset, sequenceHash));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation allows insertion of two blocks with same index for one resource.</strong>
+   * </p>
+   */
+  @Override
+  public void insert(Block block) {
+    int[] hash = toHashInts(block.getBlockHash());
+    int shard = shardOf(hash);
+    int offset = ensureCapacity(shard);
+    int[] buffer = buffers[shard];
+    System.arraycopy(hash, 0, buffer, offset, hashInts);
+    offset += hashInts;
+    buffer[offset++] = resourceId(block.getResourceId());
+    buffer[offset++] = block.getIndexInFile();
+    buffer[offset++] = block.getStartLine();
+    buffer[offset++] = block.getEndLine();
+    buffer[offset++] = block.getStartUnit();
+    buffer[offset] = block.getEndUnit();
+    bufferSizes[shard]++;
+    bufferedBlocks++;
+
+    if (bufferedBlocks >= spillThreshold) {
+      spill();
+    }
+  }
+
+  /**
+   * Removes all the blocks of the given resource
+   */
+  public void remove(String resourceId) {
+    Integer id = resourceIds.remove(resourceId);
+    if (id != null) {
+      removedResources.set(id);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Resources are sorted by id, as done by {@link PackedMemoryCloneIndex}.
+   * </p>
+   */
+  @Override
+  public Iterator<ResourceBlocks> iterator() {
+    List<String> sortedResourceIds = new ArrayList<>(resourceIds.keySet());
+    Collections.sort(sortedResourceIds, FastStringComparator.INSTANCE);
+    final Iterator<String> resourceIterator = sortedResourceIds.iterator();
+    return new Iterator<ResourceBlocks>() {
+      @Override
+      public boolean hasNext() {
+        return resourceIterator.hasNext();
+      }
+
+      @Override
+      public ResourceBlocks next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        String resourceId = resourceIterator.next();
+        return new ResourceBlocks(resourceId, getByResourceId(resourceId));
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Number of runs spilled to disk
+   */
+  public int runCount() {
+    return runs.size();
+  }
+
+  /**
+   * Deletes the files of runs. The index must not be used anymore.
+   */
+  @Override
+  public void close() {
+    for (Run run : runs) {
+      // file can't be deleted on Windows as long as the buffer is not garbage collected
+      if (!run.file.delete()) {
+        run.file.deleteOnExit();
+      }
+    }
+    runs.clear();
+  }
+
+  private int resourceId(String resourceId) {
+    Integer id = resourceIds.get(resourceId);
+    if (id == null) {
+      id = resources.size();
+      resources.add(resourceId);
+      resourceIds.put(resourceId, id);
+    }
+    return id;
+  }
+
+  private int[] toHashInts(ByteArray byteArray) {
+    int[] hash = byteArray.toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    return hash;
+  }
+
+  private int shardOf(int[] hash) {
+    return shardBits == 0 ? 0 : (hash[0] >>> (32 - shardBits));
+  }
+
+  /**
+   * @return offset of the next record of the shard
+   */
+  private int ensureCapacity(int shard) {
+    int[] buffer = buffers[shard];
+    int offset = bufferSizes[shard] * recordInts;
+    if (buffer == null) {
+      buffers[shard] = new int[INITIAL_SHARD_CAPACITY * recordInts];
+    } else if (offset == buffer.length) {
+      buffers[shard] = Arrays.copyOf(buffer, ((buffer.length / recordInts) * 3 / 2 + 1) * recordInts);
+    }
+    return offset;
+  }
+
+  private int compareHash(IntData data, int offset, int[] hash) {
+    for (int k = 0; k < hashInts; k++) {
+      int value = data.get(offset + k);
+      if (value != hash[k]) {
+        return value < hash[k] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private Block readBlock(IntData data, int offset, @Nullable ByteArray hash) {
+    ByteArray blockHash = hash;
+    if (blockHash == null) {
+      int[] ints = new int[hashInts];
+      for (int k = 0; k < hashInts; k++) {
+        ints[k] = data.get(offset + k);
+      }
+      blockHash = new ByteArray(ints);
+    }
+    int index = offset + hashInts;
+    String resourceId = resources.get(data.get(index));
+    return blockBuilder
+      .setResourceId(resourceId)
+      .setBlockHash(blockHash)
+      .setIndexInFile(data.get(index + 1))
+      .setLines(data.get(index + 2), data.get(index + 3))
+      .setUnit(data.get(index + 4), data.get(index + 5))
+      .build();
+  }
+
+  /**
+   * Sorts the shards of the buffer by hash then writes them into a new run. Blocks of removed resources are dropped.
+   */
+  private void spill() {
+    File file = new File(directory, "run-" + runs.size() + ".dat");
+    int[] shardStarts = new int[buffers.length + 1];
+    int records = 0;
+    long[] directoryEntries = new long[bufferedBlocks];
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Fail to create directory " + directory);
+      }
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        for (int shard = 0; shard < buffers.length; shard++) {
+          shardStarts[shard] = records;
+          int[] buffer = buffers[shard];
+          if (buffer == null) {
+            continue;
+          }
+          DataUtils.sort(new ShardSortable(buffer, bufferSizes[shard]));
+          for (int offset = 0; offset < bufferSizes[shard] * recordInts; offset += recordInts) {
+            int id = buffer[offset + hashInts];
+            if (!removedResources.get(id)) {
+              for (int k = 0; k < recordInts; k++) {
+                output.writeInt(buffer[offset + k]);
+              }
+              directoryEntries[records] = ((long) id << 32) | records;
+              records++;
+            }
+          }
+        }
+        shardStarts[buffers.length] = records;
+
+        // directory of records, sorted by resource
+        Arrays.sort(directoryEntries, 0, records);
+        for (int i = 0; i < records; i++) {
+          output.writeInt((int) directoryEntries[i]);
+        }
+      }
+      runs.add(new Run(file, map(file), shardStarts, records, directoryEntries));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write clone index into " + file, e);
+    }
+
+    Arrays.fill(buffers, null);
+    Arrays.fill(bufferSizes, 0);
+    bufferedBlocks = 0;
+  }
+
+  private static MappedByteBuffer map(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"); FileChannel channel = randomAccessFile.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * Read access to int arrays and memory-mapped runs
+   */
+  private abstract static class IntData {
+    abstract int get(int index);
+
+    static IntData of(final int[] array) {
+      return new IntData() {
+        @Override
+        int get(int index) {
+          return array[index];
+        }
+      };
+    }
+
+    static IntData of(final ByteBuffer buffer) {
+      return new IntData() {
+        @Override
+        int get(int index) {
+          return buffer.getInt(index * 4);
+        }
+      };
+    }
+  }
+
+  private class ShardSortable implements DataUtils.Sortable {
+    private final int[] buffer;
+    private final int size;
+
+    private ShardSortable(int[] buffer, int size) {
+      this.buffer = buffer;
+      this.size = size;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      int i2 = i * recordInts;
+      int j2 = j * recordInts;
+      for (int k = 0; k < recordInts; k++, i2++, j2++) {
+        int tmp = buffer[i2];
+        buffer[i2] = buffer[j2];
+        buffer[j2] = tmp;
+      }
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      int i2 = i * recordInts;
+      int j2 = j * recordInts;
+      for (int k = 0; k < hashInts; k++, i2++, j2++) {
+        if (buffer[i2] != buffer[j2]) {
+          return buffer[i2] < buffer[j2];
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Sorted run stored on disk. Layout of file is the records sorted by shard then by hash, followed by the
+   * directory of records (index of record) sorted by resource. Only the offsets of shards and of resources
+   * in the directory are kept in memory.
+   */
+  private class Run {
+    private final File file;
+    private final IntData data;
+    private final int[] shardStarts;
+    private final int directoryStart;
+    private final int[] directoryResources;
+    private final int[] directoryOffsets;
+
+    private Run(File file, ByteBuffer buffer, int[] shardStarts, int records, long[] sortedDirectoryEntries) {
+      this.file = file;
+      this.data = IntData.of(buffer);
+      this.shardStarts = shardStarts;
+      this.directoryStart = records * recordInts;
+
+      int resourceCount = 0;
+      int[] resourceIndexes = new int[records];
+      int[] offsets = new int[records + 1];
+      for (int i = 0; i < records; i++) {
+        int id = (int) (sortedDirectoryEntries[i] >>> 32);
+        if (resourceCount == 0 || resourceIndexes[resourceCount - 1] != id) {
+          resourceIndexes[resourceCount] = id;
+          offsets[resourceCount] = i;
+          resourceCount++;
+        }
+      }
+      offsets[resourceCount] = records;
+      this.directoryResources = Arrays.copyOf(resourceIndexes, resourceCount);
+      this.directoryOffsets = Arrays.copyOf(offsets, resourceCount + 1);
+    }
+
+    private void addBlocksOfResource(int id, String resourceId, List<Block> result) {
+      int index = Arrays.binarySearch(directoryResources, id);
+      if (index < 0) {
+        return;
+      }
+      for (int i = directoryOffsets[index]; i < directoryOffsets[index + 1]; i++) {
+        int record = data.get(directoryStart + i);
+        result.add(readBlock(data, record * recordInts, null));
+      }
+    }
+
+    private void addBlocksOfHash(int shard, int[] hash, ByteArray sequenceHash, List<Block> result) {
+      // lower bound of hash in shard
+      int lower = shardStarts[shard];
+      int upper = shardStarts[shard + 1];
+      while (lower < upper) {
+        int mid = (lower + upper) >>> 1;
+        if (compareHash(data, mid * recordInts, hash) < 0) {
+          lower = mid + 1;
+        } else {
+          upper = mid;
+        }
+      }
+      for (int record = lower; record < shardStarts[shard + 1] && compareHash(data, record * recordInts, hash) == 0; record++) {
+        int offset = record * recordInts;
+        if (!removedResources.get(data.get(offset + hashInts))) {
+          result.add(readBlock(data, offset, sequenceHash));
+        }
+      }
+    }
+  }
+}
@@ -28,6 +28,11 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -109,6 +114,34 @@ public class PackedMemoryCloneIndexTest {
     
   }
 
+  @Test
+  public void search_by_hash_concurrently_once_sorted() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("r" + i, i % 10));
+    }
+    // sorts index
+    index.iterator();
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        final long hash = i % 12;
+        futures.add(executorService.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            return index.getBySequenceHash(new ByteArray(hash)).size();
+          }
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        assertThat(futures.get(i).get(), is(i % 12 < 10 ? 100 : 0));
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
   /**
    * Given: index with initial capacity 1.
    * Expected: size and capacity should be increased after insertion of two blocks.
@@ -0,0 +1,192 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShardedCloneIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File dir;
+  private ShardedCloneIndex index;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = temp.newFolder();
+    // small threshold to have blocks both in memory and in runs
+    index = new ShardedCloneIndex(dir, 8, 2, 3);
+  }
+
+  @After
+  public void tearDown() {
+    index.close();
+  }
+
+  @Test
+  public void test() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("a", 2));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("d", 1));
+    index.insert(newBlock("e", 1));
+    index.insert(newBlock("e", 2));
+    index.insert(newBlock("e", 3));
+    assertThat(index.runCount()).isEqualTo(2);
+
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(5);
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).hasSize(2);
+    assertThat(index.getBySequenceHash(new ByteArray(3L))).hasSize(1);
+    assertThat(index.getBySequenceHash(new ByteArray(4L))).isEmpty();
+    assertThat(index.getByResourceId("a")).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(1);
+    assertThat(index.getByResourceId("e")).hasSize(3);
+    assertThat(index.getByResourceId("does not exist")).isEmpty();
+  }
+
+  @Test
+  public void should_construct_blocks_with_normalized_hash() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("d", 1));
+    ByteArray requestedHash = new ByteArray(1L);
+    Collection<Block> blocks = index.getBySequenceHash(requestedHash);
+    assertThat(blocks).hasSize(4);
+    for (Block block : blocks) {
+      assertThat(block.getBlockHash()).isSameAs(requestedHash);
+    }
+  }
+
+  @Test
+  public void remove_resource() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("a", 2));
+    index.insert(newBlock("a", 1));
+
+    index.remove("a");
+    assertThat(index.getByResourceId("a")).isEmpty();
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).extracting("resourceId").containsOnly("b");
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).isEmpty();
+
+    // resource can be inserted again
+    index.insert(newBlock("a", 3));
+    assertThat(index.getByResourceId("a")).extracting("blockHash").containsOnly(new ByteArray(3L));
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(1);
+  }
+
+  @Test
+  public void iterate() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 2));
+    index.insert(newBlock("a", 2));
+
+    Iterator<ResourceBlocks> it = index.iterator();
+    List<ResourceBlocks> resourcesBlocks = new ArrayList<>();
+    while (it.hasNext()) {
+      resourcesBlocks.add(it.next());
+    }
+
+    assertThat(resourcesBlocks).extracting("resourceId").containsExactly("a", "b", "c");
+    assertThat(resourcesBlocks.get(0).blocks()).hasSize(2);
+    assertThat(resourcesBlocks.get(1).blocks()).hasSize(1);
+    assertThat(resourcesBlocks.get(2).blocks()).hasSize(2);
+  }
+
+  @Test
+  public void return_same_blocks_as_packed_memory_index() {
+    ShardedCloneIndex shardedIndex = new ShardedCloneIndex(dir, 8, 4, 100);
+    PackedMemoryCloneIndex memoryIndex = new PackedMemoryCloneIndex();
+    Random random = new Random(42L);
+    for (int i = 0; i < 1000; i++) {
+      Block block = Block.builder()
+        .setResourceId("resource" + random.nextInt(20))
+        .setBlockHash(new ByteArray(random.nextLong() % 50))
+        .setIndexInFile(i)
+        .setLines(i, i + 2)
+        .setUnit(i * 10, i * 10 + 5)
+        .build();
+      shardedIndex.insert(block);
+      memoryIndex.insert(block);
+    }
+
+    for (long hash = -50; hash < 50; hash++) {
+      assertThat(shardedIndex.getBySequenceHash(new ByteArray(hash))).containsOnlyElementsOf(memoryIndex.getBySequenceHash(new ByteArray(hash)))
+        .hasSameSizeAs(memoryIndex.getBySequenceHash(new ByteArray(hash)));
+    }
+    for (int i = 0; i < 20; i++) {
+      assertThat(shardedIndex.getByResourceId("resource" + i)).containsOnlyElementsOf(memoryIndex.getByResourceId("resource" + i))
+        .hasSameSizeAs(memoryIndex.getByResourceId("resource" + i));
+    }
+    shardedIndex.close();
+  }
+
+  @Test
+  public void close_deletes_runs() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("a", 2));
+    index.insert(newBlock("a", 3));
+    assertThat(dir.listFiles()).hasSize(1);
+
+    index.close();
+    assertThat(dir.listFiles()).isEmpty();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void attempt_to_insert_hash_of_incorrect_size() {
+    new ShardedCloneIndex(dir, 4, 2, 3).insert(newBlock("a", 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void attempt_to_find_hash_of_incorrect_size() {
+    new ShardedCloneIndex(dir, 4, 2, 3).getBySequenceHash(new ByteArray(1L));
+  }
+
+  private static Block newBlock(String resourceId, long hash) {
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(1)
+      .setLines(1, 2)
+      .build();
+  }
+}
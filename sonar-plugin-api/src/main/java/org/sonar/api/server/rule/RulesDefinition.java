@@ -24,6 +24,7 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import java.io.IOException;
@@ -371,6 +372,7 @@ public interface RulesDefinition {
    */
   class Context {
     private final Map<String, Repository> repositoriesByKey = Maps.newHashMap();
+    private final List<NewRepositoryImpl> doneRepositories = Lists.newArrayList();
 
     /**
      * New builder for {@link org.sonar.api.server.rule.RulesDefinition.Repository}.
@@ -418,6 +420,23 @@ public interface RulesDefinition {
       return Collections.emptyList();
     }
 
+    /**
+     * Registers again in this context the repositories of another context, in the order in which they
+     * were defined, as if the definitions which populated the other context had been executed on this one.
+     * Used by core to merge the definitions of plugins which are loaded in parallel.
+     * @since 5.4
+     */
+    public void registerRepositories(Context other) {
+      for (NewRepositoryImpl newRepository : other.doneRepositories) {
+        registerRepository(newRepository);
+      }
+    }
+
+    private void done(NewRepositoryImpl newRepository) {
+      registerRepository(newRepository);
+      doneRepositories.add(newRepository);
+    }
+
     private void registerRepository(NewRepositoryImpl newRepository) {
       Repository existing = repositoriesByKey.get(newRepository.key());
       if (existing != null) {
@@ -504,7 +523,7 @@ public interface RulesDefinition {
       // note that some validations can be done here, for example for
       // verifying that at least one rule is declared
 
-      context.registerRepository(this);
+      context.done(this);
     }
 
     @Override
@@ -51,6 +51,17 @@ public abstract class Request {
    */
   public abstract boolean hasParam(String key);
 
+  /**
+   * Returns the value of the HTTP header, or {@code null} if the header is not set or
+   * if the implementation does not support headers.
+   *
+   * @since 5.4
+   */
+  @CheckForNull
+  public String header(String name) {
+    return null;
+  }
+
   /**
    * Returns a non-null value. To be used when parameter is required or has a default value.
    *
@@ -36,6 +36,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class SimpleGetRequest extends Request {
 
   private final Map<String, String> params = Maps.newHashMap();
+  private final Map<String, String> headers = Maps.newHashMap();
   private String mediaType = "application/json";
 
   @Override
@@ -76,4 +77,14 @@ public class SimpleGetRequest extends Request {
     return this;
   }
 
+  @Override
+  public String header(String name) {
+    return headers.get(name);
+  }
+
+  public SimpleGetRequest setHeader(String name, String value) {
+    headers.put(name, value);
+    return this;
+  }
+
 }
@@ -225,6 +225,26 @@ public class RulesDefinitionTest {
     assertThat(findbugs.rules()).extracting("key").containsOnly("NPE", "VULNERABILITY");
   }
 
+  @Test
+  public void register_repositories_of_another_context() {
+    RulesDefinition.NewRepository newFindbugs = context.createRepository("findbugs", "java").setName("Findbugs");
+    newFindbugs.createRule("NPE").setName("NPE").setHtmlDescription("NPE");
+    newFindbugs.done();
+
+    RulesDefinition.Context other = new RulesDefinition.Context();
+    RulesDefinition.NewRepository newFbContrib = other.createRepository("findbugs", "java").setName("FbContrib");
+    newFbContrib.createRule("VULNERABILITY").setName("Vulnerability").setMarkdownDescription("Detect vulnerability");
+    newFbContrib.done();
+    other.createRepository("squid", "java").done();
+
+    context.registerRepositories(other);
+
+    assertThat(context.repositories()).extracting("key").containsOnly("findbugs", "squid");
+    RulesDefinition.Repository findbugs = context.repository("findbugs");
+    assertThat(findbugs.name()).isEqualTo("Findbugs");
+    assertThat(findbugs.rules()).extracting("key").containsOnly("NPE", "VULNERABILITY");
+  }
+
   /**
    * This is temporarily accepted only for the support of the common-rules that are still declared
    * by plugins. It could be removed in 7.0
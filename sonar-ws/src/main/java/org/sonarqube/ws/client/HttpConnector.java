@@ -190,6 +190,9 @@ public class HttpConnector implements WsConnector {
     if (userAgent != null) {
       okHttpRequestBuilder.addHeader("User-Agent", userAgent);
     }
+    for (Map.Entry<String, String> header : getRequest.getHeaders().entrySet()) {
+      okHttpRequestBuilder.header(header.getKey(), header.getValue());
+    }
     return okHttpRequestBuilder;
   }
 
@@ -54,6 +54,11 @@ class HttpResponse extends BaseResponse {
     return okResponse.header("Content-Type");
   }
 
+  @Override
+  public String header(String name) {
+    return okResponse.header(name);
+  }
+
   /**
    * Get stream of bytes
    */
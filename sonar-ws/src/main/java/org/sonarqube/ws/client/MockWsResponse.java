@@ -27,6 +27,8 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.commons.io.IOUtils;
 import org.sonarqube.ws.MediaTypes;
 
@@ -38,6 +40,7 @@ public class MockWsResponse extends BaseResponse {
   private String requestUrl;
   private byte[] content;
   private String contentType;
+  private final Map<String, String> headers = new HashMap<>();
 
   @Override
   public int code() {
@@ -60,6 +63,16 @@ public class MockWsResponse extends BaseResponse {
     return this;
   }
 
+  @Override
+  public String header(String name) {
+    return headers.get(name);
+  }
+
+  public MockWsResponse setHeader(String name, String value) {
+    this.headers.put(name, value);
+    return this;
+  }
+
   public MockWsResponse setRequestUrl(String requestUrl) {
     this.requestUrl = requestUrl;
     return this;
@@ -35,6 +35,12 @@ public interface WsRequest {
 
   Map<String, String> getParams();
 
+  /**
+   * HTTP headers to be sent in addition to the ones defined by the connector
+   * (Accept, authentication, User-Agent, ...)
+   */
+  Map<String, String> getHeaders();
+
   enum Method {
     GET, POST
   }
@@ -21,6 +21,7 @@ package org.sonarqube.ws.client;
 
 import java.io.InputStream;
 import java.io.Reader;
+import javax.annotation.CheckForNull;
 
 /**
  * @since 5.3
@@ -50,6 +51,12 @@ public interface WsResponse {
 
   String contentType();
 
+  /**
+   * Value of the HTTP header, or {@code null} if the header is not set
+   */
+  @CheckForNull
+  String header(String name);
+
   boolean hasContent();
 
   InputStream contentStream();
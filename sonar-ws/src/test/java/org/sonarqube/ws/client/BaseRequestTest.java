@@ -71,6 +71,15 @@ public class BaseRequestTest {
     underTest.setParam(null, "val");
   }
 
+  @Test
+  public void set_headers() {
+    assertThat(underTest.getHeaders()).isEmpty();
+
+    underTest.setHeader("If-None-Match", "\"abc\"");
+    underTest.setHeader("Other", null);
+    assertThat(underTest.getHeaders()).containsExactly(entry("If-None-Match", "\"abc\""));
+  }
+
   private static class FakeRequest extends BaseRequest<FakeRequest> {
     FakeRequest(String path) {
       super(path);
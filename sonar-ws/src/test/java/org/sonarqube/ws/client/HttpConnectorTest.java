@@ -173,6 +173,20 @@ public class HttpConnectorTest {
     assertThat(recordedRequest.getHeader("User-Agent")).isEqualTo("Maven Plugin/2.3");
   }
 
+  @Test
+  public void send_headers_and_read_response_headers() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"abc\""));
+    HttpConnector underTest = new HttpConnector.Builder().url(serverUrl).build();
+
+    WsResponse response = underTest.call(new GetRequest("api/issues/search").setHeader("If-None-Match", "\"abc\""));
+
+    RecordedRequest recordedRequest = server.takeRequest();
+    assertThat(recordedRequest.getHeader("If-None-Match")).isEqualTo("\"abc\"");
+    assertThat(response.code()).isEqualTo(304);
+    assertThat(response.header("ETag")).isEqualTo("\"abc\"");
+    assertThat(response.header("Unknown")).isNull();
+  }
+
   @Test
   public void fail_if_unknown_implementation_of_request() {
     HttpConnector underTest = new HttpConnector.Builder().url(serverUrl).build();